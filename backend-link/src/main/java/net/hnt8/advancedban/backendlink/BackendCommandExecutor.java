@@ -1,8 +1,11 @@
 package net.hnt8.advancedban.backendlink;
 
+import org.bukkit.Bukkit;
 import org.bukkit.command.Command;
 import org.bukkit.command.CommandExecutor;
 import org.bukkit.command.CommandSender;
+import org.bukkit.command.ConsoleCommandSender;
+import org.bukkit.entity.Player;
 
 public class BackendCommandExecutor implements CommandExecutor {
     
@@ -14,12 +17,20 @@ public class BackendCommandExecutor implements CommandExecutor {
     
     @Override
     public boolean onCommand(CommandSender sender, Command command, String label, String[] args) {
-        // Forward the command to the proxy
-        BackendLinkMain.getInstance().sendCommandToProxy(commandName, args);
-        
-        // Don't send any response - the proxy will handle that
-        // This prevents duplicate messages
+        BackendLinkMain plugin = BackendLinkMain.getInstance();
+        // Forward the command to the proxy and show the sender the answer of the proxy once it arrives
+        plugin.forwardCommand(commandName, args).whenComplete((result, ex) -> {
+            if (result == null || result.getMessage() == null || result.getMessage().isEmpty()) {
+                return;
+            }
+            Bukkit.getScheduler().runTask(plugin, () -> {
+                // The proxy console already shows every message
+                if (sender instanceof ConsoleCommandSender || (sender instanceof Player && !((Player) sender).isOnline())) {
+                    return;
+                }
+                sender.sendMessage(result.getMessage());
+            });
+        });
         return true;
     }
 }
-
@@ -1,16 +1,29 @@
 package net.hnt8.advancedban.backendlink;
 
+import net.hnt8.advancedban.link.CommandResultMessage;
+import net.hnt8.advancedban.link.ExecuteCommandMessage;
+import net.hnt8.advancedban.link.LinkCodec;
+import net.hnt8.advancedban.link.LinkMessage;
+import net.hnt8.advancedban.link.LinkProtocolException;
+import net.hnt8.advancedban.link.StatusRequestMessage;
+import net.hnt8.advancedban.link.socket.LinkClient;
 import org.bukkit.Bukkit;
 import org.bukkit.entity.Player;
 import org.bukkit.command.PluginCommand;
 import org.bukkit.plugin.Plugin;
 import org.bukkit.plugin.java.JavaPlugin;
 
-import java.io.ByteArrayOutputStream;
-import java.io.DataOutputStream;
-import java.io.IOException;
+import java.io.File;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeoutException;
 
 public class BackendLinkMain extends JavaPlugin {
     
@@ -21,7 +34,22 @@ public class BackendLinkMain extends JavaPlugin {
         "mute", "tempmute", "warn", "tempwarn", "kick",
         "unban", "unmute"
     );
+    private static final int OUTBOX_BATCH_SIZE = 50;
+    private static final long RESULT_TIMEOUT = 60_000;
+    // How long to wait for the result of a command before sending it again
+    private static final long RESEND_AFTER = 10_000;
     private BackendPunishmentListener punishmentListener;
+    private CommandOutbox outbox;
+    private LinkClient linkClient;
+    // Commands waiting for their result by command id
+    private final Map<String, PendingResult> pendingResults = new ConcurrentHashMap<>();
+    // Commands are sent in the legacy format until the proxy has shown that it understands the binary one
+    private volatile int proxyVersion = LinkCodec.LEGACY_VERSION;
+    // Whether a message of the proxy has shown its version, commands wait for that
+    private volatile boolean proxyVersionKnown = false;
+    // When the status request which makes the proxy show its version has been sent, only used on the server thread
+    private long versionRequestedAt = 0;
+    private volatile boolean announced = false;
 
     @Override
     public void onEnable() {
@@ -36,6 +64,9 @@ public class BackendLinkMain extends JavaPlugin {
             return;
         }
         
+        saveDefaultConfig();
+        outbox = new CommandOutbox(new File(getDataFolder(), "outbox.log"), getLogger());
+
         // Register plugin messaging channels
         getServer().getMessenger().registerOutgoingPluginChannel(this, CHANNEL);
         punishmentListener = new BackendPunishmentListener(this);
@@ -52,20 +83,33 @@ public class BackendLinkMain extends JavaPlugin {
             }
         }
         
+        startLinkClient();
+
         getLogger().info("Avesban BackendLink enabled! Commands will be forwarded to Velocity proxy.");
 
-        // Keep mute state fairly fresh for online players.
+        // The proxy pushes mute changes, this is only a slow consistency check.
+        Bukkit.getScheduler().runTaskTimer(this, () -> requestPunishmentStatus(Bukkit.getOnlinePlayers()), 1200L, 1200L);
+        // Send queued commands in batches while there is someone to relay them
         Bukkit.getScheduler().runTaskTimer(this, () -> {
-            for (Player player : Bukkit.getOnlinePlayers()) {
-                requestPunishmentStatus(player);
-            }
-        }, 40L, 100L);
+            flushOutbox();
+            expireResults();
+        }, 20L, 20L);
     }
 
     @Override
     public void onDisable() {
+        if (linkClient != null) {
+            linkClient.stop();
+        }
         getServer().getMessenger().unregisterOutgoingPluginChannel(this, CHANNEL);
         getServer().getMessenger().unregisterIncomingPluginChannel(this, CHANNEL);
+        if (outbox != null) {
+            outbox.close();
+        }
+        for (PendingResult pending : pendingResults.values()) {
+            pending.future.cancel(false);
+        }
+        pendingResults.clear();
         getLogger().info("Avesban BackendLink disabled!");
     }
 
@@ -75,88 +119,244 @@ public class BackendLinkMain extends JavaPlugin {
 
     /**
      * Sends a command to the Velocity proxy via plugin messaging.
-     * The command will be executed on the proxy with the full command string.
+     * The command will be executed on the proxy with the full command string.<br>
+     * The command is queued in the {@link CommandOutbox} first, so it is not lost if no player is online
+     * to relay it. It is then sent right away or as soon as a player joins, and again every ten seconds
+     * until the proxy answered it.
      */
     public void sendCommandToProxy(String command, String[] args) {
+        forwardCommand(command, args);
+    }
+
+    /**
+     * Sends a command to the proxy like {@link #sendCommandToProxy(String, String[])} and reports its outcome,
+     * including the id of the created punishment or the reason it failed.<br>
+     * The future is completed on the thread the answer arrived on, which is not necessarily the server thread.
+     * It completes exceptionally with a {@link TimeoutException} if there is no answer within a minute,
+     * e.g. because the proxy does not support command results. The command may still be executed later in that case.
+     *
+     * @param command the command name
+     * @param args    the arguments
+     * @return the result of the command
+     */
+    public CompletableFuture<CommandResultMessage> forwardCommand(String command, String[] args) {
         // Build the full command string
         StringBuilder fullCommand = new StringBuilder(command);
         for (String arg : args) {
             fullCommand.append(" ").append(arg);
         }
-        
-        // Send via plugin messaging to the proxy
-        // We need to find a player to send the message through (plugin messaging requires a player)
-        // If no players are online, we'll try to use the server connection directly
-        // Note: This is a limitation - plugin messaging typically requires a player connection
+
+        String commandId = outbox.enqueue(fullCommand.toString(), resolveServerName());
+        CompletableFuture<CommandResultMessage> future = new CompletableFuture<>();
+        pendingResults.put(commandId, new PendingResult(future, System.currentTimeMillis() + RESULT_TIMEOUT));
+
+        // Plugin messaging requires a player connection to relay the message through
+        if (!isSocketConnected() && Bukkit.getOnlinePlayers().isEmpty()) {
+            getLogger().warning("No players online to relay the command to the proxy, it will be sent once a player joins: " + fullCommand);
+            return future;
+        }
+        flushOutbox();
+        return future;
+    }
+
+    /**
+     * Sends the oldest queued commands to the proxy, in order, through the socket if it is connected
+     * or relayed through the first online player otherwise.<br>
+     * Relayed commands wait until the proxy has shown its protocol version: commands sent in the legacy
+     * format are never answered, so they are removed right away and could not be sent again. A status request
+     * makes the proxy answer, if it does not within {@link #RESEND_AFTER} it is assumed to be a legacy proxy.
+     */
+    public void flushOutbox() {
+        if (outbox.isEmpty()) {
+            return;
+        }
+        if (isSocketConnected()) {
+            flushOutboxToSocket();
+            return;
+        }
         if (Bukkit.getOnlinePlayers().isEmpty()) {
-            getLogger().warning("Cannot send command to proxy: No players online to relay message.");
-            getLogger().warning("Command that failed: " + fullCommand.toString());
-            getLogger().warning("Tip: Ensure at least one player is online on this server for backend commands to work.");
             return;
         }
-        
-        // Use the first online player to send the message
+
+        long now = System.currentTimeMillis();
+        if (!proxyVersionKnown) {
+            if (versionRequestedAt == 0) {
+                versionRequestedAt = now;
+                requestPunishmentStatus(Bukkit.getOnlinePlayers());
+                return;
+            }
+            if (now - versionRequestedAt < RESEND_AFTER) {
+                return;
+            }
+            // No answer, an old proxy which does not understand the request
+        }
+
         // The message will be relayed through this player's connection to the proxy
-        org.bukkit.entity.Player relayPlayer = Bukkit.getOnlinePlayers().iterator().next();
-        
-        ByteArrayOutputStream byteOut = new ByteArrayOutputStream();
-        DataOutputStream out = new DataOutputStream(byteOut);
-        
-        try {
-            // Get the server name - try to get from player's current server connection
-            // If player is connected through Velocity, we can get the server name from their connection
-            String serverName = null;
-            if (relayPlayer instanceof org.bukkit.entity.Player) {
-                // Try to get server name from BungeeCord/Velocity plugin messaging
-                // For now, use a fallback approach
-                serverName = relayPlayer.getServer() != null ? relayPlayer.getServer().getName() : null;
+        Player relayPlayer = Bukkit.getOnlinePlayers().iterator().next();
+        // Legacy proxies do not answer commands, so there is nothing to wait for
+        int version = proxyVersion;
+        for (CommandOutbox.PendingCommand command : outbox.due(OUTBOX_BATCH_SIZE, now, RESEND_AFTER)) {
+            try {
+                ExecuteCommandMessage message = new ExecuteCommandMessage(command.getId(), command.getCommand(), command.getServerName());
+                for (byte[] frame : LinkCodec.encode(message, version)) {
+                    relayPlayer.sendPluginMessage(this, CHANNEL, frame);
+                }
+                getLogger().fine("Sent command to proxy: " + command.getCommand() + " from server: " + command.getServerName());
+            } catch (LinkProtocolException e) {
+                // Retrying would fail the same way
+                getLogger().severe("Failed to send command to proxy, dropping it: " + command.getCommand() + " (" + e.getMessage() + ")");
+                failResult(command.getId(), e);
+                outbox.acknowledge(command.getId());
+                continue;
             }
-            
-            // Fallback: try system properties or environment variables
-            if (serverName == null || serverName.isEmpty()) {
-                serverName = System.getProperty("server.name");
+            if (version == LinkCodec.LEGACY_VERSION) {
+                outbox.acknowledge(command.getId());
+            } else {
+                outbox.markSent(command, now);
             }
-            if (serverName == null || serverName.isEmpty()) {
-                serverName = System.getenv("SERVER_NAME");
+        }
+    }
+
+    private void flushOutboxToSocket() {
+        long now = System.currentTimeMillis();
+        for (CommandOutbox.PendingCommand command : outbox.due(OUTBOX_BATCH_SIZE, now, RESEND_AFTER)) {
+            try {
+                ExecuteCommandMessage message = new ExecuteCommandMessage(command.getId(), command.getCommand(), command.getServerName());
+                if (!linkClient.send(linkClient.nextRequestId(), message)) {
+                    // The connection was lost, the rest is sent once it is back
+                    return;
+                }
+                getLogger().fine("Sent command to proxy: " + command.getCommand() + " from server: " + command.getServerName());
+            } catch (LinkProtocolException e) {
+                getLogger().severe("Failed to send command to proxy, dropping it: " + command.getCommand() + " (" + e.getMessage() + ")");
+                failResult(command.getId(), e);
+                outbox.acknowledge(command.getId());
+                continue;
             }
-            if (serverName == null || serverName.isEmpty()) {
-                // Final fallback: use server address or default
-                String address = Bukkit.getServer().getIp();
-                int port = Bukkit.getServer().getPort();
-                serverName = (address != null && !address.isEmpty()) ? address + ":" + port : "backend-server";
+            outbox.markSent(command, now);
+        }
+    }
+
+    /**
+     * Requests the mute status of the given players from the proxy in a single batch.
+     * The request is always sent in the current protocol version so the proxy learns that this
+     * backend understands it, older proxies just ignore it.
+     */
+    public void requestPunishmentStatus(Collection<? extends Player> players) {
+        List<String> names = new ArrayList<>();
+        Player relayPlayer = null;
+        for (Player player : players) {
+            if (player != null && player.isOnline()) {
+                names.add(player.getName());
+                relayPlayer = player;
             }
-            
-            out.writeUTF("EXECUTE_COMMAND");
-            out.writeUTF(fullCommand.toString());
-            out.writeUTF(serverName); // Include server name in the message
-            
-            relayPlayer.sendPluginMessage(this, CHANNEL, byteOut.toByteArray());
-            
-            getLogger().fine("Sent command to proxy: " + fullCommand.toString() + " from server: " + serverName);
-        } catch (IOException e) {
-            getLogger().severe("Failed to send command to proxy: " + e.getMessage());
-            e.printStackTrace();
-        }
-    }
-
-    public void requestPunishmentStatus(Player player) {
-        if (player == null || !player.isOnline()) {
+        }
+        if (relayPlayer == null) {
             return;
         }
+
         try {
-            ByteArrayOutputStream byteOut = new ByteArrayOutputStream();
-            DataOutputStream out = new DataOutputStream(byteOut);
-            out.writeUTF("CHECK_PUNISHMENT");
-            out.writeUTF(player.getName());
-            out.writeUTF(player.getUniqueId().toString().replace("-", ""));
-            out.writeUTF(resolveServerName());
-            player.sendPluginMessage(this, CHANNEL, byteOut.toByteArray());
-        } catch (IOException ex) {
-            getLogger().warning("Failed to request punishment status for " + player.getName() + ": " + ex.getMessage());
+            if (isSocketConnected() && linkClient.send(linkClient.nextRequestId(), new StatusRequestMessage(resolveServerName(), names))) {
+                return;
+            }
+
+            for (byte[] frame : LinkCodec.encode(new StatusRequestMessage(resolveServerName(), names), LinkCodec.VERSION)) {
+                relayPlayer.sendPluginMessage(this, CHANNEL, frame);
+            }
+            announced = true;
+        } catch (LinkProtocolException ex) {
+            getLogger().warning("Failed to request punishment status: " + ex.getMessage());
+        }
+    }
+
+    /**
+     * Remember the protocol version of a message received from the proxy, remove answered commands
+     * from the outbox and complete the futures of command results.
+     */
+    public void handleProxyMessage(LinkMessage message) {
+        proxyVersion = message.getVersion();
+        proxyVersionKnown = true;
+        if (message instanceof CommandResultMessage) {
+            CommandResultMessage result = (CommandResultMessage) message;
+            if (result.isBusy()) {
+                // Not executed, the outbox sends it again once it is due
+                getLogger().fine("Proxy is busy, command " + result.getCommandId() + " will be sent again");
+                return;
+            }
+            outbox.acknowledge(result.getCommandId());
+            PendingResult pending = pendingResults.remove(result.getCommandId());
+            if (pending != null) {
+                pending.future.complete(result);
+            }
         }
     }
 
+    private void failResult(String commandId, Throwable cause) {
+        PendingResult pending = pendingResults.remove(commandId);
+        if (pending != null) {
+            pending.future.completeExceptionally(cause);
+        }
+    }
+
+    private void expireResults() {
+        long now = System.currentTimeMillis();
+        Iterator<Map.Entry<String, PendingResult>> iterator = pendingResults.entrySet().iterator();
+        while (iterator.hasNext()) {
+            PendingResult pending = iterator.next().getValue();
+            if (pending.deadline <= now) {
+                iterator.remove();
+                pending.future.completeExceptionally(new TimeoutException("The proxy did not answer in time"));
+            }
+        }
+    }
+
+    /**
+     * Whether this backend already sent a message in the current protocol version to the proxy.
+     */
+    public boolean isAnnounced() {
+        return announced;
+    }
+
+    private boolean isSocketConnected() {
+        return linkClient != null && linkClient.isConnected();
+    }
+
+    private void startLinkClient() {
+        if (!getConfig().getBoolean("socket.enabled", false)) {
+            return;
+        }
+
+        String secret = getConfig().getString("socket.secret", "");
+        if (secret == null || secret.isEmpty()) {
+            getLogger().warning("The socket is enabled but no secret is set, messages are only sent through players.");
+            return;
+        }
+
+        InetSocketAddress address = new InetSocketAddress(getConfig().getString("socket.host", "127.0.0.1"), getConfig().getInt("socket.port", 25580));
+        linkClient = new LinkClient(address, secret, resolveServerName(), new LinkClient.Listener() {
+            @Override
+            public void onConnect() {
+                // Send everything which queued up while there was no connection
+                Bukkit.getScheduler().runTask(BackendLinkMain.this, () -> {
+                    flushOutbox();
+                    requestPunishmentStatus(Bukkit.getOnlinePlayers());
+                });
+            }
+
+            @Override
+            public void onMessage(int requestId, LinkMessage message) {
+                handleProxyMessage(message);
+                punishmentListener.handleMessage(message);
+            }
+        }, getLogger());
+        linkClient.start();
+    }
+
     private String resolveServerName() {
+        String configured = getConfig().getString("socket.server-name", "");
+        if (configured != null && !configured.isEmpty()) {
+            return configured;
+        }
         String serverName = Bukkit.getServer().getName();
         if (serverName == null || serverName.isEmpty()) {
             serverName = System.getProperty("server.name");
@@ -171,5 +371,14 @@ public class BackendLinkMain extends JavaPlugin {
         }
         return serverName;
     }
-}
 
+    private static final class PendingResult {
+        private final CompletableFuture<CommandResultMessage> future;
+        private final long deadline;
+
+        private PendingResult(CompletableFuture<CommandResultMessage> future, long deadline) {
+            this.future = future;
+            this.deadline = deadline;
+        }
+    }
+}
@@ -1,5 +1,11 @@
 package net.hnt8.advancedban.backendlink;
 
+import net.hnt8.advancedban.link.DurationLayout;
+import net.hnt8.advancedban.link.LinkCodec;
+import net.hnt8.advancedban.link.LinkMessage;
+import net.hnt8.advancedban.link.LinkProtocolException;
+import net.hnt8.advancedban.link.MuteStatus;
+import net.hnt8.advancedban.link.StatusMessage;
 import org.bukkit.Bukkit;
 import org.bukkit.entity.Player;
 import org.bukkit.event.EventHandler;
@@ -9,19 +15,28 @@ import org.bukkit.event.player.PlayerJoinEvent;
 import org.bukkit.event.player.PlayerQuitEvent;
 import org.bukkit.plugin.messaging.PluginMessageListener;
 
-import java.io.ByteArrayInputStream;
-import java.io.DataInputStream;
-import java.io.IOException;
+import java.util.Collections;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Keeps a lightweight local mute cache and enforces chat mutes on backend servers.
+ * Mutes are stored with their end, scope and message as pushed by the proxy, so chat checks
+ * never have to ask the proxy and temporary mutes end on time without another message.
+ * The remaining duration is filled into the message whenever it is shown.
  */
 public class BackendPunishmentListener implements Listener, PluginMessageListener {
 
+    private static final String DEFAULT_MUTE_MESSAGE = "§cYou are muted and cannot chat right now.";
+    // Used until the proxy sent its own layouts
+    private static final DurationLayout DEFAULT_DURATION_LAYOUT = new DurationLayout(
+            "%D%day(s) %H%h %M%min and %S%sec", "%H%hour(s) %M%min and %S%sec", "%M%min and %S%sec", "%S% seconds");
+
     private final BackendLinkMain plugin;
-    private final Map<String, Boolean> mutedByName = new ConcurrentHashMap<>();
+    private final Map<String, MuteEntry> mutesByName = new ConcurrentHashMap<>();
+    // The name the proxy knows this server by, sent along with the statuses
+    private volatile String proxyServerName;
+    private volatile DurationLayout durationLayout = DEFAULT_DURATION_LAYOUT;
 
     public BackendPunishmentListener(BackendLinkMain plugin) {
         this.plugin = plugin;
@@ -29,23 +44,39 @@ public class BackendPunishmentListener implements Listener, PluginMessageListene
 
     @EventHandler
     public void onJoin(PlayerJoinEvent event) {
+        if (plugin.isAnnounced()) {
+            return;
+        }
+        // Let the proxy know the protocol version of this backend as soon as there is a connection to send it through.
         // Delay one tick so plugin messaging is fully available for this connection.
-        Bukkit.getScheduler().runTaskLater(plugin, () -> plugin.requestPunishmentStatus(event.getPlayer()), 1L);
+        Player player = event.getPlayer();
+        Bukkit.getScheduler().runTaskLater(plugin, () -> plugin.requestPunishmentStatus(Collections.singletonList(player)), 1L);
     }
 
     @EventHandler
     public void onQuit(PlayerQuitEvent event) {
-        mutedByName.remove(event.getPlayer().getName().toLowerCase());
+        mutesByName.remove(event.getPlayer().getName().toLowerCase());
     }
 
     @EventHandler(ignoreCancelled = true)
     public void onChat(AsyncPlayerChatEvent event) {
         String key = event.getPlayer().getName().toLowerCase();
-        if (Boolean.TRUE.equals(mutedByName.get(key))) {
-            event.setCancelled(true);
-            Bukkit.getScheduler().runTask(plugin,
-                    () -> event.getPlayer().sendMessage("§cYou are muted and cannot chat right now."));
+        MuteEntry mute = mutesByName.get(key);
+        if (mute == null) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        if (mute.isExpired(now)) {
+            mutesByName.remove(key, mute);
+            return;
+        }
+        if (!mute.appliesTo(proxyServerName)) {
+            return;
         }
+
+        event.setCancelled(true);
+        String message = mute.message == null ? DEFAULT_MUTE_MESSAGE : durationLayout.fill(mute.message, mute.end, now);
+        Bukkit.getScheduler().runTask(plugin, () -> event.getPlayer().sendMessage(message));
     }
 
     @Override
@@ -54,17 +85,63 @@ public class BackendPunishmentListener implements Listener, PluginMessageListene
             return;
         }
 
-        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(message))) {
-            String type = in.readUTF();
-            if (!"PUNISHMENT_STATUS".equals(type)) {
-                return;
+        LinkMessage decoded;
+        try {
+            decoded = LinkCodec.decode(message);
+        } catch (LinkProtocolException ex) {
+            plugin.getLogger().warning("Failed to read punishment status message: " + ex.getMessage());
+            return;
+        }
+
+        plugin.handleProxyMessage(decoded);
+        handleMessage(decoded);
+    }
+
+    /**
+     * Apply a message of the proxy, received either as plugin message or through the socket.
+     *
+     * @param decoded the message
+     */
+    public void handleMessage(LinkMessage decoded) {
+        if (!(decoded instanceof StatusMessage)) {
+            return;
+        }
+
+        StatusMessage statusMessage = (StatusMessage) decoded;
+        if (statusMessage.getServerName() != null) {
+            proxyServerName = statusMessage.getServerName();
+        }
+        if (statusMessage.getDurationLayout() != null) {
+            durationLayout = statusMessage.getDurationLayout();
+        }
+        for (MuteStatus status : statusMessage.getStatuses()) {
+            String key = status.getPlayerName().toLowerCase();
+            if (status.isMuted()) {
+                mutesByName.put(key, new MuteEntry(status.getEnd(), status.getScope(), status.getMessage()));
+            } else {
+                mutesByName.remove(key);
             }
+        }
+    }
 
-            String playerName = in.readUTF();
-            boolean muted = in.readBoolean();
-            mutedByName.put(playerName.toLowerCase(), muted);
-        } catch (IOException ex) {
-            plugin.getLogger().warning("Failed to read punishment status message: " + ex.getMessage());
+    private static final class MuteEntry {
+        private final long end;
+        private final String scope;
+        private final String message;
+
+        private MuteEntry(long end, String scope, String message) {
+            this.end = end;
+            this.scope = scope;
+            this.message = message;
+        }
+
+        private boolean isExpired(long now) {
+            return end != -1 && end <= now;
+        }
+
+        private boolean appliesTo(String serverName) {
+            // Without a known server name the proxy already resolved the scope for this server
+            return scope == null || serverName == null || scope.equalsIgnoreCase(serverName);
         }
     }
 }
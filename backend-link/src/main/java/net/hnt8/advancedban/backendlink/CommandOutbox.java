@@ -0,0 +1,283 @@
+package net.hnt8.advancedban.backendlink;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+/**
+ * Persistent queue of commands which still have to be forwarded to the proxy.<br>
+ * Every command is appended to a local file, so commands issued while there is no player to relay them are
+ * sent as soon as a relay connection exists again, even after a restart or a crash. A command is kept until the
+ * proxy acknowledged it with its result, and is sent again if that does not happen in time.
+ * Commands are sent in the order they have been issued and carry an id the proxy uses to execute each
+ * command only once, so sending a command twice is harmless.
+ * <br><br>
+ * The file consists of lines <code>C id server command</code> for queued commands and <code>S id</code>
+ * for acknowledged ones, separated by tabs. It is truncated whenever nothing is pending anymore.
+ * The file is written on a separate thread, which syncs everything written in the meantime at once,
+ * so queueing a command never waits for the disk. A command queued within the few milliseconds before a crash
+ * which has neither been synced nor sent yet is lost.
+ */
+public class CommandOutbox {
+
+    private final File file;
+    private final Logger logger;
+    private final Map<String, PendingCommand> pending = new LinkedHashMap<>();
+    private final ExecutorService journal = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "Avesban-Outbox");
+        thread.setDaemon(true);
+        return thread;
+    });
+    // Lines waiting for the journal thread, guarded by this
+    private final List<String> unwritten = new ArrayList<>();
+    private boolean truncateRequested;
+    private boolean writeScheduled;
+    // Only used by the journal thread
+    private Writer writer;
+    private FileOutputStream output;
+
+    public CommandOutbox(File file, Logger logger) {
+        this.file = file;
+        this.logger = logger;
+        load();
+    }
+
+    /**
+     * Queue a command, it is written to disk shortly after. The command is not durable before that.
+     *
+     * @param command    the full command line
+     * @param serverName the name of this server
+     * @return the id of the command
+     */
+    public synchronized String enqueue(String command, String serverName) {
+        PendingCommand pendingCommand = new PendingCommand(UUID.randomUUID().toString(), clean(command), clean(serverName));
+        pending.put(pendingCommand.id, pendingCommand);
+        append("C\t" + pendingCommand.id + "\t" + pendingCommand.serverName + "\t" + pendingCommand.command);
+        return pendingCommand.id;
+    }
+
+    /**
+     * Get the oldest commands which have to be sent, either because they have not been sent yet or because
+     * they have not been acknowledged within the given time since they have been sent.
+     *
+     * @param limit       the maximum amount of commands
+     * @param now         the current time in epoch milliseconds
+     * @param resendAfter how long to wait for an acknowledgement before sending a command again, in milliseconds
+     * @return the commands in the order they have been queued
+     */
+    public synchronized List<PendingCommand> due(int limit, long now, long resendAfter) {
+        List<PendingCommand> batch = new ArrayList<>(Math.min(limit, pending.size()));
+        Iterator<PendingCommand> iterator = pending.values().iterator();
+        while (iterator.hasNext() && batch.size() < limit) {
+            PendingCommand command = iterator.next();
+            if (command.sentAt == 0 || now - command.sentAt >= resendAfter) {
+                batch.add(command);
+            }
+        }
+        return batch;
+    }
+
+    /**
+     * Mark the given command as sent, it stays queued until it has been {@link #acknowledge(String) acknowledged}.
+     *
+     * @param command the command
+     * @param now     the current time in epoch milliseconds
+     */
+    public synchronized void markSent(PendingCommand command, long now) {
+        command.sentAt = now;
+    }
+
+    /**
+     * Remove a command from the queue, because the proxy answered it or because it can not be sent at all.
+     *
+     * @param commandId the id of the command
+     * @return whether the command was queued
+     */
+    public synchronized boolean acknowledge(String commandId) {
+        if (pending.remove(commandId) == null) {
+            return false;
+        }
+        if (pending.isEmpty()) {
+            truncate();
+        } else {
+            append("S\t" + commandId);
+        }
+        return true;
+    }
+
+    public synchronized boolean isEmpty() {
+        return pending.isEmpty();
+    }
+
+    public synchronized int size() {
+        return pending.size();
+    }
+
+    /**
+     * Write everything which is still queued for the journal and close the file.
+     */
+    public void close() {
+        journal.shutdown();
+        try {
+            if (!journal.awaitTermination(5, TimeUnit.SECONDS)) {
+                logger.warning("Timed out writing the command outbox " + file);
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        closeWriter();
+    }
+
+    private void load() {
+        if (!file.exists()) {
+            return;
+        }
+
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(Files.newInputStream(file.toPath()), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                String[] parts = line.split("\t", 4);
+                if (parts.length == 4 && "C".equals(parts[0])) {
+                    pending.put(parts[1], new PendingCommand(parts[1], parts[3], parts[2]));
+                } else if (parts.length == 2 && "S".equals(parts[0])) {
+                    pending.remove(parts[1]);
+                }
+                // Anything else is a line which was cut off by a crash
+            }
+        } catch (IOException ex) {
+            logger.severe("Failed to read command outbox " + file + ": " + ex.getMessage());
+        }
+
+        if (!pending.isEmpty()) {
+            logger.info("Loaded " + pending.size() + " commands which still have to be sent to the proxy.");
+        }
+        // Rewrite the file so it only contains what is still pending
+        truncate();
+        for (PendingCommand command : pending.values()) {
+            append("C\t" + command.id + "\t" + command.serverName + "\t" + command.command);
+        }
+    }
+
+    // Called while holding the lock, the line is written by the journal thread
+    private void append(String line) {
+        unwritten.add(line);
+        scheduleWrite();
+    }
+
+    // Called while holding the lock, lines which have not been written yet are obsolete as well
+    private void truncate() {
+        unwritten.clear();
+        truncateRequested = true;
+        scheduleWrite();
+    }
+
+    private void scheduleWrite() {
+        if (writeScheduled || journal.isShutdown()) {
+            return;
+        }
+        writeScheduled = true;
+        journal.execute(this::write);
+    }
+
+    // Writes all lines queued in the meantime with a single sync
+    private void write() {
+        List<String> lines;
+        boolean truncate;
+        synchronized (this) {
+            lines = new ArrayList<>(unwritten);
+            truncate = truncateRequested;
+            unwritten.clear();
+            truncateRequested = false;
+            writeScheduled = false;
+        }
+
+        if (truncate) {
+            closeWriter();
+            try {
+                Files.deleteIfExists(file.toPath());
+            } catch (IOException ex) {
+                logger.warning("Failed to clear command outbox " + file + ": " + ex.getMessage());
+            }
+        }
+        if (lines.isEmpty()) {
+            return;
+        }
+
+        try {
+            if (writer == null) {
+                file.getParentFile().mkdirs();
+                output = new FileOutputStream(file, true);
+                writer = new OutputStreamWriter(output, StandardCharsets.UTF_8);
+            }
+            for (String line : lines) {
+                writer.write(line);
+                writer.write('\n');
+            }
+            writer.flush();
+            output.getFD().sync();
+        } catch (IOException ex) {
+            logger.severe("Failed to write command outbox " + file + ": " + ex.getMessage());
+        }
+    }
+
+    private void closeWriter() {
+        if (writer != null) {
+            try {
+                writer.close();
+            } catch (IOException ex) {
+                logger.warning("Failed to close command outbox: " + ex.getMessage());
+            }
+            writer = null;
+            output = null;
+        }
+    }
+
+    private static String clean(String value) {
+        return value.replace('\t', ' ').replace('\n', ' ').replace('\r', ' ');
+    }
+
+    /**
+     * A command which has not been acknowledged by the proxy yet.
+     */
+    public static final class PendingCommand {
+        private final String id;
+        private final String command;
+        private final String serverName;
+        // When the command has been sent last, 0 if it has not been sent since the server started
+        private long sentAt;
+
+        private PendingCommand(String id, String command, String serverName) {
+            this.id = id;
+            this.command = command;
+            this.serverName = serverName;
+        }
+
+        public String getId() {
+            return id;
+        }
+
+        public String getCommand() {
+            return command;
+        }
+
+        public String getServerName() {
+            return serverName;
+        }
+    }
+}
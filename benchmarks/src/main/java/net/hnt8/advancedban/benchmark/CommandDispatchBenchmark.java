@@ -0,0 +1,92 @@
+package net.hnt8.advancedban.benchmark;
+
+import net.hnt8.advancedban.TestMethods;
+import net.hnt8.advancedban.manager.CommandManager;
+import net.hnt8.advancedban.manager.MessageManager;
+import net.hnt8.advancedban.manager.TimeManager;
+import net.hnt8.advancedban.manager.UUIDManager;
+import net.hnt8.advancedban.utils.CommandResult;
+import net.hnt8.advancedban.utils.InterimData;
+import net.hnt8.advancedban.utils.Punishment;
+import net.hnt8.advancedban.utils.PunishmentType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A command going through {@link CommandManager#execute(Object, String, String[])}: the lookup by name,
+ * the permission check, the syntax validator and the handler up to its answer.<br>
+ * The mute is rejected as the player is already muted, so the database is not part of the measurement.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CommandDispatchBenchmark {
+
+    private static final String OPERATOR = "Moderator";
+
+    @Param({"mute Steve spamming in chat", "unknowncommand Steve"})
+    public String command;
+
+    private TestMethods mi;
+    private String name;
+    private String[] args;
+
+    @Setup
+    public void setUp() throws InterruptedException, ExecutionException {
+        mi = TestMethods.install();
+        mi.reset();
+        mi.setOperator(OPERATOR);
+        mi.setRecording(false);
+        mi.messages().set("Mute.AlreadyDone", "%NAME% has already been muted!");
+        MessageManager.invalidate();
+
+        String uuid = String.format("%032x", 42);
+        UUIDManager.get().getCache().put("Steve", uuid);
+        Map<String, Map<String, Integer>> counts = new HashMap<>();
+        counts.put(uuid, Collections.emptyMap());
+        new InterimData(uuid, "steve", null, Collections.singleton(new Punishment("Steve", uuid, "spam", "CONSOLE",
+                PunishmentType.MUTE, TimeManager.getTime(), -1, null, null, null, 42)), counts).accept();
+
+        String[] parts = command.split(" ", 2);
+        name = parts[0];
+        args = parts[1].split(" ");
+
+        // Make sure the measured path is the intended one
+        CommandResult result = dispatch();
+        String expected = name.equals("mute") ? "Mute.AlreadyDone" : CommandResult.UNKNOWN_COMMAND;
+        if (!expected.equals(result.getError())) {
+            throw new IllegalStateException("Expected " + expected + " but the command answered " + result.getError());
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        mi.setRecording(true);
+        mi.reset();
+    }
+
+    @Benchmark
+    public CommandResult dispatch() throws InterruptedException, ExecutionException {
+        // Commands run inline with the test methods, the future is already completed
+        return CommandManager.get().execute(OPERATOR, name, args).get();
+    }
+}
@@ -0,0 +1,59 @@
+package net.hnt8.advancedban.benchmark;
+
+import net.hnt8.advancedban.utils.MessageTemplate;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Rendering a notification with a parsed {@link MessageTemplate} against the <code>replaceAll</code> loop
+ * messages have been rendered with before.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MessageTemplateBenchmark {
+
+    private static final String MESSAGE = "%PREFIX% &c%NAME% &7was banned by &c%OPERATOR% &7for &c%REASON% &8(&7%DURATION%&8) &7#%ID% on %DATE%";
+
+    private final String[] parameters = {
+            "PREFIX", "&c&lAvesBan &8»",
+            "NAME", "Steve",
+            "OPERATOR", "Alex",
+            "REASON", "Hacking with a fly mod",
+            "DURATION", "6 days 23h 59min and 12sec",
+            "ID", "4711",
+            "DATE", "04.03.2021-05:06"};
+    private final MessageTemplate template = MessageTemplate.parse(MESSAGE);
+
+    @Benchmark
+    public String replaceAll() {
+        String message = MESSAGE;
+        for (int i = 0; i < parameters.length - 1; i += 2) {
+            message = message.replaceAll("%" + parameters[i] + "%", parameters[i + 1]);
+        }
+        return message.replace('&', '§');
+    }
+
+    @Benchmark
+    public String render() {
+        return template.render(parameters);
+    }
+
+    // A message which has not been parsed yet, e.g. right after a reload
+    @Benchmark
+    public String parseAndRender() {
+        return MessageTemplate.parse(MESSAGE).render(parameters);
+    }
+}
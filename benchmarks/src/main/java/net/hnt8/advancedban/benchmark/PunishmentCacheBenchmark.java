@@ -0,0 +1,104 @@
+package net.hnt8.advancedban.benchmark;
+
+import net.hnt8.advancedban.TestMethods;
+import net.hnt8.advancedban.Universal;
+import net.hnt8.advancedban.manager.ChangeFeedManager;
+import net.hnt8.advancedban.manager.PunishmentManager;
+import net.hnt8.advancedban.manager.TimeManager;
+import net.hnt8.advancedban.manager.UUIDManager;
+import net.hnt8.advancedban.utils.InterimData;
+import net.hnt8.advancedban.utils.Punishment;
+import net.hnt8.advancedban.utils.PunishmentType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Players leaving and joining, and ban lookups, with the punishments of {@link #players} players in the cache.<br>
+ * A joining player is loaded through {@link PunishmentManager#load(String, String, String)}, so without retaining
+ * the data the measurement includes the database queries of the login.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PunishmentCacheBenchmark {
+
+    @Param("5000")
+    public int players;
+
+    // 0 evicts a player right away, otherwise the data is retained for a quick reconnect
+    @Param({"0", "300"})
+    public int retainSeconds;
+
+    private String[] names;
+    private String[] uuids;
+    private String[] ips;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        TestMethods mi = TestMethods.install();
+        mi.config().set("Cache.Retain-Seconds", retainSeconds);
+        // Retained data is only reused while the change feed keeps it up to date
+        mi.config().set("ChangeFeed.Enabled", true);
+        ChangeFeedManager.get().setup();
+        UUIDManager.get().setup();
+        PunishmentManager.get().setup();
+
+        names = new String[players];
+        uuids = new String[players];
+        ips = new String[players];
+        for (int i = 0; i < players; i++) {
+            String name = "player" + i;
+            // The uuid fetcher is disabled in offline mode, so the uuid is the name
+            String uuid = UUIDManager.get().getUUID(name);
+            String ip = "10." + (i >> 16 & 0xFF) + "." + (i >> 8 & 0xFF) + "." + (i & 0xFF);
+            names[i] = name;
+            uuids[i] = uuid;
+            ips[i] = ip;
+            Universal.get().getIps().put(name, ip);
+
+            Set<Punishment> punishments = new HashSet<>();
+            // Every other player is banned, every fifth muted as well
+            if (i % 2 == 0) {
+                punishments.add(new Punishment(name, uuid, "hacking", "CONSOLE", PunishmentType.BAN, TimeManager.getTime(), -1, null, null, null, 2 * i));
+            }
+            if (i % 5 == 0) {
+                punishments.add(new Punishment(name, uuid, "spam", "CONSOLE", PunishmentType.MUTE, TimeManager.getTime(), -1, null, null, null, 2 * i + 1));
+            }
+            Map<String, Map<String, Integer>> counts = new HashMap<>();
+            counts.put(uuid, Collections.emptyMap());
+            new InterimData(uuid, name, ip, punishments, counts).accept();
+        }
+    }
+
+    @Benchmark
+    public void discardAndRejoin() {
+        int i = next++ % players;
+        PunishmentManager.get().discard(names[i]);
+        PunishmentManager.get().load(names[i], uuids[i], ips[i]).accept();
+    }
+
+    @Benchmark
+    public Punishment getBan() {
+        return PunishmentManager.get().getBan(uuids[next++ % players]);
+    }
+}
@@ -16,12 +16,17 @@ import org.bukkit.plugin.java.JavaPlugin;
 public class BukkitMain extends JavaPlugin {
     private static BukkitMain instance;
     private static BukkitAudiences adventure;
+    private ConnectionListener connListener;
 
     public static BukkitMain get() {
         return instance;
     }
     public static BukkitAudiences getAdventure() { return adventure; }
 
+    public ConnectionListener getConnectionListener() {
+        return connListener;
+    }
+
     @Override
     public void onEnable() {
         instance = this;
@@ -29,7 +34,7 @@ public class BukkitMain extends JavaPlugin {
         
         Universal.get().setup(new BukkitMethods());
 
-        ConnectionListener connListener = new ConnectionListener();
+        connListener = new ConnectionListener();
         this.getServer().getPluginManager().registerEvents(connListener, this);
         this.getServer().getPluginManager().registerEvents(new ChatListener(), this);
         this.getServer().getPluginManager().registerEvents(new CommandListener(), this);
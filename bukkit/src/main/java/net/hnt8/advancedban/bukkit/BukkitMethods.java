@@ -7,10 +7,13 @@ import net.hnt8.advancedban.bukkit.event.RevokePunishmentEvent;
 import net.hnt8.advancedban.bukkit.listener.CommandReceiver;
 import net.hnt8.advancedban.bukkit.utils.BukkitMetrics;
 import net.hnt8.advancedban.manager.DatabaseManager;
+import net.hnt8.advancedban.manager.NotificationManager;
 import net.hnt8.advancedban.manager.PunishmentManager;
 import net.hnt8.advancedban.manager.UUIDManager;
+import net.hnt8.advancedban.utils.LayoutCache;
 import net.hnt8.advancedban.utils.Permissionable;
 import net.hnt8.advancedban.utils.Punishment;
+import net.hnt8.advancedban.utils.PunishmentType;
 import net.hnt8.advancedban.utils.tabcompletion.TabCompleter;
 import net.kyori.adventure.audience.Audience;
 import net.kyori.adventure.platform.bukkit.BukkitAudiences;
@@ -35,6 +38,7 @@ import java.io.*;
 import java.net.HttpURLConnection;
 import java.net.URL;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
 import java.util.UUID;
@@ -56,6 +60,27 @@ public class BukkitMethods implements MethodInterface {
     private YamlConfiguration mysql;
     private BiFunction<OfflinePlayer, String, Boolean> permissionVault;
 
+    private static final TextReplacementConfig COLOR_CODES = TextReplacementConfig.builder().matchLiteral("&").replacement("§").build();
+    // Ban screens and mute notices, parsed once per punishment
+    private final LayoutCache<String> kickLayouts = new LayoutCache<>(1024,
+            BukkitMethods::toLegacy,
+            (layout, duration) -> layout.replace(LayoutCache.DURATION, duration));
+    private final LayoutCache<List<Component>> chatLayouts = new LayoutCache<>(1024,
+            layout -> {
+                List<Component> lines = new ArrayList<>();
+                for (String line : layout.split("\n", -1)) {
+                    lines.add(MiniMessage.miniMessage().deserialize(line).replaceText(COLOR_CODES));
+                }
+                return lines;
+            },
+            (lines, duration) -> {
+                List<Component> filled = new ArrayList<>(lines.size());
+                for (Component line : lines) {
+                    filled.add(line.replaceText(builder -> builder.matchLiteral(LayoutCache.DURATION).replacement(duration.replace('&', '§'))));
+                }
+                return filled;
+            });
+
     public BukkitMethods() {
         // Vault support
         if (Bukkit.getServer().getPluginManager().getPlugin("Vault") != null) {
@@ -184,8 +209,7 @@ public class BukkitMethods implements MethodInterface {
     public void sendMessage(Object player, String msg) {
         MiniMessage miniMessage = MiniMessage.miniMessage();
         
-        TextReplacementConfig replacementConfig = TextReplacementConfig.builder().matchLiteral("&").replacement("§").build();
-        Component msgComponent = miniMessage.deserialize(msg).replaceText(replacementConfig);
+        Component msgComponent = miniMessage.deserialize(msg).replaceText(COLOR_CODES);
         
         BukkitAudiences adventure = BukkitMain.getAdventure();
         Audience audience = adventure.sender((CommandSender)player);
@@ -220,15 +244,31 @@ public class BukkitMethods implements MethodInterface {
     @Override
     public void kickPlayer(String player, String reason) {
         if (getPlayer(player) != null && getPlayer(player).isOnline()) {
-            String result = reason.replace('§', '&');
-            MiniMessage miniMessage = MiniMessage.miniMessage();
-            LegacyComponentSerializer serializer = LegacyComponentSerializer.legacyAmpersand();
-            result = ChatColor.translateAlternateColorCodes('&', serializer.serialize(miniMessage.deserialize(result)));
-            
-            getPlayer(player).kickPlayer(result);
+            getPlayer(player).kickPlayer(toLegacy(reason));
         }
     }
 
+    /**
+     * Get the parsed ban screens.
+     *
+     * @return the cache of ban screens
+     */
+    public LayoutCache<String> getKickLayouts() {
+        return kickLayouts;
+    }
+
+    /**
+     * Render a MiniMessage layout, which may also contain legacy color codes, into a legacy kick message.
+     *
+     * @param layout the layout
+     * @return the kick message with <code>§</code> color codes
+     */
+    public static String toLegacy(String layout) {
+        MiniMessage miniMessage = MiniMessage.miniMessage();
+        LegacyComponentSerializer serializer = LegacyComponentSerializer.legacyAmpersand();
+        return ChatColor.translateAlternateColorCodes('&', serializer.serialize(miniMessage.deserialize(layout.replace('§', '&'))));
+    }
+
     @Override
     public Player[] getOnlinePlayers() {
         return Bukkit.getOnlinePlayers().toArray(new Player[]{});
@@ -289,7 +329,7 @@ public class BukkitMethods implements MethodInterface {
     public boolean callChat(Object player) {
         Punishment pnt = PunishmentManager.get().getMute(UUIDManager.get().getUUID(getName(player)));
         if (pnt != null) {
-            pnt.getLayout().forEach(str -> sendMessage(player, str));
+            sendLayout(player, pnt);
             return true;
         }
         return false;
@@ -299,12 +339,17 @@ public class BukkitMethods implements MethodInterface {
     public boolean callCMD(Object player, String cmd) {
         Punishment pnt;
         if (Universal.get().isMuteCommand(cmd.substring(1)) && (pnt = PunishmentManager.get().getMute(UUIDManager.get().getUUID(getName(player)))) != null) {
-            pnt.getLayout().forEach(str -> sendMessage(player, str));
+            sendLayout(player, pnt);
             return true;
         }
         return false;
     }
 
+    private void sendLayout(Object player, Punishment punishment) {
+        Audience audience = BukkitMain.getAdventure().sender((CommandSender) player);
+        chatLayouts.get(punishment).forEach(audience::sendMessage);
+    }
+
     @Override
     public YamlConfiguration getMySQLFile() {
         return mysql;
@@ -391,6 +436,11 @@ public class BukkitMethods implements MethodInterface {
 
     @Override
     public void callRevokePunishmentEvent(Punishment punishment, boolean massClear) {
+        kickLayouts.invalidate(punishment);
+        chatLayouts.invalidate(punishment);
+        if (punishment.getType().getBasic() == PunishmentType.BAN) {
+            BukkitMain.get().getConnectionListener().invalidateDenials(punishment);
+        }
         runSync(() -> Bukkit.getPluginManager().callEvent(new RevokePunishmentEvent(punishment, massClear)));
     }
 
@@ -401,10 +451,7 @@ public class BukkitMethods implements MethodInterface {
 
     @Override
     public void notify(String perm, List<String> notification) {
-        Bukkit.getOnlinePlayers()
-                .stream()
-                .filter(player -> hasPerms(player, perm))
-                .forEach(player -> notification.forEach(str -> sendMessage(player, str)));
+        NotificationManager.get().notify(perm, notification);
     }
 
     @Override
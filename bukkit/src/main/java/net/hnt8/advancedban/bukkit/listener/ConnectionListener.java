@@ -1,38 +1,86 @@
 package net.hnt8.advancedban.bukkit.listener;
 
+import net.hnt8.advancedban.MethodInterface;
 import net.hnt8.advancedban.Universal;
+import net.hnt8.advancedban.bukkit.BukkitMethods;
+import net.hnt8.advancedban.manager.NotificationManager;
 import net.hnt8.advancedban.manager.PunishmentManager;
 import net.hnt8.advancedban.manager.UUIDManager;
-import net.kyori.adventure.text.minimessage.MiniMessage;
-import net.kyori.adventure.text.serializer.legacy.LegacyComponentSerializer;
-import org.bukkit.ChatColor;
+import net.hnt8.advancedban.utils.DenialCache;
+import net.hnt8.advancedban.utils.Punishment;
 import org.bukkit.event.EventHandler;
 import org.bukkit.event.EventPriority;
 import org.bukkit.event.Listener;
 import org.bukkit.event.player.AsyncPlayerPreLoginEvent;
+import org.bukkit.event.player.PlayerJoinEvent;
 import org.bukkit.event.player.PlayerQuitEvent;
 
 /**
  * Created by Leoko @ dev.skamps.eu on 16.07.2016.
  */
 public class ConnectionListener implements Listener {
+
+    private final DenialCache<String> denials;
+
+    public ConnectionListener() {
+        MethodInterface mi = Universal.get().getMethods();
+        denials = new DenialCache<>(Math.max(0, mi.getInteger(mi.getConfig(), "Cache.Denial-Seconds", 10)) * 1000L,
+                ((BukkitMethods) mi).getKickLayouts()::get);
+    }
+
+    // Rejects banned addresses before the uuid is supplied and any data is loaded
+    @EventHandler(priority = EventPriority.LOWEST)
+    public void onPreConnect(AsyncPlayerPreLoginEvent event) {
+        if (event.getLoginResult() != AsyncPlayerPreLoginEvent.Result.ALLOWED) {
+            return;
+        }
+
+        String denial = denials.denyAddress(event.getAddress().getHostAddress());
+        if (denial != null) {
+            event.disallow(AsyncPlayerPreLoginEvent.Result.KICK_BANNED, denial);
+        }
+    }
+
     @EventHandler(priority = EventPriority.HIGH)
     public void onConnect(AsyncPlayerPreLoginEvent event) {
         if(event.getLoginResult() == AsyncPlayerPreLoginEvent.Result.ALLOWED){
+            String uuid = event.getUniqueId().toString();
+            String ip = event.getAddress().getHostAddress();
+
+            // Players who have just been denied are denied again without loading anything
+            String cached = denials.getByUuid(uuid);
+            if (cached != null) {
+                event.disallow(AsyncPlayerPreLoginEvent.Result.KICK_BANNED, cached);
+                return;
+            }
+
             UUIDManager.get().supplyInternUUID(event.getName(), event.getUniqueId());
-            String result = Universal.get().callConnection(event.getName(), event.getAddress().getHostAddress());
+            String[] denial = new String[1];
+            String result = Universal.get().callConnection(event.getName(), ip, null,
+                    ban -> denial[0] = denials.put(uuid, ip, ban));
             if (result != null) {
-                MiniMessage miniMessage = MiniMessage.miniMessage();
-                LegacyComponentSerializer serializer = LegacyComponentSerializer.legacyAmpersand();
-                result = ChatColor.translateAlternateColorCodes('&', serializer.serialize(miniMessage.deserialize(result.replace('§', '&'))));
-                
-                event.disallow(AsyncPlayerPreLoginEvent.Result.KICK_BANNED, result);
+                event.disallow(AsyncPlayerPreLoginEvent.Result.KICK_BANNED, denial[0] != null ? denial[0] : BukkitMethods.toLegacy(result));
             }
         }
     }
 
+    /**
+     * Forget the denials caused by the given ban, called when it is revoked.
+     *
+     * @param ban the ban
+     */
+    public void invalidateDenials(Punishment ban) {
+        denials.invalidate(ban);
+    }
+
+    @EventHandler
+    public void onJoin(PlayerJoinEvent event){
+        NotificationManager.get().refresh(event.getPlayer());
+    }
+
     @EventHandler
     public void onDisconnect(PlayerQuitEvent event){
+        NotificationManager.get().remove(event.getPlayer());
         PunishmentManager.get().discard(event.getPlayer().getName());
     }
 
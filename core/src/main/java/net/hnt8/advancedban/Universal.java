@@ -19,11 +19,14 @@ import java.nio.charset.Charset;
 import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.sql.SQLException;
-import java.text.SimpleDateFormat;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Scanner;
+import java.util.function.Consumer;
 import java.util.logging.Logger;
 
 
@@ -32,6 +35,8 @@ import java.util.logging.Logger;
  */
 public class Universal {
 
+    private static final DateTimeFormatter DEBUG_TIME = DateTimeFormatter.ofPattern("HH:mm:ss").withZone(ZoneId.systemDefault());
+
     private static Universal instance = null;
 
     public static void setRedis(boolean redis) {
@@ -43,37 +48,9 @@ public class Universal {
     private LogManager logManager;
 
     private static boolean redis = false;
-    
-    // ThreadLocal to store server name for console/backend commands
-    private static final ThreadLocal<String> currentServerName = new ThreadLocal<>();
 
 
     private final Gson gson = new Gson();
-    
-    /**
-     * Set the server name for the current thread (used for console/backend commands).
-     * 
-     * @param serverName the server name
-     */
-    public static void setCurrentServerName(String serverName) {
-        currentServerName.set(serverName);
-    }
-    
-    /**
-     * Get the server name for the current thread (used for console/backend commands).
-     * 
-     * @return the server name, or null if not set
-     */
-    public static String getCurrentServerName() {
-        return currentServerName.get();
-    }
-    
-    /**
-     * Clear the server name for the current thread.
-     */
-    public static void clearCurrentServerName() {
-        currentServerName.remove();
-    }
 
     /**
      * Get universal.
@@ -106,6 +83,7 @@ public class Universal {
     public void setup(MethodInterface mi) {
         this.mi = mi;
         mi.loadFiles();
+        ConfigManager.get().setup();
         logManager = new LogManager();
         UpdateManager.get().setup();
         UUIDManager.get().setup();
@@ -119,6 +97,10 @@ public class Universal {
 
         mi.setupMetrics();
         PunishmentManager.get().setup();
+        IpBanIndex.get().setup();
+        ChangeFeedManager.get().setup();
+        ExecutedCommandManager.get().setup();
+        NotificationManager.get().setup();
 
         for (Command command : Command.values()) {
             for (String commandName : command.getNames()) {
@@ -159,6 +141,8 @@ public class Universal {
      * Shutdown.
      */
     public void shutdown() {
+        ConfigManager.get().shutdown();
+        UUIDManager.get().shutdown();
         DatabaseManager.get().shutdown();
 
         if (mi.getBoolean(mi.getConfig(), "DetailedDisableMessage", true)) {
@@ -189,6 +173,15 @@ public class Universal {
         return mi;
     }
 
+    /**
+     * Visible for testing. Do not use this. Please use {@link #setup(MethodInterface)}.
+     *
+     * @param mi the methods
+     */
+    void setMethods(MethodInterface mi) {
+        this.mi = mi;
+    }
+
     /**
      * Is bungee boolean.
      *
@@ -238,7 +231,7 @@ public class Universal {
      * @return the boolean
      */
     public boolean isMuteCommand(String cmd) {
-        return isMuteCommand(cmd, getMethods().getStringList(getMethods().getConfig(), "MuteCommands"));
+        return isMuteCommand(cmd, ConfigManager.getSnapshot().getMuteCommands());
     }
 
     /**
@@ -298,15 +291,7 @@ public class Universal {
      * @return the boolean
      */
     public boolean isExemptPlayer(String name) {
-        List<String> exempt = getMethods().getStringList(getMethods().getConfig(), "ExemptPlayers");
-        if (exempt != null) {
-            for (String str : exempt) {
-                if (name.equalsIgnoreCase(str)) {
-                    return true;
-                }
-            }
-        }
-        return false;
+        return ConfigManager.getSnapshot().isExempt(name);
     }
 
     /**
@@ -340,6 +325,19 @@ public class Universal {
     }
     
     public String callConnection(String name, String ip, String targetServer) {
+        return callConnection(name, ip, targetServer, null);
+    }
+
+    /**
+     * Check whether a player may connect and load their data if so.
+     *
+     * @param name         the name
+     * @param ip           the ip
+     * @param targetServer the server the player connects to, <code>null</code> for the initial login
+     * @param onDenied     called with the ban if the player is denied because of one, may be <code>null</code>
+     * @return the kick message or <code>null</code> if the player may connect
+     */
+    public String callConnection(String name, String ip, String targetServer, Consumer<Punishment> onDenied) {
         name = name.toLowerCase();
         String uuid = UUIDManager.get().getUUID(name);
         if (uuid == null) return "[AdvancedBan] Failed to fetch your UUID";
@@ -348,11 +346,14 @@ public class Universal {
             getIps().remove(name);
             getIps().put(name, ip);
         }
+        if (targetServer == null) {
+            UUIDManager.get().recordLogin(name, uuid, ip);
+        }
 
         InterimData interimData = PunishmentManager.get().load(name, uuid, ip);
 
         if (interimData == null) {
-            if (getMethods().getBoolean(mi.getConfig(), "LockdownOnError", true)) {
+            if (ConfigManager.getSnapshot().isLockdownOnError()) {
                 return "[AdvancedBan] Failed to load player data!";
             } else {
                 return null;
@@ -373,6 +374,9 @@ public class Universal {
         if (targetServer != null && pt.getTargetServer() != null) {
             // Server-specific ban - only block if trying to join that specific server
             if (pt.getTargetServer().equalsIgnoreCase(targetServer)) {
+                if (onDenied != null) {
+                    onDenied.accept(pt);
+                }
                 return pt.getLayoutBSN();
             } else {
                 // Player is trying to join a different server, allow it
@@ -380,6 +384,9 @@ public class Universal {
             }
         } else if (pt.getTargetServer() == null) {
             // Network-wide ban - block on all servers (including initial login)
+            if (onDenied != null) {
+                onDenied.accept(pt);
+            }
             return pt.getLayoutBSN();
         } else {
             // Server-specific ban but no target server specified (initial login)
@@ -445,7 +452,7 @@ public class Universal {
             logManager.checkLastLog(false);
         }
         try {
-            FileUtils.writeStringToFile(debugFile, "[" + new SimpleDateFormat("HH:mm:ss").format(System.currentTimeMillis()) + "] " + mi.clearFormatting(msg.toString()) + "\n", "UTF8", true);
+            FileUtils.writeStringToFile(debugFile, "[" + DEBUG_TIME.format(Instant.now()) + "] " + mi.clearFormatting(msg.toString()) + "\n", "UTF8", true);
         } catch (IOException ex) {
             Universal.get().getMethods().getLogger().warning("An error has occurred writing to 'latest.log' file.");
             Universal.get().getMethods().getLogger().warning(ex.getMessage());
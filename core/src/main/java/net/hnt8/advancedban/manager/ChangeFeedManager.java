@@ -0,0 +1,238 @@
+package net.hnt8.advancedban.manager;
+
+import net.hnt8.advancedban.MethodInterface;
+import net.hnt8.advancedban.Universal;
+import net.hnt8.advancedban.utils.Punishment;
+import net.hnt8.advancedban.utils.PunishmentType;
+import net.hnt8.advancedban.utils.SQLQuery;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * The Change Feed Manager keeps the caches of multiple proxies which share one database in sync.<br>
+ * Every punishment change made on this instance is written to the <code>PunishmentChanges</code> table. All
+ * instances tail that table by id and apply the changes of the other instances to their cache, kicking or
+ * messaging affected players which are online on this instance.<br>
+ * Ids are assigned when a change is inserted, but a change may become visible only after changes with higher ids,
+ * e.g. when its transaction commits later. Missing ids below the highest id read so far are therefore kept as gaps
+ * and read again until they show up or <code>ChangeFeed.Gap-Seconds</code> have passed.
+ */
+public class ChangeFeedManager {
+
+    public static final String CREATE = "CREATE";
+    public static final String DELETE = "DELETE";
+    public static final String REASON = "REASON";
+
+    private static final int MAX_GAPS = 10_000;
+
+    private static ChangeFeedManager instance = null;
+
+    private final String origin = UUID.randomUUID().toString();
+    private final AtomicBoolean polling = new AtomicBoolean();
+    private boolean enabled = false;
+    private int batchSize = 500;
+    private long keepMillis = 3_600_000;
+    private long gapMillis = 10_000;
+    private long watermark = -1;
+    // Missing ids below the watermark and when they have been noticed
+    private final TreeMap<Long, Long> gaps = new TreeMap<>();
+    private long lastCleanup = 0;
+
+    /**
+     * Get the change feed manager.
+     *
+     * @return the change feed manager instance
+     */
+    public static synchronized ChangeFeedManager get() {
+        return instance == null ? instance = new ChangeFeedManager() : instance;
+    }
+
+    /**
+     * Starts tailing the change feed if it is enabled in the config.
+     * Only changes made after the start are applied, everything older is already in the database.
+     */
+    public void setup() {
+        MethodInterface mi = Universal.get().getMethods();
+        enabled = mi.getBoolean(mi.getConfig(), "ChangeFeed.Enabled", false);
+        if (!enabled)
+            return;
+
+        batchSize = Math.max(1, mi.getInteger(mi.getConfig(), "ChangeFeed.Batch-Size", 500));
+        keepMillis = Math.max(1, mi.getInteger(mi.getConfig(), "ChangeFeed.Keep-Minutes", 60)) * 60_000L;
+        gapMillis = Math.max(0, mi.getInteger(mi.getConfig(), "ChangeFeed.Gap-Seconds", 10)) * 1000L;
+        int interval = Math.max(1, mi.getInteger(mi.getConfig(), "ChangeFeed.Interval", 40));
+
+        gaps.clear();
+        try (ResultSet rs = DatabaseManager.get().executeResultStatement(SQLQuery.SELECT_LATEST_PUNISHMENT_CHANGE)) {
+            if (rs != null && rs.next() && rs.getObject("changeId") != null) {
+                watermark = rs.getLong("changeId");
+            }
+        } catch (SQLException ex) {
+            Universal.get().getLogger().severe("An error has occurred reading the position of the change feed.");
+            Universal.get().debugSqlException(ex);
+        }
+
+        mi.scheduleAsyncRep(this::poll, interval, interval);
+    }
+
+    /**
+     * Record a change of the given punishment so the other instances can apply it.
+     *
+     * @param action     {@link #CREATE}, {@link #DELETE} or {@link #REASON}
+     * @param punishment the changed punishment
+     */
+    public void record(String action, Punishment punishment) {
+        if (!enabled)
+            return;
+
+        DatabaseManager.get().executeStatement(SQLQuery.INSERT_PUNISHMENT_CHANGE, action, origin, TimeManager.getTime(),
+                punishment.getId(), punishment.getName(), punishment.getUuid(), punishment.getReason(), punishment.getOperator(),
+                punishment.getType().name(), punishment.getStart(), punishment.getEnd(), punishment.getCalculation(),
+                punishment.getServer(), punishment.getTargetServer());
+    }
+
+    /**
+     * Apply all changes made by other instances since the last poll.<br>
+     * Visible for testing. Do not use this.
+     */
+    void poll() {
+        if (!polling.compareAndSet(false, true))
+            return;
+
+        try {
+            // Start below the oldest gap, changes which have been read already are skipped
+            long cursor = gaps.isEmpty() ? watermark : gaps.firstKey() - 1;
+            int read;
+            do {
+                read = 0;
+                try (ResultSet rs = DatabaseManager.get().executeResultStatement(SQLQuery.SELECT_PUNISHMENT_CHANGES_AFTER, cursor, batchSize)) {
+                    if (rs == null)
+                        return;
+
+                    while (rs.next()) {
+                        read++;
+                        cursor = rs.getLong("changeId");
+                        if (!admit(cursor))
+                            continue;
+
+                        if (!origin.equals(rs.getString("origin"))) {
+                            apply(rs.getString("action"), PunishmentManager.get().getPunishmentFromResultSet(rs));
+                        }
+                    }
+                } catch (SQLException ex) {
+                    Universal.get().getLogger().severe("An error has occurred reading the change feed.");
+                    Universal.get().debugSqlException(ex);
+                    return;
+                }
+            } while (read == batchSize);
+
+            long now = TimeManager.getTime();
+            gaps.values().removeIf(noticed -> now - noticed >= gapMillis);
+            if (now - lastCleanup > keepMillis / 4) {
+                lastCleanup = now;
+                DatabaseManager.get().executeStatement(SQLQuery.DELETE_OLD_PUNISHMENT_CHANGES, now - keepMillis);
+            }
+        } finally {
+            polling.set(false);
+        }
+    }
+
+    // Whether the change with the given id has not been applied yet, remembers the ids skipped on the way
+    private boolean admit(long changeId) {
+        if (changeId <= watermark)
+            return gaps.remove(changeId) != null;
+
+        long now = TimeManager.getTime();
+        for (long missing = Math.max(watermark + 1, changeId - MAX_GAPS); missing < changeId; missing++) {
+            gaps.put(missing, now);
+        }
+        // Give up on the oldest gaps first if the ids jump a lot, e.g. with auto_increment_increment
+        for (Iterator<Map.Entry<Long, Long>> it = gaps.entrySet().iterator(); gaps.size() > MAX_GAPS && it.hasNext(); ) {
+            it.next();
+            it.remove();
+        }
+        watermark = changeId;
+        return true;
+    }
+
+    private void apply(String action, Punishment punishment) {
+        MethodInterface mi = Universal.get().getMethods();
+        PunishmentManager punishmentManager = PunishmentManager.get();
+        PunishmentType type = punishment.getType();
+
+        if (type != PunishmentType.KICK) {
+            punishmentManager.uncachePunishment(punishment.getUuid(), punishment.getId());
+            if (!DELETE.equals(action) && punishmentManager.isCached(punishment.getUuid())) {
+                punishmentManager.cachePunishment(punishment);
+            }
+        }
+
+        if (DELETE.equals(action)) {
+            IpBanIndex.get().remove(punishment);
+            mi.callRevokePunishmentEvent(punishment, false);
+            return;
+        }
+        // Also replaces the indexed copy when the reason has changed
+        IpBanIndex.get().add(punishment);
+        if (!CREATE.equals(action))
+            return;
+
+        punishmentManager.addToHistory(punishment);
+
+        if (mi.isOnline(punishment.getName())) {
+            if (type.getBasic() == PunishmentType.BAN || type == PunishmentType.KICK) {
+                mi.runSync(() -> mi.kickPlayer(punishment.getName(), punishment.getLayoutBSN()));
+            } else if (type.getBasic() != PunishmentType.NOTE) {
+                Object player = mi.getPlayer(punishment.getName());
+                for (String str : punishment.getLayout()) {
+                    mi.sendMessage(player, str);
+                }
+            }
+        }
+
+        mi.callPunishmentEvent(punishment);
+    }
+
+    /**
+     * Check whether the change feed is enabled.
+     *
+     * @return whether the change feed is enabled
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Get the id of the last change which has been read from the feed.
+     *
+     * @return the watermark
+     */
+    public long getWatermark() {
+        return watermark;
+    }
+
+    /**
+     * Get the amount of missing changes below the watermark which are still expected to show up.
+     *
+     * @return the amount of open gaps
+     */
+    public int getGapCount() {
+        return gaps.size();
+    }
+
+    /**
+     * Get the id this instance writes its changes with.<br>
+     * Visible for testing. Do not use this.
+     *
+     * @return the origin
+     */
+    String getOrigin() {
+        return origin;
+    }
+}
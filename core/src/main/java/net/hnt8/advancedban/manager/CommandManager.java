@@ -2,6 +2,10 @@ package net.hnt8.advancedban.manager;
 
 import net.hnt8.advancedban.Universal;
 import net.hnt8.advancedban.utils.Command;
+import net.hnt8.advancedban.utils.CommandContext;
+import net.hnt8.advancedban.utils.CommandResult;
+
+import java.util.concurrent.CompletableFuture;
 
 /**
  * The Command Manager is used to handle commands based on the sender, command-name and arguments.
@@ -27,23 +31,62 @@ public class CommandManager {
      * @param args   the arguments for this command
      */
     public void onCommand(final Object sender, final String cmd, final String[] args) {
+        execute(sender, cmd, args);
+    }
+
+    /**
+     * Perform a command and report its outcome.<br>
+     * The command runs asynchronously, the returned future is completed once it has finished.
+     * It completes exceptionally if the command threw an exception.
+     *
+     * @param sender the sender which executes the command
+     * @param cmd    the command name
+     * @param args   the arguments for this command
+     * @return the result of the command
+     */
+    public CompletableFuture<CommandResult> execute(final Object sender, final String cmd, final String[] args) {
+        return execute(new CommandContext(sender, null), cmd, args);
+    }
+
+    /**
+     * Perform a command on behalf of another server and report its outcome,
+     * see {@link #execute(Object, String, String[])}.
+     *
+     * @param context the sender and the server the command has been issued on
+     * @param cmd     the command name
+     * @param args    the arguments for this command
+     * @return the result of the command
+     */
+    public CompletableFuture<CommandResult> execute(final CommandContext context, final String cmd, final String[] args) {
+        CompletableFuture<CommandResult> future = new CompletableFuture<>();
         Universal.get().getMethods().runAsync(() -> {
-            Command command = Command.getByName(cmd);
-            if (command == null)
-                return;
-
-            String permission = command.getPermission();
-            if (permission != null && !Universal.get().hasPerms(sender, permission)) {
-                MessageManager.sendMessage(sender, "General.NoPerms", true);
-                return;
+            try {
+                future.complete(run(context, cmd, args));
+            } catch (RuntimeException ex) {
+                future.completeExceptionally(ex);
+                throw ex;
             }
+        });
+        return future;
+    }
 
-            if (!command.validateArguments(args)) {
-                MessageManager.sendMessage(sender, command.getUsagePath(), true);
-                return;
-            }
+    private CommandResult run(CommandContext context, String cmd, String[] args) {
+        Object sender = context.getSender();
+        Command command = Command.getByName(cmd);
+        if (command == null)
+            return CommandResult.failure(CommandResult.UNKNOWN_COMMAND, null);
 
-            command.execute(sender, args);
-        });
+        String permission = command.getPermission();
+        if (permission != null && !Universal.get().hasPerms(sender, permission)) {
+            MessageManager.sendMessage(sender, "General.NoPerms", true);
+            return CommandResult.failure("General.NoPerms", MessageManager.getMessage("General.NoPerms"));
+        }
+
+        if (!command.validateArguments(args)) {
+            MessageManager.sendMessage(sender, command.getUsagePath(), true);
+            return CommandResult.failure(command.getUsagePath(), MessageManager.getMessage(command.getUsagePath()));
+        }
+
+        return command.execute(context, args);
     }
 }
@@ -0,0 +1,132 @@
+package net.hnt8.advancedban.manager;
+
+import net.hnt8.advancedban.MethodInterface;
+import net.hnt8.advancedban.Universal;
+import net.hnt8.advancedban.utils.ConfigSnapshot;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The Config Manager keeps the current {@link ConfigSnapshot} and replaces it whenever the configuration
+ * files are reloaded, either by <code>/advancedban reload</code> or, if <code>Auto-Reload</code> is enabled,
+ * as soon as one of the files has been changed on disk.
+ */
+public class ConfigManager {
+
+    private static final Set<String> WATCHED_FILES = new HashSet<>(Arrays.asList("config.yml", "Messages.yml", "Layouts.yml"));
+    // Editors often write a file in several steps, wait for them to finish before reloading
+    private static final long SETTLE_MILLIS = 500;
+
+    private static ConfigManager instance = null;
+    private volatile ConfigSnapshot snapshot;
+    private WatchService watchService;
+
+    /**
+     * Get the config manager.
+     *
+     * @return the config manager instance
+     */
+    public static synchronized ConfigManager get() {
+        return instance == null ? instance = new ConfigManager() : instance;
+    }
+
+    /**
+     * Get the current snapshot of the configuration.<br>
+     * This is what hot paths should read instead of looking up the files.
+     *
+     * @return the snapshot or <code>null</code> if the files have not been loaded yet
+     */
+    public static ConfigSnapshot getSnapshot() {
+        ConfigManager manager = instance;
+        return manager == null ? null : manager.snapshot;
+    }
+
+    /**
+     * Read the initial snapshot and start watching the files if <code>Auto-Reload</code> is enabled.
+     * The files have to be loaded already.
+     */
+    public void setup() {
+        MethodInterface mi = Universal.get().getMethods();
+        snapshot = ConfigSnapshot.load(mi);
+        if (mi.getBoolean(mi.getConfig(), "Auto-Reload", false)) {
+            startWatcher(mi.getDataFolder().toPath());
+        }
+    }
+
+    /**
+     * Reload the configuration files and replace the snapshot.
+     */
+    public synchronized void reload() {
+        MethodInterface mi = Universal.get().getMethods();
+        mi.loadFiles();
+        MessageManager.invalidate();
+        snapshot = ConfigSnapshot.load(mi);
+    }
+
+    public synchronized void shutdown() {
+        if (watchService != null) {
+            try {
+                watchService.close();
+            } catch (IOException ex) {
+                Universal.get().debugException(ex);
+            }
+            watchService = null;
+        }
+    }
+
+    private synchronized void startWatcher(Path folder) {
+        shutdown();
+        try {
+            WatchService service = FileSystems.getDefault().newWatchService();
+            folder.register(service, StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+            watchService = service;
+
+            Thread thread = new Thread(() -> watch(service), "AdvancedBan-ConfigWatcher");
+            thread.setDaemon(true);
+            thread.start();
+        } catch (IOException ex) {
+            Universal.get().getLogger().warning("Failed to watch the configuration files for changes: " + ex.getMessage());
+            Universal.get().debugException(ex);
+        }
+    }
+
+    private void watch(WatchService service) {
+        try {
+            while (true) {
+                WatchKey key = service.take();
+                boolean changed = false;
+                do {
+                    for (WatchEvent<?> event : key.pollEvents()) {
+                        if (event.context() instanceof Path && WATCHED_FILES.contains(event.context().toString())) {
+                            changed = true;
+                        }
+                    }
+                    key.reset();
+                } while ((key = service.poll(SETTLE_MILLIS, TimeUnit.MILLISECONDS)) != null);
+
+                if (changed) {
+                    try {
+                        reload();
+                        Universal.get().getLogger().info("Reloaded the configuration files after they have been changed.");
+                    } catch (RuntimeException ex) {
+                        Universal.get().getLogger().warning("Failed to reload the configuration files: " + ex.getMessage());
+                        Universal.get().debugException(ex);
+                    }
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException ex) {
+            // Stopped
+        }
+    }
+}
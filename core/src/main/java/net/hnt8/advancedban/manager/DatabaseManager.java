@@ -109,6 +109,12 @@ public class DatabaseManager {
 
         executeStatement(SQLQuery.CREATE_TABLE_PUNISHMENT);
         executeStatement(SQLQuery.CREATE_TABLE_PUNISHMENT_HISTORY);
+        executeStatement(SQLQuery.CREATE_TABLE_PUNISHMENT_CHANGES);
+        executeStatement(SQLQuery.CREATE_TABLE_EXECUTED_COMMANDS);
+        executeStatement(SQLQuery.CREATE_TABLE_PLAYER_CACHE);
+        if (!useMySQL) {
+            executeStatement(SQLQuery.CREATE_INDEX_PLAYER_CACHE_NAME);
+        }
         if (useMySQL) {
             // Fix LONG columns to BIGINT if they exist (for existing databases)
             fixLongColumnsToBigInt();
@@ -0,0 +1,148 @@
+package net.hnt8.advancedban.manager;
+
+import net.hnt8.advancedban.MethodInterface;
+import net.hnt8.advancedban.Universal;
+import net.hnt8.advancedban.utils.CommandResult;
+import net.hnt8.advancedban.utils.SQLQuery;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.UUID;
+
+/**
+ * The Executed Command Manager makes sure a command a backend sends more than once is executed only once.<br>
+ * Backends send a command again until it has been answered, e.g. after a proxy restart or through a player on
+ * another proxy. A command is claimed by its id in the <code>ExecutedCommands</code> table, which all proxies
+ * sharing the database see, and its result is stored there to answer the command again.
+ * Ids are kept for <code>BackendLink.Command-Ids-Keep-Hours</code>.
+ */
+public class ExecutedCommandManager {
+
+    /**
+     * The error of commands which have been claimed but never got a result, e.g. as the proxy stopped meanwhile.
+     */
+    public static final String INTERRUPTED = "Interrupted";
+
+    private static final int MAX_MESSAGE_LENGTH = 1024;
+    // A running command has its result after this long, otherwise it never gets one
+    private static final long RUNNING_MILLIS = 60_000;
+
+    private static ExecutedCommandManager instance = null;
+
+    private long keepMillis = 24 * 3_600_000L;
+
+    /**
+     * Get the executed command manager.
+     *
+     * @return the executed command manager instance
+     */
+    public static synchronized ExecutedCommandManager get() {
+        return instance == null ? instance = new ExecutedCommandManager() : instance;
+    }
+
+    /**
+     * Starts deleting old command ids every hour.
+     */
+    public void setup() {
+        MethodInterface mi = Universal.get().getMethods();
+        keepMillis = Math.max(1, mi.getInteger(mi.getConfig(), "BackendLink.Command-Ids-Keep-Hours", 24)) * 3_600_000L;
+        mi.scheduleAsyncRep(this::cleanup, 20 * 60 * 60, 20 * 60 * 60);
+    }
+
+    /**
+     * Claim the command with the given id before executing it.<br>
+     * If the command has been claimed before, it must not be executed again. The previous result is returned
+     * instead, or <code>null</code> while the command is still running. Commands which have been running for
+     * too long are given up with an {@link #INTERRUPTED} failure.
+     *
+     * @param commandId the id of the command
+     * @return the claim
+     */
+    public Claim claim(String commandId) {
+        String claim = UUID.randomUUID().toString();
+        DatabaseManager.get().executeStatement(SQLQuery.INSERT_EXECUTED_COMMAND, commandId, claim, TimeManager.getTime());
+
+        try (ResultSet rs = DatabaseManager.get().executeResultStatement(SQLQuery.SELECT_EXECUTED_COMMAND, commandId)) {
+            if (rs == null || !rs.next()) {
+                // The database is not available, executing the command is better than losing it
+                return new Claim(false, commandId, null, null);
+            }
+            if (claim.equals(rs.getString("claim"))) {
+                return new Claim(false, commandId, claim, null);
+            }
+            if (rs.getObject("success") != null) {
+                return new Claim(true, commandId, null, CommandResult.of(rs.getBoolean("success"), rs.getInt("punishmentId"),
+                        rs.getString("error"), rs.getString("message")));
+            }
+            if (TimeManager.getTime() - rs.getLong("created") > RUNNING_MILLIS) {
+                return new Claim(true, commandId, null, CommandResult.failure(INTERRUPTED, null));
+            }
+            return new Claim(true, commandId, null, null);
+        } catch (SQLException ex) {
+            Universal.get().getLogger().severe("An error has occurred claiming the command " + commandId + ".");
+            Universal.get().debugSqlException(ex);
+            return new Claim(false, commandId, null, null);
+        }
+    }
+
+    /**
+     * Store the result of a command, so it can be answered again if it is sent again.
+     *
+     * @param claim  the claim the command has been executed with
+     * @param result the result
+     */
+    public void complete(Claim claim, CommandResult result) {
+        if (claim.id == null) {
+            return;
+        }
+        String message = result.getMessage();
+        if (message != null && message.length() > MAX_MESSAGE_LENGTH) {
+            message = message.substring(0, MAX_MESSAGE_LENGTH);
+        }
+        DatabaseManager.get().executeStatement(SQLQuery.UPDATE_EXECUTED_COMMAND, result.isSuccess(), result.getPunishmentId(),
+                result.getError(), message, claim.commandId, claim.id);
+    }
+
+    /**
+     * Delete the ids of commands older than <code>BackendLink.Command-Ids-Keep-Hours</code>.<br>
+     * Visible for testing. Do not use this.
+     */
+    void cleanup() {
+        DatabaseManager.get().executeStatement(SQLQuery.DELETE_OLD_EXECUTED_COMMANDS, TimeManager.getTime() - keepMillis);
+    }
+
+    /**
+     * The outcome of {@link #claim(String)}.
+     */
+    public static final class Claim {
+        private final boolean duplicate;
+        private final String commandId;
+        private final String id;
+        private final CommandResult previous;
+
+        private Claim(boolean duplicate, String commandId, String id, CommandResult previous) {
+            this.duplicate = duplicate;
+            this.commandId = commandId;
+            this.id = id;
+            this.previous = previous;
+        }
+
+        /**
+         * Check whether the command has been claimed before and must not be executed again.
+         *
+         * @return whether the command has been claimed before
+         */
+        public boolean isDuplicate() {
+            return duplicate;
+        }
+
+        /**
+         * Get the result of the previous execution.
+         *
+         * @return the result or <code>null</code> if the command is still running
+         */
+        public CommandResult getPrevious() {
+            return previous;
+        }
+    }
+}
@@ -0,0 +1,171 @@
+package net.hnt8.advancedban.manager;
+
+import net.hnt8.advancedban.MethodInterface;
+import net.hnt8.advancedban.Universal;
+import net.hnt8.advancedban.utils.Punishment;
+import net.hnt8.advancedban.utils.SQLQuery;
+
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * Keeps all network-wide IP bans in memory, so connections from banned addresses can be rejected
+ * before the player is authenticated and without any database query.<br>
+ * Bans scoped to a single server are not indexed, they only apply once the player connects to that server.<br>
+ * Bans created or revoked on this instance are applied right away, the ones of other proxies or web panels
+ * once the index is reloaded every <code>Cache.IP-Ban-Refresh-Seconds</code>.
+ */
+public class IpBanIndex {
+
+    private static IpBanIndex instance = null;
+
+    private volatile Map<String, Set<Punishment>> bans = new ConcurrentHashMap<>();
+    // Changes made while the index is reloaded, the query may or may not have seen them
+    private List<Consumer<Map<String, Set<Punishment>>>> pending = null;
+    private final LongAdder rejections = new LongAdder();
+
+    /**
+     * Get the IP ban index.
+     *
+     * @return the IP ban index instance
+     */
+    public static synchronized IpBanIndex get() {
+        return instance == null ? instance = new IpBanIndex() : instance;
+    }
+
+    /**
+     * Load all IP bans and reload them regularly.
+     */
+    public void setup() {
+        reload();
+        MethodInterface mi = Universal.get().getMethods();
+        long interval = Math.max(0, mi.getInteger(mi.getConfig(), "Cache.IP-Ban-Refresh-Seconds", 60)) * 20L;
+        if (interval > 0) {
+            mi.scheduleAsyncRep(this::reload, interval, interval);
+        }
+    }
+
+    /**
+     * Load all IP bans again, so bans created or revoked outside of this instance are seen.<br>
+     * The index is only replaced once the bans have been loaded, if that fails the old one is kept.
+     */
+    public void reload() {
+        synchronized (this) {
+            pending = new ArrayList<>();
+        }
+
+        Map<String, Set<Punishment>> loaded = new ConcurrentHashMap<>();
+        boolean complete = false;
+        try (ResultSet rs = DatabaseManager.get().executeResultStatement(SQLQuery.SELECT_IP_BANS)) {
+            if (rs != null) {
+                while (rs.next()) {
+                    Punishment punishment = PunishmentManager.get().getPunishmentFromResultSet(rs);
+                    if (!punishment.isExpired() && isIndexed(punishment)) {
+                        index(loaded, punishment);
+                    }
+                }
+                complete = true;
+            }
+        } catch (SQLException ex) {
+            Universal.get().getLogger().severe("An error has occurred loading the IP bans.");
+            Universal.get().debugSqlException(ex);
+        }
+
+        synchronized (this) {
+            if (complete) {
+                pending.forEach(change -> change.accept(loaded));
+                bans = loaded;
+            }
+            pending = null;
+        }
+        if (complete) {
+            Universal.get().getLogger().fine("Indexed the IP bans of " + loaded.size() + " addresses");
+        }
+    }
+
+    /**
+     * Add the given punishment if it is a network-wide IP ban.
+     *
+     * @param punishment the punishment
+     */
+    public synchronized void add(Punishment punishment) {
+        if (!isIndexed(punishment))
+            return;
+
+        index(bans, punishment);
+        if (pending != null) {
+            pending.add(loaded -> index(loaded, punishment));
+        }
+    }
+
+    /**
+     * Remove the given punishment if it is indexed.
+     *
+     * @param punishment the punishment
+     */
+    public synchronized void remove(Punishment punishment) {
+        if (!isIndexed(punishment))
+            return;
+
+        unindex(bans, punishment);
+        if (pending != null) {
+            pending.add(loaded -> unindex(loaded, punishment));
+        }
+    }
+
+    /**
+     * Get an active network-wide ban of the given address.
+     *
+     * @param ip the address
+     * @return the ban or <code>null</code> if the address is not banned
+     */
+    public Punishment getBan(String ip) {
+        for (Punishment punishment : bans.getOrDefault(ip, Collections.emptySet())) {
+            // Expired bans are deleted by the regular login check, which runs when they do not reject
+            if (!punishment.isExpired()) {
+                return punishment;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Count a connection which has been rejected because of an indexed ban.
+     */
+    public void recordRejection() {
+        rejections.increment();
+    }
+
+    public long getRejections() {
+        return rejections.sum();
+    }
+
+    public int size() {
+        return bans.size();
+    }
+
+    private static void index(Map<String, Set<Punishment>> bans, Punishment punishment) {
+        // Replace an older copy of the same punishment, e.g. after its reason has changed
+        unindex(bans, punishment);
+        bans.computeIfAbsent(punishment.getUuid(), ip -> ConcurrentHashMap.newKeySet()).add(punishment);
+    }
+
+    private static void unindex(Map<String, Set<Punishment>> bans, Punishment punishment) {
+        bans.computeIfPresent(punishment.getUuid(), (ip, set) -> {
+            set.removeIf(indexed -> indexed.getId() == punishment.getId());
+            return set.isEmpty() ? null : set;
+        });
+    }
+
+    private static boolean isIndexed(Punishment punishment) {
+        return punishment.getType().isIpOrientated() && punishment.getTargetServer() == null;
+    }
+}
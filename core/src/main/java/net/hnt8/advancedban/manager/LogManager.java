@@ -8,7 +8,9 @@ import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.file.Files;
-import java.text.SimpleDateFormat;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
 import java.util.Calendar;
 import java.util.zip.GZIPOutputStream;
 
@@ -17,6 +19,8 @@ import java.util.zip.GZIPOutputStream;
  * @author Beelzebu
  */
 public class LogManager {
+
+    private static final DateTimeFormatter FILE_DATE = DateTimeFormatter.ofPattern("yyyy-MM-dd").withZone(ZoneId.systemDefault());
 	
     private final File logsFolder;
 
@@ -45,7 +49,6 @@ public class LogManager {
         Calendar calendar = Calendar.getInstance();
         calendar.setTimeInMillis(System.currentTimeMillis());
         int day = calendar.get(Calendar.DAY_OF_MONTH);
-        SimpleDateFormat sdf = new SimpleDateFormat("yyyy-MM-dd");
         File latestLog = new File(logsFolder, "latest.log");
         if (latestLog.exists()) {
             calendar.setTimeInMillis(latestLog.lastModified());
@@ -55,10 +58,11 @@ public class LogManager {
                         return;
                     }
                     int filen = 1;
-                    while (new File(logsFolder, sdf.format(latestLog.lastModified()) + "-" + filen + ".log.gz").exists()) {
+                    String date = FILE_DATE.format(Instant.ofEpochMilli(latestLog.lastModified()));
+                    while (new File(logsFolder, date + "-" + filen + ".log.gz").exists()) {
                         filen++;
                     }
-                    gzipFile(Files.newInputStream(latestLog.toPath()), logsFolder + "/" + sdf.format(latestLog.lastModified()) + "-" + filen + ".log.gz");
+                    gzipFile(Files.newInputStream(latestLog.toPath()), logsFolder + "/" + date + "-" + filen + ".log.gz");
                     latestLog.delete();
                     latestLog.createNewFile();
                 } catch (IOException ex) {
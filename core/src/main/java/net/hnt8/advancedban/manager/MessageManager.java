@@ -2,10 +2,15 @@ package net.hnt8.advancedban.manager;
 
 import net.hnt8.advancedban.MethodInterface;
 import net.hnt8.advancedban.Universal;
+import net.hnt8.advancedban.utils.MessageTemplate;
 
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * The Message Manager is used for a convenient way to retrieve messages from configuration files.<br>
@@ -13,10 +18,33 @@ import java.util.List;
  */
 public class MessageManager {
 
+    // Parsed messages and layouts by file and path, cleared whenever the files are reloaded
+    private static final Map<String, MessageTemplate> messages = new ConcurrentHashMap<>();
+    private static final Map<Object, Map<String, List<MessageTemplate>>> layouts = Collections.synchronizedMap(new IdentityHashMap<>());
+    private static final AtomicInteger version = new AtomicInteger();
+
     private static MethodInterface mi() {
     	return Universal.get().getMethods();
     }
 
+    /**
+     * Forget all parsed messages and layouts, has to be called after the files have been reloaded.
+     */
+    public static void invalidate() {
+        messages.clear();
+        layouts.clear();
+        version.incrementAndGet();
+    }
+
+    /**
+     * Get the version of the messages and layouts, which changes whenever they are reloaded.
+     *
+     * @return the version
+     */
+    public static int getVersion() {
+        return version.get();
+    }
+
     /**
      * Get the message from the given path.<br>
      * The parameters work as described in {@link #sendMessage(Object, String, boolean, String...)}.
@@ -26,20 +54,22 @@ public class MessageManager {
      * @return the message
      */
     public static String getMessage(String path, String... parameters) {
-    	MethodInterface mi = mi();
-        String str = mi.getString(mi.getMessages(), path);
-        if (str == null) {
-            str = "Failed! See console for details!";
-            System.out.println("!! Message-Error!\n"
-                    + "In order to solve the problem please:"
-                    + "\n  - Check the Message.yml-File for any missing or double \" or '"
-                    + "\n  - Visit yamllint.com to  validate your Message.yml"
-                    + "\n  - Delete the message file and restart the server");
-        } else {
-            String preTranslated = replace(str, parameters);
-            str = preTranslated.replace('&', '§');
+        MessageTemplate template = messages.get(path);
+        if (template == null) {
+            MethodInterface mi = mi();
+            String str = mi.getString(mi.getMessages(), path);
+            if (str == null) {
+                System.out.println("!! Message-Error!\n"
+                        + "In order to solve the problem please:"
+                        + "\n  - Check the Message.yml-File for any missing or double \" or '"
+                        + "\n  - Visit yamllint.com to  validate your Message.yml"
+                        + "\n  - Delete the message file and restart the server");
+                return "Failed! See console for details!";
+            }
+            template = MessageTemplate.parse(str);
+            messages.put(path, template);
         }
-        return str;
+        return template.render(parameters);
     }
 
 
@@ -53,10 +83,9 @@ public class MessageManager {
      * @return the message
      */
     public static String getMessage(String path, boolean prefix, String... parameters) {
-    	MethodInterface mi = mi();
         String prefixStr = "";
-        if (prefix && !mi.getBoolean(mi.getConfig(), "Disable Prefix", false)) {
-            prefixStr = getMessage("General.Prefix")+" ";
+        if (prefix && !ConfigManager.getSnapshot().isPrefixDisabled()) {
+            prefixStr = ConfigManager.getSnapshot().getPrefix() + " ";
             
             if (prefixStr.isBlank()) {
                 prefixStr = "";
@@ -78,12 +107,19 @@ public class MessageManager {
      */
     public static List<String> getLayout(Object file, String path, String... parameters) {
     	MethodInterface mi = mi();
-        if (mi.contains(file, path)) {
-            List<String> list = new ArrayList<>();
+        Map<String, List<MessageTemplate>> fileLayouts = layouts.computeIfAbsent(file, key -> new ConcurrentHashMap<>());
+        List<MessageTemplate> templates = fileLayouts.get(path);
+        if (templates == null && mi.contains(file, path)) {
+            templates = new ArrayList<>();
             for (String str : mi.getStringList(file, path)) {
-                String preTranslated = replace(str, parameters);
-                
-                list.add(preTranslated.replace('&', '§'));
+                templates.add(MessageTemplate.parse(str));
+            }
+            fileLayouts.put(path, templates);
+        }
+        if (templates != null) {
+            List<String> list = new ArrayList<>(templates.size());
+            for (MessageTemplate template : templates) {
+                list.add(template.render(parameters));
             }
             return list;
         }
@@ -114,15 +150,8 @@ public class MessageManager {
     	MethodInterface mi = mi();
         final String message = getMessage(path, parameters);
         if(!message.isEmpty()) {
-            final String prefixString = prefix && !mi.getBoolean(mi.getConfig(), "Disable Prefix", false) ? getMessage("General.Prefix") + " " : "";
+            final String prefixString = prefix && !ConfigManager.getSnapshot().isPrefixDisabled() ? ConfigManager.getSnapshot().getPrefix() + " " : "";
             mi.sendMessage(receiver, prefixString + message);
         }
     }
-
-    private static String replace(String str, String... parameters) {
-        for (int i = 0; i < parameters.length - 1; i = i + 2) {
-            str = str.replaceAll("%" + parameters[i] + "%", parameters[i + 1]);
-        }
-        return str;
-    }
 }
@@ -0,0 +1,214 @@
+package net.hnt8.advancedban.manager;
+
+import net.hnt8.advancedban.MethodInterface;
+import net.hnt8.advancedban.Universal;
+import net.hnt8.advancedban.utils.MessageTemplate;
+import net.hnt8.advancedban.utils.PunishmentType;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The Notification Manager delivers the notifications about new and revoked punishments to the staff.<br>
+ * Instead of checking the permission of every online player for every notification, it keeps the players
+ * having each <code>ab.notify.*</code> and <code>ab.undoNotify.*</code> permission. Players are checked when
+ * they join. A permission is checked again for the online players when a notification needs it and it was last
+ * checked more than <code>Notifications.Refresh-Seconds</code> ago, so changed permissions are picked up without
+ * reconnecting and nothing is checked while there are no notifications.<br>
+ * If more than <code>Notifications.Burst-Limit</code> notifications of one kind arrive within
+ * <code>Notifications.Burst-Seconds</code>, e.g. during a ban wave, the rest is summed up in a single message.
+ */
+public class NotificationManager {
+
+    private static final String SUMMARY_PATH = "General.NotificationSummary";
+    private static final String SUMMARY_DEFAULT = "<gray>... and <yellow>%COUNT%</yellow> more %TYPE% notifications in the last %SECONDS% seconds</gray>";
+
+    private static NotificationManager instance = null;
+
+    private final Map<String, Set<Object>> subscribers = new ConcurrentHashMap<>();
+    private final Map<String, Long> checked = new ConcurrentHashMap<>();
+    private final Map<String, Burst> bursts = new HashMap<>();
+    private final LongAdder delivered = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+    private int burstSeconds = 3;
+    private int burstLimit = 5;
+    private long refreshMillis = 30_000;
+
+    /**
+     * Get the notification manager.
+     *
+     * @return the notification manager instance
+     */
+    public static synchronized NotificationManager get() {
+        return instance == null ? instance = new NotificationManager() : instance;
+    }
+
+    /**
+     * Indexes the players which are online already.
+     */
+    public void setup() {
+        MethodInterface mi = Universal.get().getMethods();
+        burstSeconds = Math.max(0, mi.getInteger(mi.getConfig(), "Notifications.Burst-Seconds", 3));
+        burstLimit = Math.max(0, mi.getInteger(mi.getConfig(), "Notifications.Burst-Limit", 5));
+        refreshMillis = Math.max(1, mi.getInteger(mi.getConfig(), "Notifications.Refresh-Seconds", 30)) * 1000L;
+
+        for (PunishmentType type : PunishmentType.values()) {
+            subscribers.putIfAbsent("ab.notify." + type.getName(), ConcurrentHashMap.newKeySet());
+            subscribers.putIfAbsent("ab.undoNotify." + type.getBasic().getName(), ConcurrentHashMap.newKeySet());
+        }
+        refreshAll();
+    }
+
+    /**
+     * Check the permissions of a player, called when the player joins.
+     *
+     * @param player the player
+     */
+    public void refresh(Object player) {
+        MethodInterface mi = Universal.get().getMethods();
+        subscribers.forEach((perm, players) -> {
+            if (mi.hasPerms(player, perm)) {
+                players.add(player);
+            } else {
+                players.remove(player);
+            }
+        });
+    }
+
+    /**
+     * Stop sending notifications to a player, called when the player leaves.
+     *
+     * @param player the player
+     */
+    public void remove(Object player) {
+        subscribers.values().forEach(players -> players.remove(player));
+    }
+
+    /**
+     * Check the permissions of all online players again and drop the players which are no longer online.
+     */
+    public void refreshAll() {
+        subscribers.keySet().forEach(this::reindex);
+    }
+
+    /**
+     * Send a notification to every player with the given permission.
+     *
+     * @param perm         the permission
+     * @param notification the lines of the notification
+     */
+    public void notify(String perm, List<String> notification) {
+        Long lastChecked = checked.get(perm);
+        if (lastChecked == null || TimeManager.getTime() - lastChecked > refreshMillis) {
+            // Not one of the known nodes or not checked for a while, there may be new subscribers
+            reindex(perm);
+        }
+        Set<Object> players = subscribers.get(perm);
+        if (players.isEmpty() || !admit(perm)) {
+            return;
+        }
+        delivered.increment();
+        send(players, notification);
+    }
+
+    public int getSubscriberCount() {
+        Set<Object> all = Collections.newSetFromMap(new IdentityHashMap<>());
+        subscribers.values().forEach(all::addAll);
+        return all.size();
+    }
+
+    public long getDelivered() {
+        return delivered.sum();
+    }
+
+    public long getCoalesced() {
+        return coalesced.sum();
+    }
+
+    // Checks the permission of every online player
+    private void reindex(String perm) {
+        MethodInterface mi = Universal.get().getMethods();
+        Set<Object> players = subscribers.computeIfAbsent(perm, key -> ConcurrentHashMap.newKeySet());
+        Set<Object> online = Collections.newSetFromMap(new IdentityHashMap<>());
+        for (Object player : mi.getOnlinePlayers()) {
+            online.add(player);
+            if (mi.hasPerms(player, perm)) {
+                players.add(player);
+            } else {
+                players.remove(player);
+            }
+        }
+        players.removeIf(player -> !online.contains(player));
+        checked.put(perm, TimeManager.getTime());
+    }
+
+    // Whether the notification is sent right away, otherwise it is counted for the summary of the burst
+    private boolean admit(String perm) {
+        if (burstSeconds == 0 || burstLimit == 0) {
+            return true;
+        }
+        synchronized (bursts) {
+            Burst burst = bursts.get(perm);
+            if (burst == null) {
+                burst = new Burst();
+                bursts.put(perm, burst);
+                Universal.get().getMethods().scheduleAsync(() -> flush(perm), burstSeconds * 20L);
+            }
+            if (burst.sent < burstLimit) {
+                burst.sent++;
+                return true;
+            }
+            burst.suppressed++;
+            coalesced.increment();
+            return false;
+        }
+    }
+
+    /**
+     * Sends the summary of the burst of notifications with the given permission.
+     * Visible for testing. Do not use this.
+     *
+     * @param perm the permission
+     */
+    void flush(String perm) {
+        Burst burst;
+        synchronized (bursts) {
+            burst = bursts.remove(perm);
+        }
+        Set<Object> players = subscribers.get(perm);
+        if (burst == null || burst.suppressed == 0 || players == null || players.isEmpty()) {
+            return;
+        }
+
+        MethodInterface mi = Universal.get().getMethods();
+        String summary = mi.contains(mi.getMessages(), SUMMARY_PATH)
+                ? MessageManager.getMessage(SUMMARY_PATH, "COUNT", String.valueOf(burst.suppressed), "TYPE", getType(perm), "SECONDS", String.valueOf(burstSeconds))
+                : MessageTemplate.parse(SUMMARY_DEFAULT).render("COUNT", String.valueOf(burst.suppressed), "TYPE", getType(perm), "SECONDS", String.valueOf(burstSeconds));
+        send(players, Collections.singletonList(summary));
+    }
+
+    private static void send(Set<Object> players, List<String> lines) {
+        MethodInterface mi = Universal.get().getMethods();
+        for (Object player : players) {
+            for (String line : lines) {
+                mi.sendMessage(player, line);
+            }
+        }
+    }
+
+    private static String getType(String perm) {
+        String type = perm.substring(perm.lastIndexOf('.') + 1);
+        return perm.startsWith("ab.undoNotify.") ? "Undo-" + type : type;
+    }
+
+    private static final class Burst {
+        private int sent;
+        private int suppressed;
+    }
+}
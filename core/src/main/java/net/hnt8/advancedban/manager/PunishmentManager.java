@@ -1,14 +1,20 @@
 package net.hnt8.advancedban.manager;
 
+import net.hnt8.advancedban.MethodInterface;
 import net.hnt8.advancedban.Universal;
 import net.hnt8.advancedban.utils.InterimData;
 import net.hnt8.advancedban.utils.Punishment;
 import net.hnt8.advancedban.utils.PunishmentType;
 import net.hnt8.advancedban.utils.SQLQuery;
+import net.hnt8.advancedban.utils.SingleFlight;
 
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * The Punishment Manager handles the punishments. It loads and parses them from the database, caches them
@@ -17,9 +23,36 @@ import java.util.*;
 public class PunishmentManager {
 
     private static PunishmentManager instance = null;
-    private final Set<Punishment> punishments = Collections.synchronizedSet(new HashSet<>());
-    private final Set<Punishment> history = Collections.synchronizedSet(new HashSet<>());
+    private final Map<String, Set<Punishment>> punishments = new ConcurrentHashMap<>();
+    private final Map<String, Map<String, Integer>> calculationCounts = new ConcurrentHashMap<>();
+    private final Map<String, List<Punishment>> history = Collections.synchronizedMap(new LinkedHashMap<String, List<Punishment>>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, List<Punishment>> eldest) {
+            return size() > historyCacheSize;
+        }
+    });
+    // Targets whose history is being loaded and the punishments created in the meantime, guarded by history
+    private final Map<String, List<Punishment>> historyLoads = new HashMap<>();
     private final Set<String> cached = Collections.synchronizedSet(new HashSet<>());
+    private int historyCacheSize = 256;
+    // Keyed by uuid and ip, as a login also loads the bans of the address it comes from
+    private final SingleFlight<List<String>, InterimData> logins = new SingleFlight<>();
+    private final SingleFlight<String, List<Punishment>> activeLoads = new SingleFlight<>();
+    private final LongAdder cacheHits = new LongAdder();
+    private final Map<String, Departure> departed = Collections.synchronizedMap(new LinkedHashMap<String, Departure>() {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Departure> eldest) {
+            if (size() > maxRetained) {
+                evict(eldest.getKey(), eldest.getValue());
+                return true;
+            }
+            return false;
+        }
+    });
+    private long retainMillis = 300_000;
+    private int maxRetained = 1000;
+    private final LongAdder reconnectHits = new LongAdder();
+    private final Set<Punishment> loadedPunishments = new LoadedPunishments();
     
     private Universal universal() {
     	return Universal.get();
@@ -38,6 +71,13 @@ public class PunishmentManager {
      * Initially clears out all expired punishments.
      */
     public void setup() {
+        MethodInterface mi = universal().getMethods();
+        historyCacheSize = Math.max(0, mi.getInteger(mi.getConfig(), "Cache.History-Size", 256));
+        retainMillis = Math.max(0, mi.getInteger(mi.getConfig(), "Cache.Retain-Seconds", 300)) * 1000L;
+        maxRetained = Math.max(0, mi.getInteger(mi.getConfig(), "Cache.Max-Retained", 1000));
+        if (retainMillis > 0) {
+            mi.scheduleAsyncRep(this::sweepDeparted, 20 * 20, 20 * 20);
+        }
         DatabaseManager.get().executeStatement(SQLQuery.DELETE_OLD_PUNISHMENTS, TimeManager.getTime());
         // Seems useless as the Interim Data which get's loaded just is ignored
 //        for (Object player : mi.getOnlinePlayers()) {
@@ -50,7 +90,11 @@ public class PunishmentManager {
      * Get a users punishments as {@link InterimData}. This method is meant to be called if the goal eventually is
      * to add the users punishments to the cache. If you are just interested in the specific punishments there are
      * more convenient methods as {@link #getBan(String)}, {@link #getMute(String)}, {@link #getWarns(String)}
-     * or {@link #getPunishments(String, PunishmentType, boolean)}.
+     * or {@link #getPunishments(String, PunishmentType, boolean)}.<br>
+     * The active punishments of both the uuid and the ip are fetched in a single round trip together with the
+     * amount of history entries per time-layout. The history entries themselves are only loaded on demand.<br>
+     * Concurrent calls for the same uuid and ip share a single database fetch and, with the change feed enabled,
+     * players who reconnect while their data is still retained (see {@link #discard(String)}) are served from the cache.
      *
      * @param name the users name
      * @param uuid the users uuid
@@ -58,17 +102,60 @@ public class PunishmentManager {
      * @return the interim data
      */
     public InterimData load(String name, String uuid, String ip) {
+        InterimData retained = reuseRetained(name, uuid, ip);
+        if (retained != null) {
+            reconnectHits.increment();
+            return retained;
+        }
+        return logins.load(Arrays.asList(uuid, ip), () -> fetch(name, uuid, ip));
+    }
+
+    private InterimData reuseRetained(String name, String uuid, String ip) {
+        Departure departure = departed.get(name);
+        if (departure == null || !isCached(uuid) || !ChangeFeedManager.get().isEnabled())
+            return null;
+
+        if (!departure.uuid.equals(uuid) || !Objects.equals(departure.ip, ip)) {
+            // Different account or address, the retained data does not fit anymore
+            departed.remove(name);
+            evict(name, departure);
+            return null;
+        }
+
+        Set<Punishment> retained = new HashSet<>(punishments.getOrDefault(uuid, Collections.emptySet()));
+        if (ip != null)
+            retained.addAll(punishments.getOrDefault(ip, Collections.emptySet()));
+
+        Map<String, Map<String, Integer>> counts = new HashMap<>();
+        counts.put(uuid, new HashMap<>(calculationCounts.getOrDefault(uuid, Collections.emptyMap())));
+        if (ip != null && !ip.equals(uuid))
+            counts.put(ip, new HashMap<>(calculationCounts.getOrDefault(ip, Collections.emptyMap())));
+
+        return new InterimData(uuid, name, ip, retained, counts);
+    }
+
+    private InterimData fetch(String name, String uuid, String ip) {
         Set<Punishment> punishments = new HashSet<>();
-        Set<Punishment> history = new HashSet<>();
-        try (ResultSet resultsPunishments = DatabaseManager.get().executeResultStatement(SQLQuery.SELECT_USER_PUNISHMENTS_WITH_IP, uuid, ip); ResultSet resultsHistory = DatabaseManager.get().executeResultStatement(SQLQuery.SELECT_USER_PUNISHMENTS_HISTORY_WITH_IP, uuid, ip)) {
-            if (resultsHistory == null || resultsPunishments == null)
+        Map<String, Map<String, Integer>> counts = new HashMap<>();
+        counts.put(uuid, new HashMap<>());
+        // Skip the ip branches if they would only return the uuid rows a second time
+        String ipTarget = ip == null || ip.equals(uuid) ? null : ip;
+        if (ipTarget != null)
+            counts.put(ipTarget, new HashMap<>());
+
+        try (ResultSet results = DatabaseManager.get().executeResultStatement(SQLQuery.SELECT_USER_LOGIN_DATA, uuid, ipTarget, uuid, ipTarget)) {
+            if (results == null)
                 return null;
 
-            while (resultsPunishments.next()) {
-                punishments.add(getPunishmentFromResultSet(resultsPunishments));
-            }
-            while (resultsHistory.next()) {
-                history.add(getPunishmentFromResultSet(resultsHistory));
+            while (results.next()) {
+                if ("P".equals(results.getString("origin"))) {
+                    punishments.add(getPunishmentFromResultSet(results));
+                } else {
+                    String calculation = results.getString("calculation");
+                    if (calculation != null) {
+                        counts.computeIfAbsent(results.getString("uuid"), key -> new HashMap<>()).merge(calculation.toLowerCase(), results.getInt("amount"), Integer::sum);
+                    }
+                }
             }
 
         } catch (SQLException ex) {
@@ -77,11 +164,16 @@ public class PunishmentManager {
             universal.debugSqlException(ex);
             return null;
         }
-        return new InterimData(uuid, name, ip, punishments, history);
+        return new InterimData(uuid, name, ip, punishments, counts);
     }
 
     /**
-     * Discard a players punishments from the cache.
+     * Discard a players punishments from the cache.<br>
+     * The data is retained for <code>Cache.Retain-Seconds</code> so a player who reconnects in the meantime does
+     * not have to be loaded again. At most <code>Cache.Max-Retained</code> players are retained, the ones who
+     * left first are evicted first.<br>
+     * Data is only retained while the {@link ChangeFeedManager change feed} is enabled. Without it, punishments
+     * created by another proxy in the meantime would not be seen when the player reconnects.
      *
      * @param name the name
      */
@@ -89,25 +181,53 @@ public class PunishmentManager {
         name = name.toLowerCase();
         String ip = Universal.get().getIps().get(name);
         String uuid = UUIDManager.get().getUUID(name);
-        cached.remove(name);
-        cached.remove(uuid);
-        cached.remove(ip);
+        Departure departure = new Departure(uuid, ip, System.currentTimeMillis());
 
-        Iterator<Punishment> iterator = punishments.iterator();
-        while (iterator.hasNext()) {
-            Punishment punishment = iterator.next();
-            if (punishment.getUuid().equals(uuid) || punishment.getUuid().equals(ip)) {
-                iterator.remove();
-            }
+        if (retainMillis <= 0 || maxRetained <= 0 || uuid == null || !ChangeFeedManager.get().isEnabled()) {
+            evict(name, departure);
+            return;
+        }
+
+        synchronized (departed) {
+            // Re-insert so the map stays ordered by departure time
+            departed.remove(name);
+            departed.put(name, departure);
         }
+    }
 
-        iterator = history.iterator();
-        while (iterator.hasNext()) {
-            Punishment punishment = iterator.next();
-            if (punishment.getUuid().equals(uuid) || punishment.getUuid().equals(ip)) {
+    /**
+     * Evict the data of all players whose retention window has passed.
+     */
+    private void sweepDeparted() {
+        long deadline = System.currentTimeMillis() - retainMillis;
+        Map<String, Departure> expired = new LinkedHashMap<>();
+        synchronized (departed) {
+            Iterator<Map.Entry<String, Departure>> iterator = departed.entrySet().iterator();
+            while (iterator.hasNext()) {
+                Map.Entry<String, Departure> entry = iterator.next();
+                if (entry.getValue().time > deadline)
+                    break;
+                expired.put(entry.getKey(), entry.getValue());
                 iterator.remove();
             }
         }
+        expired.forEach(this::evict);
+    }
+
+    private void evict(String name, Departure departure) {
+        String uuid = departure.uuid;
+        String ip = departure.ip;
+        cached.remove(name);
+        if (uuid != null) {
+            cached.remove(uuid);
+            punishments.remove(uuid);
+            calculationCounts.remove(uuid);
+        }
+        if (ip != null) {
+            cached.remove(ip);
+            punishments.remove(ip);
+            calculationCounts.remove(ip);
+        }
     }
 
     /**
@@ -122,33 +242,167 @@ public class PunishmentManager {
     public List<Punishment> getPunishments(String target, PunishmentType put, boolean current) {
         List<Punishment> ptList = new ArrayList<>();
 
-        if (isCached(target)) {
-            for (Iterator<Punishment> iterator = (current ? punishments : history).iterator(); iterator.hasNext(); ) {
-                Punishment pt = iterator.next();
-                if ((put == null || put == pt.getType().getBasic()) && pt.getUuid().equals(target)) {
-                    if (!current || !pt.isExpired()) {
+        if (!current) {
+            for (Punishment pt : getHistory(target)) {
+                if (put == null || put == pt.getType().getBasic()) {
+                    ptList.add(pt);
+                }
+            }
+        } else if (isCached(target)) {
+            cacheHits.increment();
+            for (Punishment pt : punishments.getOrDefault(target, Collections.emptySet())) {
+                if (put == null || put == pt.getType().getBasic()) {
+                    if (!pt.isExpired()) {
                         ptList.add(pt);
                     } else {
+                        // Uncache first so listeners of the revoke event do not see it again
+                        uncachePunishment(pt);
                         pt.delete(null, false, false);
-                        iterator.remove();
                     }
                 }
             }
         } else {
-            try (ResultSet rs = DatabaseManager.get().executeResultStatement(current ? SQLQuery.SELECT_USER_PUNISHMENTS : SQLQuery.SELECT_USER_PUNISHMENTS_HISTORY, target)) {
-                while (rs.next()) {
-                    Punishment punishment = getPunishmentFromResultSet(rs);
-                    if ((put == null || put == punishment.getType().getBasic()) && (!current || !punishment.isExpired())) {
-                        ptList.add(punishment);
+            for (Punishment punishment : loadActive(target)) {
+                if ((put == null || put == punishment.getType().getBasic()) && !punishment.isExpired()) {
+                    ptList.add(punishment);
+                }
+            }
+        }
+        return ptList;
+    }
+
+    /**
+     * Load the active punishments of a target which is not cached.<br>
+     * If a login load for the target is running its result is used, otherwise concurrent
+     * requests for the same target share a single database query.
+     *
+     * @param target the uuid or ip
+     * @return the active punishments, including expired ones which are not deleted yet
+     */
+    private List<Punishment> loadActive(String target) {
+        CompletableFuture<InterimData> login = logins.getInFlight(key -> key.contains(target));
+        if (login != null) {
+            try {
+                InterimData data = login.join();
+                if (data != null) {
+                    logins.countCoalesced();
+                    List<Punishment> ptList = new ArrayList<>();
+                    for (Punishment punishment : data.getPunishments()) {
+                        if (punishment.getUuid().equals(target)) {
+                            ptList.add(punishment);
+                        }
                     }
+                    return ptList;
+                }
+            } catch (CompletionException ignored) {
+                // The login load failed, fall back to an own query
+            }
+        }
+
+        return activeLoads.load(target, () -> {
+            List<Punishment> ptList = new ArrayList<>();
+            try (ResultSet rs = DatabaseManager.get().executeResultStatement(SQLQuery.SELECT_USER_PUNISHMENTS, target)) {
+                while (rs.next()) {
+                    ptList.add(getPunishmentFromResultSet(rs));
                 }
             } catch (SQLException ex) {
             	Universal universal = universal();
                 universal.getLogger().severe("An error has occurred getting the punishments for " + target);
                 universal.debugSqlException(ex);
             }
+            return ptList;
+        });
+    }
+
+    /**
+     * Get the complete punishment history of the given uuid or ip.<br>
+     * The history is loaded from the database on demand and kept in a bounded cache of recently requested targets.
+     *
+     * @param target the uuid or ip
+     * @return the history
+     */
+    private List<Punishment> getHistory(String target) {
+        List<Punishment> added;
+        synchronized (history) {
+            List<Punishment> cachedHistory = history.get(target);
+            if (cachedHistory != null) {
+                return new ArrayList<>(cachedHistory);
+            }
+            // Punishments created while the history is loaded may or may not be seen by the query, collect them
+            added = historyLoads.computeIfAbsent(target, key -> new ArrayList<>());
         }
-        return ptList;
+
+        List<Punishment> loaded = new ArrayList<>();
+        boolean complete = false;
+        try (ResultSet rs = DatabaseManager.get().executeResultStatement(SQLQuery.SELECT_USER_PUNISHMENTS_HISTORY, target)) {
+            if (rs != null) {
+                while (rs.next()) {
+                    loaded.add(getPunishmentFromResultSet(rs));
+                }
+                complete = true;
+            }
+        } catch (SQLException ex) {
+        	Universal universal = universal();
+            universal.getLogger().severe("An error has occurred getting the history for " + target);
+            universal.debugSqlException(ex);
+        }
+
+        synchronized (history) {
+            historyLoads.remove(target, added);
+            for (Punishment punishment : added) {
+                if (!containsPunishment(loaded, punishment)) {
+                    loaded.add(punishment);
+                }
+            }
+            if (!complete)
+                return loaded;
+
+            List<Punishment> cachedHistory = history.get(target);
+            if (cachedHistory != null) {
+                // Another load of the same target finished first
+                return new ArrayList<>(cachedHistory);
+            }
+            if (historyCacheSize > 0) {
+                history.put(target, Collections.synchronizedList(new ArrayList<>(loaded)));
+            }
+        }
+        return loaded;
+    }
+
+    /**
+     * Add a newly created punishment to the loaded history and calculation counts of its target.
+     * Targets whose history is not loaded are left untouched.
+     *
+     * @param punishment the punishment
+     */
+    public void addToHistory(Punishment punishment) {
+        synchronized (history) {
+            List<Punishment> cachedHistory = history.get(punishment.getUuid());
+            if (cachedHistory == null) {
+                cachedHistory = historyLoads.get(punishment.getUuid());
+            }
+            if (cachedHistory != null && !containsPunishment(cachedHistory, punishment)) {
+                cachedHistory.add(punishment);
+            }
+        }
+
+        Map<String, Integer> counts = calculationCounts.get(punishment.getUuid());
+        if (counts != null && punishment.getCalculation() != null) {
+            counts.merge(punishment.getCalculation().toLowerCase(), 1, Integer::sum);
+        }
+    }
+
+    // History entries have ids of their own, so punishments are told apart by target, start and type
+    private static boolean containsPunishment(List<Punishment> punishments, Punishment punishment) {
+        synchronized (punishments) {
+            for (Punishment entry : punishments) {
+                if (entry.getStart() == punishment.getStart() && entry.getType() == punishment.getType()
+                        && entry.getUuid().equals(punishment.getUuid())) {
+                    return true;
+                }
+            }
+        }
+        return false;
     }
 
     /**
@@ -185,7 +439,8 @@ public class PunishmentManager {
      * @return the punishment
      */
     public Punishment getPunishment(int id) {
-        final Optional<Punishment> cachedPunishment = getLoadedPunishments(false).stream()
+        final Optional<Punishment> cachedPunishment = punishments.values().stream()
+                .flatMap(Set::stream)
                 .filter(punishment -> punishment.getId() == id).findAny();
 
         if (cachedPunishment.isPresent())
@@ -382,6 +637,17 @@ public class PunishmentManager {
         return cached.contains(target);
     }
 
+    /**
+     * Cache the amount of history entries per target and time-layout.
+     *
+     * @param counts the counts per target and lower-cased time-layout name
+     */
+    public void setCalculationCounts(Map<String, Map<String, Integer>> counts) {
+        for (Map.Entry<String, Map<String, Integer>> entry : counts.entrySet()) {
+            calculationCounts.put(entry.getKey(), new ConcurrentHashMap<>(entry.getValue()));
+        }
+    }
+
     /**
      * Mark the InterimData as cached.
      * This method des not acually cache the data, see {@link InterimData#accept()} to do that.
@@ -389,6 +655,7 @@ public class PunishmentManager {
      * @param data the data
      */
     public void setCached(InterimData data) {
+        departed.remove(data.getName());
         cached.add(data.getName());
         cached.add(data.getIp());
         cached.add(data.getUuid());
@@ -403,8 +670,9 @@ public class PunishmentManager {
      * @return the calculation level
      */
     public int getCalculationLevel(String uuid, String layout) {
-        if (isCached(uuid)) {
-            return (int) history.stream().filter(pt -> pt.getUuid().equals(uuid) && layout.equalsIgnoreCase(pt.getCalculation())).count();
+        Map<String, Integer> counts = calculationCounts.get(uuid);
+        if (counts != null) {
+            return counts.getOrDefault(layout.toLowerCase(), 0);
         }
 
         int i = 0;
@@ -442,24 +710,106 @@ public class PunishmentManager {
     }
 
     /**
-     * Get all cached punishments.
+     * Get all cached punishments.<br>
+     * The returned set is a live view of the cache, adding or removing punishments through it is the same as
+     * calling {@link #cachePunishment(Punishment)} or {@link #uncachePunishment(Punishment)}.
      *
      * @param checkExpired whether to look for and remove expired punishments
      * @return the cached punishments
      */
     public Set<Punishment> getLoadedPunishments(boolean checkExpired) {
         if (checkExpired) {
-            List<Punishment> toDelete = new ArrayList<>();
-            for (Punishment pu : punishments) {
+            for (Punishment pu : new ArrayList<>(loadedPunishments)) {
                 if (pu.isExpired()) {
-                    toDelete.add(pu);
+                    pu.delete();
                 }
             }
-            for (Punishment pu : toDelete) {
-                pu.delete();
-            }
         }
-        return punishments;
+        return loadedPunishments;
+    }
+
+    /**
+     * Add a punishment to the cache of its target.
+     *
+     * @param punishment the punishment
+     */
+    public void cachePunishment(Punishment punishment) {
+        punishments.compute(punishment.getUuid(), (target, bucket) -> {
+            if (bucket == null)
+                bucket = ConcurrentHashMap.newKeySet();
+            bucket.add(punishment);
+            return bucket;
+        });
+    }
+
+    /**
+     * Remove the punishment with the given id from the cache of its target.
+     *
+     * @param target the uuid or ip the punishment belongs to
+     * @param id     the id of the punishment
+     */
+    public void uncachePunishment(String target, int id) {
+        punishments.computeIfPresent(target, (key, bucket) -> {
+            bucket.removeIf(punishment -> punishment.getId() == id);
+            return bucket.isEmpty() ? null : bucket;
+        });
+    }
+
+    /**
+     * Remove a punishment from the cache of its target.
+     *
+     * @param punishment the punishment
+     */
+    public void uncachePunishment(Punishment punishment) {
+        punishments.computeIfPresent(punishment.getUuid(), (target, bucket) -> {
+            bucket.remove(punishment);
+            return bucket.isEmpty() ? null : bucket;
+        });
+    }
+
+    /**
+     * Get how many active punishment lookups have been answered from the cache.
+     *
+     * @return the cache hits
+     */
+    public long getCacheHits() {
+        return cacheHits.sum();
+    }
+
+    /**
+     * Get how many logins have been served from the data retained after a player left.
+     *
+     * @return the reconnect hits
+     */
+    public long getReconnectHits() {
+        return reconnectHits.sum();
+    }
+
+    /**
+     * Get how many players left recently and still have their data retained.
+     *
+     * @return the retained players
+     */
+    public int getRetainedCount() {
+        return departed.size();
+    }
+
+    /**
+     * Get how many player and target loads actually queried the database.
+     *
+     * @return the cache misses
+     */
+    public long getCacheMisses() {
+        return logins.getExecuted() + activeLoads.getExecuted();
+    }
+
+    /**
+     * Get how many loads have been served by a database query which was already running for the same target.
+     *
+     * @return the coalesced loads
+     */
+    public long getCoalescedLoads() {
+        return logins.getCoalesced() + activeLoads.getCoalesced();
     }
 
     /**
@@ -497,16 +847,6 @@ public class PunishmentManager {
                 rs.getInt("id"));
     }
 
-    /**
-     * Get all cached history punishments.
-     *
-     * @return the loaded history
-     */
-    public Set<Punishment> getLoadedHistory() {
-        return history;
-    }
-
-
 //    public long getCalculation(String layout, String name, String uuid) {
 //        long end = TimeManager.getTime();
 //        MethodInterface mi = Universal.get().getMethods();
@@ -520,4 +860,84 @@ public class PunishmentManager {
 //
 //        return end;
 //    }
-}
\ No newline at end of file
+
+    private static class Departure {
+        private final String uuid, ip;
+        private final long time;
+
+        private Departure(String uuid, String ip, long time) {
+            this.uuid = uuid;
+            this.ip = ip;
+            this.time = time;
+        }
+    }
+
+    // All buckets seen as one set, so callers of getLoadedPunishments do not have to know about them
+    private final class LoadedPunishments extends AbstractSet<Punishment> {
+
+        @Override
+        public Iterator<Punishment> iterator() {
+            Iterator<Set<Punishment>> buckets = punishments.values().iterator();
+            return new Iterator<Punishment>() {
+                private Iterator<Punishment> current = Collections.emptyIterator();
+                private Punishment last;
+
+                @Override
+                public boolean hasNext() {
+                    while (!current.hasNext() && buckets.hasNext()) {
+                        current = buckets.next().iterator();
+                    }
+                    return current.hasNext();
+                }
+
+                @Override
+                public Punishment next() {
+                    if (!hasNext()) {
+                        throw new NoSuchElementException();
+                    }
+                    return last = current.next();
+                }
+
+                @Override
+                public void remove() {
+                    if (last == null) {
+                        throw new IllegalStateException();
+                    }
+                    uncachePunishment(last);
+                    last = null;
+                }
+            };
+        }
+
+        @Override
+        public int size() {
+            int size = 0;
+            for (Set<Punishment> bucket : punishments.values()) {
+                size += bucket.size();
+            }
+            return size;
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            return o instanceof Punishment
+                    && punishments.getOrDefault(((Punishment) o).getUuid(), Collections.emptySet()).contains(o);
+        }
+
+        @Override
+        public boolean add(Punishment punishment) {
+            boolean added = !contains(punishment);
+            cachePunishment(punishment);
+            return added;
+        }
+
+        @Override
+        public boolean remove(Object o) {
+            if (!contains(o)) {
+                return false;
+            }
+            uncachePunishment((Punishment) o);
+            return true;
+        }
+    }
+}
@@ -1,6 +1,7 @@
 package net.hnt8.advancedban.manager;
 
 import net.hnt8.advancedban.Universal;
+import net.hnt8.advancedban.utils.ConfigSnapshot;
 
 import java.util.Date;
 
@@ -14,7 +15,11 @@ public class TimeManager {
      * @return the timestamp
      */
     public static long getTime() {
-        return new Date().getTime() + Universal.get().getMethods().getInteger(Universal.get().getMethods().getConfig(), "TimeDiff", 0) * 60 * 60 * 1000;
+        ConfigSnapshot snapshot = ConfigManager.getSnapshot();
+        if (snapshot == null) {
+            return new Date().getTime() + Universal.get().getMethods().getInteger(Universal.get().getMethods().getConfig(), "TimeDiff", 0) * 60 * 60 * 1000;
+        }
+        return System.currentTimeMillis() + snapshot.getTimeDiff();
     }
 
     /**
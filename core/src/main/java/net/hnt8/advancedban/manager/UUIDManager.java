@@ -2,13 +2,21 @@ package net.hnt8.advancedban.manager;
 
 import net.hnt8.advancedban.MethodInterface;
 import net.hnt8.advancedban.Universal;
+import net.hnt8.advancedban.utils.MojangResolver;
+import net.hnt8.advancedban.utils.NameUuidCache;
+import net.hnt8.advancedban.utils.SQLQuery;
 
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.net.HttpURLConnection;
 import java.net.URL;
+import java.net.URLConnection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
 import java.util.*;
-import java.util.Map.Entry;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
 
 /**
  * The UUID Manager used to resolve and cache the UUIDs.
@@ -16,7 +24,10 @@ import java.util.Map.Entry;
 public class UUIDManager {
     private static UUIDManager instance = null;
     private FetcherMode mode;
-    private final Map<String, String> activeUUIDs = new HashMap<>();
+    private final NameUuidCache activeUUIDs = new NameUuidCache(10_000);
+    private MojangResolver resolver;
+    private int timeoutMillis = 5000;
+    private long storedNameMillis = 37 * 86_400_000L;
     
     private MethodInterface mi() {
     	return Universal.get().getMethods();
@@ -37,6 +48,7 @@ public class UUIDManager {
      */
     public void setup() {
     	MethodInterface mi = mi();
+        activeUUIDs.setMaxSize(Math.max(0, mi.getInteger(mi.getConfig(), "Cache.UUID-Size", 10_000)));
         if (mi.getBoolean(mi.getConfig(), "UUID-Fetcher.Dynamic", true)) {
             if (!mi.isOnlineMode()) {
                 mode = FetcherMode.DISABLED;
@@ -56,6 +68,29 @@ public class UUIDManager {
                 mode = FetcherMode.RESTFUL;
             }
         }
+
+        timeoutMillis = Math.max(1, mi.getInteger(mi.getConfig(), "UUID-Fetcher.Timeout-Millis", 5000));
+        storedNameMillis = Math.max(0, mi.getInteger(mi.getConfig(), "UUID-Fetcher.Stored-Name-Days", 37)) * 86_400_000L;
+        shutdown();
+        if ((mode == FetcherMode.RESTFUL || mode == FetcherMode.MIXED) && mi.getBoolean(mi.getConfig(), "UUID-Fetcher.Bulk-API.Enabled", true)) {
+            resolver = new MojangResolver(
+                    mi.getString(mi.getConfig(), "UUID-Fetcher.Bulk-API.URL", "https://api.minecraftservices.com/minecraft/profile/lookup/bulk/byname"),
+                    mi.getInteger(mi.getConfig(), "UUID-Fetcher.Bulk-API.Requests-Per-Minute", 60),
+                    timeoutMillis,
+                    Math.max(0, mi.getInteger(mi.getConfig(), "UUID-Fetcher.Bulk-API.Retries", 3)),
+                    Math.max(0, mi.getInteger(mi.getConfig(), "UUID-Fetcher.Bulk-API.Unknown-Name-Seconds", 600)) * 1000L,
+                    Universal.get().getLogger());
+        }
+    }
+
+    /**
+     * Stop the bulk resolver, if there is one.
+     */
+    public void shutdown() {
+        if (resolver != null) {
+            resolver.shutdown();
+            resolver = null;
+        }
     }
 
     /**
@@ -77,6 +112,32 @@ public class UUIDManager {
                 return internUUID;
         }
 
+        String storedUUID = getStoredUUID(name);
+        if (storedUUID != null)
+            return storedUUID;
+
+        MojangResolver resolver = this.resolver;
+        if (resolver != null) {
+            try {
+                String resolved = resolver.resolve(name).get(resolver.getMaxWaitMillis(), TimeUnit.MILLISECONDS);
+                if (resolved != null) {
+                    activeUUIDs.put(name, resolved);
+                } else {
+                    Universal.get().getLogger().info("There is no player called " + name);
+                }
+                return resolved;
+            } catch (ExecutionException e) {
+                // The bulk endpoint could not be reached, try the single name APIs instead
+                Universal.get().getLogger().warning("Failed fetching the UUID of " + name + " through the Bulk-API: " + e.getCause().getMessage());
+            } catch (TimeoutException e) {
+                Universal.get().getLogger().warning("Timed out fetching the UUID of " + name + ", the Bulk-API is busy");
+                return null;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return null;
+            }
+        }
+
         String uuid = null;
         try {
             uuid = askAPI(mi.getString(mi.getConfig(), "UUID-Fetcher.REST-API.URL"), name, mi.getString(mi.getConfig(), "UUID-Fetcher.REST-API.Key"));
@@ -112,10 +173,25 @@ public class UUIDManager {
      */
     public void supplyInternUUID(String name, UUID uuid) {
         if (mode == FetcherMode.INTERN || mode == FetcherMode.MIXED) {
-            activeUUIDs.put(name.toLowerCase(), uuid.toString().replace("-", ""));
+            activeUUIDs.put(name, uuid.toString().replace("-", ""));
         }
     }
 
+    /**
+     * Store the name, uuid and address of a player who logged in, so the uuid of the player
+     * can be resolved without any API request once they are offline, even after a restart.
+     *
+     * @param name the name
+     * @param uuid the uuid
+     * @param ip   the ip, may be <code>null</code>
+     */
+    public void recordLogin(String name, String uuid, String ip) {
+        if (mode == FetcherMode.DISABLED)
+            return;
+
+        DatabaseManager.get().executeStatement(SQLQuery.UPSERT_PLAYER_CACHE, uuid, name.toLowerCase(), ip, TimeManager.getTime());
+    }
+
     /**
      * Convert String to UUID even if dashes are missing
      *
@@ -150,7 +226,7 @@ public class UUIDManager {
      * @return the nonhyphenated uuid or null if not found
      */
     public String getInMemoryUUID(String name) {
-        return activeUUIDs.get(name.toLowerCase());
+        return activeUUIDs.getUuid(name);
     }
 
     /**
@@ -161,12 +237,16 @@ public class UUIDManager {
      * @return the player name or null if not found
      */
     public String getInMemoryName(String uuid) {
-        for (Entry<String, String> rs : activeUUIDs.entrySet()) {
-            if (rs.getValue().equalsIgnoreCase(uuid)) {
-                return rs.getKey();
-            }
-        }
-        return null;
+        return activeUUIDs.getName(uuid);
+    }
+
+    /**
+     * Get the cache of the uuid/name mappings AdvancedBan has in memory.
+     *
+     * @return the cache
+     */
+    public NameUuidCache getCache() {
+        return activeUUIDs;
     }
 
     /**
@@ -192,12 +272,21 @@ public class UUIDManager {
             if (inMemoryName != null) {
                 return inMemoryName;
             }
+            String storedName = getStoredName(uuid);
+            if (storedName != null) {
+                return storedName;
+            }
         }
 
-        try (Scanner scanner = new Scanner(new URL("https://api.mojang.com/user/profiles/" + uuid + "/names").openStream(), "UTF-8")) {
-            String s = scanner.useDelimiter("\\A").next();
-            s = s.substring(s.lastIndexOf('{'), s.lastIndexOf('}') + 1);
-            return mi.parseJSON(s, "name");
+        try {
+            URLConnection connection = new URL("https://api.mojang.com/user/profiles/" + uuid + "/names").openConnection();
+            connection.setConnectTimeout(timeoutMillis);
+            connection.setReadTimeout(timeoutMillis);
+            try (Scanner scanner = new Scanner(connection.getInputStream(), "UTF-8")) {
+                String s = scanner.useDelimiter("\\A").next();
+                s = s.substring(s.lastIndexOf('{'), s.lastIndexOf('}') + 1);
+                return mi.parseJSON(s, "name");
+            }
         } catch (Exception exc) {
             return null;
         }
@@ -205,10 +294,41 @@ public class UUIDManager {
 
 
 
+    // Only players seen recently still own their name, older names may have been taken over by someone who never joined
+    private String getStoredUUID(String name) {
+        try (ResultSet rs = DatabaseManager.get().executeResultStatement(SQLQuery.SELECT_PLAYER_CACHE_BY_NAME, name, TimeManager.getTime() - storedNameMillis)) {
+            if (rs != null && rs.next()) {
+                String uuid = rs.getString("uuid");
+                activeUUIDs.put(name, uuid);
+                return uuid;
+            }
+        } catch (SQLException ex) {
+            Universal.get().getLogger().warning("An error has occurred looking up the uuid of " + name + " in the player cache.");
+            Universal.get().debugSqlException(ex);
+        }
+        return null;
+    }
+
+    private String getStoredName(String uuid) {
+        try (ResultSet rs = DatabaseManager.get().executeResultStatement(SQLQuery.SELECT_PLAYER_CACHE_BY_UUID, uuid)) {
+            if (rs != null && rs.next()) {
+                String name = rs.getString("name");
+                activeUUIDs.put(name, uuid);
+                return name;
+            }
+        } catch (SQLException ex) {
+            Universal.get().getLogger().warning("An error has occurred looking up the name of " + uuid + " in the player cache.");
+            Universal.get().debugSqlException(ex);
+        }
+        return null;
+    }
+
     private String askAPI(String url, String name, String key) throws IOException {
     	MethodInterface mi = mi();
         name = name.toLowerCase();
         HttpURLConnection request = (HttpURLConnection) new URL(url.replaceAll("%NAME%", name).replaceAll("%TIMESTAMP%", new Date().getTime() + "")).openConnection();
+        request.setConnectTimeout(timeoutMillis);
+        request.setReadTimeout(timeoutMillis);
         request.connect();
 
         String uuid = mi.parseJSON(new InputStreamReader(request.getInputStream()), key);
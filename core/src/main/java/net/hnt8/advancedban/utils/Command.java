@@ -2,8 +2,11 @@ package net.hnt8.advancedban.utils;
 
 import net.hnt8.advancedban.MethodInterface;
 import net.hnt8.advancedban.Universal;
+import net.hnt8.advancedban.manager.ConfigManager;
 import net.hnt8.advancedban.manager.DatabaseManager;
+import net.hnt8.advancedban.manager.IpBanIndex;
 import net.hnt8.advancedban.manager.MessageManager;
+import net.hnt8.advancedban.manager.NotificationManager;
 import net.hnt8.advancedban.manager.PunishmentManager;
 import net.hnt8.advancedban.manager.UUIDManager;
 import net.hnt8.advancedban.utils.commands.ListProcessor;
@@ -18,11 +21,15 @@ import net.hnt8.advancedban.utils.tabcompletion.TabCompleter;
 import net.hnt8.advancedban.utils.tabcompletion.*;
 import org.apache.commons.lang3.ArrayUtils;
 
+import java.util.Arrays;
 import java.util.Calendar;
 import java.util.GregorianCalendar;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.function.Consumer;
 import java.util.function.Predicate;
+import java.util.regex.Pattern;
 
 import static net.hnt8.advancedban.utils.CommandUtils.*;
 
@@ -105,8 +112,7 @@ public enum Command {
             new PunishmentTabCompleter(false),
             input -> {
                 if (!Universal.get().getMethods().isOnline(input.getPrimaryData())) {
-                    MessageManager.sendMessage(input.getSender(), "Kick.NotOnline", true,
-                            "NAME", input.getPrimary());
+                    input.reject("Kick.NotOnline", "NAME", input.getPrimary());
                     return;
                 }
 
@@ -151,8 +157,7 @@ public enum Command {
 
                     List<Punishment> punishments = PunishmentManager.get().getWarns(uuid);
                     if (punishments.isEmpty()) {
-                        MessageManager.sendMessage(input.getSender(), "Un" + confSection + ".Clear.Empty",
-                                true, "NAME", name);
+                        input.reject("Un" + confSection + ".Clear.Empty", "NAME", name);
                         return;
                     }
 
@@ -160,8 +165,8 @@ public enum Command {
                     for (Punishment punishment : punishments) {
                         punishment.delete(operator, true, true);
                     }
-                    MessageManager.sendMessage(input.getSender(), "Un" + confSection + ".Clear.Done",
-                            true, "COUNT", String.valueOf(punishments.size()));
+                    input.complete(null, "Un" + confSection + ".Clear.Done",
+                            "COUNT", String.valueOf(punishments.size()));
                 } else {
                     new RevokeByIdProcessor("Un" + confSection, PunishmentManager.get()::getWarn).accept(input);
                 }
@@ -190,8 +195,7 @@ public enum Command {
 
                     List<Punishment> punishments = PunishmentManager.get().getNotes(uuid);
                     if (punishments.isEmpty()) {
-                        MessageManager.sendMessage(input.getSender(), "Un" + confSection + ".Clear.Empty",
-                                true, "NAME", name);
+                        input.reject("Un" + confSection + ".Clear.Empty", "NAME", name);
                         return;
                     }
 
@@ -199,8 +203,8 @@ public enum Command {
                     for (Punishment punishment : punishments) {
                         punishment.delete(operator, true, true);
                     }
-                    MessageManager.sendMessage(input.getSender(), "Un" + confSection + ".Clear.Done",
-                            true, "COUNT", String.valueOf(punishments.size()));
+                    input.complete(null, "Un" + confSection + ".Clear.Done",
+                            "COUNT", String.valueOf(punishments.size()));
                 } else {
                     new RevokeByIdProcessor("Un" + confSection, PunishmentManager.get()::getNote).accept(input);
                 }
@@ -234,7 +238,7 @@ public enum Command {
             input -> {
                 Punishment punishment;
 
-                if (input.getPrimaryData().matches("[0-9]*")) {
+                if (isNumber(input.getPrimaryData())) {
                     int id = Integer.parseInt(input.getPrimaryData());
                     input.next();
 
@@ -244,7 +248,7 @@ public enum Command {
                     input.next();
 
                     String target = input.getPrimary();
-                    if (!target.matches("^(?:[0-9]{1,3}\\.){3}[0-9]{1,3}$")) {
+                    if (!isIpAddress(target)) {
                         target = processName(input);
                         if (target == null)
                             return;
@@ -261,10 +265,9 @@ public enum Command {
 
                 if (punishment != null) {
                     punishment.updateReason(reason);
-                    MessageManager.sendMessage(input.getSender(), "ChangeReason.Done",
-                            true, "ID", String.valueOf(punishment.getId()));
+                    input.complete(punishment, "ChangeReason.Done", "ID", String.valueOf(punishment.getId()));
                 } else {
-                    MessageManager.sendMessage(input.getSender(), "ChangeReason.NotFound", true);
+                    input.reject("ChangeReason.NotFound");
                 }
             },
             "ChangeReason.Usage",
@@ -303,15 +306,15 @@ public enum Command {
                         return MutableTabCompleter.list(CleanTabCompleter.PLAYER_PLACEHOLDER, "<Name>", "<Page>");
                     else
                         return MutableTabCompleter.list("<Page>");
-                else if(args.length == 2 && !args[0].matches("\\d+"))
+                else if(args.length == 2 && !isNumber(args[0]))
                     return MutableTabCompleter.list("<Page>");
                 else
                     return MutableTabCompleter.list();
             }),
             input -> {
-                if (input.hasNext() && !input.getPrimary().matches("[1-9][0-9]*")) {
+                if (input.hasNext() && !isPositiveNumber(input.getPrimary())) {
                     if (!Universal.get().hasPerms(input.getSender(), "ab.warns.other")) {
-                        MessageManager.sendMessage(input.getSender(), "General.NoPerms", true);
+                        input.reject("General.NoPerms");
                         return;
                     }
 
@@ -320,12 +323,12 @@ public enum Command {
                             "Warns", false, true).accept(input);
                 } else {
                     if (!Universal.get().hasPerms(input.getSender(), "ab.warns.own")) {
-                        MessageManager.sendMessage(input.getSender(), "General.NoPerms", true);
+                        input.reject("General.NoPerms");
                         return;
                     }
 
                     String name = Universal.get().getMethods().getName(input.getSender());
-                    String identifier = processName(new Command.CommandInput(input.getSender(), new String[]{name}));
+                    String identifier = processName(new Command.CommandInput(new CommandContext(input.getSender(), null), new String[]{name}));
                     new ListProcessor(
                             target -> PunishmentManager.get().getPunishments(identifier, PunishmentType.WARNING, true),
                             "WarnsOwn", false, false).accept(input);
@@ -341,15 +344,15 @@ public enum Command {
                         return MutableTabCompleter.list(CleanTabCompleter.PLAYER_PLACEHOLDER, "<Name>", "<Page>");
                     else
                         return MutableTabCompleter.list("<Page>");
-                else if(args.length == 2 && !args[0].matches("\\d+"))
+                else if(args.length == 2 && !isNumber(args[0]))
                     return MutableTabCompleter.list("<Page>");
                 else
                     return MutableTabCompleter.list();
             }),
             input -> {
-                if (input.hasNext() && !input.getPrimary().matches("[1-9][0-9]*")) {
+                if (input.hasNext() && !isPositiveNumber(input.getPrimary())) {
                     if (!Universal.get().hasPerms(input.getSender(), "ab.notes.other")) {
-                        MessageManager.sendMessage(input.getSender(), "General.NoPerms", true);
+                        input.reject("General.NoPerms");
                         return;
                     }
 
@@ -358,12 +361,12 @@ public enum Command {
                             "Notes", false, true).accept(input);
                 } else {
                     if (!Universal.get().hasPerms(input.getSender(), "ab.notes.own")) {
-                        MessageManager.sendMessage(input.getSender(), "General.NoPerms", true);
+                        input.reject("General.NoPerms");
                         return;
                     }
 
                     String name = Universal.get().getMethods().getName(input.getSender());
-                    String identifier = processName(new Command.CommandInput(input.getSender(), new String[]{name}));
+                    String identifier = processName(new Command.CommandInput(new CommandContext(input.getSender(), null), new String[]{name}));
                     new ListProcessor(
                             target -> PunishmentManager.get().getPunishments(identifier, PunishmentType.NOTE, true),
                             "NotesOwn", false, false).accept(input);
@@ -377,7 +380,7 @@ public enum Command {
             new BasicTabCompleter(CleanTabCompleter.PLAYER_PLACEHOLDER, "[Name]"),
             input -> {
                 String name = input.getPrimary();
-                boolean isIpAddress = name.matches("^(?:[0-9]{1,3}\\.){3}[0-9]{1,3}$");
+                boolean isIpAddress = isIpAddress(name);
                 
                 String uuid;
                 String ip;
@@ -460,6 +463,19 @@ public enum Command {
                 mi.sendMessage(sender, "<red><bold>Avesban v4</bold> SystemPrefs</red>");
                 mi.sendMessage(sender, "<red>Server-Time</red> <dark_gray>»</dark_gray> <gray>" + calendar.get(Calendar.HOUR_OF_DAY) + ":" + calendar.get(Calendar.MINUTE) + "</gray>");
                 mi.sendMessage(sender, "<red>Your UUID (Intern)</red> <dark_gray>»</dark_gray> <gray>" + mi.getInternUUID(sender) + "</gray>");
+                PunishmentManager punishmentManager = PunishmentManager.get();
+                mi.sendMessage(sender, "<red>Punishment-Cache</red> <dark_gray>»</dark_gray> <gray>" + punishmentManager.getCacheHits() + " hits, "
+                        + punishmentManager.getCacheMisses() + " misses, " + punishmentManager.getCoalescedLoads() + " coalesced</gray>");
+                mi.sendMessage(sender, "<red>Retained players</red> <dark_gray>»</dark_gray> <gray>" + punishmentManager.getRetainedCount()
+                        + " (" + punishmentManager.getReconnectHits() + " reconnects served from cache)</gray>");
+                NameUuidCache uuidCache = UUIDManager.get().getCache();
+                mi.sendMessage(sender, "<red>UUID-Cache</red> <dark_gray>»</dark_gray> <gray>" + uuidCache.size() + " players, " + uuidCache.getHits() + " hits, "
+                        + uuidCache.getMisses() + " misses, " + uuidCache.getEvictions() + " evicted</gray>");
+                mi.sendMessage(sender, "<red>IP-Bans</red> <dark_gray>»</dark_gray> <gray>" + IpBanIndex.get().size()
+                        + " addresses, " + IpBanIndex.get().getRejections() + " connections rejected before login</gray>");
+                NotificationManager notificationManager = NotificationManager.get();
+                mi.sendMessage(sender, "<red>Notifications</red> <dark_gray>»</dark_gray> <gray>" + notificationManager.getSubscriberCount() + " staff online, "
+                        + notificationManager.getDelivered() + " sent, " + notificationManager.getCoalesced() + " summed up</gray>");
                 if (input.hasNext()) {
                     String target = input.getPrimaryData();
                     mi.sendMessage(sender, "<red>" + target + "'s UUID (Intern)</red> <dark_gray>»</dark_gray> <gray> <gray>" + mi.getInternUUID(target) + "</gray>");
@@ -478,10 +494,10 @@ public enum Command {
                 if (input.hasNext()) {
                     if (input.getPrimaryData().equals("reload")) {
                         if (Universal.get().hasPerms(sender, "ab.reload")) {
-                            mi.loadFiles();
+                            ConfigManager.get().reload();
                             mi.sendMessage(sender, "<green><bold>Avesban</bold></green> <dark_gray>»</dark_gray> <gray>Reloaded!</gray>");
                         } else {
-                            MessageManager.sendMessage(sender, "General.NoPerms", true);
+                            input.reject("General.NoPerms");
                         }
                         return;
                     } else if (input.getPrimaryData().equals("help")) {
@@ -533,7 +549,7 @@ public enum Command {
                             mi.sendMessage(sender, "<dark_gray>»</dark_gray> <gray>Reloads the plugin or shows help page</gray>");
                             mi.sendMessage(sender, "");
                         } else {
-                            MessageManager.sendMessage(sender, "General.NoPerms", true);
+                            input.reject("General.NoPerms");
                         }
                         return;
                     }
@@ -558,6 +574,16 @@ public enum Command {
             null,
             "avesban");
 
+    private static final Map<String, Command> BY_NAME = new HashMap<>();
+
+    static {
+        for (Command command : values()) {
+            for (String name : command.names) {
+                BY_NAME.putIfAbsent(name, command);
+            }
+        }
+    }
+
     private final String permission;
     private final Predicate<String[]> syntaxValidator;
     private final TabCompleter tabCompleter;
@@ -577,15 +603,43 @@ public enum Command {
 
     Command(String permission, String regex, TabCompleter tabCompleter, Consumer<CommandInput> commandHandler,
             String usagePath, String... names) {
-        this(permission, (args) -> String.join(" ", args).matches(regex), tabCompleter, commandHandler, usagePath, names);
+        this(permission, matching(Pattern.compile(regex)), tabCompleter, commandHandler, usagePath, names);
+    }
+
+    private static Predicate<String[]> matching(Pattern pattern) {
+        return args -> pattern.matcher(String.join(" ", args)).matches();
     }
 
     public boolean validateArguments(String[] args) {
         return syntaxValidator.test(args);
     }
 
-    public void execute(Object player, String[] args) {
-        commandHandler.accept(new CommandInput(player, args));
+    /**
+     * Execute the command without checking permission or syntax.
+     *
+     * @param player the sender
+     * @param args   the arguments
+     * @return the result the handler has reported, a successful one if it did not report any.
+     * Every handler reports its errors through {@link CommandInput#reject(String, String...)},
+     * only commands which merely show information report nothing.
+     */
+    public CommandResult execute(Object player, String[] args) {
+        return execute(new CommandContext(player, null), args);
+    }
+
+    /**
+     * Execute the command without checking permission or syntax.
+     *
+     * @param context the sender and the server the command has been issued on
+     * @param args    the arguments
+     * @return the result the handler has reported, a successful one if it did not report any.
+     * Every handler reports its errors through {@link CommandInput#reject(String, String...)},
+     * only commands which merely show information report nothing.
+     */
+    public CommandResult execute(CommandContext context, String[] args) {
+        CommandInput input = new CommandInput(context, args);
+        commandHandler.accept(input);
+        return input.getResult();
     }
 
 
@@ -595,14 +649,7 @@ public enum Command {
     }
 
     public static Command getByName(String name) {
-        String lowerCase = name.toLowerCase();
-        for (Command command : values()) {
-            for (String s : command.names) {
-                if (s.equals(lowerCase))
-                    return command;
-            }
-        }
-        return null;
+        return BY_NAME.get(name.toLowerCase());
     }
 
     public String getPermission() {
@@ -627,15 +674,20 @@ public enum Command {
 
     public static class CommandInput {
         private final Object sender;
+        private final String originServer;
+        // The arguments before the cursor have been consumed, the array itself is only copied if one is removed
         private String[] args;
+        private int cursor;
+        private CommandResult result;
 
-        CommandInput(Object sender, String[] args) {
-            this.sender = sender;
+        CommandInput(CommandContext context, String[] args) {
+            this.sender = context.getSender();
+            this.originServer = context.getOriginServer();
             this.args = args;
         }
 
         public String getPrimary() {
-            return args.length == 0 ? null : args[0];
+            return cursor == args.length ? null : args[cursor];
         }
 
         String getPrimaryData() {
@@ -643,23 +695,62 @@ public enum Command {
         }
 
         public void removeArgument(int index) {
-            args = ArrayUtils.remove(args, index);
+            args = ArrayUtils.remove(getArgs(), index);
+            cursor = 0;
         }
 
         public void next() {
-            args = ArrayUtils.remove(args, 0);
+            if (cursor < args.length) {
+                cursor++;
+            }
         }
 
         public boolean hasNext() {
-            return args.length > 0;
+            return cursor < args.length;
         }
 
         public Object getSender() {
             return this.sender;
         }
 
+        /**
+         * Get the name of the server the command has been issued on.
+         *
+         * @return the origin server, or the server of the sender if the command has not been forwarded
+         */
+        public String getServerName() {
+            return originServer != null ? originServer : Universal.get().getMethods().getServerName(sender);
+        }
+
         public String[] getArgs() {
-            return this.args;
+            return cursor == 0 ? args : Arrays.copyOfRange(args, cursor, args.length);
+        }
+
+        /**
+         * Send the given error message to the sender and report the command as failed.
+         *
+         * @param path       the path of the message
+         * @param parameters the parameters, see {@link MessageManager#sendMessage(Object, String, boolean, String...)}
+         */
+        public void reject(String path, String... parameters) {
+            MessageManager.sendMessage(sender, path, true, parameters);
+            result = CommandResult.failure(path, MessageManager.getMessage(path, parameters));
+        }
+
+        /**
+         * Send the given message to the sender and report the command as successful.
+         *
+         * @param punishment the punishment the command created or revoked, may be <code>null</code>
+         * @param path       the path of the message
+         * @param parameters the parameters, see {@link MessageManager#sendMessage(Object, String, boolean, String...)}
+         */
+        public void complete(Punishment punishment, String path, String... parameters) {
+            MessageManager.sendMessage(sender, path, true, parameters);
+            result = CommandResult.success(punishment, MessageManager.getMessage(path, parameters));
+        }
+
+        public CommandResult getResult() {
+            return result == null ? CommandResult.success(null, null) : result;
         }
     }
 }
@@ -0,0 +1,34 @@
+package net.hnt8.advancedban.utils;
+
+/**
+ * Who executes a command and where it comes from.<br>
+ * Commands forwarded by a backend server are executed by the console of the proxy, the context
+ * carries the name of the backend so punishments record the server they have been issued on.
+ */
+public class CommandContext {
+
+    private final Object sender;
+    private final String originServer;
+
+    /**
+     * @param sender       the sender which executes the command
+     * @param originServer the server the command has been issued on, <code>null</code> to use the server of the sender
+     */
+    public CommandContext(Object sender, String originServer) {
+        this.sender = sender;
+        this.originServer = originServer;
+    }
+
+    public Object getSender() {
+        return sender;
+    }
+
+    /**
+     * Get the server the command has been issued on.
+     *
+     * @return the server name or <code>null</code> if it is the server of the sender
+     */
+    public String getOriginServer() {
+        return originServer;
+    }
+}
@@ -0,0 +1,91 @@
+package net.hnt8.advancedban.utils;
+
+/**
+ * The outcome of an executed command, see {@link net.hnt8.advancedban.manager.CommandManager#execute(Object, String, String[])}.
+ */
+public class CommandResult {
+
+    /**
+     * The error of commands which do not exist.
+     */
+    public static final String UNKNOWN_COMMAND = "UnknownCommand";
+
+    private final boolean success;
+    private final int punishmentId;
+    private final String error;
+    private final String message;
+
+    private CommandResult(boolean success, int punishmentId, String error, String message) {
+        this.success = success;
+        this.punishmentId = punishmentId;
+        this.error = error;
+        this.message = message;
+    }
+
+    /**
+     * A successful result.
+     *
+     * @param punishment the punishment the command created or revoked, may be <code>null</code>
+     * @param message    the message the sender has received, may be <code>null</code>
+     * @return the result
+     */
+    public static CommandResult success(Punishment punishment, String message) {
+        return new CommandResult(true, punishment == null ? -1 : punishment.getId(), null, message);
+    }
+
+    /**
+     * A failed result.
+     *
+     * @param error   the path of the error message in the messages file
+     * @param message the message the sender has received
+     * @return the result
+     */
+    public static CommandResult failure(String error, String message) {
+        return new CommandResult(false, -1, error, message);
+    }
+
+    /**
+     * Recreate a result which has been stored, see {@link net.hnt8.advancedban.manager.ExecutedCommandManager}.
+     *
+     * @param success      whether the command was successful
+     * @param punishmentId the id of the punishment or -1
+     * @param error        the error or <code>null</code>
+     * @param message      the message or <code>null</code>
+     * @return the result
+     */
+    public static CommandResult of(boolean success, int punishmentId, String error, String message) {
+        return new CommandResult(success, punishmentId, error, message);
+    }
+
+    public boolean isSuccess() {
+        return success;
+    }
+
+    /**
+     * Get the id of the punishment the command created or revoked.
+     *
+     * @return the id or -1 if there is none
+     */
+    public int getPunishmentId() {
+        return punishmentId;
+    }
+
+    /**
+     * Get the path of the error message in the messages file, e.g. <code>Ban.AlreadyDone</code>,
+     * or {@link #UNKNOWN_COMMAND}.
+     *
+     * @return the error or <code>null</code> if the command was successful
+     */
+    public String getError() {
+        return error;
+    }
+
+    /**
+     * Get the message the sender has received, including color codes but without the prefix.
+     *
+     * @return the message or <code>null</code>
+     */
+    public String getMessage() {
+        return message;
+    }
+}
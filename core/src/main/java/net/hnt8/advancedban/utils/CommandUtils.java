@@ -2,11 +2,28 @@ package net.hnt8.advancedban.utils;
 
 import net.hnt8.advancedban.MethodInterface;
 import net.hnt8.advancedban.Universal;
-import net.hnt8.advancedban.manager.MessageManager;
 import net.hnt8.advancedban.manager.PunishmentManager;
 import net.hnt8.advancedban.manager.UUIDManager;
 
+import java.util.regex.Pattern;
+
 public class CommandUtils {
+    private static final Pattern IP_ADDRESS = Pattern.compile("(?:[0-9]{1,3}\\.){3}[0-9]{1,3}");
+    private static final Pattern NUMBER = Pattern.compile("[0-9]+");
+    private static final Pattern POSITIVE_NUMBER = Pattern.compile("[1-9][0-9]*");
+
+    public static boolean isIpAddress(String str) {
+        return IP_ADDRESS.matcher(str).matches();
+    }
+
+    public static boolean isNumber(String str) {
+        return NUMBER.matcher(str).matches();
+    }
+
+    public static boolean isPositiveNumber(String str) {
+        return POSITIVE_NUMBER.matcher(str).matches();
+    }
+
     public static Punishment getPunishment(String target, PunishmentType type) {
         return type == PunishmentType.MUTE
                 ? PunishmentManager.get().getMute(target)
@@ -20,8 +37,7 @@ public class CommandUtils {
         String uuid = UUIDManager.get().getUUID(name.toLowerCase());
 
         if (uuid == null)
-            MessageManager.sendMessage(input.getSender(), "General.FailedFetch",
-                    true, "NAME", name);
+            input.reject("General.FailedFetch", "NAME", name);
 
         return uuid;
     }
@@ -30,14 +46,13 @@ public class CommandUtils {
     public static String processIP(Command.CommandInput input) {
         String name = input.getPrimaryData();
         input.next();
-        if (name.matches("^(?:[0-9]{1,3}\\.){3}[0-9]{1,3}$")) {
+        if (isIpAddress(name)) {
             return name;
         }
 		String ip = Universal.get().getIps().get(name);
 
 		if (ip == null)
-		    MessageManager.sendMessage(input.getSender(), "Ipban.IpNotCashed",
-		            true, "NAME", name);
+		    input.reject("Ipban.IpNotCashed", "NAME", name);
 
 		return ip;
     }
@@ -47,9 +62,8 @@ public class CommandUtils {
         MethodInterface mi = Universal.get().getMethods();
         String reason = String.join(" ", input.getArgs());
 
-        if (reason.matches("[~@].+") && !mi.contains(mi.getLayouts(), "Message." + input.getPrimary().substring(1))) {
-            MessageManager.sendMessage(input.getSender(), "General.LayoutNotFound",
-                    true, "NAME", input.getPrimary().substring(1));
+        if (reason.length() > 1 && (reason.charAt(0) == '~' || reason.charAt(0) == '@') && !mi.contains(mi.getLayouts(), "Message." + input.getPrimary().substring(1))) {
+            input.reject("General.LayoutNotFound", "NAME", input.getPrimary().substring(1));
             return null;
         }
 
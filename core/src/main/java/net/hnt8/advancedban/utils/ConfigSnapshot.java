@@ -0,0 +1,134 @@
+package net.hnt8.advancedban.utils;
+
+import net.hnt8.advancedban.MethodInterface;
+import net.hnt8.advancedban.Universal;
+import net.hnt8.advancedban.manager.MessageManager;
+
+import java.time.DateTimeException;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * The settings which are read on every login, chat message or rendered layout, read from the configuration
+ * files once so these paths do not have to look them up again and again.<br>
+ * A snapshot never changes. Reloading the files creates a new one, see
+ * {@link net.hnt8.advancedban.manager.ConfigManager}.
+ */
+public final class ConfigSnapshot {
+
+    private static final String DEFAULT_DATE_FORMAT = "dd.MM.yyyy-HH:mm";
+
+    private final long timeDiff;
+    private final String defaultReason;
+    private final DateTimeFormatter dateFormatter;
+    private final boolean prefixDisabled;
+    private final String prefix;
+    private final Set<String> exemptPlayers;
+    private final List<String> muteCommands;
+    private final boolean lockdownOnError;
+
+    private ConfigSnapshot(MethodInterface mi) {
+        Object config = mi.getConfig();
+        timeDiff = mi.getInteger(config, "TimeDiff", 0) * 60 * 60 * 1000L;
+        defaultReason = mi.getString(config, "DefaultReason", "none");
+        dateFormatter = createDateFormatter(mi.getString(config, "DateFormat", DEFAULT_DATE_FORMAT), mi.getString(config, "TimeZone", ""));
+        prefixDisabled = mi.getBoolean(config, "Disable Prefix", false);
+        prefix = prefixDisabled ? "" : MessageManager.getMessage("General.Prefix");
+        lockdownOnError = mi.getBoolean(config, "LockdownOnError", true);
+
+        Set<String> exempt = new HashSet<>();
+        List<String> exemptList = mi.getStringList(config, "ExemptPlayers");
+        if (exemptList != null) {
+            for (String name : exemptList) {
+                exempt.add(name.toLowerCase());
+            }
+        }
+        exemptPlayers = Collections.unmodifiableSet(exempt);
+
+        List<String> muteList = mi.getStringList(config, "MuteCommands");
+        muteCommands = Collections.unmodifiableList(muteList == null ? new ArrayList<>() : new ArrayList<>(muteList));
+    }
+
+    /**
+     * Read a snapshot from the currently loaded files.
+     *
+     * @param mi the method interface
+     * @return the snapshot
+     */
+    public static ConfigSnapshot load(MethodInterface mi) {
+        return new ConfigSnapshot(mi);
+    }
+
+    /**
+     * @return the <code>TimeDiff</code> in milliseconds
+     */
+    public long getTimeDiff() {
+        return timeDiff;
+    }
+
+    public String getDefaultReason() {
+        return defaultReason;
+    }
+
+    /**
+     * Format a timestamp with the configured <code>DateFormat</code> and <code>TimeZone</code>.
+     *
+     * @param millis the timestamp
+     * @return the formatted date
+     */
+    public String formatDate(long millis) {
+        return dateFormatter.format(Instant.ofEpochMilli(millis));
+    }
+
+    public boolean isPrefixDisabled() {
+        return prefixDisabled;
+    }
+
+    /**
+     * @return the rendered <code>General.Prefix</code> message or an empty string if the prefix is disabled
+     */
+    public String getPrefix() {
+        return prefix;
+    }
+
+    /**
+     * Check whether a player is listed in <code>ExemptPlayers</code>.
+     *
+     * @param name the name of the player
+     * @return whether the player is exempt
+     */
+    public boolean isExempt(String name) {
+        return exemptPlayers.contains(name.toLowerCase());
+    }
+
+    public List<String> getMuteCommands() {
+        return muteCommands;
+    }
+
+    public boolean isLockdownOnError() {
+        return lockdownOnError;
+    }
+
+    private static DateTimeFormatter createDateFormatter(String pattern, String zone) {
+        ZoneId zoneId = ZoneId.systemDefault();
+        if (zone != null && !zone.isEmpty()) {
+            try {
+                zoneId = ZoneId.of(zone);
+            } catch (DateTimeException ex) {
+                Universal.get().getLogger().warning("Invalid TimeZone '" + zone + "', using the time zone of the server instead.");
+            }
+        }
+        try {
+            return DateTimeFormatter.ofPattern(pattern).withZone(zoneId);
+        } catch (IllegalArgumentException ex) {
+            Universal.get().getLogger().warning("Invalid DateFormat '" + pattern + "', using '" + DEFAULT_DATE_FORMAT + "' instead: " + ex.getMessage());
+            return DateTimeFormatter.ofPattern(DEFAULT_DATE_FORMAT).withZone(zoneId);
+        }
+    }
+}
@@ -0,0 +1,155 @@
+package net.hnt8.advancedban.utils;
+
+import net.hnt8.advancedban.manager.IpBanIndex;
+import net.hnt8.advancedban.manager.TimeManager;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
+
+/**
+ * Remembers recent login denials for a short time, so banned players or bots reconnecting in a loop
+ * are rejected without loading their data or rendering the ban layout again.<br>
+ * Denials are stored by the uuid of the player and, for IP bans, by their address. An entry never outlives
+ * the ban it has been created for and has to be dropped with {@link #invalidate(Punishment)} once the ban
+ * is revoked.
+ *
+ * @param <T> the platform specific type of the rendered kick message
+ */
+public class DenialCache<T> {
+
+    private final long ttl;
+    private final Function<Punishment, T> renderer;
+    private final Map<String, Denial<T>> byUuid = new ConcurrentHashMap<>();
+    private final Map<String, Denial<T>> byIp = new ConcurrentHashMap<>();
+
+    /**
+     * @param ttl      how long a denial is remembered in milliseconds, 0 to disable the cache
+     * @param renderer renders a ban into a kick message
+     */
+    public DenialCache(long ttl, Function<Punishment, T> renderer) {
+        this.ttl = ttl;
+        this.renderer = renderer;
+    }
+
+    /**
+     * Remember that a player has been denied because of the given ban.
+     *
+     * @param uuid the uuid of the player, may be <code>null</code> if the player has not been authenticated yet
+     * @param ip   the address of the player, may be <code>null</code>
+     * @param ban  the ban
+     * @return the rendered kick message
+     */
+    public T put(String uuid, String ip, Punishment ban) {
+        T message = renderer.apply(ban);
+        if (ttl <= 0) {
+            return message;
+        }
+
+        long now = TimeManager.getTime();
+        if (byUuid.size() + byIp.size() > 10_000) {
+            sweep(now);
+        }
+
+        long expires = now + ttl;
+        if (ban.getType().isTemp()) {
+            expires = Math.min(expires, ban.getEnd());
+        }
+        Denial<T> denial = new Denial<>(ban.getId(), message, expires);
+        if (uuid != null) {
+            byUuid.put(uuid, denial);
+        }
+        // Only IP bans deny everyone on the address, others may share it
+        if (ip != null && ban.getType().isIpOrientated()) {
+            byIp.put(ip, denial);
+        }
+        return message;
+    }
+
+    /**
+     * Get the remembered denial of the player with the given uuid.
+     *
+     * @param uuid the uuid of the player
+     * @return the rendered kick message or <code>null</code> if there is none
+     */
+    public T getByUuid(String uuid) {
+        return get(byUuid, uuid);
+    }
+
+    /**
+     * Get the remembered denial of the given address.
+     *
+     * @param ip the address
+     * @return the rendered kick message or <code>null</code> if there is none
+     */
+    public T getByIp(String ip) {
+        return get(byIp, ip);
+    }
+
+    /**
+     * Check a connection from the given address before the player is authenticated, against the remembered
+     * denials and the {@link IpBanIndex}. Rejections are counted by the index.
+     *
+     * @param ip the address
+     * @return the rendered kick message or <code>null</code> if the address is not banned
+     */
+    public T denyAddress(String ip) {
+        T denial = getByIp(ip);
+        if (denial == null) {
+            Punishment ban = IpBanIndex.get().getBan(ip);
+            if (ban == null) {
+                return null;
+            }
+            denial = put(null, ip, ban);
+        }
+        IpBanIndex.get().recordRejection();
+        return denial;
+    }
+
+    /**
+     * Forget all denials caused by the given ban.
+     *
+     * @param ban the ban
+     */
+    public void invalidate(Punishment ban) {
+        byUuid.values().removeIf(denial -> denial.banId == ban.getId());
+        byIp.values().removeIf(denial -> denial.banId == ban.getId());
+    }
+
+    public void clear() {
+        byUuid.clear();
+        byIp.clear();
+    }
+
+    private T get(Map<String, Denial<T>> map, String key) {
+        if (key == null) {
+            return null;
+        }
+        Denial<T> denial = map.get(key);
+        if (denial == null) {
+            return null;
+        }
+        if (denial.expires <= TimeManager.getTime()) {
+            map.remove(key, denial);
+            return null;
+        }
+        return denial.message;
+    }
+
+    private void sweep(long now) {
+        byUuid.values().removeIf(denial -> denial.expires <= now);
+        byIp.values().removeIf(denial -> denial.expires <= now);
+    }
+
+    private static final class Denial<T> {
+        private final int banId;
+        private final T message;
+        private final long expires;
+
+        private Denial(int banId, T message, long expires) {
+            this.banId = banId;
+            this.message = message;
+            this.expires = expires;
+        }
+    }
+}
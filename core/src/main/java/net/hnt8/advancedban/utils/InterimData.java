@@ -2,6 +2,7 @@ package net.hnt8.advancedban.utils;
 
 import net.hnt8.advancedban.manager.PunishmentManager;
 
+import java.util.Map;
 import java.util.Set;
 
 /**
@@ -10,14 +11,15 @@ import java.util.Set;
 public class InterimData {
 
     private final String uuid, name, ip;
-    private final Set<Punishment> punishments, history;
+    private final Set<Punishment> punishments;
+    private final Map<String, Map<String, Integer>> calculationCounts;
 
-    public InterimData(String uuid, String name, String ip, Set<Punishment> punishments, Set<Punishment> history) {
+    public InterimData(String uuid, String name, String ip, Set<Punishment> punishments, Map<String, Map<String, Integer>> calculationCounts) {
         this.uuid = uuid;
         this.name = name;
         this.ip = ip;
         this.punishments = punishments;
-        this.history = history;
+        this.calculationCounts = calculationCounts;
     }
 
     public String getUuid() {
@@ -36,8 +38,13 @@ public class InterimData {
         return punishments;
     }
 
-    public Set<Punishment> getHistory() {
-        return history;
+    /**
+     * Get the amount of history entries per target (uuid or ip) and lower-cased time-layout name.
+     *
+     * @return the calculation counts
+     */
+    public Map<String, Map<String, Integer>> getCalculationCounts() {
+        return calculationCounts;
     }
 
     public Punishment getBan() {
@@ -50,8 +57,8 @@ public class InterimData {
     }
 
     public void accept() {
-        PunishmentManager.get().getLoadedPunishments(false).addAll(punishments);
-        PunishmentManager.get().getLoadedHistory().addAll(history);
+        punishments.forEach(PunishmentManager.get()::cachePunishment);
+        PunishmentManager.get().setCalculationCounts(calculationCounts);
         PunishmentManager.get().setCached(this);
     }
-}
\ No newline at end of file
+}
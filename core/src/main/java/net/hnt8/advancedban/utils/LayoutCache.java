@@ -0,0 +1,107 @@
+package net.hnt8.advancedban.utils;
+
+import net.hnt8.advancedban.manager.MessageManager;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+/**
+ * Keeps the parsed layouts of punishments, so players who are denied or muted over and over again do not
+ * cause their layout to be rendered and parsed each time.<br>
+ * A layout is parsed once with {@link #DURATION} in place of the remaining duration, which is the only part
+ * changing over time, and only that is filled in whenever the layout is shown. Entries are kept per
+ * punishment id and are parsed again once the messages have been reloaded or the reason has been changed.
+ *
+ * @param <T> the platform specific type of the parsed layout
+ */
+public class LayoutCache<T> {
+
+    /**
+     * Stands in for the remaining duration of temporary punishments in the layouts which are parsed.
+     */
+    public static final String DURATION = "\uE000DURATION\uE000";
+
+    private final Function<String, T> parser;
+    private final BiFunction<T, String, T> filler;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final Map<Integer, Entry<T>> entries;
+
+    /**
+     * @param maxSize the maximum amount of punishments whose layout is kept
+     * @param parser  parses a layout as returned by {@link Punishment#getLayoutTemplateBSN()}
+     * @param filler  fills the remaining duration into a parsed layout, replacing {@link #DURATION}
+     */
+    public LayoutCache(int maxSize, Function<String, T> parser, BiFunction<T, String, T> filler) {
+        this.parser = parser;
+        this.filler = filler;
+        this.entries = Collections.synchronizedMap(new LinkedHashMap<Integer, Entry<T>>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, Entry<T>> eldest) {
+                return size() > maxSize;
+            }
+        });
+    }
+
+    /**
+     * Get the layout of a punishment with the current remaining duration.
+     *
+     * @param punishment the punishment
+     * @return the layout
+     */
+    public T get(Punishment punishment) {
+        T layout;
+        if (punishment.getId() == -1) {
+            layout = parser.apply(punishment.getLayoutTemplateBSN());
+        } else {
+            int version = MessageManager.getVersion();
+            Entry<T> entry = entries.get(punishment.getId());
+            if (entry != null && entry.version == version && entry.reason.equals(punishment.getReason())) {
+                hits.increment();
+            } else {
+                misses.increment();
+                entry = new Entry<>(parser.apply(punishment.getLayoutTemplateBSN()), version, punishment.getReason());
+                entries.put(punishment.getId(), entry);
+            }
+            layout = entry.layout;
+        }
+        return punishment.getType().isTemp() ? filler.apply(layout, punishment.getDuration(false)) : layout;
+    }
+
+    /**
+     * Forget the layout of a punishment, called when it is revoked.
+     *
+     * @param punishment the punishment
+     */
+    public void invalidate(Punishment punishment) {
+        entries.remove(punishment.getId());
+    }
+
+    public void clear() {
+        entries.clear();
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    private static final class Entry<T> {
+        private final T layout;
+        private final int version;
+        private final String reason;
+
+        private Entry(T layout, int version, String reason) {
+            this.layout = layout;
+            this.version = version;
+            this.reason = reason;
+        }
+    }
+}
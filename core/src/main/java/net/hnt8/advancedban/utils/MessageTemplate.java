@@ -0,0 +1,112 @@
+package net.hnt8.advancedban.utils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A message split into literal text and <code>%KEY%</code> placeholders once, so it can be rendered with
+ * different parameters in a single pass.<br>
+ * Like the messages themselves, the rendered parameter values have their <code>&amp;</code> color codes
+ * translated to <code>§</code>. Placeholders without a matching parameter are kept as they are.
+ */
+public final class MessageTemplate {
+
+    private final String[] literals;
+    private final String[] keys;
+    private final int literalLength;
+
+    private MessageTemplate(String[] literals, String[] keys) {
+        this.literals = literals;
+        this.keys = keys;
+        int length = 0;
+        for (String literal : literals) {
+            length += literal.length();
+        }
+        this.literalLength = length;
+    }
+
+    /**
+     * Parse a message.
+     *
+     * @param message the message
+     * @return the template
+     */
+    public static MessageTemplate parse(String message) {
+        message = message.replace('&', '§');
+        List<String> literals = new ArrayList<>();
+        List<String> keys = new ArrayList<>();
+
+        StringBuilder literal = new StringBuilder();
+        int i = 0;
+        while (i < message.length()) {
+            char c = message.charAt(i);
+            int end = c == '%' ? keyEnd(message, i + 1) : -1;
+            if (end == -1) {
+                literal.append(c);
+                i++;
+                continue;
+            }
+            literals.add(literal.toString());
+            literal.setLength(0);
+            keys.add(message.substring(i + 1, end));
+            i = end + 1;
+        }
+        literals.add(literal.toString());
+
+        return new MessageTemplate(literals.toArray(new String[0]), keys.toArray(new String[0]));
+    }
+
+    /**
+     * Render the message.<br>
+     * The parameters are interpreted in pairs of key and value, see
+     * {@link net.hnt8.advancedban.manager.MessageManager#sendMessage(Object, String, boolean, String...)}.
+     *
+     * @param parameters the parameters
+     * @return the rendered message
+     */
+    public String render(String... parameters) {
+        if (keys.length == 0) {
+            return literals[0];
+        }
+
+        StringBuilder builder = new StringBuilder(literalLength + 16 * keys.length);
+        for (int i = 0; i < keys.length; i++) {
+            builder.append(literals[i]);
+            String value = lookup(keys[i], parameters);
+            if (value == null) {
+                builder.append('%').append(keys[i]).append('%');
+            } else if (value.indexOf('&') == -1) {
+                builder.append(value);
+            } else {
+                for (int j = 0; j < value.length(); j++) {
+                    char c = value.charAt(j);
+                    builder.append(c == '&' ? '§' : c);
+                }
+            }
+        }
+        return builder.append(literals[keys.length]).toString();
+    }
+
+    private static String lookup(String key, String[] parameters) {
+        for (int i = 0; i < parameters.length - 1; i += 2) {
+            if (key.equals(parameters[i])) {
+                return parameters[i + 1] == null ? "null" : parameters[i + 1];
+            }
+        }
+        return null;
+    }
+
+    // A key consists of letters, digits, underscores and hyphens, so a lone % (e.g. "50%") is kept as text
+    private static int keyEnd(String message, int start) {
+        for (int i = start; i < message.length(); i++) {
+            char c = message.charAt(i);
+            if (c == '%') {
+                return i == start ? -1 : i;
+            }
+            if (!Character.isLetterOrDigit(c) && c != '_' && c != '-') {
+                return -1;
+            }
+        }
+        return -1;
+    }
+}
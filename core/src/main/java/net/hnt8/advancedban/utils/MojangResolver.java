@@ -0,0 +1,301 @@
+package net.hnt8.advancedban.utils;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Logger;
+
+/**
+ * Resolves names to uuids through a bulk profile endpoint like Mojang's, which takes a JSON array of up to
+ * {@value #BATCH_SIZE} names and answers with a JSON array of <code>{"id": ..., "name": ...}</code> objects for
+ * the names which exist.<br>
+ * Names requested at about the same time are sent in one request. Requests are limited by a token bucket,
+ * time out and are retried with an exponential backoff if the endpoint fails or limits the rate. Names the
+ * endpoint does not know are remembered for a while, so they are not requested again and again.
+ * <br><br>
+ * The returned futures complete with the uuid, with <code>null</code> if the name does not exist, or
+ * exceptionally if the endpoint could not be reached.
+ */
+public class MojangResolver {
+
+    public static final int BATCH_SIZE = 10;
+    private static final long GATHER_MILLIS = 50;
+    private static final long BASE_BACKOFF_MILLIS = 1000;
+
+    private final URI endpoint;
+    private final Duration timeout;
+    private final int retries;
+    private final long unknownMillis;
+    private final Logger logger;
+    private final Gson gson = new Gson();
+    private final HttpClient client;
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "AdvancedBan-MojangResolver");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    // Only accessed by the scheduler thread
+    private final Queue<String> queue = new ArrayDeque<>();
+    private final TokenBucket bucket;
+    private boolean flushScheduled;
+
+    private final Map<String, CompletableFuture<String>> pending = new ConcurrentHashMap<>();
+    private final Map<String, Long> unknown = new ConcurrentHashMap<>();
+    private final LongAdder requests = new LongAdder();
+    private final LongAdder retried = new LongAdder();
+    private final LongAdder unknownHits = new LongAdder();
+
+    /**
+     * @param endpoint          the url of the bulk endpoint
+     * @param requestsPerMinute how many requests may be sent per minute
+     * @param timeoutMillis     the connect and response timeout of every request in milliseconds
+     * @param retries           how often a failed request is retried
+     * @param unknownMillis     how long names which do not exist are remembered in milliseconds
+     * @param logger            the logger to report failures to
+     */
+    public MojangResolver(String endpoint, int requestsPerMinute, int timeoutMillis, int retries, long unknownMillis, Logger logger) {
+        this.endpoint = URI.create(endpoint);
+        this.timeout = Duration.ofMillis(timeoutMillis);
+        this.retries = retries;
+        this.unknownMillis = unknownMillis;
+        this.logger = logger;
+        this.bucket = new TokenBucket(Math.max(1, requestsPerMinute), Math.max(1, requestsPerMinute) / 60_000d);
+        this.client = HttpClient.newBuilder()
+                .connectTimeout(timeout)
+                .executor(scheduler)
+                .build();
+    }
+
+    /**
+     * Resolve the uuid of a name.
+     *
+     * @param name the name
+     * @return a future completing with the uuid without hyphens, or <code>null</code> if there is no player with the name
+     */
+    public CompletableFuture<String> resolve(String name) {
+        String key = name.toLowerCase();
+        Long unknownUntil = unknown.get(key);
+        if (unknownUntil != null) {
+            if (unknownUntil > System.currentTimeMillis()) {
+                unknownHits.increment();
+                return CompletableFuture.completedFuture(null);
+            }
+            unknown.remove(key, unknownUntil);
+        }
+
+        CompletableFuture<String> own = new CompletableFuture<>();
+        CompletableFuture<String> running = pending.putIfAbsent(key, own);
+        if (running != null) {
+            return running;
+        }
+        scheduler.execute(() -> {
+            queue.add(key);
+            scheduleFlush(GATHER_MILLIS);
+        });
+        return own;
+    }
+
+    /**
+     * Get the longest time a caller may have to wait for a result, if the rate limit is not exceeded.
+     *
+     * @return the time in milliseconds
+     */
+    public long getMaxWaitMillis() {
+        long wait = GATHER_MILLIS;
+        for (int attempt = 0; attempt <= retries; attempt++) {
+            wait += 2 * timeout.toMillis() + (attempt == 0 ? 0 : BASE_BACKOFF_MILLIS << (attempt - 1));
+        }
+        return wait;
+    }
+
+    public void shutdown() {
+        scheduler.shutdownNow();
+        pending.values().forEach(future -> future.completeExceptionally(new IllegalStateException("Resolver has been shut down")));
+        pending.clear();
+    }
+
+    public long getRequests() {
+        return requests.sum();
+    }
+
+    public long getRetries() {
+        return retried.sum();
+    }
+
+    public long getUnknownHits() {
+        return unknownHits.sum();
+    }
+
+    public int getPendingCount() {
+        return pending.size();
+    }
+
+    private void scheduleFlush(long delayMillis) {
+        if (!flushScheduled) {
+            flushScheduled = true;
+            scheduler.schedule(this::flush, delayMillis, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void flush() {
+        flushScheduled = false;
+        while (!queue.isEmpty()) {
+            long wait = bucket.tryAcquire(System.nanoTime());
+            if (wait > 0) {
+                scheduleFlush(TimeUnit.NANOSECONDS.toMillis(wait) + 1);
+                return;
+            }
+
+            List<String> batch = new ArrayList<>(BATCH_SIZE);
+            while (batch.size() < BATCH_SIZE && !queue.isEmpty()) {
+                batch.add(queue.poll());
+            }
+            send(batch, 0);
+        }
+    }
+
+    private void send(List<String> batch, int attempt) {
+        requests.increment();
+        HttpRequest request = HttpRequest.newBuilder(endpoint)
+                .timeout(timeout)
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(gson.toJson(batch), StandardCharsets.UTF_8))
+                .build();
+
+        client.sendAsync(request, HttpResponse.BodyHandlers.ofString(StandardCharsets.UTF_8)).whenCompleteAsync((response, ex) -> {
+            if (ex != null) {
+                retry(batch, attempt, ex.toString());
+            } else if (response.statusCode() == 429 || response.statusCode() >= 500) {
+                retry(batch, attempt, "HTTP " + response.statusCode());
+            } else if (response.statusCode() != 200) {
+                fail(batch, "HTTP " + response.statusCode());
+            } else {
+                accept(batch, response.body());
+            }
+        }, scheduler);
+    }
+
+    private void retry(List<String> batch, int attempt, String reason) {
+        if (attempt >= retries) {
+            fail(batch, reason);
+            return;
+        }
+        retried.increment();
+        long backoff = BASE_BACKOFF_MILLIS << attempt;
+        scheduler.schedule(() -> {
+            // Retries take a token as well, so a limiting endpoint is not hammered
+            long wait = bucket.tryAcquire(System.nanoTime());
+            if (wait > 0) {
+                scheduler.schedule(() -> send(batch, attempt + 1), TimeUnit.NANOSECONDS.toMillis(wait) + 1, TimeUnit.MILLISECONDS);
+            } else {
+                send(batch, attempt + 1);
+            }
+        }, backoff, TimeUnit.MILLISECONDS);
+    }
+
+    private void accept(List<String> batch, String body) {
+        Map<String, String> found = new HashMap<>();
+        try {
+            JsonArray profiles = gson.fromJson(body, JsonArray.class);
+            if (profiles != null) {
+                for (JsonElement element : profiles) {
+                    JsonObject profile = element.getAsJsonObject();
+                    if (profile.has("id") && profile.has("name")) {
+                        found.put(profile.get("name").getAsString().toLowerCase(), profile.get("id").getAsString().replace("-", ""));
+                    }
+                }
+            }
+        } catch (JsonParseException | IllegalStateException | UnsupportedOperationException ex) {
+            fail(batch, "Unexpected response: " + ex.getMessage());
+            return;
+        }
+
+        long unknownUntil = System.currentTimeMillis() + unknownMillis;
+        for (String name : batch) {
+            String uuid = found.get(name);
+            if (uuid == null && unknownMillis > 0) {
+                unknown.put(name, unknownUntil);
+            }
+            CompletableFuture<String> future = pending.remove(name);
+            if (future != null) {
+                future.complete(uuid);
+            }
+        }
+        if (unknown.size() > 10_000) {
+            long now = System.currentTimeMillis();
+            unknown.values().removeIf(until -> until <= now);
+        }
+    }
+
+    private void fail(List<String> batch, String reason) {
+        logger.warning("Failed to resolve the uuids of " + batch + " through " + endpoint + ": " + reason);
+        ResolveException exception = new ResolveException(reason);
+        for (String name : batch) {
+            CompletableFuture<String> future = pending.remove(name);
+            if (future != null) {
+                future.completeExceptionally(exception);
+            }
+        }
+    }
+
+    /**
+     * Thrown if a name could not be resolved because the endpoint could not be reached.
+     */
+    public static class ResolveException extends RuntimeException {
+        private static final long serialVersionUID = 1L;
+
+        public ResolveException(String message) {
+            super(message);
+        }
+    }
+
+    private static final class TokenBucket {
+        private final double capacity;
+        private final double tokensPerNano;
+        private double tokens;
+        private long lastRefill = System.nanoTime();
+
+        private TokenBucket(double capacity, double tokensPerMilli) {
+            this.capacity = capacity;
+            this.tokensPerNano = tokensPerMilli / 1_000_000d;
+            this.tokens = capacity;
+        }
+
+        /**
+         * Take a token if there is one.
+         *
+         * @return 0 if a token has been taken, otherwise how many nanoseconds to wait for the next one
+         */
+        private long tryAcquire(long now) {
+            tokens = Math.min(capacity, tokens + (now - lastRefill) * tokensPerNano);
+            lastRefill = now;
+            if (tokens >= 1) {
+                tokens--;
+                return 0;
+            }
+            return (long) Math.ceil((1 - tokens) / tokensPerNano);
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package net.hnt8.advancedban.utils;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded cache of name/uuid mappings which can be looked up in both directions.<br>
+ * Names are stored in lower case and uuids without regard to case. Every name maps to exactly one uuid
+ * and the other way round, so a name change replaces the old mapping of the uuid. If the cache grows
+ * beyond its size the least recently used mappings are dropped first.
+ */
+public class NameUuidCache {
+
+    private final Map<String, String> uuidsByName;
+    private final Map<String, String> namesByUuid = new HashMap<>();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private volatile int maxSize;
+
+    /**
+     * @param maxSize the maximum amount of mappings
+     */
+    public NameUuidCache(int maxSize) {
+        this.maxSize = maxSize;
+        this.uuidsByName = new LinkedHashMap<String, String>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+                if (size() > NameUuidCache.this.maxSize) {
+                    namesByUuid.remove(eldest.getValue().toLowerCase());
+                    evictions.increment();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Change the maximum amount of mappings, dropping the least recently used ones beyond it.
+     *
+     * @param maxSize the maximum amount of mappings
+     */
+    public synchronized void setMaxSize(int maxSize) {
+        this.maxSize = maxSize;
+        Iterator<Map.Entry<String, String>> eldest = uuidsByName.entrySet().iterator();
+        while (uuidsByName.size() > maxSize && eldest.hasNext()) {
+            namesByUuid.remove(eldest.next().getValue().toLowerCase());
+            eldest.remove();
+            evictions.increment();
+        }
+    }
+
+    /**
+     * Add a mapping, replacing any earlier mapping of the name or the uuid.
+     *
+     * @param name the name
+     * @param uuid the uuid
+     */
+    public synchronized void put(String name, String uuid) {
+        name = name.toLowerCase();
+        String uuidKey = uuid.toLowerCase();
+
+        String previousUuid = uuidsByName.remove(name);
+        if (previousUuid != null) {
+            namesByUuid.remove(previousUuid.toLowerCase());
+        }
+        String previousName = namesByUuid.remove(uuidKey);
+        if (previousName != null) {
+            uuidsByName.remove(previousName);
+        }
+
+        namesByUuid.put(uuidKey, name);
+        uuidsByName.put(name, uuid);
+    }
+
+    /**
+     * Get the uuid of a name.
+     *
+     * @param name the name
+     * @return the uuid or <code>null</code> if the name is not cached
+     */
+    public synchronized String getUuid(String name) {
+        return count(uuidsByName.get(name.toLowerCase()));
+    }
+
+    /**
+     * Get the name of a uuid.
+     *
+     * @param uuid the uuid
+     * @return the lower case name or <code>null</code> if the uuid is not cached
+     */
+    public synchronized String getName(String uuid) {
+        String name = namesByUuid.get(uuid.toLowerCase());
+        if (name != null) {
+            // Refresh the recency of the mapping
+            uuidsByName.get(name);
+        }
+        return count(name);
+    }
+
+    public synchronized void clear() {
+        uuidsByName.clear();
+        namesByUuid.clear();
+    }
+
+    public synchronized int size() {
+        return uuidsByName.size();
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    private String count(String result) {
+        if (result != null) {
+            hits.increment();
+        } else {
+            misses.increment();
+        }
+        return result;
+    }
+}
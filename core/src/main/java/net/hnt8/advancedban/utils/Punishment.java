@@ -2,16 +2,17 @@ package net.hnt8.advancedban.utils;
 
 import net.hnt8.advancedban.MethodInterface;
 import net.hnt8.advancedban.Universal;
+import net.hnt8.advancedban.manager.ChangeFeedManager;
+import net.hnt8.advancedban.manager.ConfigManager;
 import net.hnt8.advancedban.manager.DatabaseManager;
+import net.hnt8.advancedban.manager.IpBanIndex;
 import net.hnt8.advancedban.manager.MessageManager;
 import net.hnt8.advancedban.manager.PunishmentManager;
 import net.hnt8.advancedban.manager.TimeManager;
 
 import java.sql.ResultSet;
 import java.sql.SQLException;
-import java.text.SimpleDateFormat;
 import java.util.Collections;
-import java.util.Date;
 import java.util.List;
 
 /**
@@ -26,6 +27,8 @@ public class Punishment {
 
     private String reason;
     private int id;
+    // The start formatted with the snapshot it has been formatted with
+    private volatile FormattedDate startDate;
 
     public Punishment(String name, String uuid, String reason, String operator, PunishmentType type, long start, long end, String calculation, String server, String targetServer, int id) {
         this.name = name;
@@ -41,15 +44,16 @@ public class Punishment {
         this.id = id;
     }
 
-    public static void create(String name, String target, String reason, String operator, PunishmentType type, Long end,
-                              String calculation, String server, String targetServer, boolean silent) {
-        new Punishment(name, target, reason, operator, end == -1 ? type.getPermanent() : type,
-                TimeManager.getTime(), end, calculation, server, targetServer, -1)
-                .create(silent);
+    public static Punishment create(String name, String target, String reason, String operator, PunishmentType type, Long end,
+                                    String calculation, String server, String targetServer, boolean silent) {
+        Punishment punishment = new Punishment(name, target, reason, operator, end == -1 ? type.getPermanent() : type,
+                TimeManager.getTime(), end, calculation, server, targetServer, -1);
+        punishment.create(silent);
+        return punishment;
     }
 
     public String getReason() {
-        return (reason == null ? mi.getString(mi.getConfig(), "DefaultReason", "none") : reason).replaceAll("'", "");
+        return (reason == null ? ConfigManager.getSnapshot().getDefaultReason() : reason).replace("'", "");
     }
 
     public String getHexId() {
@@ -57,8 +61,22 @@ public class Punishment {
     }
 
     public String getDate(long date) {
-        SimpleDateFormat format = new SimpleDateFormat(mi.getString(mi.getConfig(), "DateFormat", "dd.MM.yyyy-HH:mm"));
-        return format.format(new Date(date));
+        return ConfigManager.getSnapshot().formatDate(date);
+    }
+
+    /**
+     * Get the formatted start of this punishment, which is only formatted again after a reload.
+     *
+     * @return the formatted start
+     */
+    public String getStartDate() {
+        ConfigSnapshot snapshot = ConfigManager.getSnapshot();
+        FormattedDate formatted = startDate;
+        if (formatted == null || formatted.snapshot != snapshot) {
+            formatted = new FormattedDate(snapshot, snapshot.formatDate(start));
+            startDate = formatted;
+        }
+        return formatted.text;
     }
 
     public void create() {
@@ -112,11 +130,18 @@ public class Punishment {
                     for (String str : getLayout()) {
                         mi.sendMessage(p, str);
                     }
-                PunishmentManager.get().getLoadedPunishments(false).add(this);
+                PunishmentManager.get().cachePunishment(this);
             }
         }
 
-        PunishmentManager.get().getLoadedHistory().add(this);
+        // Keep the retained data of players who just left up to date for when they reconnect
+        if (getType() != PunishmentType.KICK && PunishmentManager.get().isCached(getUuid())) {
+            PunishmentManager.get().cachePunishment(this);
+        }
+
+        PunishmentManager.get().addToHistory(this);
+        IpBanIndex.get().add(this);
+        ChangeFeedManager.get().record(ChangeFeedManager.CREATE, this);
 
         mi.callPunishmentEvent(this);
 
@@ -142,6 +167,7 @@ public class Punishment {
 
         if (id != -1) {
             DatabaseManager.get().executeStatement(SQLQuery.UPDATE_PUNISHMENT_REASON, reason, id);
+            ChangeFeedManager.get().record(ChangeFeedManager.REASON, this);
         }
     }
 
@@ -149,13 +175,13 @@ public class Punishment {
         List<String> notification = MessageManager.getLayout(mi.getMessages(),
                 getType().getName() + ".Notification",
                 "OPERATOR", getOperator(),
-                "PREFIX", mi.getBoolean(mi.getConfig(), "Disable Prefix", false) ? "" : MessageManager.getMessage("General.Prefix"),
+                "PREFIX", ConfigManager.getSnapshot().getPrefix(),
                 "DURATION", getDuration(true),
                 "REASON", getReason(),
                 "NAME", getName(),
                 "ID", String.valueOf(id),
                 "HEXID", getHexId(),
-                "DATE", getDate(start),
+                "DATE", getStartDate(),
                 "COUNT", cWarnings + "");
 
         mi.notify("ab.notify." + getType().getName(), notification);
@@ -178,9 +204,11 @@ public class Punishment {
         }
 
         DatabaseManager.get().executeStatement(SQLQuery.DELETE_PUNISHMENT, getId());
+        IpBanIndex.get().remove(this);
+        ChangeFeedManager.get().record(ChangeFeedManager.DELETE, this);
 
         if (removeCache) {
-            PunishmentManager.get().getLoadedPunishments(false).remove(this);
+            PunishmentManager.get().uncachePunishment(this);
         }
 
         if (who != null) {
@@ -196,6 +224,10 @@ public class Punishment {
     }
 
     public List<String> getLayout() {
+        return getLayout(getDuration(false));
+    }
+
+    private List<String> getLayout(String duration) {
         boolean isLayout = getReason().startsWith("@") || getReason().startsWith("~");
 
         // Add server name to layout if it's a server-specific ban
@@ -210,12 +242,12 @@ public class Punishment {
                 isLayout ? mi.getLayouts() : mi.getMessages(),
                 isLayout ? "Message." + getReason().split(" ")[0].substring(1) : getType().getName() + ".Layout",
                 "OPERATOR", getOperator(),
-                "PREFIX", mi.getBoolean(mi.getConfig(), "Disable Prefix", false) ? "" : MessageManager.getMessage("General.Prefix"),
-                "DURATION", getDuration(false),
+                "PREFIX", ConfigManager.getSnapshot().getPrefix(),
+                "DURATION", duration,
                 "REASON", isLayout ? (getReason().split(" ").length < 2 ? "" : getReason().substring(getReason().split(" ")[0].length() + 1)) : getReason(),
                 "HEXID", getHexId(),
                 "ID", String.valueOf(id),
-                "DATE", getDate(start),
+                "DATE", getStartDate(),
                 "COUNT", getType().getBasic() == PunishmentType.WARNING ? (PunishmentManager.get().getCurrentWarns(getUuid()) + 1) + "" : "0",
                 "TARGET_SERVER", targetServerLine,
                 "SERVER_INFO", serverInfo);
@@ -266,6 +298,16 @@ public class Punishment {
         return msg.substring(1);
     }
 
+    /**
+     * Get the layout like {@link #getLayoutBSN()}, but with {@link LayoutCache#DURATION} in place of the
+     * remaining duration of temporary punishments, to be parsed once and kept in a {@link LayoutCache}.
+     *
+     * @return the layout
+     */
+    public String getLayoutTemplateBSN() {
+        return String.join("\n", getLayout(getType().isTemp() ? LayoutCache.DURATION : getDuration(false)));
+    }
+
     public boolean isExpired() {
         return getType().isTemp() && getEnd() <= TimeManager.getTime();
     }
@@ -313,4 +355,14 @@ public class Punishment {
     public String toString() {
         return "Punishment(name=" + this.getName() + ", uuid=" + this.getUuid() + ", operator=" + this.getOperator() + ", calculation=" + this.getCalculation() + ", server=" + this.getServer() + ", targetServer=" + this.getTargetServer() + ", start=" + this.getStart() + ", end=" + this.getEnd() + ", type=" + this.getType() + ", reason=" + this.getReason() + ", id=" + this.getId() + ")";
     }
+
+    private static final class FormattedDate {
+        private final ConfigSnapshot snapshot;
+        private final String text;
+
+        private FormattedDate(ConfigSnapshot snapshot, String text) {
+            this.snapshot = snapshot;
+            this.text = text;
+        }
+    }
 }
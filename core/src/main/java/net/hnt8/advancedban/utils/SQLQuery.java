@@ -62,6 +62,149 @@ public enum SQLQuery {
             "server VARCHAR(64)," +
             "targetServer VARCHAR(64))"
     ),
+    // Feed of punishment changes which lets multiple proxies sharing one database keep their caches in sync.
+    // The id column is the id of the changed punishment, changeId the position in the feed.
+    CREATE_TABLE_PUNISHMENT_CHANGES(
+            "CREATE TABLE IF NOT EXISTS `PunishmentChanges` (" +
+            "`changeId` int NOT NULL AUTO_INCREMENT," +
+            "`action` VARCHAR(8) NOT NULL," +
+            "`origin` VARCHAR(36) NOT NULL," +
+            "`created` BIGINT NOT NULL," +
+            "`id` int NOT NULL," +
+            "`name` VARCHAR(16) NULL DEFAULT NULL," +
+            "`uuid` VARCHAR(35) NULL DEFAULT NULL," +
+            "`reason` VARCHAR(255) NULL DEFAULT NULL," +
+            "`operator` VARCHAR(16) NULL DEFAULT NULL," +
+            "`punishmentType` VARCHAR(16) NULL DEFAULT NULL," +
+            "`start` BIGINT DEFAULT NULL," +
+            "`end` BIGINT DEFAULT NULL," +
+            "`calculation` VARCHAR(50) NULL DEFAULT NULL," +
+            "`server` VARCHAR(64) NULL DEFAULT NULL," +
+            "`targetServer` VARCHAR(64) NULL DEFAULT NULL," +
+            "PRIMARY KEY (`changeId`)," +
+            "INDEX `idx_changes_created` (`created`))",
+
+            "CREATE TABLE IF NOT EXISTS PunishmentChanges (" +
+            "changeId INTEGER IDENTITY PRIMARY KEY," +
+            "action VARCHAR(8) NOT NULL," +
+            "origin VARCHAR(36) NOT NULL," +
+            "created BIGINT NOT NULL," +
+            "id INTEGER NOT NULL," +
+            "name VARCHAR(16)," +
+            "uuid VARCHAR(35)," +
+            "reason VARCHAR(255)," +
+            "operator VARCHAR(16)," +
+            "punishmentType VARCHAR(16)," +
+            "start BIGINT," +
+            "end BIGINT," +
+            "calculation VARCHAR(50)," +
+            "server VARCHAR(64)," +
+            "targetServer VARCHAR(64))"
+    ),
+    // Commands of backends by id, so a command which is sent again is not executed twice by any of the proxies
+    // sharing the database. The result columns are null while the command is still running.
+    CREATE_TABLE_EXECUTED_COMMANDS(
+            "CREATE TABLE IF NOT EXISTS `ExecutedCommands` (" +
+            "`commandId` VARCHAR(64) NOT NULL," +
+            "`claim` VARCHAR(36) NOT NULL," +
+            "`created` BIGINT NOT NULL," +
+            "`success` BOOLEAN NULL DEFAULT NULL," +
+            "`punishmentId` int NULL DEFAULT NULL," +
+            "`error` VARCHAR(64) NULL DEFAULT NULL," +
+            "`message` VARCHAR(1024) NULL DEFAULT NULL," +
+            "PRIMARY KEY (`commandId`)," +
+            "INDEX `idx_executed_commands_created` (`created`))",
+
+            "CREATE TABLE IF NOT EXISTS ExecutedCommands (" +
+            "commandId VARCHAR(64) PRIMARY KEY," +
+            "claim VARCHAR(36) NOT NULL," +
+            "created BIGINT NOT NULL," +
+            "success BOOLEAN," +
+            "punishmentId INTEGER," +
+            "error VARCHAR(64)," +
+            "message VARCHAR(1024))"
+    ),
+    // Last known name and address of every player who has logged in, so offline players can be resolved
+    // without asking the uuid fetcher APIs again.
+    CREATE_TABLE_PLAYER_CACHE(
+            "CREATE TABLE IF NOT EXISTS `PlayerCache` (" +
+            "`uuid` VARCHAR(35) NOT NULL," +
+            "`name` VARCHAR(16) NOT NULL," +
+            "`ip` VARCHAR(45) NULL DEFAULT NULL," +
+            "`lastSeen` BIGINT NOT NULL," +
+            "PRIMARY KEY (`uuid`)," +
+            "INDEX `idx_player_cache_name` (`name`))",
+
+            "CREATE TABLE IF NOT EXISTS PlayerCache (" +
+            "uuid VARCHAR(35) PRIMARY KEY," +
+            "name VARCHAR(16) NOT NULL," +
+            "ip VARCHAR(45)," +
+            "lastSeen BIGINT NOT NULL)"
+    ),
+    // Only needed for HSQLDB, the MySQL table is created with this index
+    CREATE_INDEX_PLAYER_CACHE_NAME(
+            "CREATE INDEX `idx_player_cache_name` ON `PlayerCache` (`name`)",
+            "CREATE INDEX IF NOT EXISTS idx_player_cache_name ON PlayerCache (name)"
+    ),
+    UPSERT_PLAYER_CACHE(
+            "INSERT INTO `PlayerCache` (`uuid`, `name`, `ip`, `lastSeen`) VALUES (?, ?, ?, ?) " +
+            "ON DUPLICATE KEY UPDATE `name` = VALUES(`name`), `ip` = COALESCE(VALUES(`ip`), `ip`), `lastSeen` = VALUES(`lastSeen`)",
+
+            "MERGE INTO PlayerCache USING (VALUES (CAST(? AS VARCHAR(35)), CAST(? AS VARCHAR(16)), CAST(? AS VARCHAR(45)), CAST(? AS BIGINT))) " +
+            "AS v (uuid, name, ip, lastSeen) ON PlayerCache.uuid = v.uuid " +
+            "WHEN MATCHED THEN UPDATE SET PlayerCache.name = v.name, PlayerCache.ip = COALESCE(v.ip, PlayerCache.ip), PlayerCache.lastSeen = v.lastSeen " +
+            "WHEN NOT MATCHED THEN INSERT VALUES v.uuid, v.name, v.ip, v.lastSeen"
+    ),
+    // A name may have been used by several players over time, the one who used it last owns it
+    SELECT_PLAYER_CACHE_BY_NAME(
+            "SELECT * FROM `PlayerCache` WHERE `name` = ? AND `lastSeen` >= ? ORDER BY `lastSeen` DESC LIMIT 1",
+            "SELECT * FROM PlayerCache WHERE name = ? AND lastSeen >= ? ORDER BY lastSeen DESC LIMIT 1"
+    ),
+    SELECT_PLAYER_CACHE_BY_UUID(
+            "SELECT * FROM `PlayerCache` WHERE `uuid` = ?",
+            "SELECT * FROM PlayerCache WHERE uuid = ?"
+    ),
+    INSERT_PUNISHMENT_CHANGE(
+            "INSERT INTO `PunishmentChanges` " +
+            "(`action`, `origin`, `created`, `id`, `name`, `uuid`, `reason`, `operator`, `punishmentType`, `start`, `end`, `calculation`, `server`, `targetServer`) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)",
+
+            "INSERT INTO PunishmentChanges " +
+            "(action, origin, created, id, name, uuid, reason, operator, punishmentType, start, end, calculation, server, targetServer) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)"
+    ),
+    SELECT_PUNISHMENT_CHANGES_AFTER(
+            "SELECT * FROM `PunishmentChanges` WHERE `changeId` > ? ORDER BY `changeId` LIMIT ?",
+            "SELECT * FROM PunishmentChanges WHERE changeId > ? ORDER BY changeId LIMIT ?"
+    ),
+    SELECT_LATEST_PUNISHMENT_CHANGE(
+            "SELECT MAX(`changeId`) AS `changeId` FROM `PunishmentChanges`",
+            "SELECT MAX(changeId) AS changeId FROM PunishmentChanges"
+    ),
+    DELETE_OLD_PUNISHMENT_CHANGES(
+            "DELETE FROM `PunishmentChanges` WHERE `created` < ?",
+            "DELETE FROM PunishmentChanges WHERE created < ?"
+    ),
+    // Does nothing if the command has been claimed before
+    INSERT_EXECUTED_COMMAND(
+            "INSERT IGNORE INTO `ExecutedCommands` (`commandId`, `claim`, `created`) VALUES (?, ?, ?)",
+
+            "MERGE INTO ExecutedCommands USING (VALUES (CAST(? AS VARCHAR(64)), CAST(? AS VARCHAR(36)), CAST(? AS BIGINT))) " +
+            "AS v (commandId, claim, created) ON ExecutedCommands.commandId = v.commandId " +
+            "WHEN NOT MATCHED THEN INSERT (commandId, claim, created) VALUES v.commandId, v.claim, v.created"
+    ),
+    SELECT_EXECUTED_COMMAND(
+            "SELECT * FROM `ExecutedCommands` WHERE `commandId` = ?",
+            "SELECT * FROM ExecutedCommands WHERE commandId = ?"
+    ),
+    UPDATE_EXECUTED_COMMAND(
+            "UPDATE `ExecutedCommands` SET `success` = ?, `punishmentId` = ?, `error` = ?, `message` = ? WHERE `commandId` = ? AND `claim` = ?",
+            "UPDATE ExecutedCommands SET success = ?, punishmentId = ?, error = ?, message = ? WHERE commandId = ? AND claim = ?"
+    ),
+    DELETE_OLD_EXECUTED_COMMANDS(
+            "DELETE FROM `ExecutedCommands` WHERE `created` < ?",
+            "DELETE FROM ExecutedCommands WHERE created < ?"
+    ),
     INSERT_PUNISHMENT(
             "INSERT INTO `Punishments` " +
             "(`name`, `uuid`, `reason`, `operator`, `punishmentType`, `start`, `end`, `calculation`, `server`, `targetServer`) " +
@@ -100,13 +243,22 @@ public enum SQLQuery {
             "SELECT * FROM `PunishmentHistory` WHERE `uuid` = ?",
             "SELECT * FROM PunishmentHistory WHERE uuid = ?"
     ),
-    SELECT_USER_PUNISHMENTS_WITH_IP(
-            "SELECT * FROM `Punishments` WHERE `uuid` = ? OR `uuid` = ?",
-            "SELECT * FROM Punishments WHERE uuid = ? OR uuid = ?"
+    // One equality branch per target and table so every branch can use the uuid index.
+    // History is only aggregated into per-layout counts, the rows themselves are loaded on demand.
+    SELECT_USER_LOGIN_DATA(
+            "SELECT 'P' AS `origin`, `id`, `name`, `uuid`, `reason`, `operator`, `punishmentType`, `start`, `end`, `calculation`, `server`, `targetServer`, 1 AS `amount` FROM `Punishments` WHERE `uuid` = ? " +
+            "UNION ALL SELECT 'P', `id`, `name`, `uuid`, `reason`, `operator`, `punishmentType`, `start`, `end`, `calculation`, `server`, `targetServer`, 1 FROM `Punishments` WHERE `uuid` = ? " +
+            "UNION ALL SELECT 'C', NULL, NULL, `uuid`, NULL, NULL, NULL, NULL, NULL, `calculation`, NULL, NULL, COUNT(*) FROM `PunishmentHistory` WHERE `uuid` = ? GROUP BY `uuid`, `calculation` " +
+            "UNION ALL SELECT 'C', NULL, NULL, `uuid`, NULL, NULL, NULL, NULL, NULL, `calculation`, NULL, NULL, COUNT(*) FROM `PunishmentHistory` WHERE `uuid` = ? GROUP BY `uuid`, `calculation`",
+
+            "SELECT 'P' AS origin, id, name, uuid, reason, operator, punishmentType, start, end, calculation, server, targetServer, 1 AS amount FROM Punishments WHERE uuid = ? " +
+            "UNION ALL SELECT 'P', id, name, uuid, reason, operator, punishmentType, start, end, calculation, server, targetServer, 1 FROM Punishments WHERE uuid = ? " +
+            "UNION ALL SELECT 'C', NULL, NULL, uuid, NULL, NULL, NULL, NULL, NULL, calculation, NULL, NULL, COUNT(*) FROM PunishmentHistory WHERE uuid = ? GROUP BY uuid, calculation " +
+            "UNION ALL SELECT 'C', NULL, NULL, uuid, NULL, NULL, NULL, NULL, NULL, calculation, NULL, NULL, COUNT(*) FROM PunishmentHistory WHERE uuid = ? GROUP BY uuid, calculation"
     ),
-    SELECT_USER_PUNISHMENTS_HISTORY_WITH_IP(
-            "SELECT * FROM `PunishmentHistory` WHERE `uuid` = ? OR `uuid` = ?",
-            "SELECT * FROM PunishmentHistory WHERE uuid = ? OR uuid = ?"
+    SELECT_IP_BANS(
+            "SELECT * FROM `Punishments` WHERE `punishmentType` IN ('IP_BAN', 'TEMP_IP_BAN')",
+            "SELECT * FROM Punishments WHERE punishmentType IN ('IP_BAN', 'TEMP_IP_BAN')"
     ),
     SELECT_USER_PUNISHMENTS_HISTORY_BY_CALCULATION(
             "SELECT * FROM `PunishmentHistory` WHERE `uuid` = ? AND `calculation` = ?",
@@ -0,0 +1,91 @@
+package net.hnt8.advancedban.utils;
+
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * Deduplicates concurrent loads of the same key.<br>
+ * While a load for a key is running, every other caller asking for the same key waits for that load
+ * and receives its result instead of starting a load of its own.
+ *
+ * @param <K> the key type
+ * @param <V> the value type
+ */
+public class SingleFlight<K, V> {
+
+    private final Map<K, CompletableFuture<V>> inFlight = new ConcurrentHashMap<>();
+    private final LongAdder executed = new LongAdder();
+    private final LongAdder coalesced = new LongAdder();
+
+    /**
+     * Load the value for the given key, or wait for the load which is already running for it.
+     *
+     * @param key    the key
+     * @param loader the loader, only called if no load for the key is running
+     * @return the loaded value
+     */
+    public V load(K key, Supplier<V> loader) {
+        CompletableFuture<V> own = new CompletableFuture<>();
+        CompletableFuture<V> running = inFlight.putIfAbsent(key, own);
+        if (running != null) {
+            coalesced.increment();
+            return running.join();
+        }
+
+        executed.increment();
+        try {
+            V value = loader.get();
+            own.complete(value);
+            return value;
+        } catch (RuntimeException ex) {
+            own.completeExceptionally(ex);
+            throw ex;
+        } finally {
+            inFlight.remove(key, own);
+        }
+    }
+
+    /**
+     * Get a load which is currently running for a key matching the given filter.
+     *
+     * @param filter the filter for the keys
+     * @return the running load or <code>null</code> if there is none
+     */
+    public CompletableFuture<V> getInFlight(Predicate<K> filter) {
+        for (Map.Entry<K, CompletableFuture<V>> entry : inFlight.entrySet()) {
+            if (filter.test(entry.getKey())) {
+                return entry.getValue();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Mark a caller as served by a load it joined from outside of {@link #load(Object, Supplier)}.
+     */
+    public void countCoalesced() {
+        coalesced.increment();
+    }
+
+    /**
+     * Get how many loads actually have been executed.
+     *
+     * @return the executed loads
+     */
+    public long getExecuted() {
+        return executed.sum();
+    }
+
+    /**
+     * Get how many callers have been served by a load which was already running.
+     *
+     * @return the coalesced loads
+     */
+    public long getCoalesced() {
+        return coalesced.sum();
+    }
+}
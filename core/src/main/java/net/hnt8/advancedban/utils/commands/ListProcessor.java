@@ -6,12 +6,11 @@ import net.hnt8.advancedban.manager.MessageManager;
 import net.hnt8.advancedban.utils.Command;
 import net.hnt8.advancedban.utils.Punishment;
 
-import java.text.SimpleDateFormat;
-import java.util.Date;
 import java.util.List;
 import java.util.function.Consumer;
 import java.util.function.Function;
 
+import static net.hnt8.advancedban.utils.CommandUtils.isIpAddress;
 import static net.hnt8.advancedban.utils.CommandUtils.processName;
 
 public class ListProcessor implements Consumer<Command.CommandInput> {
@@ -34,7 +33,7 @@ public class ListProcessor implements Consumer<Command.CommandInput> {
         if (hasTarget) {
             target = input.getPrimary();
             name = target;
-            if (!target.matches("^(?:[0-9]{1,3}\\.){3}[0-9]{1,3}$")) {
+            if (!isIpAddress(target)) {
                 target = processName(input);
                 if (target == null)
                     return;
@@ -46,8 +45,7 @@ public class ListProcessor implements Consumer<Command.CommandInput> {
         MethodInterface mi = Universal.get().getMethods();
         final List<Punishment> punishments = listSupplier.apply(target);
         if (punishments.isEmpty()) {
-            MessageManager.sendMessage(input.getSender(), config + ".NoEntries",
-                    true, "NAME", name);
+            input.reject(config + ".NoEntries", "NAME", name);
             return;
         }
 
@@ -61,8 +59,7 @@ public class ListProcessor implements Consumer<Command.CommandInput> {
 
         int page = input.hasNext() ? Integer.parseInt(input.getPrimary()) : 1;
         if (punishments.size() / 6.0 + 1 <= page) {
-            MessageManager.sendMessage(input.getSender(), config + ".OutOfIndex",
-                    true, "PAGE", page + "");
+            input.reject(config + ".OutOfIndex", "PAGE", page + "");
             return;
         }
 
@@ -72,9 +69,6 @@ public class ListProcessor implements Consumer<Command.CommandInput> {
 
         header.forEach(line -> mi.sendMessage(input.getSender(), line));
 
-        SimpleDateFormat format = new SimpleDateFormat(mi.getString(mi.getConfig(),
-                "DateFormat", "dd.MM.yyyy-HH:mm"));
-
         for (int i = (page - 1) * 6; i < page * 6 && punishments.size() > i; i++) {
             Punishment punishment = punishments.get(i);
             String nameOrIp = punishment.getType().isIpOrientated() ? punishment.getName() + " / " +punishment.getUuid() : punishment.getName();
@@ -87,7 +81,7 @@ public class ListProcessor implements Consumer<Command.CommandInput> {
                     "REASON", punishment.getReason(),
                     "TYPE", punishment.getType().getName(),
                     "ID", punishment.getId() + "",
-                    "DATE", format.format(new Date(punishment.getStart())),
+                    "DATE", punishment.getStartDate(),
                     "SERVER", server);
 
             for (String line : entryLayout)
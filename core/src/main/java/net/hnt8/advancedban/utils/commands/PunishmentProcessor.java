@@ -2,7 +2,6 @@ package net.hnt8.advancedban.utils.commands;
 
 import net.hnt8.advancedban.MethodInterface;
 import net.hnt8.advancedban.Universal;
-import net.hnt8.advancedban.manager.MessageManager;
 import net.hnt8.advancedban.manager.PunishmentManager;
 import net.hnt8.advancedban.manager.TimeManager;
 import net.hnt8.advancedban.utils.Command;
@@ -35,7 +34,7 @@ public class PunishmentProcessor implements Consumer<Command.CommandInput> {
             return;
 
         // is exempted
-        if (processExempt(name, target, input.getSender(), type))
+        if (processExempt(name, input, type))
             return;
 
         // calculate duration if necessary
@@ -66,18 +65,21 @@ public class PunishmentProcessor implements Consumer<Command.CommandInput> {
 
         // check if punishment of this type is already active (checking both network-wide and server-specific)
         if (alreadyPunished(target, type, targetServer)) {
-            MessageManager.sendMessage(input.getSender(), type.getBasic().getName() + ".AlreadyDone",
-                    true, "NAME", name);
+            input.reject(type.getBasic().getName() + ".AlreadyDone", "NAME", name);
             return;
         }
 
         MethodInterface mi = Universal.get().getMethods();
         String operator = mi.getName(input.getSender());
-        String server = mi.getServerName(input.getSender());
-        Punishment.create(name, target, reason, operator, type, end, timeTemplate, server, targetServer, silent);
+        String server = input.getServerName();
+        Punishment punishment = Punishment.create(name, target, reason, operator, type, end, timeTemplate, server, targetServer, silent);
+        // Kicks are never stored, every other punishment without an id could not be saved
+        if (type != PunishmentType.KICK && punishment.getId() < 0) {
+            input.reject("General.SaveFailed", "NAME", name);
+            return;
+        }
 
-        MessageManager.sendMessage(input.getSender(), type.getBasic().getName() + ".Done",
-                true, "NAME", name);
+        input.complete(punishment, type.getBasic().getName() + ".Done", "NAME", name);
     }
 
     // Removes time argument and returns timestamp (null if failed)
@@ -85,10 +87,10 @@ public class PunishmentProcessor implements Consumer<Command.CommandInput> {
         String time = input.getPrimary();
         input.next();
         MethodInterface mi = Universal.get().getMethods();
-        if (time.matches("#.+")) {
+        if (time.length() > 1 && time.charAt(0) == '#') {
             String layout = time.substring(1);
             if (!mi.contains(mi.getLayouts(), "Time." + layout)) {
-                MessageManager.sendMessage(input.getSender(), "General.LayoutNotFound", true, "NAME", layout);
+                input.reject("General.LayoutNotFound", "NAME", layout);
                 return null;
             }
             int i = PunishmentManager.get().getCalculationLevel(uuid, layout);
@@ -111,7 +113,7 @@ public class PunishmentProcessor implements Consumer<Command.CommandInput> {
                 }
             }
             if (max != -1 && toAdd > max) {
-                MessageManager.sendMessage(input.getSender(), type.getName() + ".MaxDuration", true, "MAX", max / 1000 + "");
+                input.reject(type.getName() + ".MaxDuration", "MAX", max / 1000 + "");
                 return null;
             }
         }
@@ -119,7 +121,8 @@ public class PunishmentProcessor implements Consumer<Command.CommandInput> {
     }
 
     // Checks whether target is exempted from punishment
-    private static boolean processExempt(String name, String target, Object sender, PunishmentType type) {
+    private static boolean processExempt(String name, Command.CommandInput input, PunishmentType type) {
+        Object sender = input.getSender();
         MethodInterface mi = Universal.get().getMethods();
         String dataName = name.toLowerCase();
 
@@ -134,8 +137,7 @@ public class PunishmentProcessor implements Consumer<Command.CommandInput> {
         }
 
         if (exempt) {
-            MessageManager.sendMessage(sender, type.getBasic().getName() + ".Exempt",
-                    true, "NAME", name);
+            input.reject(type.getBasic().getName() + ".Exempt", "NAME", name);
             return true;
         }
         return false;
@@ -1,7 +1,6 @@
 package net.hnt8.advancedban.utils.commands;
 
 import net.hnt8.advancedban.Universal;
-import net.hnt8.advancedban.manager.MessageManager;
 import net.hnt8.advancedban.utils.Command;
 import net.hnt8.advancedban.utils.Punishment;
 
@@ -24,14 +23,12 @@ public class RevokeByIdProcessor implements Consumer<Command.CommandInput> {
 
         Punishment punishment = resolver.apply(id);
         if (punishment == null) {
-            MessageManager.sendMessage(input.getSender(), path + ".NotFound",
-                    true, "ID", id + "");
+            input.reject(path + ".NotFound", "ID", id + "");
             return;
         }
 
         final String operator = Universal.get().getMethods().getName(input.getSender());
         punishment.delete(operator, false, true);
-        MessageManager.sendMessage(input.getSender(), path + ".Done",
-                true, "ID", id + "");
+        input.complete(punishment, path + ".Done", "ID", id + "");
     }
 }
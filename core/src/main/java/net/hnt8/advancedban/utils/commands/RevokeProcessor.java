@@ -1,7 +1,6 @@
 package net.hnt8.advancedban.utils.commands;
 
 import net.hnt8.advancedban.Universal;
-import net.hnt8.advancedban.manager.MessageManager;
 import net.hnt8.advancedban.manager.PunishmentManager;
 import net.hnt8.advancedban.utils.Command;
 import net.hnt8.advancedban.utils.Punishment;
@@ -28,7 +27,7 @@ public class RevokeProcessor implements Consumer<Command.CommandInput> {
         }
 
         String target = name;
-        if(!target.matches("^(?:[0-9]{1,3}\\.){3}[0-9]{1,3}$")) {
+        if(!CommandUtils.isIpAddress(target)) {
             target = CommandUtils.processName(input);
             if (target == null)
                 return;
@@ -39,8 +38,7 @@ public class RevokeProcessor implements Consumer<Command.CommandInput> {
         if (type.getBasic() == PunishmentType.BAN) {
             List<Punishment> bans = PunishmentManager.get().getPunishments(target, PunishmentType.BAN, true);
             if (bans.isEmpty()) {
-                MessageManager.sendMessage(input.getSender(), "Un" + type.getName() + ".NotPunished",
-                        true, "NAME", name);
+                input.reject("Un" + type.getName() + ".NotPunished", "NAME", name);
                 return;
             }
 
@@ -49,40 +47,35 @@ public class RevokeProcessor implements Consumer<Command.CommandInput> {
                 for (Punishment ban : new ArrayList<>(bans)) {
                     ban.delete(operator, false, true);
                 }
-                MessageManager.sendMessage(input.getSender(), "Un" + type.getName() + ".Done",
-                        true, "NAME", name);
+                input.complete(bans.size() == 1 ? bans.get(0) : null, "Un" + type.getName() + ".Done", "NAME", name);
                 return;
             }
 
-            boolean removedAny = false;
+            Punishment removed = null;
             for (Punishment ban : new ArrayList<>(bans)) {
                 if (scope.equalsIgnoreCase(ban.getTargetServer())) {
                     ban.delete(operator, false, true);
-                    removedAny = true;
+                    removed = ban;
                 }
             }
 
-            if (!removedAny) {
-                MessageManager.sendMessage(input.getSender(), "Un" + type.getName() + ".NotPunished",
-                        true, "NAME", name);
+            if (removed == null) {
+                input.reject("Un" + type.getName() + ".NotPunished", "NAME", name);
                 return;
             }
 
-            MessageManager.sendMessage(input.getSender(), "Un" + type.getName() + ".Done",
-                    true, "NAME", name);
+            input.complete(removed, "Un" + type.getName() + ".Done", "NAME", name);
             return;
         }
 
         Punishment punishment = CommandUtils.getPunishment(target, type);
         if (punishment == null) {
-            MessageManager.sendMessage(input.getSender(), "Un" + type.getName() + ".NotPunished",
-                    true, "NAME", name);
+            input.reject("Un" + type.getName() + ".NotPunished", "NAME", name);
             return;
         }
 
         final String operator = Universal.get().getMethods().getName(input.getSender());
         punishment.delete(operator, false, true);
-        MessageManager.sendMessage(input.getSender(), "Un" + type.getName() + ".Done",
-                true, "NAME", name);
+        input.complete(punishment, "Un" + type.getName() + ".Done", "NAME", name);
     }
 }
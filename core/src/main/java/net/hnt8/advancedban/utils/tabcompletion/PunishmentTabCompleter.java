@@ -2,6 +2,7 @@ package net.hnt8.advancedban.utils.tabcompletion;
 
 import net.hnt8.advancedban.MethodInterface;
 import net.hnt8.advancedban.Universal;
+import net.hnt8.advancedban.utils.CommandUtils;
 import org.apache.commons.lang3.ArrayUtils;
 
 import java.util.ArrayList;
@@ -41,7 +42,7 @@ public class PunishmentTabCompleter implements TabCompleter {
             if(current.equals(""))
                 amount = "X";
 
-            if(amount.matches("\\d+|X")){
+            if(amount.equals("X") || CommandUtils.isNumber(amount)){
                 for(String unit : new String[]{"s", "m", "h", "d", "w", "mo"}){
                     suggestions.add(amount + unit);
                 }
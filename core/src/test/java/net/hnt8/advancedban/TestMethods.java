@@ -0,0 +1,442 @@
+package net.hnt8.advancedban;
+
+import net.hnt8.advancedban.manager.ConfigManager;
+import net.hnt8.advancedban.manager.DatabaseManager;
+import net.hnt8.advancedban.utils.Permissionable;
+import net.hnt8.advancedban.utils.Punishment;
+import net.hnt8.advancedban.utils.tabcompletion.TabCompleter;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.logging.Logger;
+
+/**
+ * A {@link MethodInterface} without any server behind it, so the managers can be tested in-process.<br>
+ * The configuration files are plain maps from path to value, players are their names and tasks run right away,
+ * repeating tasks are not run at all so the tests can drive them.
+ */
+public class TestMethods implements MethodInterface {
+
+    private static TestMethods instance = null;
+
+    private final File dataFolder;
+    private final TestFile config = new TestFile("config.yml");
+    private final TestFile messages = new TestFile("Messages.yml");
+    private final TestFile layouts = new TestFile("Layouts.yml");
+    private final TestFile mysql = new TestFile("MySQL.yml");
+    private final Logger logger = Logger.getLogger("Avesban-Test");
+
+    private final Set<String> online = ConcurrentHashMap.newKeySet();
+    private final Set<String> operators = ConcurrentHashMap.newKeySet();
+    private volatile boolean recording = true;
+    private final Map<String, List<String>> sent = new ConcurrentHashMap<>();
+    private final Map<String, String> kicked = new ConcurrentHashMap<>();
+    private final List<Punishment> punished = new CopyOnWriteArrayList<>();
+    private final List<Punishment> revoked = new CopyOnWriteArrayList<>();
+
+    private TestMethods(File dataFolder) {
+        this.dataFolder = dataFolder;
+        config.set("DefaultReason", "none");
+        config.set("DateFormat", "dd.MM.yyyy-HH:mm");
+        config.set("ChangeFeed.Enabled", true);
+        messages.set("General.Prefix", "[AB]");
+    }
+
+    /**
+     * Install the test methods and an in-process HSQLDB database in a temporary folder.
+     * Every test class shares them, as the managers are singletons.
+     *
+     * @return the installed methods
+     */
+    public static synchronized TestMethods install() {
+        if (instance == null) {
+            try {
+                instance = new TestMethods(Files.createTempDirectory("avesban-test").toFile());
+            } catch (IOException ex) {
+                throw new IllegalStateException(ex);
+            }
+            Universal.get().setMethods(instance);
+            ConfigManager.get().setup();
+            DatabaseManager.get().setup(false);
+        }
+        return instance;
+    }
+
+    public TestFile config() {
+        return config;
+    }
+
+    public TestFile messages() {
+        return messages;
+    }
+
+    public TestFile layouts() {
+        return layouts;
+    }
+
+    public void setOnline(String name, boolean isOnline) {
+        if (isOnline) {
+            online.add(name);
+        } else {
+            online.remove(name);
+        }
+    }
+
+    /**
+     * Give a player every permission.
+     *
+     * @param name the name of the player
+     */
+    public void setOperator(String name) {
+        operators.add(name);
+    }
+
+    /**
+     * Turn off recording the sent messages, so benchmarks sending millions of them do not fill up the memory.
+     *
+     * @param recording whether to record the messages
+     */
+    public void setRecording(boolean recording) {
+        this.recording = recording;
+    }
+
+    public List<String> getSent(String name) {
+        return sent.getOrDefault(name, Collections.emptyList());
+    }
+
+    public Map<String, String> getKicked() {
+        return kicked;
+    }
+
+    public List<Punishment> getPunished() {
+        return punished;
+    }
+
+    public List<Punishment> getRevoked() {
+        return revoked;
+    }
+
+    /**
+     * Forget all players, messages and events of previous tests.
+     */
+    public void reset() {
+        online.clear();
+        operators.clear();
+        sent.clear();
+        kicked.clear();
+        punished.clear();
+        revoked.clear();
+    }
+
+    @Override
+    public void loadFiles() {
+    }
+
+    @Override
+    public String getFromUrlJson(String url, String key) {
+        return null;
+    }
+
+    @Override
+    public String getVersion() {
+        return "test";
+    }
+
+    @Override
+    public String[] getKeys(Object file, String path) {
+        Set<String> keys = new LinkedHashSet<>();
+        String prefix = path + ".";
+        for (String key : ((TestFile) file).values.keySet()) {
+            if (key.startsWith(prefix)) {
+                String rest = key.substring(prefix.length());
+                int dot = rest.indexOf('.');
+                keys.add(dot == -1 ? rest : rest.substring(0, dot));
+            }
+        }
+        return keys.toArray(new String[0]);
+    }
+
+    @Override
+    public Object getConfig() {
+        return config;
+    }
+
+    @Override
+    public Object getMessages() {
+        return messages;
+    }
+
+    @Override
+    public Object getLayouts() {
+        return layouts;
+    }
+
+    @Override
+    public void setupMetrics() {
+    }
+
+    @Override
+    public boolean isBungee() {
+        return false;
+    }
+
+    @Override
+    public String clearFormatting(String text) {
+        return text;
+    }
+
+    @Override
+    public Object getPlugin() {
+        return this;
+    }
+
+    @Override
+    public File getDataFolder() {
+        return dataFolder;
+    }
+
+    @Override
+    public void setCommandExecutor(String cmd, String permission, TabCompleter tabCompleter) {
+    }
+
+    @Override
+    public void sendMessage(Object player, String msg) {
+        if (!recording) {
+            return;
+        }
+        sent.computeIfAbsent(String.valueOf(player), key -> new CopyOnWriteArrayList<>()).add(msg);
+    }
+
+    @Override
+    public String getName(Object player) {
+        return String.valueOf(player);
+    }
+
+    @Override
+    public String getName(String uuid) {
+        return null;
+    }
+
+    @Override
+    public String getIP(Object player) {
+        return "127.0.0.1";
+    }
+
+    @Override
+    public String getInternUUID(Object player) {
+        return null;
+    }
+
+    @Override
+    public String getInternUUID(String player) {
+        return null;
+    }
+
+    @Override
+    public boolean hasPerms(Object player, String perms) {
+        return operators.contains(String.valueOf(player));
+    }
+
+    @Override
+    public Permissionable getOfflinePermissionPlayer(String name) {
+        return permission -> false;
+    }
+
+    @Override
+    public boolean isOnline(String name) {
+        return online.contains(name);
+    }
+
+    @Override
+    public Object getPlayer(String name) {
+        return online.contains(name) ? name : null;
+    }
+
+    @Override
+    public void kickPlayer(String player, String reason) {
+        kicked.put(player, reason);
+        online.remove(player);
+    }
+
+    @Override
+    public Object[] getOnlinePlayers() {
+        return online.toArray();
+    }
+
+    @Override
+    public void scheduleAsyncRep(Runnable rn, long l1, long l2) {
+    }
+
+    @Override
+    public void scheduleAsync(Runnable rn, long l1) {
+    }
+
+    @Override
+    public void runAsync(Runnable rn) {
+        rn.run();
+    }
+
+    @Override
+    public void runSync(Runnable rn) {
+        rn.run();
+    }
+
+    @Override
+    public void executeCommand(String cmd) {
+    }
+
+    @Override
+    public boolean callChat(Object player) {
+        return false;
+    }
+
+    @Override
+    public boolean callCMD(Object player, String cmd) {
+        return false;
+    }
+
+    @Override
+    public Object getMySQLFile() {
+        return mysql;
+    }
+
+    @Override
+    public String parseJSON(InputStreamReader json, String key) {
+        return null;
+    }
+
+    @Override
+    public String parseJSON(String json, String key) {
+        return null;
+    }
+
+    @Override
+    public Boolean getBoolean(Object file, String path) {
+        return (Boolean) ((TestFile) file).values.get(path);
+    }
+
+    @Override
+    public String getString(Object file, String path) {
+        Object value = ((TestFile) file).values.get(path);
+        return value == null ? null : value.toString();
+    }
+
+    @Override
+    public Long getLong(Object file, String path) {
+        Object value = ((TestFile) file).values.get(path);
+        return value == null ? null : ((Number) value).longValue();
+    }
+
+    @Override
+    public Integer getInteger(Object file, String path) {
+        Object value = ((TestFile) file).values.get(path);
+        return value == null ? null : ((Number) value).intValue();
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public List<String> getStringList(Object file, String path) {
+        Object value = ((TestFile) file).values.get(path);
+        return value == null ? new ArrayList<>() : new ArrayList<>((List<String>) value);
+    }
+
+    @Override
+    public boolean getBoolean(Object file, String path, boolean def) {
+        Boolean value = getBoolean(file, path);
+        return value == null ? def : value;
+    }
+
+    @Override
+    public String getString(Object file, String path, String def) {
+        String value = getString(file, path);
+        return value == null ? def : value;
+    }
+
+    @Override
+    public long getLong(Object file, String path, long def) {
+        Long value = getLong(file, path);
+        return value == null ? def : value;
+    }
+
+    @Override
+    public int getInteger(Object file, String path, int def) {
+        Integer value = getInteger(file, path);
+        return value == null ? def : value;
+    }
+
+    @Override
+    public boolean contains(Object file, String path) {
+        return ((TestFile) file).values.containsKey(path);
+    }
+
+    @Override
+    public String getFileName(Object file) {
+        return ((TestFile) file).name;
+    }
+
+    @Override
+    public void callPunishmentEvent(Punishment punishment) {
+        punished.add(punishment);
+    }
+
+    @Override
+    public void callRevokePunishmentEvent(Punishment punishment, boolean massClear) {
+        revoked.add(punishment);
+    }
+
+    @Override
+    public boolean isOnlineMode() {
+        return false;
+    }
+
+    @Override
+    public void notify(String perm, List<String> notification) {
+    }
+
+    @Override
+    public Logger getLogger() {
+        return logger;
+    }
+
+    @Override
+    public boolean isUnitTesting() {
+        return true;
+    }
+
+    @Override
+    public String getServerName(Object player) {
+        return null;
+    }
+
+    /**
+     * A configuration file, the keys are the full paths.
+     */
+    public static final class TestFile {
+
+        private final String name;
+        private final Map<String, Object> values = new ConcurrentHashMap<>();
+
+        private TestFile(String name) {
+            this.name = name;
+        }
+
+        public TestFile set(String path, Object value) {
+            if (value == null) {
+                values.remove(path);
+            } else {
+                values.put(path, value);
+            }
+            return this;
+        }
+    }
+}
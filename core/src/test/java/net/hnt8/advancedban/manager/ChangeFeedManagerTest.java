@@ -0,0 +1,155 @@
+package net.hnt8.advancedban.manager;
+
+import net.hnt8.advancedban.TestMethods;
+import net.hnt8.advancedban.utils.Punishment;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ChangeFeedManagerTest {
+
+    private TestMethods mi;
+    private ChangeFeedManager feed;
+
+    @BeforeEach
+    public void setUp() {
+        mi = TestMethods.install();
+        mi.reset();
+        mi.messages().set("Ban.Layout", Collections.singletonList("Banned for %REASON%"));
+        mi.messages().set("IpBan.Layout", Collections.singletonList("Banned for %REASON%"));
+        mi.config().set("ChangeFeed.Gap-Seconds", 10);
+        feed = ChangeFeedManager.get();
+        feed.setup();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        mi.config().set("ChangeFeed.Gap-Seconds", null);
+    }
+
+    @Test
+    public void appliesCreateOfOtherInstance() throws SQLException {
+        mi.setOnline("Alice", true);
+        insert(feed.getWatermark() + 1, ChangeFeedManager.CREATE, 101, "Alice", "alice-uuid", "BAN", "griefing");
+
+        feed.poll();
+
+        assertTrue(mi.getKicked().containsKey("Alice"), "Online target should be kicked");
+        assertEquals(1, mi.getPunished().size());
+        assertEquals(101, mi.getPunished().get(0).getId());
+    }
+
+    @Test
+    public void appliesDeleteOfOtherInstance() throws SQLException {
+        insert(feed.getWatermark() + 1, ChangeFeedManager.DELETE, 102, "Bob", "bob-uuid", "MUTE", "spam");
+
+        feed.poll();
+
+        assertEquals(1, mi.getRevoked().size());
+        assertEquals(102, mi.getRevoked().get(0).getId());
+        assertTrue(mi.getPunished().isEmpty());
+    }
+
+    @Test
+    public void appliesReasonChangeOfOtherInstance() throws SQLException {
+        // Only cached targets keep the punishments of other instances
+        PunishmentManager.get().load("Carol", "carol-uuid", "10.0.0.3").accept();
+        long next = feed.getWatermark() + 1;
+        insert(next, ChangeFeedManager.CREATE, 103, "Carol", "10.0.0.3", "IP_BAN", "old reason");
+        insert(next + 1, ChangeFeedManager.REASON, 103, "Carol", "10.0.0.3", "IP_BAN", "new reason");
+
+        feed.poll();
+
+        Punishment ban = PunishmentManager.get().getBan("10.0.0.3");
+        assertEquals("new reason", ban.getReason());
+        assertEquals(1, mi.getPunished().size(), "Only the creation is announced");
+    }
+
+    @Test
+    public void skipsOwnChanges() throws SQLException {
+        long next = feed.getWatermark() + 1;
+        insert(next, ChangeFeedManager.DELETE, 104, "Dave", "dave-uuid", "BAN", "x", feed.getOrigin());
+
+        feed.poll();
+
+        assertTrue(mi.getRevoked().isEmpty());
+        assertEquals(next, feed.getWatermark());
+    }
+
+    @Test
+    public void appliesChangesCommittedOutOfOrder() throws SQLException {
+        long next = feed.getWatermark() + 1;
+        // The change with the higher id commits first
+        insert(next + 1, ChangeFeedManager.DELETE, 105, "Erin", "erin-uuid", "BAN", "x");
+        feed.poll();
+        assertEquals(1, mi.getRevoked().size());
+        assertEquals(1, feed.getGapCount());
+
+        insert(next, ChangeFeedManager.DELETE, 106, "Frank", "frank-uuid", "BAN", "x");
+        feed.poll();
+        assertEquals(2, mi.getRevoked().size());
+        assertEquals(106, mi.getRevoked().get(1).getId());
+        assertEquals(0, feed.getGapCount());
+
+        // Nothing is applied twice
+        feed.poll();
+        assertEquals(2, mi.getRevoked().size());
+        assertEquals(next + 1, feed.getWatermark());
+    }
+
+    @Test
+    public void givesUpOnGapsAfterTimeout() throws SQLException {
+        mi.config().set("ChangeFeed.Gap-Seconds", 0);
+        feed.setup();
+        long next = feed.getWatermark() + 1;
+
+        insert(next + 1, ChangeFeedManager.DELETE, 107, "Grace", "grace-uuid", "BAN", "x");
+        feed.poll();
+        assertEquals(0, feed.getGapCount());
+
+        // Too late, e.g. a rolled back insert which never shows up or a transaction that hung
+        insert(next, ChangeFeedManager.DELETE, 108, "Heidi", "heidi-uuid", "BAN", "x");
+        feed.poll();
+        assertEquals(1, mi.getRevoked().size());
+    }
+
+    private void insert(long changeId, String action, int id, String name, String uuid, String type, String reason) throws SQLException {
+        insert(changeId, action, id, name, uuid, type, reason, "other-instance");
+    }
+
+    // Writes with an explicit id, like a second proxy whose transaction got its id before or after ours
+    private void insert(long changeId, String action, int id, String name, String uuid, String type, String reason, String origin) throws SQLException {
+        String url = "jdbc:hsqldb:file:" + new File(mi.getDataFolder(), "data/storage").getPath() + ";hsqldb.lock_file=false";
+        try (Connection connection = DriverManager.getConnection(url, "SA", "");
+             PreparedStatement statement = connection.prepareStatement("INSERT INTO PunishmentChanges "
+                     + "(changeId, action, origin, created, id, name, uuid, reason, operator, punishmentType, start, end, calculation, server, targetServer) "
+                     + "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)")) {
+            statement.setLong(1, changeId);
+            statement.setString(2, action);
+            statement.setString(3, origin);
+            statement.setLong(4, TimeManager.getTime());
+            statement.setInt(5, id);
+            statement.setString(6, name);
+            statement.setString(7, uuid);
+            statement.setString(8, reason);
+            statement.setString(9, "CONSOLE");
+            statement.setString(10, type);
+            statement.setLong(11, TimeManager.getTime());
+            statement.setLong(12, -1);
+            statement.setString(13, null);
+            statement.setString(14, null);
+            statement.setString(15, null);
+            statement.executeUpdate();
+        }
+    }
+}
@@ -0,0 +1,80 @@
+package net.hnt8.advancedban.manager;
+
+import net.hnt8.advancedban.TestMethods;
+import net.hnt8.advancedban.utils.CommandResult;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ExecutedCommandManagerTest {
+
+    private TestMethods mi;
+    private ExecutedCommandManager manager;
+
+    @BeforeEach
+    public void setUp() {
+        mi = TestMethods.install();
+        manager = ExecutedCommandManager.get();
+    }
+
+    @Test
+    public void claimsACommandOnlyOnce() {
+        assertFalse(manager.claim("lobby-1").isDuplicate());
+
+        ExecutedCommandManager.Claim again = manager.claim("lobby-1");
+        assertTrue(again.isDuplicate());
+        assertNull(again.getPrevious(), "The command is still running");
+    }
+
+    @Test
+    public void answersCommandsSentAgainWithTheirResult() {
+        manager.complete(manager.claim("lobby-2"), CommandResult.of(true, 7, null, "Steve has been banned"));
+
+        ExecutedCommandManager.Claim again = manager.claim("lobby-2");
+        assertTrue(again.isDuplicate());
+        assertNotNull(again.getPrevious());
+        assertTrue(again.getPrevious().isSuccess());
+        assertEquals(7, again.getPrevious().getPunishmentId());
+        assertEquals("Steve has been banned", again.getPrevious().getMessage());
+    }
+
+    @Test
+    public void givesUpCommandsWhichNeverGotAResult() throws SQLException {
+        // Claimed by a proxy which has stopped before the command was done
+        insert("lobby-3", TimeManager.getTime() - 120_000);
+
+        ExecutedCommandManager.Claim again = manager.claim("lobby-3");
+        assertTrue(again.isDuplicate());
+        assertNotNull(again.getPrevious());
+        assertEquals(ExecutedCommandManager.INTERRUPTED, again.getPrevious().getError());
+    }
+
+    @Test
+    public void forgetsOldCommandIds() throws SQLException {
+        insert("lobby-4", TimeManager.getTime() - 48 * 3_600_000L);
+        manager.cleanup();
+
+        assertFalse(manager.claim("lobby-4").isDuplicate());
+    }
+
+    private void insert(String commandId, long created) throws SQLException {
+        String url = "jdbc:hsqldb:file:" + new File(mi.getDataFolder(), "data/storage").getPath() + ";hsqldb.lock_file=false";
+        try (Connection connection = DriverManager.getConnection(url, "SA", "");
+             PreparedStatement statement = connection.prepareStatement("INSERT INTO ExecutedCommands (commandId, claim, created) VALUES (?, 'other-proxy', ?)")) {
+            statement.setString(1, commandId);
+            statement.setLong(2, created);
+            statement.executeUpdate();
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package net.hnt8.advancedban.manager;
+
+import net.hnt8.advancedban.TestMethods;
+import net.hnt8.advancedban.utils.Punishment;
+import net.hnt8.advancedban.utils.PunishmentType;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class IpBanIndexTest {
+
+    private TestMethods mi;
+    private IpBanIndex index;
+
+    @BeforeEach
+    public void setUp() {
+        mi = TestMethods.install();
+        index = IpBanIndex.get();
+        index.setup();
+    }
+
+    @Test
+    public void seesBansCreatedElsewhereAfterReloading() throws SQLException {
+        try (Connection connection = connect()) {
+            insert(connection, "10.3.0.1", PunishmentType.IP_BAN, null);
+        }
+        assertNull(index.getBan("10.3.0.1"));
+
+        index.reload();
+        assertNotNull(index.getBan("10.3.0.1"));
+    }
+
+    @Test
+    public void forgetsBansRevokedElsewhereAfterReloading() throws SQLException {
+        try (Connection connection = connect()) {
+            insert(connection, "10.3.0.2", PunishmentType.TEMP_IP_BAN, null);
+        }
+        index.reload();
+        assertNotNull(index.getBan("10.3.0.2"));
+
+        try (Connection connection = connect();
+             PreparedStatement statement = connection.prepareStatement("DELETE FROM Punishments WHERE uuid = ?")) {
+            statement.setString(1, "10.3.0.2");
+            statement.executeUpdate();
+        }
+        index.reload();
+        assertNull(index.getBan("10.3.0.2"));
+    }
+
+    @Test
+    public void indexesNetworkWideIpBansOnly() throws SQLException {
+        try (Connection connection = connect()) {
+            insert(connection, "10.3.0.3", PunishmentType.IP_BAN, "lobby");
+            insert(connection, "10.3.0.4", PunishmentType.BAN, null);
+        }
+        index.reload();
+
+        assertNull(index.getBan("10.3.0.3"), "Bans of a single server apply once the player connects to it");
+        assertNull(index.getBan("10.3.0.4"));
+    }
+
+    @Test
+    public void keepsChangesMadeWhileReloading() throws Exception {
+        try (Connection connection = connect()) {
+            insert(connection, "10.3.0.5", PunishmentType.IP_BAN, null);
+        }
+        index.reload();
+        Punishment revoked = index.getBan("10.3.0.5");
+        Punishment created = new Punishment("Steve", "10.3.0.6", "test", "CONSOLE", PunishmentType.IP_BAN, TimeManager.getTime(), -1, null, null, null, 4712);
+
+        try (Connection connection = connect()) {
+            // An uncommitted insert keeps the query waiting until it is rolled back
+            connection.setAutoCommit(false);
+            insert(connection, "10.3.0.7", PunishmentType.IP_BAN, null);
+            Thread reload = new Thread(index::reload);
+            reload.start();
+            long deadline = System.currentTimeMillis() + 10_000;
+            while (reload.getState() != Thread.State.WAITING && reload.getState() != Thread.State.TIMED_WAITING) {
+                assertTrue(System.currentTimeMillis() < deadline, "The query should wait for the lock");
+                Thread.sleep(5);
+            }
+
+            index.remove(revoked);
+            index.add(created);
+            connection.rollback();
+            reload.join(10_000);
+        }
+
+        assertNull(index.getBan("10.3.0.5"), "The revoked ban is still in the table but must not come back");
+        assertEquals(created, index.getBan("10.3.0.6"));
+    }
+
+    private static void insert(Connection connection, String ip, PunishmentType type, String targetServer) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement("INSERT INTO Punishments "
+                + "(name, uuid, reason, operator, punishmentType, start, end, targetServer) VALUES ('Steve', ?, 'test', 'CONSOLE', ?, ?, ?, ?)")) {
+            statement.setString(1, ip);
+            statement.setString(2, type.name());
+            statement.setLong(3, TimeManager.getTime());
+            statement.setLong(4, type.isTemp() ? TimeManager.getTime() + 3_600_000 : -1);
+            statement.setString(5, targetServer);
+            statement.executeUpdate();
+        }
+    }
+
+    private Connection connect() throws SQLException {
+        String url = "jdbc:hsqldb:file:" + new File(mi.getDataFolder(), "data/storage").getPath() + ";hsqldb.lock_file=false";
+        return DriverManager.getConnection(url, "SA", "");
+    }
+}
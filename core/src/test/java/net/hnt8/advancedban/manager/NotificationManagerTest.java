@@ -0,0 +1,101 @@
+package net.hnt8.advancedban.manager;
+
+import net.hnt8.advancedban.TestMethods;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class NotificationManagerTest {
+
+    private static final String MODERATOR = "Moderator";
+
+    private TestMethods mi;
+    private NotificationManager manager;
+
+    @BeforeEach
+    public void setUp() {
+        mi = TestMethods.install();
+        mi.reset();
+        mi.config().set("Notifications.Burst-Seconds", 3);
+        mi.config().set("Notifications.Burst-Limit", 2);
+        mi.setOnline(MODERATOR, true);
+        mi.setOperator(MODERATOR);
+        manager = NotificationManager.get();
+        manager.setup();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        mi.config().set("Notifications.Burst-Seconds", null);
+        mi.config().set("Notifications.Burst-Limit", null);
+        manager.setup();
+    }
+
+    @Test
+    public void sumsUpNotificationsAboveTheBurstLimit() {
+        long coalesced = manager.getCoalesced();
+        for (int i = 0; i < 5; i++) {
+            manager.notify("ab.notify.ban", Collections.singletonList("Ban " + i));
+        }
+
+        assertEquals(Arrays.asList("Ban 0", "Ban 1"), mi.getSent(MODERATOR));
+        assertEquals(coalesced + 3, manager.getCoalesced());
+
+        manager.flush("ab.notify.ban");
+        List<String> sent = mi.getSent(MODERATOR);
+        assertEquals(3, sent.size());
+        assertTrue(sent.get(2).contains("3") && sent.get(2).contains("ban"), sent.get(2));
+    }
+
+    @Test
+    public void startsANewBurstAfterTheSummary() {
+        for (int i = 0; i < 3; i++) {
+            manager.notify("ab.notify.kick", Collections.singletonList("Kick " + i));
+        }
+        manager.flush("ab.notify.kick");
+        manager.notify("ab.notify.kick", Collections.singletonList("Kick 3"));
+
+        assertEquals("Kick 3", mi.getSent(MODERATOR).get(3));
+    }
+
+    @Test
+    public void sendsNoSummaryWithinTheLimit() {
+        manager.notify("ab.undoNotify.mute", Collections.singletonList("Unmute"));
+        manager.flush("ab.undoNotify.mute");
+
+        assertEquals(Arrays.asList("Unmute"), mi.getSent(MODERATOR));
+    }
+
+    @Test
+    public void sendsEveryNotificationWithoutABurstLimit() {
+        mi.config().set("Notifications.Burst-Limit", 0);
+        manager.setup();
+        for (int i = 0; i < 5; i++) {
+            manager.notify("ab.notify.warning", Collections.singletonList("Warning " + i));
+        }
+
+        assertEquals(5, mi.getSent(MODERATOR).size());
+    }
+
+    @Test
+    public void checksPermissionsOnJoinBetweenRefreshes() {
+        manager.notify("ab.notify.note", Collections.singletonList("Note 0"));
+        mi.setOnline("Helper", true);
+        mi.setOperator("Helper");
+
+        manager.notify("ab.notify.note", Collections.singletonList("Note 1"));
+        assertEquals(Collections.emptyList(), mi.getSent("Helper"), "The permission was checked just now");
+        manager.flush("ab.notify.note");
+
+        manager.refresh("Helper");
+        manager.notify("ab.notify.note", Collections.singletonList("Note 2"));
+        assertEquals(Arrays.asList("Note 2"), mi.getSent("Helper"));
+    }
+}
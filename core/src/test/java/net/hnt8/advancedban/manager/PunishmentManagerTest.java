@@ -0,0 +1,270 @@
+package net.hnt8.advancedban.manager;
+
+import net.hnt8.advancedban.TestMethods;
+import net.hnt8.advancedban.Universal;
+import net.hnt8.advancedban.utils.InterimData;
+import net.hnt8.advancedban.utils.Punishment;
+import net.hnt8.advancedban.utils.PunishmentType;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class PunishmentManagerTest {
+
+    private TestMethods mi;
+    private PunishmentManager manager;
+
+    @BeforeEach
+    public void setUp() {
+        mi = TestMethods.install();
+        mi.reset();
+        mi.messages().set("Ban.Layout", Collections.singletonList("Banned for %REASON%"));
+        manager = PunishmentManager.get();
+        manager.setup();
+        ChangeFeedManager.get().setup();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        mi.config().set("ChangeFeed.Enabled", true);
+        ChangeFeedManager.get().setup();
+    }
+
+    @Test
+    public void loadsActivePunishmentsAndHistoryCountsAtLogin() throws SQLException {
+        String uuid = "0000000000000000000000000001aaaa";
+        try (Connection connection = connect()) {
+            insert(connection, "Punishments", "Alice", uuid, PunishmentType.MUTE, null, 1000);
+            insert(connection, "Punishments", "Alice", "10.1.0.1", PunishmentType.IP_BAN, null, 1000);
+            insert(connection, "PunishmentHistory", "Alice", uuid, PunishmentType.TEMP_MUTE, "Spam", 1000);
+            insert(connection, "PunishmentHistory", "Alice", uuid, PunishmentType.TEMP_MUTE, "Spam", 2000);
+            insert(connection, "PunishmentHistory", "Alice", uuid, PunishmentType.TEMP_BAN, "Hacking", 3000);
+            insert(connection, "PunishmentHistory", "Alice", "10.1.0.1", PunishmentType.TEMP_BAN, "Spam", 1000);
+            insert(connection, "PunishmentHistory", "Alice", uuid, PunishmentType.KICK, null, 4000);
+        }
+
+        InterimData data = manager.load("alice", uuid, "10.1.0.1");
+
+        assertEquals(2, data.getPunishments().size());
+        assertNotNull(data.getBan(), "The ban of the address applies to the player");
+        Map<String, Map<String, Integer>> counts = data.getCalculationCounts();
+        assertEquals(2, counts.get(uuid).get("spam"));
+        assertEquals(1, counts.get(uuid).get("hacking"));
+        assertEquals(2, counts.get(uuid).size(), "Entries without a layout are not counted");
+        assertEquals(1, counts.get("10.1.0.1").get("spam"));
+    }
+
+    @Test
+    public void keepsPunishmentsCreatedWhileTheHistoryLoads() throws Exception {
+        String uuid = "0000000000000000000000000001bbbb";
+        Punishment punishment = new Punishment("Bob", uuid, "spam", "CONSOLE", PunishmentType.MUTE, 5000, -1, null, null, null, 7);
+
+        List<Punishment> history = loadHistoryWhileLocked(uuid, connection ->
+                // Some other entry keeps the table locked, so the query does not see the new punishment
+                insert(connection, "PunishmentHistory", "Someone", "0000000000000000000000000001ffff", PunishmentType.KICK, null, 5000),
+                punishment);
+
+        assertEquals(1, history.size());
+        assertEquals(1, manager.getPunishments(uuid, null, false).size(), "The punishment is in the cached history");
+    }
+
+    @Test
+    public void addsPunishmentsSeenByTheHistoryQueryOnlyOnce() throws Exception {
+        String uuid = "0000000000000000000000000001cccc";
+        Punishment punishment = new Punishment("Carol", uuid, "spam", "CONSOLE", PunishmentType.MUTE, 6000, -1, null, null, null, 8);
+
+        List<Punishment> history = loadHistoryWhileLocked(uuid, connection ->
+                insert(connection, "PunishmentHistory", "Carol", uuid, PunishmentType.MUTE, null, 6000),
+                punishment);
+
+        assertEquals(1, history.size());
+        manager.addToHistory(punishment);
+        assertEquals(1, manager.getPunishments(uuid, null, false).size());
+    }
+
+    @Test
+    public void sharesOneFetchBetweenLoginsOfTheSameAccountAndAddress() throws Exception {
+        String uuid = "0000000000000000000000000001dddd";
+        long coalesced = manager.getCoalescedLoads();
+        AtomicReference<InterimData> first = new AtomicReference<>();
+        AtomicReference<InterimData> second = new AtomicReference<>();
+
+        try (Connection connection = lock()) {
+            Thread firstLogin = new Thread(() -> first.set(manager.load("dave", uuid, "10.1.0.4")));
+            firstLogin.start();
+            await(() -> isWaiting(firstLogin), "The fetch should wait for the lock");
+            Thread secondLogin = new Thread(() -> second.set(manager.load("dave", uuid, "10.1.0.4")));
+            secondLogin.start();
+            await(() -> manager.getCoalescedLoads() == coalesced + 1, "The second login should join the first one");
+
+            connection.rollback();
+            firstLogin.join(10_000);
+            secondLogin.join(10_000);
+        }
+        assertNotNull(first.get());
+        assertSame(first.get(), second.get());
+    }
+
+    @Test
+    public void fetchesAgainForLoginsFromAnotherAddress() throws Exception {
+        String uuid = "0000000000000000000000000001eeee";
+        try (Connection connection = connect()) {
+            insert(connection, "Punishments", "Erin", "10.1.0.6", PunishmentType.IP_BAN, null, 1000);
+        }
+        long misses = manager.getCacheMisses();
+        AtomicReference<InterimData> allowed = new AtomicReference<>();
+        AtomicReference<InterimData> banned = new AtomicReference<>();
+
+        try (Connection connection = lock()) {
+            Thread allowedLogin = new Thread(() -> allowed.set(manager.load("erin", uuid, "10.1.0.5")));
+            allowedLogin.start();
+            await(() -> isWaiting(allowedLogin), "The fetch should wait for the lock");
+            Thread bannedLogin = new Thread(() -> banned.set(manager.load("erin", uuid, "10.1.0.6")));
+            bannedLogin.start();
+            await(() -> manager.getCacheMisses() == misses + 2, "The second login should fetch on its own");
+
+            connection.rollback();
+            allowedLogin.join(10_000);
+            bannedLogin.join(10_000);
+        }
+        assertNull(allowed.get().getBan());
+        assertNotNull(banned.get().getBan(), "The ban of the second address must not be missed");
+    }
+
+    @Test
+    public void loadsReconnectingPlayersAgainWithoutTheChangeFeed() throws SQLException {
+        mi.config().set("ChangeFeed.Enabled", false);
+        ChangeFeedManager.get().setup();
+        String uuid = login("frank", "10.2.0.1");
+        manager.discard("frank");
+        assertFalse(manager.isCached(uuid), "Nothing is retained");
+
+        // Banned by a web panel or a proxy which does not share its changes
+        try (Connection connection = connect()) {
+            insert(connection, "Punishments", "Frank", uuid, PunishmentType.BAN, null, TimeManager.getTime());
+        }
+
+        assertNotNull(manager.load("frank", uuid, "10.2.0.1").getBan());
+    }
+
+    @Test
+    public void appliesBansOfOtherProxiesToRetainedPlayers() throws SQLException {
+        ChangeFeedManager feed = ChangeFeedManager.get();
+        String uuid = login("grace", "10.2.0.2");
+        manager.discard("grace");
+        assertTrue(manager.isCached(uuid), "The data is retained");
+
+        long start = TimeManager.getTime();
+        try (Connection connection = connect()) {
+            insert(connection, "Punishments", "Grace", uuid, PunishmentType.BAN, null, start);
+            try (PreparedStatement statement = connection.prepareStatement("INSERT INTO PunishmentChanges "
+                    + "(changeId, action, origin, created, id, name, uuid, reason, operator, punishmentType, start, end) "
+                    + "VALUES (?, ?, 'other-instance', ?, 4711, 'Grace', ?, 'test', 'CONSOLE', 'BAN', ?, -1)")) {
+                statement.setLong(1, feed.getWatermark() + 1);
+                statement.setString(2, ChangeFeedManager.CREATE);
+                statement.setLong(3, start);
+                statement.setString(4, uuid);
+                statement.setLong(5, start);
+                statement.executeUpdate();
+            }
+        }
+        feed.poll();
+
+        long reconnects = manager.getReconnectHits();
+        InterimData data = manager.load("grace", uuid, "10.2.0.2");
+        assertEquals(reconnects + 1, manager.getReconnectHits(), "The retained data is used");
+        assertNotNull(data.getBan());
+    }
+
+    // The uuid fetcher is disabled in offline mode, so the uuid of a player is their name
+    private String login(String name, String ip) {
+        UUIDManager.get().setup();
+        String uuid = UUIDManager.get().getUUID(name);
+        Universal.get().getIps().put(name, ip);
+        InterimData data = manager.load(name, uuid, ip);
+        assertNull(data.getBan());
+        data.accept();
+        return uuid;
+    }
+
+    // Starts loading the history while an uncommitted insert locks the table and adds the punishment meanwhile
+    private List<Punishment> loadHistoryWhileLocked(String uuid, Insert insert, Punishment created) throws Exception {
+        AtomicReference<List<Punishment>> result = new AtomicReference<>();
+        try (Connection connection = connect()) {
+            connection.setAutoCommit(false);
+            insert.run(connection);
+
+            Thread loader = new Thread(() -> result.set(manager.getPunishments(uuid, null, false)));
+            loader.start();
+            await(() -> isWaiting(loader), "The query should wait for the lock");
+            manager.addToHistory(created);
+
+            connection.commit();
+            loader.join(10_000);
+        }
+        assertNotNull(result.get());
+        return result.get();
+    }
+
+    // An uncommitted insert, which keeps every query of the punishments waiting until it is rolled back
+    private Connection lock() throws SQLException {
+        Connection connection = connect();
+        connection.setAutoCommit(false);
+        insert(connection, "Punishments", "Someone", "0000000000000000000000000001ffff", PunishmentType.BAN, null, 1000);
+        return connection;
+    }
+
+    private static boolean isWaiting(Thread thread) {
+        return thread.getState() == Thread.State.WAITING || thread.getState() == Thread.State.TIMED_WAITING;
+    }
+
+    private static void await(BooleanSupplier condition, String message) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.currentTimeMillis() < deadline, message);
+            Thread.sleep(5);
+        }
+    }
+
+    private static void insert(Connection connection, String table, String name, String uuid, PunishmentType type, String calculation, long start) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement("INSERT INTO " + table
+                + " (name, uuid, reason, operator, punishmentType, start, end, calculation) VALUES (?, ?, ?, ?, ?, ?, ?, ?)")) {
+            statement.setString(1, name);
+            statement.setString(2, uuid);
+            statement.setString(3, "test");
+            statement.setString(4, "CONSOLE");
+            statement.setString(5, type.name());
+            statement.setLong(6, start);
+            statement.setLong(7, -1);
+            statement.setString(8, calculation);
+            statement.executeUpdate();
+        }
+    }
+
+    private Connection connect() throws SQLException {
+        String url = "jdbc:hsqldb:file:" + new File(mi.getDataFolder(), "data/storage").getPath() + ";hsqldb.lock_file=false";
+        return DriverManager.getConnection(url, "SA", "");
+    }
+
+    private interface Insert {
+        void run(Connection connection) throws SQLException;
+    }
+}
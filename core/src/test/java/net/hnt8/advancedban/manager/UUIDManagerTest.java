@@ -0,0 +1,116 @@
+package net.hnt8.advancedban.manager;
+
+import net.hnt8.advancedban.TestMethods;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.File;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class UUIDManagerTest {
+
+    private TestMethods mi;
+    private UUIDManager manager;
+
+    @BeforeEach
+    public void setUp() {
+        mi = TestMethods.install();
+        // Resolve through the player cache and the REST-API, without the bulk resolver
+        mi.config().set("UUID-Fetcher.Dynamic", false);
+        mi.config().set("UUID-Fetcher.Enabled", true);
+        mi.config().set("UUID-Fetcher.Intern", false);
+        mi.config().set("UUID-Fetcher.Bulk-API.Enabled", false);
+        // Nothing listens there, so asking the APIs fails right away
+        mi.config().set("UUID-Fetcher.REST-API.URL", "http://127.0.0.1:1/%NAME%");
+        mi.config().set("UUID-Fetcher.BackUp-API.URL", "http://127.0.0.1:1/%NAME%");
+        manager = UUIDManager.get();
+        manager.setup();
+        assertEquals(UUIDManager.FetcherMode.RESTFUL, manager.getMode());
+    }
+
+    @AfterEach
+    public void tearDown() {
+        mi.config().set("UUID-Fetcher.Dynamic", null);
+        mi.config().set("UUID-Fetcher.Enabled", null);
+        mi.config().set("UUID-Fetcher.Intern", null);
+        mi.config().set("UUID-Fetcher.Bulk-API.Enabled", null);
+        mi.config().set("UUID-Fetcher.REST-API.URL", null);
+        mi.config().set("UUID-Fetcher.BackUp-API.URL", null);
+        manager.getCache().clear();
+        manager.setup();
+    }
+
+    @Test
+    public void resolvesRecordedPlayersWithoutTheMemoryCache() {
+        manager.recordLogin("Steve", "0000000000000000000000000000aaaa", "10.0.0.1");
+        manager.getCache().clear();
+
+        assertEquals("0000000000000000000000000000aaaa", manager.getUUID("Steve"));
+        manager.getCache().clear();
+        assertEquals("steve", manager.getNameFromUUID("0000000000000000000000000000aaaa", false));
+        // Both directions are back in memory
+        assertEquals("0000000000000000000000000000aaaa", manager.getInMemoryUUID("steve"));
+        assertEquals("steve", manager.getInMemoryName("0000000000000000000000000000aaaa"));
+    }
+
+    @Test
+    public void keepsTheNewNameAndTheLastAddressOfARenamedPlayer() throws SQLException {
+        manager.recordLogin("OldName", "0000000000000000000000000000bbbb", "10.0.0.2");
+        manager.recordLogin("NewName", "0000000000000000000000000000bbbb", null);
+        manager.getCache().clear();
+
+        assertEquals("newname", manager.getNameFromUUID("0000000000000000000000000000bbbb", false));
+        try (Connection connection = connect();
+             PreparedStatement statement = connection.prepareStatement("SELECT name, ip FROM PlayerCache WHERE uuid = ?")) {
+            statement.setString(1, "0000000000000000000000000000bbbb");
+            try (ResultSet rs = statement.executeQuery()) {
+                assertTrue(rs.next());
+                assertEquals("newname", rs.getString("name"));
+                assertEquals("10.0.0.2", rs.getString("ip"));
+                assertFalse(rs.next(), "A player has a single row");
+            }
+        }
+    }
+
+    @Test
+    public void givesATakenOverNameToItsLastOwner() throws InterruptedException {
+        manager.recordLogin("Taken", "0000000000000000000000000000cccc", null);
+        Thread.sleep(5);
+        manager.recordLogin("Taken", "0000000000000000000000000000dddd", null);
+        manager.getCache().clear();
+
+        assertEquals("0000000000000000000000000000dddd", manager.getUUID("taken"));
+    }
+
+    @Test
+    public void asksTheApiForNamesNotSeenRecently() throws SQLException {
+        manager.recordLogin("Renamed", "0000000000000000000000000000eeee", null);
+        try (Connection connection = connect();
+             PreparedStatement statement = connection.prepareStatement("UPDATE PlayerCache SET lastSeen = ? WHERE uuid = ?")) {
+            statement.setLong(1, TimeManager.getTime() - 38 * 86_400_000L);
+            statement.setString(2, "0000000000000000000000000000eeee");
+            statement.executeUpdate();
+        }
+        manager.getCache().clear();
+
+        // The name may have a new owner by now, only the API can tell
+        assertNull(manager.getUUID("renamed"));
+        // Looking the name up by uuid is still fine
+        assertEquals("renamed", manager.getNameFromUUID("0000000000000000000000000000eeee", false));
+    }
+
+    private Connection connect() throws SQLException {
+        String url = "jdbc:hsqldb:file:" + new File(mi.getDataFolder(), "data/storage").getPath() + ";hsqldb.lock_file=false";
+        return DriverManager.getConnection(url, "SA", "");
+    }
+}
@@ -0,0 +1,48 @@
+package net.hnt8.advancedban.utils;
+
+import net.hnt8.advancedban.TestMethods;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+public class CommandTest {
+
+    private TestMethods mi;
+
+    @BeforeEach
+    public void setUp() {
+        mi = TestMethods.install();
+        mi.reset();
+        mi.messages().set("General.NoPerms", "No perms");
+        mi.messages().set("History.NoEntries", "No entries for %NAME%");
+        mi.messages().set("ChangeReason.NotFound", "Not found");
+    }
+
+    @Test
+    public void reportsMissingPermissionsAsFailure() {
+        CommandResult result = Command.WARNS.execute("Steve", new String[]{"Alex"});
+
+        assertFalse(result.isSuccess());
+        assertEquals("General.NoPerms", result.getError());
+        assertEquals(1, mi.getSent("Steve").size());
+    }
+
+    @Test
+    public void reportsEmptyListsAsFailure() {
+        CommandResult result = Command.HISTORY.execute("Steve", new String[]{"10.9.9.9"});
+
+        assertFalse(result.isSuccess());
+        assertEquals("History.NoEntries", result.getError());
+        assertEquals("No entries for 10.9.9.9", result.getMessage());
+    }
+
+    @Test
+    public void reportsUnknownPunishmentsAsFailure() {
+        CommandResult result = Command.CHANGE_REASON.execute("Steve", new String[]{"987654", "new", "reason"});
+
+        assertFalse(result.isSuccess());
+        assertEquals("ChangeReason.NotFound", result.getError());
+    }
+}
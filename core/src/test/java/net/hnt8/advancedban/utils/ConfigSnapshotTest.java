@@ -0,0 +1,143 @@
+package net.hnt8.advancedban.utils;
+
+import net.hnt8.advancedban.TestMethods;
+import net.hnt8.advancedban.manager.MessageManager;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ConfigSnapshotTest {
+
+    private static final String[] PATHS = {"TimeDiff", "DefaultReason", "Disable Prefix", "ExemptPlayers", "MuteCommands", "LockdownOnError", "TimeZone"};
+
+    private TestMethods mi;
+
+    @BeforeEach
+    public void setUp() {
+        mi = TestMethods.install();
+        MessageManager.invalidate();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        for (String path : PATHS) {
+            mi.config().set(path, null);
+        }
+        mi.config().set("DefaultReason", "none");
+        mi.config().set("DateFormat", "dd.MM.yyyy-HH:mm");
+    }
+
+    @Test
+    public void readsTheSettings() {
+        mi.config().set("TimeDiff", 2);
+        mi.config().set("DefaultReason", "Breaking the rules");
+        mi.config().set("ExemptPlayers", Arrays.asList("Notch", "jeb_"));
+        mi.config().set("MuteCommands", Arrays.asList("msg", "tell"));
+        mi.config().set("LockdownOnError", false);
+
+        ConfigSnapshot snapshot = ConfigSnapshot.load(mi);
+        assertEquals(2 * 60 * 60 * 1000L, snapshot.getTimeDiff());
+        assertEquals("Breaking the rules", snapshot.getDefaultReason());
+        assertTrue(snapshot.isExempt("notch"));
+        assertTrue(snapshot.isExempt("JEB_"));
+        assertFalse(snapshot.isExempt("Steve"));
+        assertEquals(Arrays.asList("msg", "tell"), snapshot.getMuteCommands());
+        assertFalse(snapshot.isLockdownOnError());
+        assertFalse(snapshot.isPrefixDisabled());
+        assertEquals("[AB]", snapshot.getPrefix());
+    }
+
+    @Test
+    public void fallsBackToDefaults() {
+        mi.config().set("DefaultReason", null);
+
+        ConfigSnapshot snapshot = ConfigSnapshot.load(mi);
+        assertEquals(0, snapshot.getTimeDiff());
+        assertEquals("none", snapshot.getDefaultReason());
+        assertFalse(snapshot.isExempt("Steve"));
+        assertTrue(snapshot.getMuteCommands().isEmpty());
+        assertTrue(snapshot.isLockdownOnError());
+    }
+
+    @Test
+    public void dropsThePrefixIfItIsDisabled() {
+        mi.config().set("Disable Prefix", true);
+
+        ConfigSnapshot snapshot = ConfigSnapshot.load(mi);
+        assertTrue(snapshot.isPrefixDisabled());
+        assertEquals("", snapshot.getPrefix());
+    }
+
+    @Test
+    public void neverChanges() {
+        mi.config().set("MuteCommands", Arrays.asList("msg"));
+        ConfigSnapshot snapshot = ConfigSnapshot.load(mi);
+
+        mi.config().set("MuteCommands", Arrays.asList("msg", "tell"));
+        mi.config().set("DefaultReason", "changed");
+        assertEquals(Arrays.asList("msg"), snapshot.getMuteCommands());
+        assertEquals("none", snapshot.getDefaultReason());
+        assertThrows(UnsupportedOperationException.class, () -> snapshot.getMuteCommands().add("me"));
+    }
+
+    @Test
+    public void formatsDatesInTheConfiguredZone() {
+        mi.config().set("DateFormat", "yyyy-MM-dd HH:mm:ss");
+        mi.config().set("TimeZone", "UTC");
+        assertEquals("2021-03-04 05:06:07", ConfigSnapshot.load(mi).formatDate(1614834367000L));
+
+        mi.config().set("TimeZone", "Europe/Berlin");
+        assertEquals("2021-03-04 06:06:07", ConfigSnapshot.load(mi).formatDate(1614834367000L));
+    }
+
+    @Test
+    public void formatsDatesFromSeveralThreads() throws InterruptedException {
+        mi.config().set("DateFormat", "yyyy-MM-dd HH:mm:ss");
+        mi.config().set("TimeZone", "UTC");
+        ConfigSnapshot snapshot = ConfigSnapshot.load(mi);
+
+        // The formatter is shared, unlike SimpleDateFormat it has to give the same result on every thread
+        List<String> failures = new CopyOnWriteArrayList<>();
+        List<Thread> threads = new ArrayList<>();
+        for (int t = 0; t < 4; t++) {
+            long offset = t * 86_400_000L;
+            String expected = "2021-03-0" + (4 + t) + " 05:06:07";
+            threads.add(new Thread(() -> {
+                for (int i = 0; i < 2_000; i++) {
+                    String formatted = snapshot.formatDate(1614834367000L + offset);
+                    if (!formatted.equals(expected)) {
+                        failures.add(formatted);
+                    }
+                }
+            }));
+        }
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertTrue(failures.isEmpty(), failures.toString());
+    }
+
+    @Test
+    public void fallsBackOnAnInvalidDateFormatOrZone() {
+        mi.config().set("DateFormat", "yyyy-MM-dd {");
+        mi.config().set("TimeZone", "Not/AZone");
+        ZonedDateTime date = ZonedDateTime.of(2021, 3, 4, 5, 6, 7, 0, ZoneId.systemDefault());
+
+        assertEquals("04.03.2021-05:06", ConfigSnapshot.load(mi).formatDate(date.toInstant().toEpochMilli()));
+    }
+}
@@ -0,0 +1,113 @@
+package net.hnt8.advancedban.utils;
+
+import net.hnt8.advancedban.TestMethods;
+import net.hnt8.advancedban.manager.IpBanIndex;
+import net.hnt8.advancedban.manager.TimeManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+public class DenialCacheTest {
+
+    private final AtomicInteger rendered = new AtomicInteger();
+
+    @BeforeEach
+    public void setUp() {
+        TestMethods.install();
+    }
+
+    @Test
+    public void remembersDenialsByUuid() {
+        DenialCache<String> cache = cache(60_000);
+        assertEquals("Banned for hacking", cache.put("steve-uuid", "10.0.0.1", ban(1, PunishmentType.BAN, -1)));
+
+        assertEquals("Banned for hacking", cache.getByUuid("steve-uuid"));
+        assertEquals(1, rendered.get(), "The ban should only be rendered once");
+        // Others may share the address of a player who is not IP banned
+        assertNull(cache.getByIp("10.0.0.1"));
+        assertNull(cache.getByUuid(null));
+    }
+
+    @Test
+    public void remembersIpBansByAddress() {
+        DenialCache<String> cache = cache(60_000);
+        cache.put(null, "10.0.0.2", ban(2, PunishmentType.IP_BAN, -1));
+
+        assertEquals("Banned for hacking", cache.getByIp("10.0.0.2"));
+    }
+
+    @Test
+    public void expiresAfterTheTtl() throws InterruptedException {
+        DenialCache<String> cache = cache(50);
+        cache.put("steve-uuid", null, ban(3, PunishmentType.BAN, -1));
+
+        Thread.sleep(100);
+        assertNull(cache.getByUuid("steve-uuid"));
+    }
+
+    @Test
+    public void neverOutlivesATemporaryBan() throws InterruptedException {
+        DenialCache<String> cache = cache(60_000);
+        cache.put("steve-uuid", "10.0.0.3", ban(4, PunishmentType.TEMP_IP_BAN, TimeManager.getTime() + 50));
+        assertEquals("Banned for hacking", cache.getByIp("10.0.0.3"));
+
+        Thread.sleep(100);
+        assertNull(cache.getByUuid("steve-uuid"));
+        assertNull(cache.getByIp("10.0.0.3"));
+    }
+
+    @Test
+    public void forgetsRevokedBans() {
+        DenialCache<String> cache = cache(60_000);
+        Punishment revoked = ban(5, PunishmentType.IP_BAN, -1);
+        cache.put("steve-uuid", "10.0.0.4", revoked);
+        cache.put("alex-uuid", null, ban(6, PunishmentType.BAN, -1));
+
+        cache.invalidate(revoked);
+        assertNull(cache.getByUuid("steve-uuid"));
+        assertNull(cache.getByIp("10.0.0.4"));
+        assertEquals("Banned for hacking", cache.getByUuid("alex-uuid"));
+    }
+
+    @Test
+    public void remembersNothingWithoutTtl() {
+        DenialCache<String> cache = cache(0);
+        assertEquals("Banned for hacking", cache.put("steve-uuid", "10.0.0.5", ban(7, PunishmentType.IP_BAN, -1)));
+
+        assertNull(cache.getByUuid("steve-uuid"));
+        assertNull(cache.getByIp("10.0.0.5"));
+    }
+
+    @Test
+    public void rejectsIndexedAddressesBeforeLogin() {
+        DenialCache<String> cache = cache(60_000);
+        Punishment ban = new Punishment("Steve", "10.0.0.6", "flooding", "CONSOLE", PunishmentType.IP_BAN, TimeManager.getTime(), -1, null, null, null, 8);
+        IpBanIndex.get().add(ban);
+        long rejections = IpBanIndex.get().getRejections();
+
+        assertEquals("Banned for flooding", cache.denyAddress("10.0.0.6"));
+        assertEquals("Banned for flooding", cache.denyAddress("10.0.0.6"));
+        assertEquals(1, rendered.get(), "The second connection is denied from the cache");
+        assertEquals(rejections + 2, IpBanIndex.get().getRejections());
+        assertNull(cache.denyAddress("10.0.0.7"));
+
+        IpBanIndex.get().remove(ban);
+        cache.invalidate(ban);
+        assertNull(cache.denyAddress("10.0.0.6"));
+    }
+
+    private DenialCache<String> cache(long ttl) {
+        return new DenialCache<>(ttl, ban -> {
+            rendered.incrementAndGet();
+            return "Banned for " + ban.getReason();
+        });
+    }
+
+    private static Punishment ban(int id, PunishmentType type, long end) {
+        return new Punishment("Steve", "steve-uuid", "hacking", "CONSOLE", type, TimeManager.getTime(), end, null, null, null, id);
+    }
+}
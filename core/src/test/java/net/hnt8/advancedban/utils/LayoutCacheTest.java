@@ -0,0 +1,96 @@
+package net.hnt8.advancedban.utils;
+
+import net.hnt8.advancedban.TestMethods;
+import net.hnt8.advancedban.manager.MessageManager;
+import net.hnt8.advancedban.manager.TimeManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class LayoutCacheTest {
+
+    private final AtomicInteger parsed = new AtomicInteger();
+    private final LayoutCache<String> cache = new LayoutCache<>(2,
+            layout -> {
+                parsed.incrementAndGet();
+                return layout;
+            },
+            (layout, duration) -> layout.replace(LayoutCache.DURATION, duration));
+
+    @BeforeEach
+    public void setUp() {
+        TestMethods mi = TestMethods.install();
+        mi.messages().set("Ban.Layout", Collections.singletonList("Banned for %REASON%"));
+        mi.messages().set("Tempban.Layout", Arrays.asList("Banned for %REASON%", "Ends in %DURATION%"));
+        mi.messages().set("General.TimeLayoutS", "%S% seconds");
+        mi.messages().set("General.TimeLayoutM", "%M%min and %S%sec");
+        MessageManager.invalidate();
+    }
+
+    @Test
+    public void parsesALayoutOnce() {
+        Punishment ban = ban(1, PunishmentType.BAN, "hacking", -1);
+
+        assertEquals("Banned for hacking", cache.get(ban));
+        assertEquals("Banned for hacking", cache.get(ban));
+        assertEquals(1, parsed.get());
+        assertEquals(1, cache.getHits());
+        assertEquals(1, cache.getMisses());
+    }
+
+    @Test
+    public void fillsInTheCurrentDurationEveryTime() throws InterruptedException {
+        Punishment ban = ban(2, PunishmentType.TEMP_BAN, "spam", TimeManager.getTime() + 4_500);
+
+        assertEquals("Banned for spam\nEnds in 5 seconds", cache.get(ban));
+        Thread.sleep(1_000);
+        assertEquals("Banned for spam\nEnds in 4 seconds", cache.get(ban));
+        assertEquals(1, parsed.get());
+    }
+
+    @Test
+    public void parsesAgainAfterAReloadOrAChangedReason() {
+        cache.get(ban(3, PunishmentType.BAN, "hacking", -1));
+
+        MessageManager.invalidate();
+        cache.get(ban(3, PunishmentType.BAN, "hacking", -1));
+        assertEquals(2, parsed.get());
+
+        assertEquals("Banned for griefing", cache.get(ban(3, PunishmentType.BAN, "griefing", -1)));
+        assertEquals(3, parsed.get());
+    }
+
+    @Test
+    public void forgetsInvalidatedAndEldestLayouts() {
+        Punishment first = ban(4, PunishmentType.BAN, "hacking", -1);
+        cache.get(first);
+        cache.invalidate(first);
+        cache.get(first);
+        assertEquals(2, parsed.get());
+
+        // The cache holds two layouts
+        cache.get(ban(5, PunishmentType.BAN, "hacking", -1));
+        cache.get(ban(6, PunishmentType.BAN, "hacking", -1));
+        cache.get(first);
+        assertEquals(5, parsed.get());
+    }
+
+    @Test
+    public void neverKeepsPunishmentsWithoutId() {
+        Punishment unsaved = ban(-1, PunishmentType.BAN, "hacking", -1);
+        cache.get(unsaved);
+        cache.get(unsaved);
+
+        assertEquals(2, parsed.get());
+        assertEquals(0, cache.getHits());
+    }
+
+    private static Punishment ban(int id, PunishmentType type, String reason, long end) {
+        return new Punishment("Steve", "steve-uuid", reason, "CONSOLE", type, TimeManager.getTime(), end, null, null, null, id);
+    }
+}
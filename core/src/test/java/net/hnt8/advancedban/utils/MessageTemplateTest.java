@@ -0,0 +1,54 @@
+package net.hnt8.advancedban.utils;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class MessageTemplateTest {
+
+    @Test
+    public void fillsInParameters() {
+        MessageTemplate template = MessageTemplate.parse("%PREFIX% %NAME% was banned by %OPERATOR%");
+
+        assertEquals("[AB] Steve was banned by Alex", template.render("PREFIX", "[AB]", "NAME", "Steve", "OPERATOR", "Alex"));
+        assertEquals("[AB] Steve was banned by null", template.render("PREFIX", "[AB]", "NAME", "Steve", "OPERATOR", null));
+    }
+
+    @Test
+    public void keepsValuesWithRegexCharactersAsTheyAre() {
+        // String#replaceAll would treat these as group references and escapes
+        MessageTemplate template = MessageTemplate.parse("Reason: %REASON%");
+
+        assertEquals("Reason: paid $5 for C:\\hacks\\", template.render("REASON", "paid $5 for C:\\hacks\\"));
+        assertEquals("Reason: $1 \\$", template.render("REASON", "$1 \\$"));
+    }
+
+    @Test
+    public void doesNotExpandPlaceholdersInValues() {
+        MessageTemplate template = MessageTemplate.parse("%NAME%: %REASON%");
+
+        assertEquals("Steve: %NAME%", template.render("NAME", "Steve", "REASON", "%NAME%"));
+    }
+
+    @Test
+    public void keepsUnknownPlaceholdersAndLonePercentSigns() {
+        MessageTemplate template = MessageTemplate.parse("50% of %UNKNOWN% and 100 %% %NAME%");
+
+        assertEquals("50% of %UNKNOWN% and 100 %% Steve", template.render("NAME", "Steve"));
+        assertEquals("no placeholders", MessageTemplate.parse("no placeholders").render("NAME", "Steve"));
+    }
+
+    @Test
+    public void translatesColorCodes() {
+        MessageTemplate template = MessageTemplate.parse("&c%NAME% &7was banned");
+
+        assertEquals("§cSt§aeve §7was banned", template.render("NAME", "St&aeve"));
+    }
+
+    @Test
+    public void ignoresAParameterWithoutValue() {
+        MessageTemplate template = MessageTemplate.parse("%NAME%");
+
+        assertEquals("%NAME%", template.render("NAME"));
+    }
+}
@@ -0,0 +1,193 @@
+package net.hnt8.advancedban.utils;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class MojangResolverTest {
+
+    private static final Logger LOGGER = Logger.getLogger("MojangResolverTest");
+
+    static {
+        LOGGER.setLevel(Level.OFF);
+    }
+
+    private final Gson gson = new Gson();
+    // The names of every request the stub has received
+    private final List<List<String>> requests = new CopyOnWriteArrayList<>();
+    // Answered with 429 before the stub answers normally
+    private final AtomicInteger rateLimited = new AtomicInteger();
+    private volatile long delayMillis;
+    private HttpServer server;
+    private ExecutorService executor;
+    private MojangResolver resolver;
+
+    @BeforeEach
+    public void setUp() throws IOException {
+        server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+        executor = Executors.newCachedThreadPool();
+        server.setExecutor(executor);
+        server.createContext("/profiles", this::answer);
+        server.start();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        if (resolver != null) {
+            resolver.shutdown();
+        }
+        server.stop(0);
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void sendsNamesInBatches() throws Exception {
+        resolver = resolver(1000, 0);
+        List<CompletableFuture<String>> futures = new ArrayList<>();
+        for (int i = 0; i < 25; i++) {
+            futures.add(resolver.resolve("Player" + i));
+        }
+
+        for (int i = 0; i < 25; i++) {
+            assertEquals(uuidOf("player" + i), futures.get(i).get(5, TimeUnit.SECONDS));
+        }
+        assertEquals(3, requests.size());
+        for (List<String> request : requests) {
+            assertTrue(request.size() <= MojangResolver.BATCH_SIZE, "Batch of " + request.size() + " names");
+        }
+        assertEquals(3, resolver.getRequests());
+    }
+
+    @Test
+    public void coalescesRequestsForTheSameName() throws Exception {
+        resolver = resolver(1000, 0);
+        CompletableFuture<String> first = resolver.resolve("Steve");
+        CompletableFuture<String> second = resolver.resolve("steve");
+
+        assertSame(first, second);
+        assertEquals(uuidOf("steve"), first.get(5, TimeUnit.SECONDS));
+        assertEquals(1, requests.size());
+        assertEquals(1, requests.get(0).size());
+    }
+
+    @Test
+    public void retriesWhenTheRateIsLimited() throws Exception {
+        rateLimited.set(1);
+        resolver = resolver(1000, 1);
+
+        assertEquals(uuidOf("steve"), resolver.resolve("Steve").get(10, TimeUnit.SECONDS));
+        assertEquals(2, requests.size());
+        assertEquals(1, resolver.getRetries());
+    }
+
+    @Test
+    public void failsAfterTheLastRetry() {
+        rateLimited.set(Integer.MAX_VALUE);
+        resolver = resolver(1000, 0);
+
+        ExecutionException ex = assertThrows(ExecutionException.class, () -> resolver.resolve("Steve").get(5, TimeUnit.SECONDS));
+        assertInstanceOf(MojangResolver.ResolveException.class, ex.getCause());
+        assertEquals(1, requests.size());
+    }
+
+    @Test
+    public void remembersUnknownNames() throws Exception {
+        resolver = resolver(1000, 0);
+
+        assertNull(resolver.resolve("Unknown_Name").get(5, TimeUnit.SECONDS));
+        assertNull(resolver.resolve("unknown_name").get(5, TimeUnit.SECONDS));
+        assertEquals(1, requests.size());
+        assertEquals(1, resolver.getUnknownHits());
+    }
+
+    @Test
+    public void timesOut() {
+        delayMillis = 2000;
+        resolver = resolver(200, 0);
+
+        long started = System.currentTimeMillis();
+        ExecutionException ex = assertThrows(ExecutionException.class, () -> resolver.resolve("Steve").get(5, TimeUnit.SECONDS));
+        assertInstanceOf(MojangResolver.ResolveException.class, ex.getCause());
+        assertTrue(System.currentTimeMillis() - started < 1500, "The request should have timed out");
+    }
+
+    private MojangResolver resolver(int timeoutMillis, int retries) {
+        return new MojangResolver(endpoint(), 600, timeoutMillis, retries, 60_000, LOGGER);
+    }
+
+    private String endpoint() {
+        return "http://" + server.getAddress().getHostString() + ":" + server.getAddress().getPort() + "/profiles";
+    }
+
+    // Names starting with "unknown" do not exist, every other name gets a uuid derived from it
+    private void answer(HttpExchange exchange) throws IOException {
+        List<String> names = new ArrayList<>();
+        try (InputStreamReader reader = new InputStreamReader(exchange.getRequestBody(), StandardCharsets.UTF_8)) {
+            gson.fromJson(reader, JsonArray.class).forEach(name -> names.add(name.getAsString()));
+        }
+        requests.add(names);
+
+        if (delayMillis > 0) {
+            try {
+                Thread.sleep(delayMillis);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        if (rateLimited.getAndUpdate(count -> Math.max(0, count - 1)) > 0) {
+            exchange.sendResponseHeaders(429, -1);
+            exchange.close();
+            return;
+        }
+
+        JsonArray profiles = new JsonArray();
+        for (String name : names) {
+            if (!name.startsWith("unknown")) {
+                JsonObject profile = new JsonObject();
+                profile.addProperty("id", uuidOf(name));
+                profile.addProperty("name", name);
+                profiles.add(profile);
+            }
+        }
+        byte[] body = gson.toJson(profiles).getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(200, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    private static String uuidOf(String name) {
+        return String.format("%032x", name.hashCode() & 0xFFFFFFFFL);
+    }
+}
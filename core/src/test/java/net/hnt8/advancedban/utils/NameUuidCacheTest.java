@@ -0,0 +1,85 @@
+package net.hnt8.advancedban.utils;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+public class NameUuidCacheTest {
+
+    @Test
+    public void looksUpBothDirections() {
+        NameUuidCache cache = new NameUuidCache(10);
+        cache.put("Steve", "AAAA");
+
+        assertEquals("AAAA", cache.getUuid("steve"));
+        assertEquals("AAAA", cache.getUuid("STEVE"));
+        assertEquals("steve", cache.getName("aaaa"));
+        assertNull(cache.getUuid("Alex"));
+        assertNull(cache.getName("bbbb"));
+        assertEquals(3, cache.getHits());
+        assertEquals(2, cache.getMisses());
+    }
+
+    @Test
+    public void replacesTheOldNameOfARenamedPlayer() {
+        NameUuidCache cache = new NameUuidCache(10);
+        cache.put("Steve", "aaaa");
+        cache.put("Steve2", "aaaa");
+
+        assertNull(cache.getUuid("steve"));
+        assertEquals("aaaa", cache.getUuid("steve2"));
+        assertEquals("steve2", cache.getName("aaaa"));
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void replacesTheOldUuidOfATakenOverName() {
+        NameUuidCache cache = new NameUuidCache(10);
+        cache.put("Steve", "aaaa");
+        cache.put("Steve", "bbbb");
+
+        assertEquals("bbbb", cache.getUuid("steve"));
+        assertNull(cache.getName("aaaa"));
+        assertEquals("steve", cache.getName("bbbb"));
+        assertEquals(1, cache.size());
+    }
+
+    @Test
+    public void evictsTheLeastRecentlyUsedMappingFromBothDirections() {
+        NameUuidCache cache = new NameUuidCache(2);
+        cache.put("Steve", "aaaa");
+        cache.put("Alex", "bbbb");
+        // Looking up by uuid counts as a use as well
+        cache.getName("aaaa");
+        cache.put("Herobrine", "cccc");
+
+        assertEquals(2, cache.size());
+        assertEquals(1, cache.getEvictions());
+        assertNull(cache.getUuid("alex"));
+        assertNull(cache.getName("bbbb"));
+        assertEquals("aaaa", cache.getUuid("steve"));
+        assertEquals("herobrine", cache.getName("cccc"));
+    }
+
+    @Test
+    public void dropsTheMappingsBeyondANewMaxSize() {
+        NameUuidCache cache = new NameUuidCache(10);
+        for (int i = 0; i < 5; i++) {
+            cache.put("Player" + i, "uuid" + i);
+        }
+        cache.setMaxSize(3);
+
+        assertEquals(3, cache.size());
+        assertEquals(2, cache.getEvictions());
+        assertNull(cache.getUuid("player0"));
+        assertNull(cache.getName("uuid1"));
+        assertEquals("player2", cache.getName("uuid2"));
+
+        // Player2 has just been used, so Player3 is the eldest now
+        cache.put("Player5", "uuid5");
+        assertEquals(3, cache.size());
+        assertNull(cache.getName("uuid3"));
+        assertEquals("player2", cache.getName("uuid2"));
+    }
+}
@@ -0,0 +1,67 @@
+package net.hnt8.advancedban.link;
+
+/**
+ * The outcome of a command the proxy has executed for a backend, see {@link ExecuteCommandMessage}.
+ */
+public final class CommandResultMessage extends LinkMessage {
+
+    /**
+     * The error of a command the proxy had no capacity to execute. It has not been executed
+     * and should be sent again later.
+     */
+    public static final String BUSY = "Busy";
+
+    private final String commandId;
+    private final boolean success;
+    private final int punishmentId;
+    private final String error;
+    private final String message;
+
+    /**
+     * @param commandId    the id of the executed command
+     * @param success      whether the command has been executed successfully
+     * @param punishmentId the id of the created punishment or -1 if the command did not create one
+     * @param error        the path of the error message in the messages file, <code>null</code> on success
+     * @param message      the message the command answered with, serialized with legacy color codes,
+     *                     may be <code>null</code>
+     */
+    public CommandResultMessage(String commandId, boolean success, int punishmentId, String error, String message) {
+        this.commandId = commandId;
+        this.success = success;
+        this.punishmentId = punishmentId;
+        this.error = error;
+        this.message = message;
+    }
+
+    @Override
+    public LinkMessageType getType() {
+        return LinkMessageType.COMMAND_RESULT;
+    }
+
+    public String getCommandId() {
+        return commandId;
+    }
+
+    public boolean isSuccess() {
+        return success;
+    }
+
+    public int getPunishmentId() {
+        return punishmentId;
+    }
+
+    public String getError() {
+        return error;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    /**
+     * @return whether the proxy has not executed the command as it was busy, see {@link #BUSY}
+     */
+    public boolean isBusy() {
+        return !success && BUSY.equals(error);
+    }
+}
@@ -0,0 +1,89 @@
+package net.hnt8.advancedban.link;
+
+/**
+ * The layouts of a remaining duration as configured on the proxy in <code>General.TimeLayoutD</code>,
+ * <code>-H</code>, <code>-M</code> and <code>-S</code>, already rendered with legacy color codes.<br>
+ * They are sent along with the statuses, so the backend can fill {@link MuteStatus#DURATION} into a mute message
+ * whenever it shows it, instead of showing the duration which was left when the status had been sent.
+ */
+public final class DurationLayout {
+
+    private final String days;
+    private final String hours;
+    private final String minutes;
+    private final String seconds;
+
+    /**
+     * @param days    the layout for more than a day, with <code>%D%</code>, <code>%H%</code>, <code>%M%</code> and <code>%S%</code>
+     * @param hours   the layout for more than an hour, with <code>%H%</code>, <code>%M%</code> and <code>%S%</code>
+     * @param minutes the layout for more than a minute, with <code>%M%</code> and <code>%S%</code>
+     * @param seconds the layout for a minute or less, with <code>%S%</code>
+     */
+    public DurationLayout(String days, String hours, String minutes, String seconds) {
+        this.days = days;
+        this.hours = hours;
+        this.minutes = minutes;
+        this.seconds = seconds;
+    }
+
+    public String getDays() {
+        return days;
+    }
+
+    public String getHours() {
+        return hours;
+    }
+
+    public String getMinutes() {
+        return minutes;
+    }
+
+    public String getSeconds() {
+        return seconds;
+    }
+
+    /**
+     * Format a remaining duration the way the proxy does.
+     * Every unit is also available with two digits, e.g. <code>%MM%</code>.
+     *
+     * @param remaining the remaining duration in milliseconds
+     * @return the formatted duration
+     */
+    public String format(long remaining) {
+        long diff = -Math.floorDiv(-Math.max(0, remaining), 1000L);
+        if (diff > 60 * 60 * 24) {
+            return render(days, "D", diff / 60 / 60 / 24, "H", diff / 60 / 60 % 24, "M", diff / 60 % 60, "S", diff % 60);
+        } else if (diff > 60 * 60) {
+            return render(hours, "H", diff / 60 / 60, "M", diff / 60 % 60, "S", diff % 60);
+        } else if (diff > 60) {
+            return render(minutes, "M", diff / 60, "S", diff % 60);
+        }
+        return render(seconds, "S", diff);
+    }
+
+    /**
+     * Replace {@link MuteStatus#DURATION} in a mute message with the remaining duration.
+     *
+     * @param message the mute message
+     * @param end     when the mute ends in epoch milliseconds, <code>-1</code> if it is permanent
+     * @param now     the current time in epoch milliseconds
+     * @return the message to show
+     */
+    public String fill(String message, long end, long now) {
+        if (message == null || end == -1 || !message.contains(MuteStatus.DURATION)) {
+            return message;
+        }
+        return message.replace(MuteStatus.DURATION, format(end - now));
+    }
+
+    private static String render(String layout, Object... units) {
+        String result = layout;
+        for (int i = 0; i < units.length; i += 2) {
+            String name = (String) units[i];
+            String count = String.valueOf(units[i + 1]);
+            result = result.replace("%" + name + name + "%", count.length() <= 1 ? "0" + count : count)
+                    .replace("%" + name + "%", count);
+        }
+        return result;
+    }
+}
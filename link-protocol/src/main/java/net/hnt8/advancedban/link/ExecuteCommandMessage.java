@@ -0,0 +1,40 @@
+package net.hnt8.advancedban.link;
+
+/**
+ * Asks the proxy to execute a punishment command.
+ */
+public final class ExecuteCommandMessage extends LinkMessage {
+
+    private final String commandId;
+    private final String command;
+    private final String serverName;
+
+    /**
+     * @param commandId  the unique id of the command, the proxy executes a command id only once,
+     *                   may be <code>null</code>
+     * @param command    the full command line without the slash
+     * @param serverName the name of the server the command originates from, may be <code>null</code>
+     */
+    public ExecuteCommandMessage(String commandId, String command, String serverName) {
+        this.commandId = commandId;
+        this.command = command;
+        this.serverName = serverName;
+    }
+
+    @Override
+    public LinkMessageType getType() {
+        return LinkMessageType.EXECUTE_COMMAND;
+    }
+
+    public String getCommandId() {
+        return commandId;
+    }
+
+    public String getCommand() {
+        return command;
+    }
+
+    public String getServerName() {
+        return serverName;
+    }
+}
@@ -0,0 +1,339 @@
+package net.hnt8.advancedban.link;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Encodes and decodes the messages of the advancedban:command channel.<br>
+ * A frame starts with the {@link #MAGIC} byte, followed by the protocol version and the {@link LinkMessageType} id.
+ * Lists are prefixed with an unsigned short count and nullable strings with a boolean.<br>
+ * Frames without the magic byte are read as the legacy format, which consists of <code>writeUTF</code> strings
+ * starting with the message type name. Legacy peers can be answered by encoding with {@link #LEGACY_VERSION}.
+ * <br><br>
+ * {@link #VERSION} is the only binary version. Commands carry an id for deduplication, which their results are
+ * correlated by, and batched statuses carry the end, scope and mute message for the receiving server along with
+ * the {@link DurationLayout} to fill the remaining duration into the mute messages with.
+ */
+public final class LinkCodec {
+
+    public static final byte MAGIC = (byte) 0xAB;
+    public static final int LEGACY_VERSION = 0;
+    public static final int VERSION = 1;
+    /**
+     * The largest payload a plugin message may have.
+     */
+    public static final int MAX_FRAME_SIZE = 32767;
+
+    private static final int HEADER_SIZE = 3;
+    private static final int COUNT_SIZE = 2;
+
+    private LinkCodec() {
+    }
+
+    /**
+     * Encode a message.<br>
+     * Status messages and status requests are split into several frames if they do not fit into
+     * {@link #MAX_FRAME_SIZE}, or if the legacy format is used, which can only carry one player per frame.
+     *
+     * @param message the message
+     * @param version the protocol version the receiver understands
+     * @return the frames to send
+     * @throws LinkProtocolException if the message can not be encoded
+     */
+    public static List<byte[]> encode(LinkMessage message, int version) throws LinkProtocolException {
+        if (version != LEGACY_VERSION && version != VERSION) {
+            throw new LinkProtocolException("Unsupported protocol version " + version);
+        }
+
+        try {
+            if (version == LEGACY_VERSION) {
+                return encodeLegacy(message);
+            }
+
+            switch (message.getType()) {
+                case EXECUTE_COMMAND: {
+                    ExecuteCommandMessage command = (ExecuteCommandMessage) message;
+                    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                    DataOutputStream out = header(bytes, version, message.getType());
+                    out.writeUTF(command.getCommand());
+                    writeNullable(out, command.getServerName());
+                    writeNullable(out, command.getCommandId());
+                    if (bytes.size() > MAX_FRAME_SIZE) {
+                        throw new LinkProtocolException("Command is too long");
+                    }
+                    return Collections.singletonList(bytes.toByteArray());
+                }
+                case COMMAND_RESULT: {
+                    CommandResultMessage result = (CommandResultMessage) message;
+                    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+                    DataOutputStream out = header(bytes, version, message.getType());
+                    out.writeUTF(result.getCommandId());
+                    out.writeBoolean(result.isSuccess());
+                    out.writeInt(result.getPunishmentId());
+                    writeNullable(out, result.getError());
+                    writeNullable(out, result.getMessage());
+                    if (bytes.size() > MAX_FRAME_SIZE) {
+                        throw new LinkProtocolException("Command result is too long");
+                    }
+                    return Collections.singletonList(bytes.toByteArray());
+                }
+                case CHECK_PUNISHMENT: {
+                    StatusRequestMessage request = (StatusRequestMessage) message;
+                    List<byte[]> entries = new ArrayList<>();
+                    for (String name : request.getPlayerNames()) {
+                        entries.add(entry(out -> out.writeUTF(name)));
+                    }
+                    return batch(version, message.getType(), entries, out -> writeNullable(out, request.getServerName()));
+                }
+                case PUNISHMENT_STATUS: {
+                    StatusMessage statusMessage = (StatusMessage) message;
+                    List<byte[]> entries = new ArrayList<>();
+                    for (MuteStatus status : statusMessage.getStatuses()) {
+                        entries.add(entry(out -> writeStatus(out, status)));
+                    }
+                    return batch(version, message.getType(), entries, out -> {
+                        writeNullable(out, statusMessage.getServerName());
+                        writeDurationLayout(out, statusMessage.getDurationLayout());
+                    });
+                }
+                default:
+                    throw new LinkProtocolException("Unknown message type " + message.getType());
+            }
+        } catch (LinkProtocolException ex) {
+            throw ex;
+        } catch (IOException ex) {
+            throw new LinkProtocolException("Failed to encode " + message.getType() + ": " + ex.getMessage());
+        }
+    }
+
+    /**
+     * Decode a frame, either binary or legacy.
+     *
+     * @param data the frame
+     * @return the message
+     * @throws LinkProtocolException if the frame is malformed, truncated or of an unsupported version
+     */
+    public static LinkMessage decode(byte[] data) throws LinkProtocolException {
+        if (data == null || data.length == 0) {
+            throw new LinkProtocolException("Empty message");
+        }
+
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(data));
+        try {
+            LinkMessage message;
+            if (data[0] == MAGIC) {
+                in.readByte();
+                int version = in.readUnsignedByte();
+                if (version != VERSION) {
+                    throw new LinkProtocolException("Unsupported protocol version " + version);
+                }
+                message = decodeBinary(in);
+                message.setVersion(version);
+            } else {
+                message = decodeLegacy(in);
+                message.setVersion(LEGACY_VERSION);
+            }
+            return message;
+        } catch (LinkProtocolException ex) {
+            throw ex;
+        } catch (IOException ex) {
+            throw new LinkProtocolException("Malformed message: " + ex);
+        }
+    }
+
+    private static LinkMessage decodeBinary(DataInputStream in) throws IOException {
+        int typeId = in.readUnsignedByte();
+        LinkMessageType type = LinkMessageType.fromId(typeId);
+        if (type == null) {
+            throw new LinkProtocolException("Unknown message type " + typeId);
+        }
+
+        switch (type) {
+            case EXECUTE_COMMAND: {
+                String command = in.readUTF();
+                String serverName = readNullable(in);
+                return new ExecuteCommandMessage(readNullable(in), command, serverName);
+            }
+            case COMMAND_RESULT:
+                return new CommandResultMessage(in.readUTF(), in.readBoolean(), in.readInt(), readNullable(in), readNullable(in));
+            case CHECK_PUNISHMENT: {
+                String serverName = readNullable(in);
+                // Every name takes at least its two length bytes
+                int count = readCount(in, 2);
+                List<String> names = new ArrayList<>(count);
+                for (int i = 0; i < count; i++) {
+                    names.add(in.readUTF());
+                }
+                return new StatusRequestMessage(serverName, names);
+            }
+            case PUNISHMENT_STATUS: {
+                String serverName = readNullable(in);
+                DurationLayout durationLayout = readDurationLayout(in);
+                // Name length, muted flag, end and scope flag
+                int count = readCount(in, 2 + 1 + 8 + 1);
+                List<MuteStatus> statuses = new ArrayList<>(count);
+                for (int i = 0; i < count; i++) {
+                    statuses.add(new MuteStatus(in.readUTF(), in.readBoolean(), in.readLong(), readNullable(in), readNullable(in)));
+                }
+                return new StatusMessage(serverName, statuses, durationLayout);
+            }
+            default:
+                throw new LinkProtocolException("Unknown message type " + type);
+        }
+    }
+
+    private static LinkMessage decodeLegacy(DataInputStream in) throws IOException {
+        String type = in.readUTF();
+        switch (type) {
+            case "EXECUTE_COMMAND": {
+                String command = in.readUTF();
+                // Older backends did not send their server name
+                String serverName = in.available() > 0 ? in.readUTF() : null;
+                return new ExecuteCommandMessage(null, command, serverName);
+            }
+            case "CHECK_PUNISHMENT": {
+                String name = in.readUTF();
+                in.readUTF(); // uuid
+                String serverName = in.readUTF();
+                return new StatusRequestMessage(serverName, Collections.singletonList(name));
+            }
+            case "PUNISHMENT_STATUS":
+                return new StatusMessage(null, Collections.singletonList(new MuteStatus(in.readUTF(), in.readBoolean(), -1, null, null)));
+            default:
+                throw new LinkProtocolException("Unknown legacy message type " + type);
+        }
+    }
+
+    private static List<byte[]> encodeLegacy(LinkMessage message) throws IOException {
+        List<byte[]> frames = new ArrayList<>();
+        switch (message.getType()) {
+            case EXECUTE_COMMAND: {
+                ExecuteCommandMessage command = (ExecuteCommandMessage) message;
+                frames.add(entry(out -> {
+                    out.writeUTF("EXECUTE_COMMAND");
+                    out.writeUTF(command.getCommand());
+                    out.writeUTF(command.getServerName() == null ? "" : command.getServerName());
+                }));
+                break;
+            }
+            case CHECK_PUNISHMENT: {
+                StatusRequestMessage request = (StatusRequestMessage) message;
+                for (String name : request.getPlayerNames()) {
+                    frames.add(entry(out -> {
+                        out.writeUTF("CHECK_PUNISHMENT");
+                        out.writeUTF(name);
+                        out.writeUTF("");
+                        out.writeUTF(request.getServerName() == null ? "" : request.getServerName());
+                    }));
+                }
+                break;
+            }
+            case PUNISHMENT_STATUS:
+                for (MuteStatus status : ((StatusMessage) message).getStatuses()) {
+                    frames.add(entry(out -> {
+                        out.writeUTF("PUNISHMENT_STATUS");
+                        out.writeUTF(status.getPlayerName());
+                        out.writeBoolean(status.isMuted());
+                    }));
+                }
+                break;
+            default:
+                throw new LinkProtocolException("Unknown message type " + message.getType());
+        }
+        return frames;
+    }
+
+    private static List<byte[]> batch(int version, LinkMessageType type, List<byte[]> entries, Writer prefix) throws IOException {
+        byte[] prefixBytes = entry(prefix);
+        int limit = MAX_FRAME_SIZE - HEADER_SIZE - prefixBytes.length - COUNT_SIZE;
+
+        List<byte[]> frames = new ArrayList<>();
+        int from = 0;
+        do {
+            int size = 0;
+            int to = from;
+            while (to < entries.size() && to - from < 0xFFFF && size + entries.get(to).length <= limit) {
+                size += entries.get(to++).length;
+            }
+            if (to == from && to < entries.size()) {
+                throw new LinkProtocolException("Entry of " + type + " does not fit into a frame");
+            }
+
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(HEADER_SIZE + prefixBytes.length + COUNT_SIZE + size);
+            DataOutputStream out = header(bytes, version, type);
+            out.write(prefixBytes);
+            out.writeShort(to - from);
+            for (int i = from; i < to; i++) {
+                out.write(entries.get(i));
+            }
+            frames.add(bytes.toByteArray());
+            from = to;
+        } while (from < entries.size());
+        return frames;
+    }
+
+    private static DataOutputStream header(ByteArrayOutputStream bytes, int version, LinkMessageType type) throws IOException {
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeByte(MAGIC);
+        out.writeByte(version);
+        out.writeByte(type.getId());
+        return out;
+    }
+
+    private static void writeStatus(DataOutputStream out, MuteStatus status) throws IOException {
+        out.writeUTF(status.getPlayerName());
+        out.writeBoolean(status.isMuted());
+        out.writeLong(status.getEnd());
+        writeNullable(out, status.getScope());
+        writeNullable(out, status.getMessage());
+    }
+
+    private static void writeDurationLayout(DataOutputStream out, DurationLayout layout) throws IOException {
+        out.writeBoolean(layout != null);
+        if (layout != null) {
+            out.writeUTF(layout.getDays());
+            out.writeUTF(layout.getHours());
+            out.writeUTF(layout.getMinutes());
+            out.writeUTF(layout.getSeconds());
+        }
+    }
+
+    private static DurationLayout readDurationLayout(DataInputStream in) throws IOException {
+        return in.readBoolean() ? new DurationLayout(in.readUTF(), in.readUTF(), in.readUTF(), in.readUTF()) : null;
+    }
+
+    private static int readCount(DataInputStream in, int minEntrySize) throws IOException {
+        int count = in.readUnsignedShort();
+        if ((long) count * minEntrySize > in.available()) {
+            throw new LinkProtocolException("Entry count " + count + " exceeds the message size");
+        }
+        return count;
+    }
+
+    private static void writeNullable(DataOutputStream out, String value) throws IOException {
+        out.writeBoolean(value != null);
+        if (value != null) {
+            out.writeUTF(value);
+        }
+    }
+
+    private static String readNullable(DataInputStream in) throws IOException {
+        return in.readBoolean() ? in.readUTF() : null;
+    }
+
+    private static byte[] entry(Writer writer) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        writer.write(new DataOutputStream(bytes));
+        return bytes.toByteArray();
+    }
+
+    private interface Writer {
+        void write(DataOutputStream out) throws IOException;
+    }
+}
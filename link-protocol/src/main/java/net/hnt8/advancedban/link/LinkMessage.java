@@ -0,0 +1,27 @@
+package net.hnt8.advancedban.link;
+
+/**
+ * A message sent over the advancedban:command channel.
+ *
+ * @see LinkCodec
+ */
+public abstract class LinkMessage {
+
+    private int version = LinkCodec.VERSION;
+
+    public abstract LinkMessageType getType();
+
+    /**
+     * Get the protocol version this message has been decoded from.
+     * Messages of {@link LinkCodec#LEGACY_VERSION} have been sent by a peer which does not know the binary framing.
+     *
+     * @return the protocol version
+     */
+    public int getVersion() {
+        return version;
+    }
+
+    void setVersion(int version) {
+        this.version = version;
+    }
+}
@@ -0,0 +1,48 @@
+package net.hnt8.advancedban.link;
+
+/**
+ * The types of messages sent over the advancedban:command channel.
+ */
+public enum LinkMessageType {
+    /**
+     * Backend to proxy: execute a punishment command on the proxy.
+     */
+    EXECUTE_COMMAND(1),
+    /**
+     * Backend to proxy: request the mute status of players.
+     */
+    CHECK_PUNISHMENT(2),
+    /**
+     * Proxy to backend: the mute status of players.
+     */
+    PUNISHMENT_STATUS(3),
+    /**
+     * Proxy to backend: the outcome of an executed command.
+     */
+    COMMAND_RESULT(4);
+
+    private final int id;
+
+    LinkMessageType(int id) {
+        this.id = id;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    /**
+     * Get the type with the given wire id.
+     *
+     * @param id the id
+     * @return the type or <code>null</code> if there is none
+     */
+    public static LinkMessageType fromId(int id) {
+        for (LinkMessageType type : values()) {
+            if (type.id == id) {
+                return type;
+            }
+        }
+        return null;
+    }
+}
@@ -0,0 +1,15 @@
+package net.hnt8.advancedban.link;
+
+import java.io.IOException;
+
+/**
+ * Thrown if a message of the advancedban:command channel can not be decoded.
+ */
+public class LinkProtocolException extends IOException {
+
+    private static final long serialVersionUID = 1L;
+
+    public LinkProtocolException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,65 @@
+package net.hnt8.advancedban.link;
+
+/**
+ * The mute status of a single player.
+ */
+public final class MuteStatus {
+
+    /**
+     * Stands in for the remaining duration of temporary mutes in the message, see {@link DurationLayout}.
+     */
+    public static final String DURATION = "\uE000DURATION\uE000";
+
+    private final String playerName;
+    private final boolean muted;
+    private final long end;
+    private final String scope;
+    private final String message;
+
+    /**
+     * @param playerName the players name
+     * @param muted      whether the player is muted
+     * @param end        when the mute ends in epoch milliseconds, <code>-1</code> if it is permanent
+     * @param scope      the server the mute is limited to, <code>null</code> if it is network-wide
+     * @param message    the message shown to the player when they try to chat, already rendered with legacy
+     *                   color codes and with {@link #DURATION} in place of the remaining duration,
+     *                   <code>null</code> if the sender did not provide one
+     */
+    public MuteStatus(String playerName, boolean muted, long end, String scope, String message) {
+        this.playerName = playerName;
+        this.muted = muted;
+        this.end = end;
+        this.scope = scope;
+        this.message = message;
+    }
+
+    public String getPlayerName() {
+        return playerName;
+    }
+
+    public boolean isMuted() {
+        return muted;
+    }
+
+    public long getEnd() {
+        return end;
+    }
+
+    public String getScope() {
+        return scope;
+    }
+
+    public String getMessage() {
+        return message;
+    }
+
+    /**
+     * Check whether the mute is still in effect at the given time.
+     *
+     * @param now the current time in epoch milliseconds
+     * @return whether the player is muted
+     */
+    public boolean isActive(long now) {
+        return muted && (end == -1 || end > now);
+    }
+}
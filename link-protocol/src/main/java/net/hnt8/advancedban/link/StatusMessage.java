@@ -0,0 +1,53 @@
+package net.hnt8.advancedban.link;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Tells a backend the mute status of one or more of its players.
+ */
+public final class StatusMessage extends LinkMessage {
+
+    private final String serverName;
+    private final List<MuteStatus> statuses;
+    private final DurationLayout durationLayout;
+
+    /**
+     * @param serverName the name the proxy knows the receiving backend by, used to match the scope of mutes,
+     *                   may be <code>null</code>
+     * @param statuses   the statuses
+     */
+    public StatusMessage(String serverName, List<MuteStatus> statuses) {
+        this(serverName, statuses, null);
+    }
+
+    /**
+     * @param serverName     the name the proxy knows the receiving backend by, used to match the scope of mutes,
+     *                       may be <code>null</code>
+     * @param statuses       the statuses
+     * @param durationLayout the layouts to fill in the remaining duration of the mute messages with,
+     *                       may be <code>null</code>
+     */
+    public StatusMessage(String serverName, List<MuteStatus> statuses, DurationLayout durationLayout) {
+        this.serverName = serverName;
+        this.statuses = Collections.unmodifiableList(statuses);
+        this.durationLayout = durationLayout;
+    }
+
+    @Override
+    public LinkMessageType getType() {
+        return LinkMessageType.PUNISHMENT_STATUS;
+    }
+
+    public String getServerName() {
+        return serverName;
+    }
+
+    public List<MuteStatus> getStatuses() {
+        return statuses;
+    }
+
+    public DurationLayout getDurationLayout() {
+        return durationLayout;
+    }
+}
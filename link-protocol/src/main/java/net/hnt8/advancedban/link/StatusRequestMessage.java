@@ -0,0 +1,35 @@
+package net.hnt8.advancedban.link;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Asks the proxy for the mute status of the given players.
+ */
+public final class StatusRequestMessage extends LinkMessage {
+
+    private final String serverName;
+    private final List<String> playerNames;
+
+    /**
+     * @param serverName  the name of the requesting server, may be <code>null</code>
+     * @param playerNames the names of the players
+     */
+    public StatusRequestMessage(String serverName, List<String> playerNames) {
+        this.serverName = serverName;
+        this.playerNames = Collections.unmodifiableList(playerNames);
+    }
+
+    @Override
+    public LinkMessageType getType() {
+        return LinkMessageType.CHECK_PUNISHMENT;
+    }
+
+    public String getServerName() {
+        return serverName;
+    }
+
+    public List<String> getPlayerNames() {
+        return playerNames;
+    }
+}
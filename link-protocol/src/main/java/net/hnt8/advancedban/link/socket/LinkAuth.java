@@ -0,0 +1,46 @@
+package net.hnt8.advancedban.link.socket;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+
+/**
+ * Challenge-response authentication of socket connections with a shared secret.<br>
+ * The proxy sends a random challenge, the backend answers with an HMAC-SHA256 of the challenge and its
+ * server name keyed with the secret. The secret itself never travels over the connection.
+ */
+final class LinkAuth {
+
+    static final int CHALLENGE_SIZE = 32;
+    static final int SIGNATURE_SIZE = 32;
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    private LinkAuth() {
+    }
+
+    static byte[] challenge() {
+        byte[] challenge = new byte[CHALLENGE_SIZE];
+        RANDOM.nextBytes(challenge);
+        return challenge;
+    }
+
+    static byte[] sign(String secret, byte[] challenge, String serverName) {
+        try {
+            Mac mac = Mac.getInstance("HmacSHA256");
+            mac.init(new SecretKeySpec(secret.getBytes(StandardCharsets.UTF_8), "HmacSHA256"));
+            mac.update(challenge);
+            mac.update(serverName.getBytes(StandardCharsets.UTF_8));
+            return mac.doFinal();
+        } catch (GeneralSecurityException ex) {
+            // HmacSHA256 is available on every Java platform
+            throw new IllegalStateException(ex);
+        }
+    }
+
+    static boolean verify(String secret, byte[] challenge, String serverName, byte[] signature) {
+        return MessageDigest.isEqual(sign(secret, challenge, serverName), signature);
+    }
+}
@@ -0,0 +1,296 @@
+package net.hnt8.advancedban.link.socket;
+
+import net.hnt8.advancedban.link.LinkCodec;
+import net.hnt8.advancedban.link.LinkMessage;
+import net.hnt8.advancedban.link.LinkProtocolException;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+/**
+ * The backend side of the socket transport.<br>
+ * Keeps a connection to the {@link LinkServer} of the proxy on its own thread and reconnects with a
+ * growing delay whenever it is lost. Messages can be sent from any thread while connected.<br>
+ * Connecting and the handshake give up after {@link #CONNECT_TIMEOUT} and {@link LinkServer#HANDSHAKE_TIMEOUT},
+ * so a proxy which does not answer does not keep the client from trying again.
+ */
+public final class LinkClient implements Runnable {
+
+    /**
+     * Receives the messages of the proxy, called on the client thread.
+     */
+    public interface Listener {
+        void onConnect();
+
+        void onMessage(int requestId, LinkMessage message);
+    }
+
+    /**
+     * How long connecting to the proxy may take, in milliseconds.
+     */
+    public static final int CONNECT_TIMEOUT = 5000;
+
+    private static final long MIN_RETRY_DELAY = 1000;
+    private static final long MAX_RETRY_DELAY = 30000;
+
+    private final InetSocketAddress address;
+    private final String secret;
+    private final String serverName;
+    private final Listener listener;
+    private final Logger logger;
+    private final int handshakeTimeout;
+    private final AtomicInteger requestIds = new AtomicInteger();
+    private final Object writeLock = new Object();
+    private volatile SocketChannel channel;
+    private volatile boolean connected;
+    private volatile boolean running;
+    private Thread thread;
+    // Bytes read after the handshake which already belong to the first messages
+    private ByteBuffer pending;
+
+    /**
+     * @param address    the address of the proxy
+     * @param secret     the shared secret
+     * @param serverName the name the proxy knows this backend by
+     * @param listener   the listener
+     * @param logger     the logger
+     */
+    public LinkClient(InetSocketAddress address, String secret, String serverName, Listener listener, Logger logger) {
+        this(address, secret, serverName, listener, logger, (int) LinkServer.HANDSHAKE_TIMEOUT);
+    }
+
+    /**
+     * Visible for testing. Do not use this.
+     */
+    LinkClient(InetSocketAddress address, String secret, String serverName, Listener listener, Logger logger, int handshakeTimeout) {
+        if (secret == null || secret.isEmpty()) {
+            throw new IllegalArgumentException("The backend link socket requires a secret");
+        }
+        if (serverName.getBytes(StandardCharsets.UTF_8).length > LinkFraming.MAX_SERVER_NAME_SIZE) {
+            throw new IllegalArgumentException("The server name may be at most " + LinkFraming.MAX_SERVER_NAME_SIZE + " bytes long");
+        }
+        this.address = address;
+        this.secret = secret;
+        this.serverName = serverName;
+        this.listener = listener;
+        this.logger = logger;
+        this.handshakeTimeout = handshakeTimeout;
+    }
+
+    public synchronized void start() {
+        running = true;
+        thread = new Thread(this, "Avesban-LinkClient");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    public synchronized void stop() {
+        running = false;
+        closeChannel();
+        if (thread != null) {
+            thread.interrupt();
+        }
+    }
+
+    public boolean isConnected() {
+        return connected;
+    }
+
+    /**
+     * Get a new request id, never 0 which is used for pushes.
+     *
+     * @return the request id
+     */
+    public int nextRequestId() {
+        int id;
+        do {
+            id = requestIds.incrementAndGet();
+        } while (id == 0);
+        return id;
+    }
+
+    /**
+     * Send a message to the proxy.
+     *
+     * @param requestId the request id, see {@link #nextRequestId()}
+     * @param message   the message
+     * @return whether the message has been written, <code>false</code> if there is no connection
+     * @throws LinkProtocolException if the message can not be encoded
+     */
+    public boolean send(int requestId, LinkMessage message) throws LinkProtocolException {
+        SocketChannel current = channel;
+        if (!connected || current == null) {
+            return false;
+        }
+
+        synchronized (writeLock) {
+            try {
+                for (byte[] frame : LinkCodec.encode(message, LinkCodec.VERSION)) {
+                    write(current, LinkFraming.messageFrame(requestId, frame));
+                }
+                return true;
+            } catch (LinkProtocolException ex) {
+                throw ex;
+            } catch (IOException ex) {
+                logger.fine("Failed to write to the proxy: " + ex.getMessage());
+                closeChannel();
+                return false;
+            }
+        }
+    }
+
+    @Override
+    public void run() {
+        long delay = MIN_RETRY_DELAY;
+        while (running) {
+            try (SocketChannel socket = SocketChannel.open()) {
+                socket.socket().connect(address, CONNECT_TIMEOUT);
+                channel = socket;
+                // Only the handshake reads time out, the proxy may have nothing to say for a long time afterwards
+                socket.socket().setSoTimeout(handshakeTimeout);
+                handshake(socket);
+                socket.socket().setSoTimeout(0);
+                connected = true;
+                delay = MIN_RETRY_DELAY;
+                logger.info("Connected to the proxy at " + address);
+                listener.onConnect();
+                readLoop(socket);
+            } catch (IOException ex) {
+                if (running) {
+                    logger.fine("Backend link connection to " + address + " failed: " + ex.getMessage());
+                }
+            } finally {
+                if (connected) {
+                    logger.info("Lost the connection to the proxy at " + address);
+                }
+                connected = false;
+                channel = null;
+            }
+
+            if (!running) {
+                break;
+            }
+            try {
+                Thread.sleep(delay);
+            } catch (InterruptedException ex) {
+                break;
+            }
+            delay = Math.min(delay * 2, MAX_RETRY_DELAY);
+        }
+    }
+
+    private void handshake(SocketChannel socket) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(256);
+        byte[] challengeFrame = readFrame(socket, buffer);
+        if (challengeFrame.length != 1 + LinkAuth.CHALLENGE_SIZE) {
+            throw new LinkProtocolException("Invalid challenge");
+        }
+        byte[] challenge = new byte[LinkAuth.CHALLENGE_SIZE];
+        System.arraycopy(challengeFrame, 1, challenge, 0, challenge.length);
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeByte(LinkCodec.VERSION);
+        out.writeUTF(serverName);
+        out.write(LinkAuth.sign(secret, challenge, serverName));
+        synchronized (writeLock) {
+            write(socket, LinkFraming.frame(bytes.toByteArray()));
+        }
+
+        byte[] accepted = readFrame(socket, buffer);
+        if (accepted.length != 1 || accepted[0] != 1) {
+            throw new LinkProtocolException("Authentication failed");
+        }
+        pending = buffer;
+    }
+
+    private void readLoop(SocketChannel socket) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(LinkFraming.MAX_FRAME_SIZE + 8);
+        pending.flip();
+        buffer.put(pending);
+        pending = null;
+
+        while (running) {
+            buffer.flip();
+            byte[] frame;
+            while ((frame = LinkFraming.next(buffer)) != null) {
+                dispatch(frame);
+            }
+            buffer.compact();
+            if (socket.read(buffer) < 0) {
+                return;
+            }
+        }
+    }
+
+    private void dispatch(byte[] frame) throws LinkProtocolException {
+        if (frame.length < 4) {
+            throw new LinkProtocolException("Frame without request id");
+        }
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(frame));
+        int requestId;
+        try {
+            requestId = in.readInt();
+        } catch (IOException ex) {
+            throw new LinkProtocolException("Frame without request id");
+        }
+        byte[] payload = new byte[frame.length - 4];
+        System.arraycopy(frame, 4, payload, 0, payload.length);
+
+        try {
+            listener.onMessage(requestId, LinkCodec.decode(payload));
+        } catch (LinkProtocolException ex) {
+            // One malformed message does not break the stream, the framing is intact
+            logger.warning("Failed to read message from the proxy: " + ex.getMessage());
+        }
+    }
+
+    /**
+     * Read a single frame during the handshake, keeping any bytes after it in the buffer.<br>
+     * Reads through the stream of the socket, as only it times out.
+     */
+    private byte[] readFrame(SocketChannel socket, ByteBuffer buffer) throws IOException {
+        while (true) {
+            buffer.flip();
+            byte[] frame = LinkFraming.next(buffer);
+            buffer.compact();
+            if (frame != null) {
+                return frame;
+            }
+            if (!buffer.hasRemaining()) {
+                throw new LinkProtocolException("Handshake frame too big");
+            }
+            int read = socket.socket().getInputStream().read(buffer.array(), buffer.arrayOffset() + buffer.position(), buffer.remaining());
+            if (read < 0) {
+                throw new IOException("Connection closed during handshake");
+            }
+            buffer.position(buffer.position() + read);
+        }
+    }
+
+    private static void write(SocketChannel socket, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            socket.write(buffer);
+        }
+    }
+
+    private void closeChannel() {
+        SocketChannel current = channel;
+        if (current != null) {
+            try {
+                current.close();
+            } catch (IOException ignored) {
+                // Already closed
+            }
+        }
+    }
+}
@@ -0,0 +1,165 @@
+package net.hnt8.advancedban.link.socket;
+
+import net.hnt8.advancedban.link.LinkCodec;
+import net.hnt8.advancedban.link.LinkMessage;
+import net.hnt8.advancedban.link.LinkProtocolException;
+
+import java.io.IOException;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.Queue;
+
+/**
+ * A backend connected to a {@link LinkServer}.<br>
+ * Messages wait in a queue until the socket accepts them. A backend which does not read them, so more than
+ * {@link #MAX_QUEUED_BYTES} are waiting, is disconnected instead of filling up the memory of the proxy.
+ */
+public final class LinkConnection {
+
+    /**
+     * The maximum amount of bytes waiting to be written to the backend.
+     */
+    public static final int MAX_QUEUED_BYTES = 4 * LinkFraming.MAX_FRAME_SIZE;
+
+    private final LinkServer server;
+    private final SocketChannel channel;
+    private final SelectionKey key;
+    private final byte[] challenge = LinkAuth.challenge();
+    private final long acceptedAt = System.currentTimeMillis();
+    private final Queue<ByteBuffer> writeQueue = new ArrayDeque<>();
+    private long queuedBytes;
+    private ByteBuffer readBuffer = ByteBuffer.allocate(4096);
+    private String serverName;
+    private volatile boolean authenticated;
+
+    LinkConnection(LinkServer server, SocketChannel channel, SelectionKey key) {
+        this.server = server;
+        this.channel = channel;
+        this.key = key;
+    }
+
+    /**
+     * Get the name the backend has authenticated with.
+     *
+     * @return the server name or <code>null</code> if the backend has not authenticated yet
+     */
+    public String getServerName() {
+        return serverName;
+    }
+
+    public SocketAddress getRemoteAddress() {
+        try {
+            return channel.getRemoteAddress();
+        } catch (IOException ex) {
+            return null;
+        }
+    }
+
+    public boolean isOpen() {
+        return authenticated && channel.isOpen();
+    }
+
+    /**
+     * Send a message to the backend. Can be called from any thread.
+     *
+     * @param requestId the id of the request this answers, 0 for pushes
+     * @param message   the message
+     * @throws LinkProtocolException if the message can not be encoded or the backend does not keep up with
+     *                               its messages, the connection is closed then
+     */
+    public void send(int requestId, LinkMessage message) throws LinkProtocolException {
+        for (byte[] frame : LinkCodec.encode(message, LinkCodec.VERSION)) {
+            enqueue(LinkFraming.messageFrame(requestId, frame));
+        }
+    }
+
+    /**
+     * Close the connection. Can be called from any thread.
+     */
+    public void close() {
+        server.close(this);
+    }
+
+    SocketChannel getChannel() {
+        return channel;
+    }
+
+    byte[] getChallenge() {
+        return challenge;
+    }
+
+    boolean isAuthenticated() {
+        return authenticated;
+    }
+
+    long getAcceptedAt() {
+        return acceptedAt;
+    }
+
+    void authenticate(String serverName) {
+        this.serverName = serverName;
+        this.authenticated = true;
+    }
+
+    void enqueue(ByteBuffer frame) throws LinkProtocolException {
+        boolean full;
+        synchronized (writeQueue) {
+            full = queuedBytes + frame.remaining() > MAX_QUEUED_BYTES;
+            if (full) {
+                writeQueue.clear();
+                queuedBytes = 0;
+            } else {
+                writeQueue.add(frame);
+                queuedBytes += frame.remaining();
+            }
+        }
+        if (full) {
+            close();
+            throw new LinkProtocolException("More than " + MAX_QUEUED_BYTES + " bytes are waiting to be written, the backend does not read them");
+        }
+        server.requestWrite(this);
+    }
+
+    SelectionKey getKey() {
+        return key;
+    }
+
+    /**
+     * Write as much of the queue as the socket accepts.
+     *
+     * @return whether the queue has been written completely
+     */
+    boolean flush() throws IOException {
+        synchronized (writeQueue) {
+            while (!writeQueue.isEmpty()) {
+                ByteBuffer buffer = writeQueue.peek();
+                queuedBytes -= channel.write(buffer);
+                if (buffer.hasRemaining()) {
+                    return false;
+                }
+                writeQueue.poll();
+            }
+            return true;
+        }
+    }
+
+    /**
+     * Get the buffer to read into, growing it if a frame does not fit.
+     * It only grows once the backend has authenticated, the handshake always fits.
+     */
+    ByteBuffer readBuffer() {
+        if (!readBuffer.hasRemaining() && authenticated) {
+            int capacity = Math.min(readBuffer.capacity() * 2, LinkFraming.MAX_FRAME_SIZE + 8);
+            if (capacity > readBuffer.capacity()) {
+                ByteBuffer grown = ByteBuffer.allocate(capacity);
+                readBuffer.flip();
+                grown.put(readBuffer);
+                readBuffer = grown;
+            }
+        }
+        return readBuffer;
+    }
+}
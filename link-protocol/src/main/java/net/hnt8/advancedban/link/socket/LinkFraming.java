@@ -0,0 +1,79 @@
+package net.hnt8.advancedban.link.socket;
+
+import net.hnt8.advancedban.link.LinkProtocolException;
+
+import java.nio.ByteBuffer;
+
+/**
+ * Stream framing of the socket transport.<br>
+ * Every frame is prefixed with its length as an int. Message frames consist of a request id followed by a
+ * {@link net.hnt8.advancedban.link.LinkCodec} frame, responses carry the id of their request and pushes use 0.
+ */
+final class LinkFraming {
+
+    /**
+     * The largest frame a peer may send, anything bigger is treated as a protocol violation.
+     */
+    static final int MAX_FRAME_SIZE = 1 << 20;
+    /**
+     * The longest server name a backend may authenticate with, in bytes.
+     */
+    static final int MAX_SERVER_NAME_SIZE = 255;
+    /**
+     * The largest frame a peer which has not authenticated yet may send: its version, server name and signature.
+     */
+    static final int MAX_HANDSHAKE_SIZE = 1 + 2 + MAX_SERVER_NAME_SIZE + LinkAuth.SIGNATURE_SIZE;
+
+    private LinkFraming() {
+    }
+
+    static ByteBuffer frame(byte[] payload) {
+        ByteBuffer buffer = ByteBuffer.allocate(4 + payload.length);
+        buffer.putInt(payload.length).put(payload);
+        buffer.flip();
+        return buffer;
+    }
+
+    static ByteBuffer messageFrame(int requestId, byte[] codecFrame) {
+        ByteBuffer buffer = ByteBuffer.allocate(4 + 4 + codecFrame.length);
+        buffer.putInt(4 + codecFrame.length).putInt(requestId).put(codecFrame);
+        buffer.flip();
+        return buffer;
+    }
+
+    /**
+     * Take the next complete frame out of a buffer in read mode.
+     *
+     * @param buffer the buffer, positioned at the start of a frame
+     * @return the frame payload or <code>null</code> if the frame is not complete yet
+     * @throws LinkProtocolException if the frame is too big
+     */
+    static byte[] next(ByteBuffer buffer) throws LinkProtocolException {
+        return next(buffer, MAX_FRAME_SIZE);
+    }
+
+    /**
+     * Take the next complete frame out of a buffer in read mode.
+     *
+     * @param buffer  the buffer, positioned at the start of a frame
+     * @param maxSize the largest frame which is accepted
+     * @return the frame payload or <code>null</code> if the frame is not complete yet
+     * @throws LinkProtocolException if the frame is too big
+     */
+    static byte[] next(ByteBuffer buffer, int maxSize) throws LinkProtocolException {
+        if (buffer.remaining() < 4) {
+            return null;
+        }
+        int length = buffer.getInt(buffer.position());
+        if (length < 0 || length > maxSize) {
+            throw new LinkProtocolException("Invalid frame length " + length);
+        }
+        if (buffer.remaining() < 4 + length) {
+            return null;
+        }
+        buffer.getInt();
+        byte[] payload = new byte[length];
+        buffer.get(payload);
+        return payload;
+    }
+}
@@ -0,0 +1,33 @@
+package net.hnt8.advancedban.link.socket;
+
+import net.hnt8.advancedban.link.LinkMessage;
+
+/**
+ * Receives the events of a {@link LinkServer}.<br>
+ * All methods are called on the selector thread and must not block.
+ */
+public interface LinkHandler {
+
+    /**
+     * Called once a backend has authenticated.
+     *
+     * @param connection the connection
+     */
+    void onConnect(LinkConnection connection);
+
+    /**
+     * Called for every message of an authenticated backend.
+     *
+     * @param connection the connection
+     * @param requestId  the request id, responses should be sent with the same id
+     * @param message    the message
+     */
+    void onMessage(LinkConnection connection, int requestId, LinkMessage message);
+
+    /**
+     * Called when an authenticated connection has been closed.
+     *
+     * @param connection the connection
+     */
+    void onDisconnect(LinkConnection connection);
+}
@@ -0,0 +1,299 @@
+package net.hnt8.advancedban.link.socket;
+
+import net.hnt8.advancedban.link.LinkCodec;
+import net.hnt8.advancedban.link.LinkMessage;
+import net.hnt8.advancedban.link.LinkProtocolException;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * The proxy side of the socket transport.<br>
+ * Accepts backend connections on a single selector thread, authenticates them with the shared secret
+ * (see {@link LinkAuth}) and hands their messages to a {@link LinkHandler}.<br>
+ * Until a connection has authenticated it may only send a frame as large as the handshake, and it is closed
+ * if it does not authenticate in time. Connections beyond {@link #MAX_HANDSHAKES} which have not authenticated
+ * yet are closed right away.
+ */
+public final class LinkServer implements Runnable {
+
+    /**
+     * How long a connection may take to authenticate, in milliseconds.
+     */
+    public static final long HANDSHAKE_TIMEOUT = 5000;
+    /**
+     * The maximum amount of connections which have not authenticated yet.
+     */
+    public static final int MAX_HANDSHAKES = 16;
+
+    private final InetSocketAddress address;
+    private final String secret;
+    private final LinkHandler handler;
+    private final Logger logger;
+    private final long handshakeTimeout;
+    private final Queue<LinkConnection> pendingWrites = new ConcurrentLinkedQueue<>();
+    // Connections which have not authenticated yet
+    private final Set<LinkConnection> handshakes = ConcurrentHashMap.newKeySet();
+    private volatile Selector selector;
+    private ServerSocketChannel serverChannel;
+    private Thread thread;
+
+    public LinkServer(InetSocketAddress address, String secret, LinkHandler handler, Logger logger) {
+        this(address, secret, handler, logger, HANDSHAKE_TIMEOUT);
+    }
+
+    /**
+     * Visible for testing. Do not use this.
+     */
+    LinkServer(InetSocketAddress address, String secret, LinkHandler handler, Logger logger, long handshakeTimeout) {
+        if (secret == null || secret.isEmpty()) {
+            throw new IllegalArgumentException("The backend link socket requires a secret");
+        }
+        this.address = address;
+        this.secret = secret;
+        this.handler = handler;
+        this.logger = logger;
+        this.handshakeTimeout = handshakeTimeout;
+    }
+
+    /**
+     * Bind the socket and start the selector thread.
+     *
+     * @throws IOException if the socket can not be bound
+     */
+    public synchronized void start() throws IOException {
+        selector = Selector.open();
+        serverChannel = ServerSocketChannel.open();
+        serverChannel.configureBlocking(false);
+        serverChannel.bind(address);
+        serverChannel.register(selector, SelectionKey.OP_ACCEPT);
+
+        thread = new Thread(this, "Avesban-LinkServer");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Get the address the server is bound to.
+     *
+     * @return the local address
+     */
+    public InetSocketAddress getLocalAddress() throws IOException {
+        return (InetSocketAddress) serverChannel.getLocalAddress();
+    }
+
+    /**
+     * Close the server and all connections.<br>
+     * The selector thread closes them, this waits up to a second for it to finish.
+     */
+    public synchronized void stop() {
+        Selector current = selector;
+        if (current == null) {
+            return;
+        }
+        selector = null;
+        current.wakeup();
+        if (Thread.currentThread() != thread) {
+            try {
+                thread.join(1000);
+            } catch (InterruptedException ex) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    @Override
+    public void run() {
+        Selector selector = this.selector;
+        try {
+            while (this.selector == selector) {
+                // Wake up in time to close connections which do not authenticate
+                selector.select(handshakes.isEmpty() ? 0 : Math.max(1, handshakeTimeout / 4));
+                closeExpiredHandshakes();
+
+                LinkConnection writable;
+                while ((writable = pendingWrites.poll()) != null) {
+                    if (writable.getKey().isValid()) {
+                        writable.getKey().interestOps(writable.getKey().interestOps() | SelectionKey.OP_WRITE);
+                    }
+                }
+
+                Iterator<SelectionKey> keys = selector.selectedKeys().iterator();
+                while (keys.hasNext()) {
+                    SelectionKey key = keys.next();
+                    keys.remove();
+                    if (!key.isValid()) {
+                        continue;
+                    }
+                    try {
+                        if (key.isAcceptable()) {
+                            accept(selector);
+                        } else {
+                            LinkConnection connection = (LinkConnection) key.attachment();
+                            if (key.isReadable()) {
+                                read(connection);
+                            }
+                            if (key.isValid() && key.isWritable() && connection.flush()) {
+                                key.interestOps(SelectionKey.OP_READ);
+                            }
+                        }
+                    } catch (IOException ex) {
+                        if (key.attachment() != null) {
+                            logger.fine("Closing backend link connection: " + ex.getMessage());
+                            close((LinkConnection) key.attachment());
+                        }
+                    }
+                }
+            }
+        } catch (IOException | ClosedSelectorException ex) {
+            if (this.selector != null) {
+                logger.log(Level.WARNING, "The backend link socket has stopped", ex);
+            }
+        } finally {
+            try {
+                for (SelectionKey key : selector.keys()) {
+                    key.channel().close();
+                }
+                selector.close();
+            } catch (IOException | ClosedSelectorException ex) {
+                logger.log(Level.FINE, "Failed to close the backend link socket", ex);
+            }
+        }
+    }
+
+    void requestWrite(LinkConnection connection) {
+        pendingWrites.add(connection);
+        Selector current = selector;
+        if (current != null) {
+            current.wakeup();
+        }
+    }
+
+    void close(LinkConnection connection) {
+        handshakes.remove(connection);
+        if (!connection.getChannel().isOpen()) {
+            return;
+        }
+        connection.getKey().cancel();
+        try {
+            connection.getChannel().close();
+        } catch (IOException ignored) {
+            // Already closed
+        }
+        if (connection.isAuthenticated()) {
+            handler.onDisconnect(connection);
+        }
+    }
+
+    private void accept(Selector selector) throws IOException {
+        SocketChannel channel = serverChannel.accept();
+        if (channel == null) {
+            return;
+        }
+        if (handshakes.size() >= MAX_HANDSHAKES) {
+            logger.warning("Rejected backend link connection from " + channel.getRemoteAddress() + ": too many connections are authenticating");
+            channel.close();
+            return;
+        }
+        channel.configureBlocking(false);
+        SelectionKey key = channel.register(selector, SelectionKey.OP_READ);
+        LinkConnection connection = new LinkConnection(this, channel, key);
+        key.attach(connection);
+        handshakes.add(connection);
+
+        ByteArrayOutputStream challenge = new ByteArrayOutputStream();
+        challenge.write(LinkCodec.VERSION);
+        challenge.write(connection.getChallenge());
+        connection.enqueue(LinkFraming.frame(challenge.toByteArray()));
+    }
+
+    private void read(LinkConnection connection) throws IOException {
+        ByteBuffer buffer = connection.readBuffer();
+        if (connection.getChannel().read(buffer) < 0) {
+            close(connection);
+            return;
+        }
+
+        buffer.flip();
+        try {
+            byte[] frame;
+            while (connection.getChannel().isOpen() && (frame = LinkFraming.next(buffer,
+                    connection.isAuthenticated() ? LinkFraming.MAX_FRAME_SIZE : LinkFraming.MAX_HANDSHAKE_SIZE)) != null) {
+                if (!connection.isAuthenticated()) {
+                    authenticate(connection, frame);
+                } else {
+                    dispatch(connection, frame);
+                }
+            }
+        } finally {
+            buffer.compact();
+        }
+    }
+
+    private void authenticate(LinkConnection connection, byte[] frame) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(frame));
+        in.readUnsignedByte(); // version of the backend
+        String serverName = in.readUTF();
+        byte[] signature = new byte[in.available()];
+        in.readFully(signature);
+
+        if (!LinkAuth.verify(secret, connection.getChallenge(), serverName, signature)) {
+            logger.warning("Rejected backend link connection from " + connection.getRemoteAddress() + ": invalid secret");
+            close(connection);
+            return;
+        }
+
+        handshakes.remove(connection);
+        connection.authenticate(serverName);
+        connection.enqueue(LinkFraming.frame(new byte[]{1}));
+        handler.onConnect(connection);
+    }
+
+    private void closeExpiredHandshakes() {
+        if (handshakes.isEmpty()) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        for (LinkConnection connection : handshakes.toArray(new LinkConnection[0])) {
+            if (now - connection.getAcceptedAt() >= handshakeTimeout) {
+                logger.warning("Closing backend link connection from " + connection.getRemoteAddress() + ": it did not authenticate in time");
+                close(connection);
+            }
+        }
+    }
+
+    private void dispatch(LinkConnection connection, byte[] frame) throws IOException {
+        if (frame.length < 4) {
+            throw new LinkProtocolException("Frame without request id");
+        }
+        int requestId = ByteBuffer.wrap(frame).getInt();
+        byte[] payload = new byte[frame.length - 4];
+        System.arraycopy(frame, 4, payload, 0, payload.length);
+
+        LinkMessage message;
+        try {
+            message = LinkCodec.decode(payload);
+        } catch (LinkProtocolException ex) {
+            // One malformed message does not break the stream, the framing is intact
+            logger.warning("Failed to read message from backend " + connection.getServerName() + ": " + ex.getMessage());
+            return;
+        }
+        handler.onMessage(connection, requestId, message);
+    }
+}
@@ -0,0 +1,36 @@
+package net.hnt8.advancedban.link;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+public class DurationLayoutTest {
+
+    private final DurationLayout layout = new DurationLayout("%D%d %HH%:%MM%:%SS%", "%H%h %M%m %S%s", "%M%m %S%s", "%S%s");
+
+    @Test
+    public void picksTheLayoutByTheLargestUnit() {
+        assertEquals("2d 03:04:05", layout.format(((2 * 24 + 3) * 3600 + 4 * 60 + 5) * 1000L));
+        assertEquals("3h 4m 5s", layout.format((3 * 3600 + 4 * 60 + 5) * 1000L));
+        assertEquals("4m 5s", layout.format((4 * 60 + 5) * 1000L));
+        assertEquals("5s", layout.format(5000L));
+    }
+
+    @Test
+    public void roundsUpToFullSeconds() {
+        assertEquals("1s", layout.format(1L));
+        assertEquals("0s", layout.format(-500L));
+    }
+
+    @Test
+    public void fillsTheRemainingDurationIntoTheMessage() {
+        String message = "Muted for " + MuteStatus.DURATION;
+        assertEquals("Muted for 10s", layout.fill(message, 20_000L, 10_000L));
+        assertEquals("Muted for 5s", layout.fill(message, 20_000L, 15_000L));
+        // Permanent mutes and messages without the marker stay as they are
+        assertEquals(message, layout.fill(message, -1, 0));
+        assertEquals("Muted", layout.fill("Muted", 20_000L, 10_000L));
+        assertNull(layout.fill(null, 20_000L, 10_000L));
+    }
+}
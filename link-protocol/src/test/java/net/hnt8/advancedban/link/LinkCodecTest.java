@@ -0,0 +1,251 @@
+package net.hnt8.advancedban.link;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+public class LinkCodecTest {
+
+    @Test
+    public void roundTripsExecuteCommand() throws LinkProtocolException {
+        ExecuteCommandMessage decoded = roundTrip(new ExecuteCommandMessage("id-1", "ban Steve hacking", "lobby"));
+        assertEquals("id-1", decoded.getCommandId());
+        assertEquals("ban Steve hacking", decoded.getCommand());
+        assertEquals("lobby", decoded.getServerName());
+        assertEquals(LinkCodec.VERSION, decoded.getVersion());
+
+        decoded = roundTrip(new ExecuteCommandMessage(null, "kick Alex", null));
+        assertNull(decoded.getCommandId());
+        assertNull(decoded.getServerName());
+    }
+
+    @Test
+    public void roundTripsCommandResult() throws LinkProtocolException {
+        CommandResultMessage decoded = roundTrip(new CommandResultMessage("id-2", true, 42, null, "§aBanned Steve"));
+        assertEquals("id-2", decoded.getCommandId());
+        assertTrue(decoded.isSuccess());
+        assertEquals(42, decoded.getPunishmentId());
+        assertNull(decoded.getError());
+        assertEquals("§aBanned Steve", decoded.getMessage());
+
+        decoded = roundTrip(new CommandResultMessage("id-3", false, -1, "AlreadyDone", null));
+        assertFalse(decoded.isSuccess());
+        assertEquals("AlreadyDone", decoded.getError());
+        assertNull(decoded.getMessage());
+        assertFalse(decoded.isBusy());
+
+        decoded = roundTrip(new CommandResultMessage("id-4", false, -1, CommandResultMessage.BUSY, null));
+        assertTrue(decoded.isBusy());
+    }
+
+    @Test
+    public void roundTripsStatusRequest() throws LinkProtocolException {
+        StatusRequestMessage decoded = roundTrip(new StatusRequestMessage("survival", Arrays.asList("Steve", "Alex")));
+        assertEquals("survival", decoded.getServerName());
+        assertEquals(Arrays.asList("Steve", "Alex"), decoded.getPlayerNames());
+    }
+
+    @Test
+    public void roundTripsStatus() throws LinkProtocolException {
+        DurationLayout layout = new DurationLayout("%D%d", "%H%h", "%M%m", "%S%s");
+        StatusMessage decoded = roundTrip(new StatusMessage("survival", Arrays.asList(
+                new MuteStatus("Steve", true, 1234L, "survival", "§cMuted for " + MuteStatus.DURATION),
+                new MuteStatus("Alex", false, -1, null, null)), layout));
+
+        assertEquals("survival", decoded.getServerName());
+        assertEquals("%D%d", decoded.getDurationLayout().getDays());
+        assertEquals("%S%s", decoded.getDurationLayout().getSeconds());
+        assertEquals(2, decoded.getStatuses().size());
+
+        MuteStatus steve = decoded.getStatuses().get(0);
+        assertEquals("Steve", steve.getPlayerName());
+        assertTrue(steve.isMuted());
+        assertEquals(1234L, steve.getEnd());
+        assertEquals("survival", steve.getScope());
+        assertEquals("§cMuted for " + MuteStatus.DURATION, steve.getMessage());
+
+        MuteStatus alex = decoded.getStatuses().get(1);
+        assertFalse(alex.isMuted());
+        assertNull(alex.getScope());
+        assertNull(alex.getMessage());
+    }
+
+    @Test
+    public void splitsBatchesAtTheFrameSize() throws LinkProtocolException {
+        List<String> names = new ArrayList<>();
+        for (int i = 0; i < 5000; i++) {
+            names.add("Player_" + i);
+        }
+        List<byte[]> frames = LinkCodec.encode(new StatusRequestMessage("lobby", names), LinkCodec.VERSION);
+        assertTrue(frames.size() > 1, "5000 names should not fit into one frame");
+
+        List<String> decoded = new ArrayList<>();
+        for (byte[] frame : frames) {
+            assertTrue(frame.length <= LinkCodec.MAX_FRAME_SIZE, "Frame of " + frame.length + " bytes is too large");
+            StatusRequestMessage part = (StatusRequestMessage) LinkCodec.decode(frame);
+            assertEquals("lobby", part.getServerName());
+            decoded.addAll(part.getPlayerNames());
+        }
+        assertEquals(names, decoded);
+    }
+
+    @Test
+    public void splitsStatusesAtTheFrameSize() throws LinkProtocolException {
+        List<MuteStatus> statuses = new ArrayList<>();
+        String message = new String(new char[200]).replace('\0', 'x');
+        for (int i = 0; i < 1000; i++) {
+            statuses.add(new MuteStatus("Player_" + i, true, i, null, message));
+        }
+        List<byte[]> frames = LinkCodec.encode(new StatusMessage(null, statuses), LinkCodec.VERSION);
+        assertTrue(frames.size() > 1, "1000 statuses should not fit into one frame");
+
+        int count = 0;
+        for (byte[] frame : frames) {
+            assertTrue(frame.length <= LinkCodec.MAX_FRAME_SIZE);
+            for (MuteStatus status : ((StatusMessage) LinkCodec.decode(frame)).getStatuses()) {
+                assertEquals("Player_" + count, status.getPlayerName());
+                assertEquals(count++, status.getEnd());
+            }
+        }
+        assertEquals(statuses.size(), count);
+    }
+
+    @Test
+    public void rejectsEntriesLargerThanAFrame() {
+        String huge = new String(new char[LinkCodec.MAX_FRAME_SIZE]).replace('\0', 'x');
+        StatusMessage message = new StatusMessage(null, Collections.singletonList(new MuteStatus("Steve", true, -1, null, huge)));
+        assertThrows(LinkProtocolException.class, () -> LinkCodec.encode(message, LinkCodec.VERSION));
+    }
+
+    @Test
+    public void readsLegacyFrames() throws IOException {
+        ExecuteCommandMessage command = (ExecuteCommandMessage) LinkCodec.decode(legacy("EXECUTE_COMMAND", "ban Steve", "lobby"));
+        assertEquals(LinkCodec.LEGACY_VERSION, command.getVersion());
+        assertEquals("ban Steve", command.getCommand());
+        assertEquals("lobby", command.getServerName());
+        assertNull(command.getCommandId());
+
+        // Older backends did not send their server name
+        command = (ExecuteCommandMessage) LinkCodec.decode(legacy("EXECUTE_COMMAND", "ban Steve"));
+        assertNull(command.getServerName());
+
+        StatusRequestMessage request = (StatusRequestMessage) LinkCodec.decode(legacy("CHECK_PUNISHMENT", "Steve", "uuid", "lobby"));
+        assertEquals(Collections.singletonList("Steve"), request.getPlayerNames());
+        assertEquals("lobby", request.getServerName());
+    }
+
+    @Test
+    public void writesLegacyFrames() throws LinkProtocolException {
+        List<byte[]> frames = LinkCodec.encode(new StatusMessage("lobby", Arrays.asList(
+                new MuteStatus("Steve", true, 1234L, null, "muted"),
+                new MuteStatus("Alex", false, -1, null, null))), LinkCodec.LEGACY_VERSION);
+
+        // The legacy format carries one player per frame, without end, scope or message
+        assertEquals(2, frames.size());
+        StatusMessage steve = (StatusMessage) LinkCodec.decode(frames.get(0));
+        assertEquals(LinkCodec.LEGACY_VERSION, steve.getVersion());
+        assertEquals("Steve", steve.getStatuses().get(0).getPlayerName());
+        assertTrue(steve.getStatuses().get(0).isMuted());
+        assertEquals(-1, steve.getStatuses().get(0).getEnd());
+        assertFalse(((StatusMessage) LinkCodec.decode(frames.get(1))).getStatuses().get(0).isMuted());
+
+        ExecuteCommandMessage command = (ExecuteCommandMessage) LinkCodec.decode(
+                LinkCodec.encode(new ExecuteCommandMessage("id", "ban Steve", null), LinkCodec.LEGACY_VERSION).get(0));
+        assertEquals("ban Steve", command.getCommand());
+
+        assertThrows(LinkProtocolException.class,
+                () -> LinkCodec.encode(new CommandResultMessage("id", true, 1, null, null), LinkCodec.LEGACY_VERSION));
+    }
+
+    @Test
+    public void rejectsUnknownVersions() {
+        assertThrows(LinkProtocolException.class, () -> LinkCodec.encode(new ExecuteCommandMessage(null, "ban", null), LinkCodec.VERSION + 1));
+        assertThrows(LinkProtocolException.class, () -> LinkCodec.decode(new byte[]{LinkCodec.MAGIC, (byte) (LinkCodec.VERSION + 1), 1}));
+        assertThrows(LinkProtocolException.class, () -> LinkCodec.decode(new byte[]{LinkCodec.MAGIC, LinkCodec.LEGACY_VERSION, 1}));
+    }
+
+    @Test
+    public void rejectsTruncatedFrames() throws LinkProtocolException {
+        List<LinkMessage> messages = Arrays.asList(
+                new ExecuteCommandMessage("id-1", "ban Steve hacking", "lobby"),
+                new CommandResultMessage("id-2", true, 42, null, "done"),
+                new StatusRequestMessage("lobby", Arrays.asList("Steve", "Alex")),
+                new StatusMessage("lobby", Collections.singletonList(new MuteStatus("Steve", true, 1L, "lobby", "muted")),
+                        new DurationLayout("d", "h", "m", "s")));
+        for (LinkMessage message : messages) {
+            byte[] frame = LinkCodec.encode(message, LinkCodec.VERSION).get(0);
+            for (int length = 0; length < frame.length; length++) {
+                byte[] truncated = Arrays.copyOf(frame, length);
+                assertThrows(LinkProtocolException.class, () -> LinkCodec.decode(truncated),
+                        message.getType() + " truncated to " + length + " bytes");
+            }
+        }
+    }
+
+    @Test
+    public void rejectsCountsLargerThanTheFrame() {
+        // A status request without server name claiming 65535 names
+        byte[] frame = {LinkCodec.MAGIC, LinkCodec.VERSION, 2, 0, (byte) 0xFF, (byte) 0xFF};
+        assertThrows(LinkProtocolException.class, () -> LinkCodec.decode(frame));
+    }
+
+    @Test
+    public void onlyThrowsProtocolExceptionsForRandomInput() {
+        Random random = new Random(4);
+        for (int i = 0; i < 20_000; i++) {
+            byte[] data = new byte[random.nextInt(64)];
+            random.nextBytes(data);
+            if (data.length > 1 && random.nextBoolean()) {
+                // Get past the header more often
+                data[0] = LinkCodec.MAGIC;
+                data[1] = LinkCodec.VERSION;
+            }
+            try {
+                LinkCodec.decode(data);
+            } catch (LinkProtocolException expected) {
+                // Fine, malformed input has to be reported this way
+            } catch (RuntimeException ex) {
+                fail("Decoding " + Arrays.toString(data) + " threw " + ex);
+            }
+        }
+    }
+
+    @Test
+    public void encodesDeterministically() throws LinkProtocolException {
+        LinkMessage message = new ExecuteCommandMessage("id", "ban Steve", "lobby");
+        assertArrayEquals(LinkCodec.encode(message, LinkCodec.VERSION).get(0), LinkCodec.encode(message, LinkCodec.VERSION).get(0));
+    }
+
+    @SuppressWarnings("unchecked")
+    private static <T extends LinkMessage> T roundTrip(T message) throws LinkProtocolException {
+        List<byte[]> frames = LinkCodec.encode(message, LinkCodec.VERSION);
+        assertEquals(1, frames.size());
+        LinkMessage decoded = LinkCodec.decode(frames.get(0));
+        assertEquals(message.getType(), decoded.getType());
+        return (T) decoded;
+    }
+
+    private static byte[] legacy(String... strings) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        for (String string : strings) {
+            out.writeUTF(string);
+        }
+        return bytes.toByteArray();
+    }
+}
@@ -0,0 +1,323 @@
+package net.hnt8.advancedban.link.socket;
+
+import net.hnt8.advancedban.link.ExecuteCommandMessage;
+import net.hnt8.advancedban.link.LinkMessage;
+import net.hnt8.advancedban.link.LinkProtocolException;
+import net.hnt8.advancedban.link.MuteStatus;
+import net.hnt8.advancedban.link.StatusMessage;
+import net.hnt8.advancedban.link.StatusRequestMessage;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class LinkServerTest {
+
+    private static final String SECRET = "secret";
+    private static final Logger LOGGER = Logger.getLogger("LinkServerTest");
+
+    static {
+        LOGGER.setLevel(Level.OFF);
+    }
+
+    private final BlockingQueue<LinkConnection> connected = new LinkedBlockingQueue<>();
+    private final BlockingQueue<LinkMessage> received = new LinkedBlockingQueue<>();
+    private final BlockingQueue<Integer> requestIds = new LinkedBlockingQueue<>();
+    private final List<Socket> sockets = new ArrayList<>();
+    private LinkServer server;
+    private LinkClient client;
+
+    @AfterEach
+    public void tearDown() throws IOException {
+        if (client != null) {
+            client.stop();
+        }
+        for (Socket socket : sockets) {
+            socket.close();
+        }
+        if (server != null) {
+            server.stop();
+        }
+    }
+
+    @Test
+    public void acceptsBackendsWithTheSecret() throws Exception {
+        start(LinkServer.HANDSHAKE_TIMEOUT);
+        BlockingQueue<LinkMessage> answers = new LinkedBlockingQueue<>();
+        CountDownLatch clientConnected = new CountDownLatch(1);
+        client = new LinkClient(server.getLocalAddress(), SECRET, "lobby", new LinkClient.Listener() {
+            @Override
+            public void onConnect() {
+                clientConnected.countDown();
+            }
+
+            @Override
+            public void onMessage(int requestId, LinkMessage message) {
+                answers.add(message);
+            }
+        }, LOGGER);
+        client.start();
+
+        LinkConnection connection = connected.poll(5, TimeUnit.SECONDS);
+        assertNotNull(connection, "The backend should have authenticated");
+        assertEquals("lobby", connection.getServerName());
+        assertTrue(clientConnected.await(5, TimeUnit.SECONDS));
+
+        int requestId = client.nextRequestId();
+        assertTrue(client.send(requestId, new ExecuteCommandMessage("id-1", "ban Steve", "lobby")));
+        ExecuteCommandMessage command = (ExecuteCommandMessage) received.poll(5, TimeUnit.SECONDS);
+        assertNotNull(command);
+        assertEquals("ban Steve", command.getCommand());
+
+        connection.send(requestId, status("Steve", 7, null));
+        StatusMessage result = (StatusMessage) answers.poll(5, TimeUnit.SECONDS);
+        assertNotNull(result);
+        assertEquals(7, result.getStatuses().get(0).getEnd());
+    }
+
+    @Test
+    public void rejectsBackendsWithAnotherSecret() throws Exception {
+        start(LinkServer.HANDSHAKE_TIMEOUT);
+        client = new LinkClient(server.getLocalAddress(), "wrong", "lobby", new LinkClient.Listener() {
+            @Override
+            public void onConnect() {
+            }
+
+            @Override
+            public void onMessage(int requestId, LinkMessage message) {
+            }
+        }, LOGGER);
+        client.start();
+
+        assertEquals(null, connected.poll(1500, TimeUnit.MILLISECONDS));
+        assertFalse(client.isConnected());
+    }
+
+    @Test
+    public void closesConnectionsWhichDoNotAuthenticate() throws Exception {
+        start(300);
+        Socket socket = connect();
+        readChallenge(socket);
+
+        long started = System.currentTimeMillis();
+        assertEquals(-1, socket.getInputStream().read(), "The server should close the connection");
+        assertTrue(System.currentTimeMillis() - started < 4000);
+    }
+
+    @Test
+    public void closesConnectionsSendingLargeFramesBeforeAuthenticating() throws Exception {
+        start(LinkServer.HANDSHAKE_TIMEOUT);
+        Socket socket = connect();
+        readChallenge(socket);
+
+        DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+        out.writeInt(LinkFraming.MAX_HANDSHAKE_SIZE + 1);
+        out.flush();
+        assertEquals(-1, socket.getInputStream().read(), "The server should close the connection");
+    }
+
+    @Test
+    public void limitsConnectionsWhichHaveNotAuthenticated() throws Exception {
+        start(10_000);
+        for (int i = 0; i < LinkServer.MAX_HANDSHAKES; i++) {
+            readChallenge(connect());
+        }
+
+        // Closed right away, without a challenge
+        assertEquals(-1, connect().getInputStream().read());
+    }
+
+    @Test
+    public void answersEveryRequestWithItsOwnId() throws Exception {
+        start(LinkServer.HANDSHAKE_TIMEOUT);
+        int requests = 1000;
+        Map<Integer, StatusMessage> answers = new ConcurrentHashMap<>();
+        CountDownLatch answered = new CountDownLatch(requests);
+        CountDownLatch clientConnected = new CountDownLatch(1);
+        client = new LinkClient(server.getLocalAddress(), SECRET, "lobby", new LinkClient.Listener() {
+            @Override
+            public void onConnect() {
+                clientConnected.countDown();
+            }
+
+            @Override
+            public void onMessage(int requestId, LinkMessage message) {
+                answers.put(requestId, (StatusMessage) message);
+                answered.countDown();
+            }
+        }, LOGGER);
+        client.start();
+        LinkConnection connection = connected.poll(5, TimeUnit.SECONDS);
+        assertNotNull(connection);
+        assertTrue(clientConnected.await(5, TimeUnit.SECONDS));
+
+        // Several threads share the connection
+        Thread[] senders = new Thread[4];
+        for (int t = 0; t < senders.length; t++) {
+            senders[t] = new Thread(() -> {
+                for (int i = 0; i < requests / senders.length; i++) {
+                    int requestId = client.nextRequestId();
+                    try {
+                        client.send(requestId, new StatusRequestMessage("lobby", Collections.singletonList("Player_" + requestId)));
+                    } catch (LinkProtocolException ex) {
+                        throw new IllegalStateException(ex);
+                    }
+                }
+            });
+            senders[t].start();
+        }
+        for (Thread sender : senders) {
+            sender.join(5000);
+        }
+
+        // Answered in reverse order, the request id tells the client which request an answer belongs to
+        int[] ids = new int[requests];
+        String[] names = new String[requests];
+        for (int i = 0; i < requests; i++) {
+            StatusRequestMessage request = (StatusRequestMessage) received.poll(5, TimeUnit.SECONDS);
+            assertNotNull(request, "Only " + i + " requests have arrived");
+            ids[i] = requestIds.take();
+            names[i] = request.getPlayerNames().get(0);
+        }
+        for (int i = requests - 1; i >= 0; i--) {
+            connection.send(ids[i], status(names[i], ids[i], null));
+        }
+
+        assertTrue(answered.await(5, TimeUnit.SECONDS), "Only " + answers.size() + " answers have arrived");
+        assertEquals(requests, answers.size());
+        answers.forEach((requestId, answer) -> {
+            assertEquals("Player_" + requestId, answer.getStatuses().get(0).getPlayerName());
+            assertEquals((long) requestId, answer.getStatuses().get(0).getEnd());
+        });
+    }
+
+    @Test
+    public void closesBackendsWhichDoNotReadTheirMessages() throws Exception {
+        start(LinkServer.HANDSHAKE_TIMEOUT);
+        CountDownLatch reading = new CountDownLatch(1);
+        client = new LinkClient(server.getLocalAddress(), SECRET, "lobby", new LinkClient.Listener() {
+            @Override
+            public void onConnect() {
+            }
+
+            @Override
+            public void onMessage(int requestId, LinkMessage message) {
+                // Stuck, so the client does not read anything else
+                try {
+                    reading.await();
+                } catch (InterruptedException ex) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+        }, LOGGER);
+        client.start();
+        LinkConnection connection = connected.poll(5, TimeUnit.SECONDS);
+        assertNotNull(connection);
+
+        char[] text = new char[30_000];
+        Arrays.fill(text, 'x');
+        StatusMessage large = status("Steve", -1, new String(text));
+        boolean rejected = false;
+        try {
+            for (int i = 0; i < 10_000; i++) {
+                connection.send(0, large);
+            }
+        } catch (LinkProtocolException ex) {
+            rejected = true;
+        } finally {
+            reading.countDown();
+        }
+        assertTrue(rejected, "The queue should be limited");
+        assertFalse(connection.isOpen());
+    }
+
+    @Test
+    public void givesUpOnProxiesWhichDoNotAnswerTheHandshake() throws Exception {
+        try (ServerSocket silent = new ServerSocket(0, 1, InetAddress.getLoopbackAddress())) {
+            silent.setSoTimeout(5000);
+            client = new LinkClient(new InetSocketAddress(InetAddress.getLoopbackAddress(), silent.getLocalPort()), SECRET, "lobby", new LinkClient.Listener() {
+                @Override
+                public void onConnect() {
+                }
+
+                @Override
+                public void onMessage(int requestId, LinkMessage message) {
+                }
+            }, LOGGER, 300);
+            client.start();
+
+            try (Socket socket = silent.accept()) {
+                socket.setSoTimeout(5000);
+                long started = System.currentTimeMillis();
+                assertEquals(-1, socket.getInputStream().read(), "The client should close the connection");
+                assertTrue(System.currentTimeMillis() - started < 4000);
+            }
+            assertFalse(client.isConnected());
+        }
+    }
+
+    private void start(long handshakeTimeout) throws IOException {
+        server = new LinkServer(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), SECRET, new LinkHandler() {
+            @Override
+            public void onConnect(LinkConnection connection) {
+                connected.add(connection);
+            }
+
+            @Override
+            public void onMessage(LinkConnection connection, int requestId, LinkMessage message) {
+                requestIds.add(requestId);
+                received.add(message);
+            }
+
+            @Override
+            public void onDisconnect(LinkConnection connection) {
+            }
+        }, LOGGER, handshakeTimeout);
+        server.start();
+    }
+
+    private Socket connect() throws IOException {
+        Socket socket = new Socket(InetAddress.getLoopbackAddress(), server.getLocalAddress().getPort());
+        socket.setSoTimeout(5000);
+        sockets.add(socket);
+        return socket;
+    }
+
+    private static StatusMessage status(String name, long end, String message) {
+        return new StatusMessage("lobby", Collections.singletonList(new MuteStatus(name, true, end, null, message)));
+    }
+
+    private static void readChallenge(Socket socket) throws IOException {
+        InputStream input = socket.getInputStream();
+        DataInputStream in = new DataInputStream(input);
+        int length = in.readInt();
+        if (length != 1 + LinkAuth.CHALLENGE_SIZE) {
+            throw new LinkProtocolException("Unexpected challenge of " + length + " bytes");
+        }
+        in.readFully(new byte[length]);
+    }
+}
@@ -7,12 +7,16 @@ import com.velocitypowered.api.event.proxy.ProxyShutdownEvent;
 import com.velocitypowered.api.plugin.Plugin;
 import com.velocitypowered.api.plugin.annotation.DataDirectory;
 import com.velocitypowered.api.proxy.ProxyServer;
+import net.hnt8.advancedban.MethodInterface;
 import net.hnt8.advancedban.Universal;
+import net.hnt8.advancedban.link.socket.LinkServer;
 import net.hnt8.advancedban.velocity.listener.BackendCommandListener;
 import net.hnt8.advancedban.velocity.listener.ChatListenerVelocity;
 import net.hnt8.advancedban.velocity.listener.ConnectionListenerVelocity;
 import net.hnt8.advancedban.velocity.listener.ServerConnectListener;
 
+import java.io.IOException;
+import java.net.InetSocketAddress;
 import java.nio.file.Path;
 import java.util.logging.Logger;
 
@@ -30,6 +34,10 @@ public class VelocityMain {
     private final ProxyServer server;
     private final Logger logger;
     private final Path dataDirectory;
+    private BackendCommandListener backendCommandListener;
+    private ServerConnectListener serverConnectListener;
+    private ConnectionListenerVelocity connectionListener;
+    private LinkServer linkServer;
 
     @Inject
     public VelocityMain(ProxyServer server, Logger logger, @DataDirectory Path dataDirectory) {
@@ -55,22 +63,71 @@ public class VelocityMain {
         return dataDirectory;
     }
 
+    public BackendCommandListener getBackendCommandListener() {
+        return backendCommandListener;
+    }
+
+    public ServerConnectListener getServerConnectListener() {
+        return serverConnectListener;
+    }
+
+    public ConnectionListenerVelocity getConnectionListener() {
+        return connectionListener;
+    }
+
     @Subscribe
     public void onProxyInitialization(ProxyInitializeEvent event) {
         Universal.get().setup(new VelocityMethods());
 
-        server.getEventManager().register(this, new ConnectionListenerVelocity());
+        connectionListener = new ConnectionListenerVelocity();
+        server.getEventManager().register(this, connectionListener);
         server.getEventManager().register(this, new ChatListenerVelocity());
-        server.getEventManager().register(this, new BackendCommandListener(server));
-        server.getEventManager().register(this, new ServerConnectListener());
+        MethodInterface mi = Universal.get().getMethods();
+        backendCommandListener = new BackendCommandListener(server,
+                Math.max(1, mi.getInteger(mi.getConfig(), "BackendLink.Worker-Threads", 2)),
+                Math.max(1, mi.getInteger(mi.getConfig(), "BackendLink.Queue-Size", 1024)));
+        server.getEventManager().register(this, backendCommandListener);
+        serverConnectListener = new ServerConnectListener();
+        server.getEventManager().register(this, serverConnectListener);
+        startLinkServer();
 
         logger.info("Avesban has been enabled!");
     }
 
     @Subscribe
     public void onProxyShutdown(ProxyShutdownEvent event) {
+        if (linkServer != null) {
+            linkServer.stop();
+        }
+        if (backendCommandListener != null) {
+            backendCommandListener.shutdown();
+        }
         Universal.get().shutdown();
         logger.info("Avesban has been disabled!");
     }
+
+    private void startLinkServer() {
+        MethodInterface mi = Universal.get().getMethods();
+        if (!mi.getBoolean(mi.getConfig(), "BackendLink.Socket.Enabled", false)) {
+            return;
+        }
+
+        String secret = mi.getString(mi.getConfig(), "BackendLink.Socket.Secret", "");
+        if (secret.isEmpty()) {
+            logger.warning("The backend link socket is enabled but no secret is set, it will not be started.");
+            return;
+        }
+
+        InetSocketAddress address = new InetSocketAddress(mi.getString(mi.getConfig(), "BackendLink.Socket.Host", "127.0.0.1"),
+                mi.getInteger(mi.getConfig(), "BackendLink.Socket.Port", 25580));
+        try {
+            linkServer = new LinkServer(address, secret, backendCommandListener, logger);
+            linkServer.start();
+            logger.info("Listening for backend servers on " + address);
+        } catch (IOException ex) {
+            linkServer = null;
+            logger.severe("Failed to start the backend link socket on " + address + ": " + ex.getMessage());
+        }
+    }
 }
 
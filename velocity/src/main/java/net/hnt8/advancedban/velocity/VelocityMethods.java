@@ -9,10 +9,13 @@ import com.velocitypowered.api.proxy.Player;
 import com.velocitypowered.api.proxy.ProxyServer;
 import net.hnt8.advancedban.MethodInterface;
 import net.hnt8.advancedban.Universal;
+import net.hnt8.advancedban.manager.NotificationManager;
 import net.hnt8.advancedban.manager.PunishmentManager;
 import net.hnt8.advancedban.manager.UUIDManager;
+import net.hnt8.advancedban.utils.LayoutCache;
 import net.hnt8.advancedban.utils.Permissionable;
 import net.hnt8.advancedban.utils.Punishment;
+import net.hnt8.advancedban.utils.PunishmentType;
 import net.hnt8.advancedban.utils.tabcompletion.TabCompleter;
 import net.kyori.adventure.text.Component;
 import net.kyori.adventure.text.TextReplacementConfig;
@@ -49,6 +52,30 @@ public class VelocityMethods implements MethodInterface {
     private Map<String, Object> layouts;
     private Map<String, Object> mysql;
 
+    private static final TextReplacementConfig COLOR_CODES = TextReplacementConfig.builder()
+            .matchLiteral("&")
+            .replacement("§")
+            .build();
+    // Ban screens and mute notices, parsed once per punishment
+    private final LayoutCache<Component> kickLayouts = new LayoutCache<>(1024,
+            layout -> MiniMessage.miniMessage().deserialize(layout.replace('§', '&')),
+            (layout, duration) -> layout.replaceText(builder -> builder.matchLiteral(LayoutCache.DURATION).replacement(duration)));
+    private final LayoutCache<List<Component>> chatLayouts = new LayoutCache<>(1024,
+            layout -> {
+                List<Component> lines = new ArrayList<>();
+                for (String line : layout.split("\n", -1)) {
+                    lines.add(MiniMessage.miniMessage().deserialize(line).replaceText(COLOR_CODES));
+                }
+                return lines;
+            },
+            (lines, duration) -> {
+                List<Component> filled = new ArrayList<>(lines.size());
+                for (Component line : lines) {
+                    filled.add(line.replaceText(builder -> builder.matchLiteral(LayoutCache.DURATION).replacement(duration.replace('&', '§'))));
+                }
+                return filled;
+            });
+
     public VelocityMethods() {
         File dataFolder = getDataFolder();
         this.configFile = new File(dataFolder, "config.yml");
@@ -194,11 +221,7 @@ public class VelocityMethods implements MethodInterface {
         if (!(player instanceof CommandSource)) {
             return;
         }
-        TextReplacementConfig replacementConfig = TextReplacementConfig.builder()
-                .matchLiteral("&")
-                .replacement("§")
-                .build();
-        Component component = MiniMessage.miniMessage().deserialize(msg).replaceText(replacementConfig);
+        Component component = MiniMessage.miniMessage().deserialize(msg).replaceText(COLOR_CODES);
         ((CommandSource) player).sendMessage(component);
     }
 
@@ -319,9 +342,7 @@ public class VelocityMethods implements MethodInterface {
         if (mute == null) {
             return false;
         }
-        for (String str : mute.getLayout()) {
-            sendMessage(player, str);
-        }
+        chatLayouts.get(mute).forEach(((Player) player)::sendMessage);
         return true;
     }
 
@@ -344,9 +365,7 @@ public class VelocityMethods implements MethodInterface {
         if (mute == null) {
             return false;
         }
-        for (String str : mute.getLayout()) {
-            sendMessage(player, str);
-        }
+        chatLayouts.get(mute).forEach(((Player) player)::sendMessage);
         return true;
     }
 
@@ -449,10 +468,32 @@ public class VelocityMethods implements MethodInterface {
 
     @Override
     public void callPunishmentEvent(Punishment punishment) {
+        if (punishment.getType().getBasic() == PunishmentType.MUTE) {
+            getPlugin().getBackendCommandListener().pushStatus(punishment.getName());
+        } else if (punishment.getType().getBasic() == PunishmentType.BAN) {
+            getPlugin().getServerConnectListener().invalidate(punishment.getUuid());
+        }
     }
 
     @Override
     public void callRevokePunishmentEvent(Punishment punishment, boolean massClear) {
+        kickLayouts.invalidate(punishment);
+        chatLayouts.invalidate(punishment);
+        if (punishment.getType().getBasic() == PunishmentType.MUTE) {
+            getPlugin().getBackendCommandListener().pushStatus(punishment.getName());
+        } else if (punishment.getType().getBasic() == PunishmentType.BAN) {
+            getPlugin().getServerConnectListener().invalidate(punishment.getUuid());
+            getPlugin().getConnectionListener().invalidateDenials(punishment);
+        }
+    }
+
+    /**
+     * Get the parsed ban screens.
+     *
+     * @return the cache of ban screens
+     */
+    public LayoutCache<Component> getKickLayouts() {
+        return kickLayouts;
     }
 
     @Override
@@ -462,13 +503,7 @@ public class VelocityMethods implements MethodInterface {
 
     @Override
     public void notify(String perm, List<String> notification) {
-        for (Player player : getServer().getAllPlayers()) {
-            if (hasPerms(player, perm)) {
-                for (String line : notification) {
-                    sendMessage(player, line);
-                }
-            }
-        }
+        NotificationManager.get().notify(perm, notification);
     }
 
     @Override
@@ -491,11 +526,7 @@ public class VelocityMethods implements MethodInterface {
                     .map(serverConnection -> serverConnection.getServerInfo().getName())
                     .orElse(null);
         }
-        // For console commands, check ThreadLocal for server name (set by backend link)
-        String serverName = net.hnt8.advancedban.Universal.getCurrentServerName();
-        if (serverName != null) {
-            return serverName;
-        }
+        // Commands forwarded by backends carry their server in the CommandContext
         // Fallback: return proxy server name or null
         return getServer().getConfiguration().getServers().keySet().iterator().hasNext() 
             ? "proxy" : null;
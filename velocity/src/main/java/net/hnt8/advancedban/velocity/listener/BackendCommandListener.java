@@ -1,34 +1,116 @@
 package net.hnt8.advancedban.velocity.listener;
 
 import com.velocitypowered.api.event.Subscribe;
+import com.velocitypowered.api.event.connection.DisconnectEvent;
 import com.velocitypowered.api.event.connection.PluginMessageEvent;
+import com.velocitypowered.api.event.player.ServerPostConnectEvent;
 import com.velocitypowered.api.proxy.Player;
 import com.velocitypowered.api.proxy.ProxyServer;
+import com.velocitypowered.api.proxy.ServerConnection;
 import com.velocitypowered.api.proxy.messages.ChannelIdentifier;
 import com.velocitypowered.api.proxy.messages.MinecraftChannelIdentifier;
+import com.velocitypowered.api.scheduler.ScheduledTask;
+import net.hnt8.advancedban.link.CommandResultMessage;
+import net.hnt8.advancedban.link.DurationLayout;
+import net.hnt8.advancedban.link.ExecuteCommandMessage;
+import net.hnt8.advancedban.link.LinkCodec;
+import net.hnt8.advancedban.link.LinkMessage;
+import net.hnt8.advancedban.link.LinkProtocolException;
+import net.hnt8.advancedban.link.MuteStatus;
+import net.hnt8.advancedban.link.StatusMessage;
+import net.hnt8.advancedban.link.StatusRequestMessage;
+import net.hnt8.advancedban.link.socket.LinkConnection;
+import net.hnt8.advancedban.link.socket.LinkHandler;
 import net.hnt8.advancedban.manager.CommandManager;
+import net.hnt8.advancedban.manager.ExecutedCommandManager;
+import net.hnt8.advancedban.manager.MessageManager;
 import net.hnt8.advancedban.manager.PunishmentManager;
+import net.hnt8.advancedban.manager.TimeManager;
+import net.hnt8.advancedban.utils.CommandContext;
+import net.hnt8.advancedban.utils.CommandResult;
+import net.hnt8.advancedban.utils.LayoutCache;
 import net.hnt8.advancedban.utils.Punishment;
 import net.hnt8.advancedban.velocity.VelocityMain;
+import net.kyori.adventure.text.TextReplacementConfig;
+import net.kyori.adventure.text.minimessage.MiniMessage;
+import net.kyori.adventure.text.serializer.legacy.LegacyComponentSerializer;
 
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
-import java.io.DataInputStream;
-import java.io.DataOutputStream;
-import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
 
 /**
  * Listens for plugin messages from backend servers and executes commands on the proxy.
- * This allows anticheats and other backend plugins to use ban commands.
+ * This allows anticheats and other backend plugins to use ban commands.<br>
+ * The mute status of a player is pushed to their backend when they connect to it and whenever
+ * one of their mutes is created or revoked. Backends which do not expire mutes themselves
+ * are also told when a mute expires.<br>
+ * Messages are encoded with the {@link LinkCodec}. Backends are answered in the protocol version they last
+ * used, backends which have not sent anything yet get the legacy format every version can read.<br>
+ * Backends can also connect to the socket of the proxy, see {@link net.hnt8.advancedban.link.socket.LinkServer}.
+ * Messages to a backend with an open socket connection are sent through it instead of a player.<br>
+ * Commands with an id are answered with a {@link CommandResultMessage} once they have been executed. They are
+ * claimed in the database first, see {@link ExecutedCommandManager}, so a command which is sent again is not
+ * executed again by this or any other proxy.<br>
+ * Messages are handled on a small pool of worker threads with a bounded queue, as status requests may
+ * have to query the database. The threads receiving messages are the socket selector and the event threads
+ * of the proxy, so they never handle a message themselves: if the queue is full, commands with an id are
+ * answered with a {@link CommandResultMessage#BUSY} result, which makes the backend send them again later,
+ * and everything else is dropped.
  */
-public class BackendCommandListener {
+public class BackendCommandListener implements LinkHandler {
 
     public static final ChannelIdentifier CHANNEL = MinecraftChannelIdentifier.create("advancedban", "command");
     private final ProxyServer server;
+    private final Map<UUID, ScheduledTask> expiryPushes = new ConcurrentHashMap<>();
+    private final Map<String, Integer> serverVersions = new ConcurrentHashMap<>();
+    private final Map<String, LinkConnection> sockets = new ConcurrentHashMap<>();
+    private final ThreadPoolExecutor workers;
+    // Recently executed commands by id, so commands sent again to this proxy are answered without the database.
+    // The result is null while the command is still running.
+    private final Map<String, CommandResultMessage> executedCommands = Collections.synchronizedMap(new LinkedHashMap<String, CommandResultMessage>() {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, CommandResultMessage> eldest) {
+            return size() > 4096;
+        }
+    });
+    private final TextReplacementConfig colorCodes = TextReplacementConfig.builder()
+            .matchLiteral("&")
+            .replacement("§")
+            .build();
 
     public BackendCommandListener(ProxyServer server) {
+        this(server, 2, 1024);
+    }
+
+    /**
+     * @param server    the proxy
+     * @param threads   the amount of threads handling messages
+     * @param queueSize the amount of messages which may wait for a thread
+     */
+    public BackendCommandListener(ProxyServer server, int threads, int queueSize) {
         this.server = server;
+        AtomicInteger threadIds = new AtomicInteger();
+        this.workers = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueSize),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "Avesban-LinkHandler-" + threadIds.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
         // Register the channel to receive messages
         server.getChannelRegistrar().register(CHANNEL);
     }
@@ -40,9 +122,11 @@ public class BackendCommandListener {
         }
         event.setResult(PluginMessageEvent.ForwardResult.handled());
 
-        // Get server name from the event source (player's current server)
+        // Get server name from the event source (the backend or the player's current server)
         String serverName = null;
-        if (event.getSource() instanceof Player) {
+        if (event.getSource() instanceof ServerConnection) {
+            serverName = ((ServerConnection) event.getSource()).getServerInfo().getName();
+        } else if (event.getSource() instanceof Player) {
             Player relayPlayer = (Player) event.getSource();
             // Get the server name from the player's current server connection
             serverName = relayPlayer.getCurrentServer()
@@ -50,76 +134,297 @@ public class BackendCommandListener {
                     .orElse(null);
         }
 
+        LinkMessage message;
         try {
-            ByteArrayInputStream byteIn = new ByteArrayInputStream(event.getData());
-            DataInputStream in = new DataInputStream(byteIn);
-
-            String channel = in.readUTF();
-            if ("EXECUTE_COMMAND".equals(channel)) {
-                String fullCommand = in.readUTF();
-                // Try to read server name from message (if backend link sends it)
-                // Otherwise use the server name from the player's connection
-                try {
-                    String messageServerName = in.readUTF();
-                    if (messageServerName != null && !messageServerName.isEmpty()) {
-                        serverName = messageServerName;
+            message = LinkCodec.decode(event.getData());
+        } catch (LinkProtocolException e) {
+            VelocityMain.get().getLogger().warning("Failed to read plugin message from backend server: " + e.getMessage());
+            return;
+        }
+
+        if (serverName != null) {
+            serverVersions.put(serverName, message.getVersion());
+        }
+
+        // Backends send through the connection of a player, which is also the way back
+        ServerConnection origin = event.getSource() instanceof ServerConnection ? (ServerConnection) event.getSource() : null;
+        String sourceServer = serverName;
+        dispatch(sourceServer, message, reply -> {
+            if (origin != null && message.getVersion() != LinkCodec.LEGACY_VERSION) {
+                send(origin, reply);
+            }
+        });
+    }
+
+    @Override
+    public void onConnect(LinkConnection connection) {
+        LinkConnection previous = sockets.put(connection.getServerName(), connection);
+        if (previous != null && previous != connection) {
+            previous.close();
+        }
+        // The socket always speaks the version of the link protocol both sides are built with
+        serverVersions.put(connection.getServerName(), LinkCodec.VERSION);
+        VelocityMain.get().getLogger().info("Backend server " + connection.getServerName() + " connected from " + connection.getRemoteAddress());
+    }
+
+    @Override
+    public void onMessage(LinkConnection connection, int requestId, LinkMessage message) {
+        // Called on the socket thread, which must not wait for the database
+        dispatch(connection.getServerName(), message, reply -> {
+            try {
+                connection.send(requestId, reply);
+            } catch (LinkProtocolException e) {
+                VelocityMain.get().getLogger().warning("Failed to answer backend server " + connection.getServerName() + ": " + e.getMessage());
+            }
+        });
+    }
+
+    @Override
+    public void onDisconnect(LinkConnection connection) {
+        if (sockets.remove(connection.getServerName(), connection)) {
+            VelocityMain.get().getLogger().info("Backend server " + connection.getServerName() + " disconnected");
+        }
+    }
+
+    // Hands the message to a worker, the calling thread must not be blocked by the database or the command
+    private void dispatch(String serverName, LinkMessage message, Consumer<LinkMessage> reply) {
+        try {
+            workers.execute(() -> handle(serverName, message, reply));
+        } catch (RejectedExecutionException e) {
+            if (message instanceof ExecuteCommandMessage && ((ExecuteCommandMessage) message).getCommandId() != null) {
+                VelocityMain.get().getLogger().warning("Too many messages from backend server " + serverName + ", asking it to resend a command later");
+                reply.accept(new CommandResultMessage(((ExecuteCommandMessage) message).getCommandId(), false, -1,
+                        CommandResultMessage.BUSY, null));
+            } else {
+                // Status requests are repeated by the backends anyway
+                VelocityMain.get().getLogger().fine("Too many messages from backend server " + serverName + ", dropping a " + message.getType());
+            }
+        }
+    }
+
+    private void handle(String serverName, LinkMessage message, Consumer<LinkMessage> reply) {
+        if (message instanceof ExecuteCommandMessage) {
+            String commandId = ((ExecuteCommandMessage) message).getCommandId();
+            if (commandId != null) {
+                CommandResultMessage previous;
+                boolean executed;
+                synchronized (executedCommands) {
+                    executed = executedCommands.containsKey(commandId);
+                    previous = executedCommands.get(commandId);
+                    if (!executed) {
+                        executedCommands.put(commandId, null);
                     }
-                } catch (IOException e) {
-                    // Server name not in message, use the one from player connection
                 }
-                
-                // Fallback: if we still don't have a server name, use a default
-                if (serverName == null || serverName.isEmpty()) {
-                    serverName = "unknown-server";
+                if (executed) {
+                    VelocityMain.get().getLogger().fine("Ignoring command " + commandId + " from backend server, it has already been executed");
+                    // The first answer may have been lost, a command which is still running answers when it is done
+                    if (previous != null) {
+                        reply.accept(previous);
+                    }
+                    return;
                 }
-                
-                VelocityMain.get().getLogger().info("Received command from backend server: " + fullCommand + " (server: " + serverName + ")");
-                
-                // Store server name in ThreadLocal for retrieval during command execution
-                net.hnt8.advancedban.Universal.setCurrentServerName(serverName);
-                
-                try {
-                    // Execute the command on the proxy as console
-                    // Parse the command and arguments
-                    String[] parts = fullCommand.split(" ", 2);
-                    String command = parts[0];
-                    String[] args = parts.length > 1 ? parts[1].split(" ") : new String[0];
-                    
-                    // Execute via CommandManager (which handles all the ban logic)
-                    CommandManager.get().onCommand(server.getConsoleCommandSource(), command, args);
-                } finally {
-                    // Clear the server name after command execution
-                    net.hnt8.advancedban.Universal.clearCurrentServerName();
+            }
+            // Executed by another proxy or before a restart
+            ExecutedCommandManager.Claim claim = commandId == null ? null : ExecutedCommandManager.get().claim(commandId);
+            if (claim != null && claim.isDuplicate()) {
+                VelocityMain.get().getLogger().fine("Ignoring command " + commandId + " from backend server, it has already been executed");
+                if (claim.getPrevious() != null) {
+                    CommandResultMessage answer = toMessage(commandId, claim.getPrevious());
+                    executedCommands.put(commandId, answer);
+                    reply.accept(answer);
+                } else {
+                    // Still running elsewhere, the database is asked again when the command is sent again
+                    executedCommands.remove(commandId);
                 }
-            } else if ("CHECK_PUNISHMENT".equals(channel)) {
-                String playerName = in.readUTF();
-                String uuid = in.readUTF();
-                String targetServer = in.readUTF();
+                return;
+            }
 
-                if (uuid != null) {
-                    uuid = uuid.replace("-", "");
-                }
+            String fullCommand = ((ExecuteCommandMessage) message).getCommand();
+            // Prefer the server name sent by the backend link
+            String messageServerName = ((ExecuteCommandMessage) message).getServerName();
+            if (messageServerName != null && !messageServerName.isEmpty()) {
+                serverName = messageServerName;
+            }
+
+            // Fallback: if we still don't have a server name, use a default
+            if (serverName == null || serverName.isEmpty()) {
+                serverName = "unknown-server";
+            }
 
-                Punishment mute = uuid == null ? null : PunishmentManager.get().getMute(uuid, targetServer);
-                boolean muted = mute != null;
+            VelocityMain.get().getLogger().info("Received command from backend server: " + fullCommand + " (server: " + serverName + ")");
 
-                Optional<Player> playerOpt = server.getPlayer(playerName);
-                if (!playerOpt.isPresent()) {
+            // Execute the command on the proxy as console
+            // Parse the command and arguments
+            String[] parts = fullCommand.split(" ", 2);
+            String command = parts[0];
+            String[] args = parts.length > 1 ? parts[1].split(" ") : new String[0];
+
+            // Execute via CommandManager (which handles all the ban logic), on behalf of the backend
+            CommandContext context = new CommandContext(server.getConsoleCommandSource(), serverName);
+            CommandManager.get().execute(context, command, args).whenComplete((result, ex) -> {
+                if (commandId == null) {
                     return;
                 }
+                CommandResultMessage answer = ex != null
+                        ? new CommandResultMessage(commandId, false, -1, "Exception", String.valueOf(ex.getMessage()))
+                        : toMessage(commandId, result);
+                ExecutedCommandManager.get().complete(claim, ex != null
+                        ? CommandResult.failure("Exception", String.valueOf(ex.getMessage())) : result);
+                executedCommands.put(commandId, answer);
+                reply.accept(answer);
+            });
+        } else if (message instanceof StatusRequestMessage) {
+            // Only used as a slow consistency check by the backends, changes are pushed
+            List<Player> players = new ArrayList<>();
+            for (String playerName : ((StatusRequestMessage) message).getPlayerNames()) {
+                server.getPlayer(playerName).ifPresent(players::add);
+            }
+            pushStatuses(players);
+        }
+    }
+
+    @Subscribe
+    public void onServerPostConnect(ServerPostConnectEvent event) {
+        Player player = event.getPlayer();
+        server.getScheduler().buildTask(VelocityMain.get(), () -> pushStatus(player)).schedule();
+    }
 
-                ByteArrayOutputStream byteOut = new ByteArrayOutputStream();
-                DataOutputStream out = new DataOutputStream(byteOut);
-                out.writeUTF("PUNISHMENT_STATUS");
-                out.writeUTF(playerName);
-                out.writeBoolean(muted);
+    @Subscribe
+    public void onDisconnect(DisconnectEvent event) {
+        ScheduledTask task = expiryPushes.remove(event.getPlayer().getUniqueId());
+        if (task != null) {
+            task.cancel();
+        }
+    }
 
-                playerOpt.get().getCurrentServer().ifPresent(serverConnection ->
-                        serverConnection.sendPluginMessage(CHANNEL, byteOut.toByteArray()));
+    /**
+     * Stop handling messages, messages which are still queued are discarded.
+     */
+    public void shutdown() {
+        workers.shutdownNow();
+    }
+
+    /**
+     * Push the mute status of the player with the given name to their current backend, if they are online.
+     *
+     * @param playerName the players name
+     */
+    public void pushStatus(String playerName) {
+        server.getPlayer(playerName).ifPresent(this::pushStatus);
+    }
+
+    /**
+     * Push the mute status of the given player to their current backend.
+     *
+     * @param player the player
+     */
+    public void pushStatus(Player player) {
+        pushStatuses(Collections.singletonList(player));
+    }
+
+    /**
+     * Push the mute status of the given players to their current backends, batched per backend.<br>
+     * If a player is temporarily muted their status is pushed again once the mute has expired.
+     *
+     * @param players the players
+     */
+    public void pushStatuses(Collection<Player> players) {
+        Map<String, ServerConnection> connections = new LinkedHashMap<>();
+        Map<String, List<MuteStatus>> statuses = new LinkedHashMap<>();
+        for (Player player : players) {
+            Optional<ServerConnection> connection = player.getCurrentServer();
+            if (!connection.isPresent()) {
+                continue;
             }
-        } catch (IOException e) {
-            VelocityMain.get().getLogger().warning("Failed to read plugin message from backend server: " + e.getMessage());
+
+            String serverName = connection.get().getServerInfo().getName();
+            connections.putIfAbsent(serverName, connection.get());
+            statuses.computeIfAbsent(serverName, name -> new ArrayList<>()).add(getStatus(player, serverName));
+        }
+
+        DurationLayout durationLayout = statuses.isEmpty() ? null : renderDurationLayout();
+        for (Map.Entry<String, List<MuteStatus>> entry : statuses.entrySet()) {
+            send(connections.get(entry.getKey()), new StatusMessage(entry.getKey(), entry.getValue(), durationLayout));
         }
     }
-}
 
+    private MuteStatus getStatus(Player player, String serverName) {
+        String uuid = VelocityMain.get().getServerConnectListener().getPunishmentUuid(player);
+        Punishment mute = PunishmentManager.get().getMute(uuid, serverName);
+
+        ScheduledTask previous = expiryPushes.remove(player.getUniqueId());
+        if (previous != null) {
+            previous.cancel();
+        }
+        if (mute == null) {
+            return new MuteStatus(player.getUsername(), false, -1, null, null);
+        }
+
+        long end = -1;
+        if (mute.getType().isTemp()) {
+            long remaining = Math.max(0, mute.getEnd() - TimeManager.getTime());
+            // Backends compare against their system clock, which does not know about TimeDiff
+            end = System.currentTimeMillis() + remaining;
+            if (serverVersions.getOrDefault(serverName, LinkCodec.LEGACY_VERSION) == LinkCodec.LEGACY_VERSION) {
+                expiryPushes.put(player.getUniqueId(), server.getScheduler().buildTask(VelocityMain.get(), () -> pushStatus(player))
+                        .delay(remaining + 1000, TimeUnit.MILLISECONDS)
+                        .schedule());
+            }
+        }
+        return new MuteStatus(player.getUsername(), true, end, mute.getTargetServer(), renderLayout(mute));
+    }
+
+    private CommandResultMessage toMessage(String commandId, CommandResult result) {
+        String message = result.getMessage() == null ? null : renderLegacy(result.getMessage());
+        return new CommandResultMessage(commandId, result.isSuccess(), result.getPunishmentId(), result.getError(), message);
+    }
+
+    /**
+     * Render the layout of a punishment the way {@link net.hnt8.advancedban.velocity.VelocityMethods#sendMessage(Object, String)}
+     * would, serialized with legacy color codes so the backend can send it without parsing anything.<br>
+     * The remaining duration is left as {@link MuteStatus#DURATION}, the backend fills it in whenever it shows the message.
+     */
+    private String renderLayout(Punishment punishment) {
+        StringBuilder message = new StringBuilder();
+        for (String line : punishment.getLayoutTemplateBSN().split("\n")) {
+            if (message.length() > 0) {
+                message.append('\n');
+            }
+            message.append(renderLegacy(line));
+        }
+        return message.toString().replace(LayoutCache.DURATION, MuteStatus.DURATION);
+    }
+
+    private DurationLayout renderDurationLayout() {
+        return new DurationLayout(renderLegacy(MessageManager.getMessage("General.TimeLayoutD")),
+                renderLegacy(MessageManager.getMessage("General.TimeLayoutH")),
+                renderLegacy(MessageManager.getMessage("General.TimeLayoutM")),
+                renderLegacy(MessageManager.getMessage("General.TimeLayoutS")));
+    }
+
+    private String renderLegacy(String line) {
+        return LegacyComponentSerializer.legacySection()
+                .serialize(MiniMessage.miniMessage().deserialize(line).replaceText(colorCodes));
+    }
+
+    private void send(ServerConnection connection, LinkMessage message) {
+        LinkConnection socket = sockets.get(connection.getServerInfo().getName());
+        if (socket != null && socket.isOpen()) {
+            try {
+                socket.send(0, message);
+            } catch (LinkProtocolException e) {
+                VelocityMain.get().getLogger().warning("Failed to push punishment status to backend server: " + e.getMessage());
+            }
+            return;
+        }
+
+        int version = serverVersions.getOrDefault(connection.getServerInfo().getName(), LinkCodec.LEGACY_VERSION);
+        try {
+            for (byte[] frame : LinkCodec.encode(message, version)) {
+                connection.sendPluginMessage(CHANNEL, frame);
+            }
+        } catch (LinkProtocolException e) {
+            VelocityMain.get().getLogger().warning("Failed to push punishment status to backend server: " + e.getMessage());
+        }
+    }
+}
@@ -1,43 +1,104 @@
 package net.hnt8.advancedban.velocity.listener;
 
+import com.velocitypowered.api.event.PostOrder;
 import com.velocitypowered.api.event.Subscribe;
 import com.velocitypowered.api.event.EventTask;
 import com.velocitypowered.api.event.connection.LoginEvent;
+import com.velocitypowered.api.event.connection.PostLoginEvent;
 import com.velocitypowered.api.event.connection.DisconnectEvent;
+import com.velocitypowered.api.event.connection.PreLoginEvent;
 import com.velocitypowered.api.proxy.Player;
+import net.hnt8.advancedban.MethodInterface;
 import net.hnt8.advancedban.Universal;
+import net.hnt8.advancedban.manager.NotificationManager;
 import net.hnt8.advancedban.manager.PunishmentManager;
 import net.hnt8.advancedban.manager.UUIDManager;
+import net.hnt8.advancedban.utils.DenialCache;
+import net.hnt8.advancedban.utils.Punishment;
+import net.hnt8.advancedban.velocity.VelocityMethods;
 import net.kyori.adventure.text.Component;
 import net.kyori.adventure.text.minimessage.MiniMessage;
 
+import java.util.concurrent.atomic.AtomicReference;
+
 /**
  * Handles player connections and disconnections for Velocity
  */
 public class ConnectionListenerVelocity {
 
+    private final DenialCache<Component> denials;
+
+    public ConnectionListenerVelocity() {
+        MethodInterface mi = Universal.get().getMethods();
+        denials = new DenialCache<>(Math.max(0, mi.getInteger(mi.getConfig(), "Cache.Denial-Seconds", 10)) * 1000L,
+                ((VelocityMethods) mi).getKickLayouts()::get);
+    }
+
+    /**
+     * Rejects banned addresses before the player is authenticated, so floods from them do not cost
+     * encryption, session requests or database queries.
+     */
+    @Subscribe(order = PostOrder.FIRST)
+    public void onPreLogin(PreLoginEvent event) {
+        if (!event.getResult().isAllowed()) {
+            return;
+        }
+
+        Component denial = denials.denyAddress(event.getConnection().getRemoteAddress().getAddress().getHostAddress());
+        if (denial != null) {
+            event.setResult(PreLoginEvent.PreLoginComponentResult.denied(denial));
+        }
+    }
+
     @Subscribe
     public EventTask onConnection(LoginEvent event) {
         Player player = event.getPlayer();
+        String uuid = player.getUniqueId().toString();
+        String ip = player.getRemoteAddress().getAddress().getHostAddress();
+
+        // Players who have just been denied are denied again without loading anything
+        Component cached = denials.getByUuid(uuid);
+        if (cached != null) {
+            event.setResult(LoginEvent.ComponentResult.denied(cached));
+            return null;
+        }
+
         UUIDManager.get().supplyInternUUID(player.getUsername(), player.getUniqueId());
 
         return EventTask.async(() -> {
-            String result = Universal.get().callConnection(player.getUsername(), 
-                player.getRemoteAddress().getAddress().getHostAddress());
+            AtomicReference<Component> denial = new AtomicReference<>();
+            String result = Universal.get().callConnection(player.getUsername(), ip, null,
+                    ban -> denial.set(denials.put(uuid, ip, ban)));
 
             if (result != null) {
-                MiniMessage miniMessage = MiniMessage.miniMessage();
-                Component reasonComponent = miniMessage.deserialize(result.replace('§', '&'));
+                Component reasonComponent = denial.get() != null
+                        ? denial.get()
+                        : MiniMessage.miniMessage().deserialize(result.replace('§', '&'));
                 event.setResult(LoginEvent.ComponentResult.denied(reasonComponent));
             }
         });
     }
 
+    /**
+     * Forget the denials caused by the given ban, called when it is revoked.
+     *
+     * @param ban the ban
+     */
+    public void invalidateDenials(Punishment ban) {
+        denials.invalidate(ban);
+    }
+
+    @Subscribe
+    public void onPostLogin(PostLoginEvent event) {
+        NotificationManager.get().refresh(event.getPlayer());
+    }
+
     @Subscribe
     public void onDisconnect(DisconnectEvent event) {
         Universal.get().getMethods().runAsync(() -> {
             Player player = event.getPlayer();
             if (player != null) {
+                NotificationManager.get().remove(player);
                 PunishmentManager.get().discard(player.getUsername());
             }
         });
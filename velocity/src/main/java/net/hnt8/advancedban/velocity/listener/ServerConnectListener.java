@@ -1,53 +1,142 @@
 package net.hnt8.advancedban.velocity.listener;
 
 import com.velocitypowered.api.event.Subscribe;
+import com.velocitypowered.api.event.connection.DisconnectEvent;
 import com.velocitypowered.api.event.player.ServerPreConnectEvent;
 import com.velocitypowered.api.proxy.Player;
+import net.hnt8.advancedban.Universal;
 import net.hnt8.advancedban.manager.PunishmentManager;
+import net.hnt8.advancedban.manager.TimeManager;
 import net.hnt8.advancedban.manager.UUIDManager;
 import net.hnt8.advancedban.utils.Punishment;
-import net.kyori.adventure.text.Component;
-import net.kyori.adventure.text.minimessage.MiniMessage;
+import net.hnt8.advancedban.velocity.VelocityMethods;
+
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
- * Handles server connection events for Velocity to check server-specific bans
+ * Handles server connection events for Velocity to check server-specific bans.<br>
+ * The decision whether a player may join a server is computed once per session and server from the
+ * cached punishments of the player, so switching servers does not resolve uuids again. Denied players are
+ * shown the ban screen kept by {@link VelocityMethods#getKickLayouts()}, with the current remaining duration.
+ * Decisions are dropped when a ban of the player is created or revoked, and when a temporary ban ends.
  */
 public class ServerConnectListener {
 
+    private static final Decision ALLOWED = new Decision(null, Long.MAX_VALUE);
+
+    private final Map<UUID, Session> sessions = new ConcurrentHashMap<>();
+
     @Subscribe
     public void onServerPreConnect(ServerPreConnectEvent event) {
         Player player = event.getPlayer();
         if (!event.getResult().isAllowed()) {
             return; // Connection already denied
         }
-        
+
         String serverName = event.getOriginalServer().getServerInfo().getName();
-        String uuid = UUIDManager.get().getUUID(player.getUsername().toLowerCase());
-        if (uuid == null) {
-            uuid = player.getUniqueId().toString().replace("-", "");
+        Session session = getSession(player);
+        Decision decision = session.decisions.get(serverName.toLowerCase());
+        if (decision == null || decision.validUntil <= TimeManager.getTime()) {
+            decision = decide(session.uuid, serverName);
+            session.decisions.put(serverName.toLowerCase(), decision);
+        }
+
+        if (decision.ban != null) {
+            event.setResult(ServerPreConnectEvent.ServerResult.denied());
+            player.sendMessage(((VelocityMethods) Universal.get().getMethods()).getKickLayouts().get(decision.ban));
+        }
+    }
+
+    @Subscribe
+    public void onDisconnect(DisconnectEvent event) {
+        sessions.remove(event.getPlayer().getUniqueId());
+    }
+
+    /**
+     * Get the uuid the punishments of the given player are stored under.<br>
+     * It is resolved once per session, usually without any lookup as the authenticated uuid is used if
+     * punishments are cached for it.
+     *
+     * @param player the player
+     * @return the uuid without dashes
+     */
+    public String getPunishmentUuid(Player player) {
+        return getSession(player).uuid;
+    }
+
+    /**
+     * Drop the decisions for the player whose punishments are stored under the given uuid,
+     * they are computed again on the next server switch.
+     *
+     * @param uuid the uuid the punishments are stored under
+     */
+    public void invalidate(String uuid) {
+        for (Session session : sessions.values()) {
+            if (session.uuid.equals(uuid)) {
+                session.decisions.clear();
+            }
         }
-        
-        // Check for server-specific bans
+    }
+
+    private Session getSession(Player player) {
+        Session session = sessions.get(player.getUniqueId());
+        if (session != null) {
+            return session;
+        }
+
+        session = new Session(resolveUuid(player));
+        // Do not keep sessions of players who have already left
+        if (player.isActive()) {
+            Session previous = sessions.putIfAbsent(player.getUniqueId(), session);
+            if (previous != null) {
+                return previous;
+            }
+        }
+        return session;
+    }
+
+    private static String resolveUuid(Player player) {
+        String uuid = player.getUniqueId().toString().replace("-", "");
+        if (!PunishmentManager.get().isCached(uuid)) {
+            // The punishments are stored under a different uuid, e.g. a fetched one on offline mode proxies
+            String fetched = UUIDManager.get().getUUID(player.getUsername().toLowerCase());
+            if (fetched != null) {
+                uuid = fetched;
+            }
+        }
+        return uuid;
+    }
+
+    private Decision decide(String uuid, String serverName) {
         // Check both network-wide and server-specific bans
         Punishment ban = PunishmentManager.get().getBan(uuid, serverName);
-        
-        if (ban != null) {
-            // Check if this ban applies to this server
-            if (ban.getTargetServer() == null) {
-                // Network-wide ban - block on all servers
-                MiniMessage miniMessage = MiniMessage.miniMessage();
-                Component reasonComponent = miniMessage.deserialize(ban.getLayoutBSN().replace('§', '&'));
-                event.setResult(ServerPreConnectEvent.ServerResult.denied());
-                player.sendMessage(reasonComponent);
-            } else if (ban.getTargetServer().equalsIgnoreCase(serverName)) {
-                // Server-specific ban for this server - block
-                MiniMessage miniMessage = MiniMessage.miniMessage();
-                Component reasonComponent = miniMessage.deserialize(ban.getLayoutBSN().replace('§', '&'));
-                event.setResult(ServerPreConnectEvent.ServerResult.denied());
-                player.sendMessage(reasonComponent);
-            }
-            // If ban is for a different server, allow connection
+
+        // A ban for a different server allows the connection
+        if (ban == null || (ban.getTargetServer() != null && !ban.getTargetServer().equalsIgnoreCase(serverName))) {
+            return ALLOWED;
+        }
+
+        return new Decision(ban, ban.getType().isTemp() ? ban.getEnd() : Long.MAX_VALUE);
+    }
+
+    private static final class Session {
+        private final String uuid;
+        private final Map<String, Decision> decisions = new ConcurrentHashMap<>();
+
+        private Session(String uuid) {
+            this.uuid = uuid;
         }
     }
-}
 
+    private static final class Decision {
+        private final Punishment ban;
+        private final long validUntil;
+
+        private Decision(Punishment ban, long validUntil) {
+            this.ban = ban;
+            this.validUntil = validUntil;
+        }
+    }
+}